@@ -168,4 +168,22 @@ public abstract class AbstractGeoRocketCommand implements GeoRocketCommand {
     int port = config().getInteger(ConfigConstants.PORT);
     return new GeoRocketClient(host, port, vertx);
   }
+  
+  /**
+   * Create a new GeoRocket client that can send multiple requests to the
+   * server at the same time
+   * @param maxParallelRequests the maximum number of parallel requests
+   * @param http2 true if the requests should be multiplexed over a
+   * single HTTP/2 connection
+   * @return the client
+   */
+  protected GeoRocketClient createClient(int maxParallelRequests,
+      boolean http2) {
+    if (maxParallelRequests <= 1 && !http2) {
+      return createClient();
+    }
+    String host = config().getString(ConfigConstants.HOST);
+    int port = config().getInteger(ConfigConstants.PORT);
+    return new GeoRocketClient(host, port, maxParallelRequests, http2, vertx);
+  }
 }
@@ -1,13 +1,19 @@
 package io.georocket.commands;
 
 import io.georocket.client.GeoRocketClient;
+import io.georocket.client.SearchEnvelope;
 import io.georocket.client.SearchParams;
 import io.georocket.client.SearchReadStream;
 import io.georocket.client.SearchResult;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.impl.NoStackTraceThrowable;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.Pump;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -19,6 +25,15 @@ import java.util.NoSuchElementException;
  */
 public abstract class AbstractQueryCommand extends AbstractGeoRocketCommand {
   private static Logger log = LoggerFactory.getLogger(AbstractQueryCommand.class);
+
+  /**
+   * A slice of a search result
+   */
+  private static class Slice {
+    SearchResult result;
+    String spoolFile;
+    long unmergedChunks;
+  }
   
   /**
    * Query data store using a search query and a layer
@@ -47,39 +62,280 @@ public abstract class AbstractQueryCommand extends AbstractGeoRocketCommand {
     GeoRocketClient client = createClient();
     client.getStore().search(params, ar -> {
       if (ar.failed()) {
-        error(ar.cause().getMessage());
-        if (!(ar.cause() instanceof NoSuchElementException)
-            && !(ar.cause() instanceof NoStackTraceThrowable)) {
-          log.error("Could not query store", ar.cause());
-        }
+        queryFailed(ar.cause());
         handler.handle(1);
       } else {
         SearchResult sr = ar.result();
         SearchReadStream r = sr.getResponse();
         r.handler(buf -> out.write(buf.toString("utf-8")));
         r.endHandlerWithResult(srsr -> {
-          if (srsr.getUnmergedChunks() > 0) {
-            System.err.println(srsr.getUnmergedChunks() + " chunks could not " +
-              "be merged. This usually has one of the following causes:\n" +
-              "\n" +
-              "* Chunks were added to GeoRocket's store while merging was " +
-              "in progress\n" +
-              "* Optimistic merging was enabled and some chunks did not fit " +
-              "to the search\n" +
-              "  result\n");
-            if (params.isOptimisticMerging()) {
-              System.err.println("Optimistic merging was enabled. Repeat the " +
-                "request with optimistic merging\n" +
-                "disabled if you want to get all chunks.");
-            } else {
-              System.err.println("Repeat the request if you want to get all chunks.");
+          printUnmergedChunks(srsr.getUnmergedChunks(),
+              params.isOptimisticMerging());
+          client.close();
+          handler.handle(0);
+        });
+      }
+    });
+  }
+
+  /**
+   * <p>Query data store using a search query and a layer. Split the result
+   * into the given number of slices and download them in parallel.</p>
+   * <p>The beginning and the end of the merged document are requested once
+   * in parallel to the slices. The first slice is written to the given
+   * writer directly after the beginning of the document. All other slices
+   * are written to temporary files until all slices have been downloaded.
+   * They are then appended to the writer in order.</p>
+   * @param params search parameters
+   * @param slices the number of slices
+   * @param http2 true if the slices should be downloaded over a single
+   * multiplexed HTTP/2 connection
+   * @param out the writer to write the results to
+   * @param handler the handler that should be called when all
+   * chunks have been exported
+   * @throws IOException if the query or the layer was invalid
+   */
+  protected void query(SearchParams params, int slices, boolean http2,
+      PrintWriter out, Handler<Integer> handler) throws IOException {
+    if (slices <= 1) {
+      query(params, out, handler);
+      return;
+    }
+
+    GeoRocketClient client = createClient(slices, http2);
+    Slice[] parts = new Slice[slices];
+    boolean[] failed = new boolean[] { false };
+    // wait for the envelope and all slices
+    int[] remaining = new int[] { slices + 1 };
+    SearchEnvelope[] envelope = new SearchEnvelope[] { null };
+    SearchReadStream[] firstSlice = new SearchReadStream[] { null };
+
+    Handler<Throwable> onError = t -> {
+      if (failed[0]) {
+        return;
+      }
+      failed[0] = true;
+      queryFailed(t);
+      deleteSpoolFiles(parts);
+      client.close();
+      handler.handle(1);
+    };
+
+    Handler<Void> onSliceEnd = v -> {
+      if (failed[0] || --remaining[0] > 0) {
+        return;
+      }
+      boolean chunksWritten = parts[0].result.getHits() > 0;
+      writeSlices(parts, 1, chunksWritten, out, ar -> {
+        if (ar.failed()) {
+          onError.handle(ar.cause());
+          return;
+        }
+        out.write(envelope[0].getFooter());
+        long unmergedChunks = 0;
+        for (Slice part : parts) {
+          unmergedChunks += part.unmergedChunks;
+        }
+        printUnmergedChunks(unmergedChunks, params.isOptimisticMerging());
+        client.close();
+        handler.handle(0);
+      });
+    };
+
+    client.getStore().getEnvelope(params, ar -> {
+      if (ar.failed()) {
+        onError.handle(ar.cause());
+        return;
+      }
+      envelope[0] = ar.result();
+      if (failed[0]) {
+        return;
+      }
+      out.write(envelope[0].getHeader());
+      if (firstSlice[0] != null) {
+        firstSlice[0].resume();
+      }
+      onSliceEnd.handle(null);
+    });
+
+    for (int i = 0; i < slices; ++i) {
+      Slice part = new Slice();
+      parts[i] = part;
+      boolean first = i == 0;
+
+      SearchParams sliceParams = new SearchParams()
+          .setQuery(params.getQuery())
+          .setLayer(params.getLayer())
+          .setOptimisticMerging(params.isOptimisticMerging())
+          .setCompressionLevel(params.getCompressionLevel())
+          .setSlice(i, slices);
+
+      client.getStore().search(sliceParams, ar -> {
+        if (ar.failed()) {
+          onError.handle(ar.cause());
+          return;
+        }
+
+        part.result = ar.result();
+        SearchReadStream r = part.result.getResponse();
+        if (part.result.getHits() < 0) {
+          onError.handle(new NoStackTraceThrowable("The GeoRocket server " +
+              "does not support downloading search results in slices."));
+          return;
+        }
+        r.exceptionHandler(onError);
+
+        if (first) {
+          r.handler(buf -> {
+            if (!failed[0]) {
+              out.write(buf.toString("utf-8"));
             }
+          });
+          r.endHandlerWithResult(srsr -> {
+            part.unmergedChunks = srsr.getUnmergedChunks();
+            onSliceEnd.handle(null);
+          });
+          if (envelope[0] == null) {
+            // wait until the beginning of the document has been written
+            r.pause();
+            firstSlice[0] = r;
           }
+          return;
+        }
 
-          client.close();
-          handler.handle(0);
+        // spool all other slices until their turn has come
+        r.pause();
+        spool(part, ar2 -> {
+          if (ar2.failed()) {
+            onError.handle(ar2.cause());
+            return;
+          }
+          AsyncFile spool = ar2.result();
+          spool.exceptionHandler(onError);
+          r.endHandlerWithResult(srsr -> {
+            part.unmergedChunks = srsr.getUnmergedChunks();
+            spool.close(car -> {
+              if (car.failed()) {
+                onError.handle(car.cause());
+              } else {
+                onSliceEnd.handle(null);
+              }
+            });
+          });
+          Pump.pump(r, spool).start();
+          r.resume();
         });
+      });
+    }
+  }
+
+  /**
+   * Create a temporary file the given slice can be written to
+   * @param part the slice
+   * @param handler will be called with the opened file
+   */
+  private void spool(Slice part, Handler<AsyncResult<AsyncFile>> handler) {
+    vertx.fileSystem().createTempFile("georocket-slice-", ".tmp", ar -> {
+      if (ar.failed()) {
+        handler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      part.spoolFile = ar.result();
+      vertx.fileSystem().open(part.spoolFile, new OpenOptions(), handler);
+    });
+  }
+
+  /**
+   * Append spooled slices to the given writer in order
+   * @param parts all slices
+   * @param i the index of the next slice to write
+   * @param chunksWritten true if one of the previous slices contained chunks
+   * @param out the writer
+   * @param handler will be called when all slices have been written
+   */
+  private void writeSlices(Slice[] parts, int i, boolean chunksWritten,
+      PrintWriter out, Handler<AsyncResult<Void>> handler) {
+    if (i >= parts.length) {
+      handler.handle(Future.succeededFuture());
+      return;
+    }
+
+    Slice part = parts[i];
+    boolean hasChunks = part.result.getHits() > 0;
+    vertx.fileSystem().open(part.spoolFile, new OpenOptions()
+        .setRead(true).setWrite(false).setCreate(false), ar -> {
+      if (ar.failed()) {
+        handler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+
+      // separate the chunks of this slice from the ones of the previous slices
+      if (hasChunks && chunksWritten) {
+        out.write(part.result.getSliceSeparator());
       }
+
+      AsyncFile f = ar.result();
+      f.exceptionHandler(t -> handler.handle(Future.failedFuture(t)));
+      f.handler(buf -> out.write(buf.toString("utf-8")));
+      f.endHandler(v -> f.close(car -> {
+        vertx.fileSystem().delete(part.spoolFile, dar -> {
+          part.spoolFile = null;
+          writeSlices(parts, i + 1, chunksWritten || hasChunks, out, handler);
+        });
+      }));
     });
   }
+
+  /**
+   * Delete all temporary files of the given slices
+   * @param parts the slices
+   */
+  private void deleteSpoolFiles(Slice[] parts) {
+    for (Slice part : parts) {
+      if (part != null && part.spoolFile != null) {
+        vertx.fileSystem().delete(part.spoolFile, ar -> {
+          // ignore result
+        });
+        part.spoolFile = null;
+      }
+    }
+  }
+
+  /**
+   * Output an error message for a failed query
+   * @param cause the cause of the failure
+   */
+  private void queryFailed(Throwable cause) {
+    error(cause.getMessage());
+    if (!(cause instanceof NoSuchElementException)
+        && !(cause instanceof NoStackTraceThrowable)) {
+      log.error("Could not query store", cause);
+    }
+  }
+
+  /**
+   * Output a warning if chunks could not be merged
+   * @param unmergedChunks the number of chunks that could not be merged
+   * @param optimisticMerging true if optimistic merging was enabled
+   */
+  private void printUnmergedChunks(long unmergedChunks,
+      boolean optimisticMerging) {
+    if (unmergedChunks > 0) {
+      System.err.println(unmergedChunks + " chunks could not " +
+        "be merged. This usually has one of the following causes:\n" +
+        "\n" +
+        "* Chunks were added to GeoRocket's store while merging was " +
+        "in progress\n" +
+        "* Optimistic merging was enabled and some chunks did not fit " +
+        "to the search\n" +
+        "  result\n");
+      if (optimisticMerging) {
+        System.err.println("Optimistic merging was enabled. Repeat the " +
+          "request with optimistic merging\n" +
+          "disabled if you want to get all chunks.");
+      } else {
+        System.err.println("Repeat the request if you want to get all chunks.");
+      }
+    }
+  }
 }
@@ -1,6 +1,7 @@
 package io.georocket.commands;
 
 import de.undercouch.underline.InputReader;
+import de.undercouch.underline.Option.ArgumentType;
 import de.undercouch.underline.OptionDesc;
 import de.undercouch.underline.OptionParserException;
 import de.undercouch.underline.UnknownAttributes;
@@ -18,6 +19,9 @@ import java.util.List;
 public class ExportCommand extends AbstractQueryCommand {
   protected String layer;
   protected boolean optimisticMerging;
+  protected int slices = 1;
+  protected int compressionLevel;
+  protected boolean http2;
   
   /**
    * Set the absolute path to the layer to export
@@ -47,6 +51,49 @@ public class ExportCommand extends AbstractQueryCommand {
     this.optimisticMerging = optimisticMerging;
   }
   
+  /**
+   * Set the number of slices the result should be split into
+   * @param slices the number of slices
+   */
+  @OptionDesc(longName = "slices",
+      description = "split the result into N slices and download them " +
+        "in parallel (default: 1)",
+      argumentName = "N", argumentType = ArgumentType.STRING)
+  public void setSlices(String slices) {
+    try {
+      this.slices = Integer.parseInt(slices);
+    } catch (NumberFormatException e) {
+      this.slices = 0;
+    }
+  }
+
+  /**
+   * Set the level the server should use to compress the result
+   * @param compressionLevel the compression level
+   */
+  @OptionDesc(longName = "compression-level",
+      description = "let the server compress the result with the given " +
+        "level (1-9)",
+      argumentName = "LEVEL", argumentType = ArgumentType.STRING)
+  public void setCompressionLevel(String compressionLevel) {
+    try {
+      this.compressionLevel = Integer.parseInt(compressionLevel);
+    } catch (NumberFormatException e) {
+      this.compressionLevel = -1;
+    }
+  }
+
+  /**
+   * Enable or disable HTTP/2
+   * @param http2 true if all slices should be downloaded over a single
+   * multiplexed HTTP/2 connection
+   */
+  @OptionDesc(longName = "http2",
+      description = "download slices over a single HTTP/2 connection")
+  public void setHttp2(boolean http2) {
+    this.http2 = http2;
+  }
+  
   @Override
   public String getUsageName() {
     return "export";
@@ -57,12 +104,30 @@ public class ExportCommand extends AbstractQueryCommand {
     return "Export a layer or the whole data store";
   }
 
+  @Override
+  public boolean checkArguments() {
+    if (slices < 1) {
+      error("invalid number of slices. provide a positive integer.");
+      return false;
+    }
+    if (compressionLevel != 0 && (compressionLevel < 1 || compressionLevel > 9)) {
+      error("invalid compression level. provide a number between 1 and 9.");
+      return false;
+    }
+    if (slices > 1 && optimisticMerging) {
+      error("optimistic merging cannot be used together with slices.");
+      return false;
+    }
+    return super.checkArguments();
+  }
+
   @Override
   public void doRun(String[] remainingArgs, InputReader in, PrintWriter out, Handler<Integer> handler)
       throws OptionParserException, IOException {
     SearchParams params = new SearchParams()
         .setLayer(layer)
-        .setOptimisticMerging(optimisticMerging);
-    query(params, out, handler);
+        .setOptimisticMerging(optimisticMerging)
+        .setCompressionLevel(compressionLevel);
+    query(params, slices, http2, out, handler);
   }
 }
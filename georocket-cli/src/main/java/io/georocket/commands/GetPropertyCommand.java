@@ -25,6 +25,7 @@ public class GetPropertyCommand extends AbstractGeoRocketCommand {
   protected String query;
   protected String layer;
   private String property;
+  private boolean distinct;
 
   /**
    * Set the query parts
@@ -59,6 +60,17 @@ public class GetPropertyCommand extends AbstractGeoRocketCommand {
     this.property = property;
   }
 
+  /**
+   * Enable or disable distinct values
+   * @param distinct true if only distinct values should be retrieved
+   */
+  @OptionDesc(longName = "distinct", shortName = "d",
+    description = "only get distinct values and the number of chunks "
+      + "having each value")
+  public void setDistinct(boolean distinct) {
+    this.distinct = distinct;
+  }
+
   @Override
   public String getUsageName() {
     return "property get";
@@ -82,7 +94,7 @@ public class GetPropertyCommand extends AbstractGeoRocketCommand {
   public void doRun(String[] remainingArgs, InputReader in, PrintWriter out,
       Handler<Integer> handler) throws OptionParserException, IOException {
     GeoRocketClient client = createClient();
-    client.getStore().getPropertyValues(property, query, layer, ar -> {
+    client.getStore().getPropertyValues(property, query, layer, distinct, ar -> {
       if (ar.failed()) {
         Throwable t = ar.cause();
         error(t.getMessage());
@@ -49,7 +49,9 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Import one or more files into GeoRocket
+ * Import one or more files into GeoRocket. Multiple files can be uploaded in
+ * parallel, either over separate HTTP/1.1 connections or multiplexed over a
+ * single HTTP/2 connection.
  * @author Michel Kraemer
  */
 public class ImportCommand extends AbstractGeoRocketCommand {
@@ -58,6 +60,8 @@ public class ImportCommand extends AbstractGeoRocketCommand {
   protected List<String> properties;
   protected String layer;
   protected String fallbackCRS;
+  protected int parallel = 1;
+  protected boolean http2;
 
   private static class Metrics {
     final long bytesImported;
@@ -132,6 +136,32 @@ public class ImportCommand extends AbstractGeoRocketCommand {
     this.fallbackCRS = fallbackCRS;
   }
   
+  /**
+   * Set the number of files to import in parallel
+   * @param parallel the number of files
+   */
+  @OptionDesc(longName = "parallel", shortName = "p",
+      description = "number of files to upload in parallel (default: 1)",
+      argumentName = "N", argumentType = ArgumentType.STRING)
+  public void setParallel(String parallel) {
+    try {
+      this.parallel = Integer.parseInt(parallel);
+    } catch (NumberFormatException e) {
+      this.parallel = 0;
+    }
+  }
+
+  /**
+   * Enable or disable HTTP/2
+   * @param http2 true if all files should be uploaded over a single
+   * multiplexed HTTP/2 connection
+   */
+  @OptionDesc(longName = "http2",
+      description = "upload files in parallel over a single HTTP/2 connection")
+  public void setHttp2(boolean http2) {
+    this.http2 = http2;
+  }
+
   @Override
   public String getUsageName() {
     return "import";
@@ -148,8 +178,17 @@ public class ImportCommand extends AbstractGeoRocketCommand {
       error("no file pattern given. provide at least one file to import.");
       return false;
     }
+    if (parallel < 1) {
+      error("invalid number of parallel uploads. provide a positive integer.");
+      return false;
+    }
     return super.checkArguments();
   }
+
+  @Override
+  protected GeoRocketClient createClient() {
+    return createClient(parallel, http2);
+  }
   
   /**
    * Check if the given string contains a glob character ('*', '{', '?', or '[')
@@ -245,6 +284,11 @@ public class ImportCommand extends AbstractGeoRocketCommand {
         System.out.println("  Total time:         " + DurationFormat.formatUntilNow(start));
         System.out.println("  Total data size:    " + SizeFormat.format(metrics.bytesImported));
         System.out.println("  Transferred size:   " + SizeFormat.format(metrics.bytesTransferred));
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed > 0) {
+          System.out.println("  Average throughput: " +
+              SizeFormat.format(metrics.bytesImported * 1000 / elapsed) + "/s");
+        }
         handler.handle(0);
       }, err -> {
         error(err.getMessage());
@@ -275,6 +319,7 @@ public class ImportCommand extends AbstractGeoRocketCommand {
       Vertx vertx) {
     ImportProgressRenderer progress = ImportProgressRenderer.create(vertx.getDelegate());
     progress.setTotalFiles(files.size());
+    progress.setParallel(parallel > 1);
 
     return getFileSizes(files, vertx)
       .reduce(Pair.<Long, PVector<Pair<String, Long>>>of(0L, TreePVector.empty()), (a, b) -> {
@@ -293,13 +338,19 @@ public class ImportCommand extends AbstractGeoRocketCommand {
             Long size = pair.getKey().getValue();
             Integer index = pair.getValue();
 
+            if (parallel > 1) {
+              progress.fileStarted();
+              return importFile(path, size, progress, client, vertx)
+                .doOnSuccess(m -> progress.fileFinished());
+            }
+
             progress
               .startNewFile(Paths.get(path).getFileName().toString())
               .setIndex(index)
               .setSize(size);
 
             return importFile(path, size, progress, client, vertx);
-          }, false, 1);
+          }, false, parallel);
       })
       .reduce(new Metrics(0L, 0L), (a, b) ->
         new Metrics(a.bytesImported + b.bytesImported, a.bytesTransferred + b.bytesTransferred)
@@ -352,7 +403,9 @@ public class ImportCommand extends AbstractGeoRocketCommand {
           file.close();
           out.end();
           fileClosed.set(true);
-          progress.setCurrent(bytesWritten.get());
+          if (parallel <= 1) {
+            progress.setCurrent(bytesWritten.get());
+          }
         });
 
         Handler<Throwable> exceptionHandler = t -> {
@@ -367,7 +420,12 @@ public class ImportCommand extends AbstractGeoRocketCommand {
 
         file.handler(data -> {
           out.write(data.getDelegate());
-          progress.setCurrent(bytesWritten.getAndAdd(data.length()));
+          long oldBytesWritten = bytesWritten.getAndAdd(data.length());
+          if (parallel > 1) {
+            progress.addProgress(data.length());
+          } else {
+            progress.setCurrent(oldBytesWritten);
+          }
           if (out.writeQueueFull()) {
             file.pause();
             out.drainHandler(v -> file.resume());
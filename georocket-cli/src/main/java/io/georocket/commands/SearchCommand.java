@@ -21,6 +21,9 @@ public class SearchCommand extends AbstractQueryCommand {
   protected String query;
   protected String layer;
   protected boolean optimisticMerging;
+  protected int slices = 1;
+  protected int compressionLevel;
+  protected boolean http2;
   
   /**
    * Set the query parts
@@ -59,6 +62,49 @@ public class SearchCommand extends AbstractQueryCommand {
     this.optimisticMerging = optimisticMerging;
   }
   
+  /**
+   * Set the number of slices the result should be split into
+   * @param slices the number of slices
+   */
+  @OptionDesc(longName = "slices",
+      description = "split the result into N slices and download them " +
+        "in parallel (default: 1)",
+      argumentName = "N", argumentType = ArgumentType.STRING)
+  public void setSlices(String slices) {
+    try {
+      this.slices = Integer.parseInt(slices);
+    } catch (NumberFormatException e) {
+      this.slices = 0;
+    }
+  }
+
+  /**
+   * Set the level the server should use to compress the result
+   * @param compressionLevel the compression level
+   */
+  @OptionDesc(longName = "compression-level",
+      description = "let the server compress the result with the given " +
+        "level (1-9)",
+      argumentName = "LEVEL", argumentType = ArgumentType.STRING)
+  public void setCompressionLevel(String compressionLevel) {
+    try {
+      this.compressionLevel = Integer.parseInt(compressionLevel);
+    } catch (NumberFormatException e) {
+      this.compressionLevel = -1;
+    }
+  }
+
+  /**
+   * Enable or disable HTTP/2
+   * @param http2 true if all slices should be downloaded over a single
+   * multiplexed HTTP/2 connection
+   */
+  @OptionDesc(longName = "http2",
+      description = "download slices over a single HTTP/2 connection")
+  public void setHttp2(boolean http2) {
+    this.http2 = http2;
+  }
+  
   @Override
   public String getUsageName() {
     return "search";
@@ -75,6 +121,18 @@ public class SearchCommand extends AbstractQueryCommand {
       error("no search query given");
       return false;
     }
+    if (slices < 1) {
+      error("invalid number of slices. provide a positive integer.");
+      return false;
+    }
+    if (compressionLevel != 0 && (compressionLevel < 1 || compressionLevel > 9)) {
+      error("invalid compression level. provide a number between 1 and 9.");
+      return false;
+    }
+    if (slices > 1 && optimisticMerging) {
+      error("optimistic merging cannot be used together with slices.");
+      return false;
+    }
     return super.checkArguments();
   }
 
@@ -84,7 +142,8 @@ public class SearchCommand extends AbstractQueryCommand {
     SearchParams params = new SearchParams()
         .setQuery(query)
         .setLayer(layer)
-        .setOptimisticMerging(optimisticMerging);
-    query(params, out, handler);
+        .setOptimisticMerging(optimisticMerging)
+        .setCompressionLevel(compressionLevel);
+    query(params, slices, http2, out, handler);
   }
 }
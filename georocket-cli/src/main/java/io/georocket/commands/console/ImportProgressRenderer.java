@@ -98,6 +98,21 @@ public class ImportProgressRenderer {
    */
   private long totalProgress = 0;
 
+  /**
+   * {@code true} if multiple files are imported in parallel
+   */
+  private boolean parallel = false;
+
+  /**
+   * The number of files currently being imported (in parallel mode)
+   */
+  private int activeFiles = 0;
+
+  /**
+   * The number of files that have already been imported (in parallel mode)
+   */
+  private int finishedFiles = 0;
+
   /**
    * The value of {@link #totalProgress} when {@link #render(boolean)} was
    * last called
@@ -195,7 +210,55 @@ public class ImportProgressRenderer {
     long rate = Math.round(rateAvg.getSum() / (rateAvg.getN() / (1000.0  / interval)));
     lastTotalProgress = currentTotalProgress;
 
-    // create first line consisting of filename and index
+    long elapsed = System.currentTimeMillis() - startTime;
+    StringBuilder line1;
+    StringBuilder line2;
+    if (parallel) {
+      line1 = renderParallelLine1();
+      line2 = renderParallelLine2(currentTotalProgress, rate, elapsed);
+    } else {
+      line1 = renderLine1();
+      line2 = renderLine2(currentTotalProgress, rate);
+    }
+
+    limitToLength(line1, terminalWidth - 4);
+    limitToLength(line2, terminalWidth);
+
+    // create third line indicating the elapsed time and the ETA
+    StringBuilder line3 = new StringBuilder();
+    line3.append("time ")
+      .append(DurationFormat.formatShort(elapsed));
+    if (rate > 0) {
+      long remaining = elapsed + (totalSize - currentTotalProgress) / rate * 1000;
+      line3.append("/")
+        .append(DurationFormat.formatShort(remaining));
+    }
+
+    limitToLength(line3, terminalWidth);
+
+    // output lines (if they have changed)
+    Ansi ansi = ansi();
+    if (resetCursor) {
+      ansi.cursorUpLine(3);
+    }
+    ansi
+      .eraseLine().a(line1).a(" ...").newline()
+      .eraseLine().a(line2).newline()
+      .eraseLine().a(line3).newline();
+
+    String output = ansi.toString();
+    if (!lastRenderedOutput.equals(output)) {
+      System.out.print(output);
+      System.out.flush();
+    }
+    lastRenderedOutput = output;
+  }
+
+  /**
+   * Create the first line consisting of filename and index
+   * @return the line
+   */
+  private StringBuilder renderLine1() {
     StringBuilder line1 = new StringBuilder();
     line1.append(filename);
 
@@ -207,9 +270,16 @@ public class ImportProgressRenderer {
         .append(")");
     }
 
-    limitToLength(line1, terminalWidth - 4);
+    return line1;
+  }
 
-    // create second line displaying the progress in bytes
+  /**
+   * Create the second line displaying the progress in bytes
+   * @param currentTotalProgress the total number of bytes imported so far
+   * @param rate the current upload rate in bytes per second
+   * @return the line
+   */
+  private StringBuilder renderLine2(long currentTotalProgress, long rate) {
     StringBuilder line2 = new StringBuilder();
     line2.append("file ")
       .append(SizeFormat.format(current));
@@ -226,38 +296,58 @@ public class ImportProgressRenderer {
     line2.append("  ")
       .append(SizeFormat.format(rate))
       .append("/s");
+    return line2;
+  }
 
-    limitToLength(line2, terminalWidth);
+  /**
+   * Create the first line in parallel mode consisting of the number of
+   * files currently being imported and the number of finished files
+   * @return the line
+   */
+  private StringBuilder renderParallelLine1() {
+    StringBuilder line1 = new StringBuilder();
+    line1.append("Importing ")
+      .append(activeFiles)
+      .append(activeFiles == 1 ? " file" : " files")
+      .append(" in parallel");
 
-    // create third line indicating the elapsed time and the ETA
-    long elapsed = System.currentTimeMillis() - startTime;
-    StringBuilder line3 = new StringBuilder();
-    line3.append("time ")
-      .append(DurationFormat.formatShort(elapsed));
-    if (rate > 0) {
-      long remaining = elapsed + (totalSize - currentTotalProgress) / rate * 1000;
-      line3.append("/")
-        .append(DurationFormat.formatShort(remaining));
+    if (totalFiles > 0) {
+      line1.append(" (")
+        .append(finishedFiles)
+        .append("/")
+        .append(totalFiles)
+        .append(" done)");
     }
 
-    limitToLength(line3, terminalWidth);
+    return line1;
+  }
 
-    // output lines (if they have changed)
-    Ansi ansi = ansi();
-    if (resetCursor) {
-      ansi.cursorUpLine(3);
+  /**
+   * Create the second line in parallel mode displaying the aggregate
+   * progress of all files and the throughput
+   * @param currentTotalProgress the total number of bytes imported so far
+   * @param rate the current upload rate in bytes per second
+   * @param elapsed the number of milliseconds since the import has started
+   * @return the line
+   */
+  private StringBuilder renderParallelLine2(long currentTotalProgress,
+      long rate, long elapsed) {
+    StringBuilder line2 = new StringBuilder();
+    line2.append("total ")
+      .append(SizeFormat.format(currentTotalProgress));
+    if (totalSize > 0) {
+      line2.append("/")
+        .append(SizeFormat.format(totalSize));
     }
-    ansi
-      .eraseLine().a(line1).a(" ...").newline()
-      .eraseLine().a(line2).newline()
-      .eraseLine().a(line3).newline();
-
-    String output = ansi.toString();
-    if (!lastRenderedOutput.equals(output)) {
-      System.out.print(output);
-      System.out.flush();
+    line2.append("  ")
+      .append(SizeFormat.format(rate))
+      .append("/s");
+    if (elapsed > 0) {
+      line2.append("  ")
+        .append(String.format("%.1f", finishedFiles * 1000.0 / elapsed))
+        .append(" files/s");
     }
-    lastRenderedOutput = output;
+    return line2;
   }
 
   /**
@@ -274,6 +364,52 @@ public class ImportProgressRenderer {
     return this;
   }
 
+  /**
+   * Enable or disable parallel mode. In parallel mode, the renderer displays
+   * the aggregate progress of all files being imported at the same time
+   * instead of the progress of a single file. Use {@link #fileStarted()},
+   * {@link #fileFinished()}, and {@link #addProgress(long)} to report
+   * progress in this mode.
+   * @param parallel {@code true} if files are imported in parallel
+   * @return a reference to {@code this}
+   */
+  public ImportProgressRenderer setParallel(boolean parallel) {
+    this.parallel = parallel;
+    return this;
+  }
+
+  /**
+   * Tell the renderer that the import of a file has started (in parallel
+   * mode)
+   * @return a reference to {@code this}
+   */
+  public ImportProgressRenderer fileStarted() {
+    activeFiles++;
+    return this;
+  }
+
+  /**
+   * Tell the renderer that the import of a file has finished (in parallel
+   * mode)
+   * @return a reference to {@code this}
+   */
+  public ImportProgressRenderer fileFinished() {
+    activeFiles--;
+    finishedFiles++;
+    return this;
+  }
+
+  /**
+   * Add bytes imported from any of the files currently being imported to
+   * the total progress (in parallel mode)
+   * @param bytes the number of bytes
+   * @return a reference to {@code this}
+   */
+  public ImportProgressRenderer addProgress(long bytes) {
+    totalProgress += bytes;
+    return this;
+  }
+
   /**
    * Set the total number of files to be imported
    * @param totalFiles the total number of files
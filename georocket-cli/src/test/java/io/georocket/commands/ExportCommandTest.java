@@ -8,6 +8,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -124,4 +125,64 @@ public class ExportCommandTest extends CommandTestBase<ExportCommand> {
 
     cmd.run(new String[] { "--optimistic-merging", "/hello/world" }, in, out);
   }
+
+  /**
+   * Test if a layer can be exported in parallel slices
+   * @param context the test context
+   * @throws Exception if something goes wrong
+   */
+  @Test
+  public void slices(TestContext context) throws Exception {
+    String urlEnvelope = "/store/hello/world/?envelope=true";
+    String url0 = "/store/hello/world/?slice=0&slices=2";
+    String url1 = "/store/hello/world/?slice=1&slices=2";
+    stubFor(get(urlEqualTo(urlEnvelope))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody(new JsonObject()
+          .put("header", "{\"type\":\"FeatureCollection\",\"features\":[")
+          .put("footer", "]}")
+          .put("separator", ",")
+          .encode())));
+    stubFor(get(urlEqualTo(url0))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withHeader("X-Slice-Separator", ",")
+        .withHeader("X-Hits", "1")
+        .withBody("{\"a\":1}")));
+    stubFor(get(urlEqualTo(url1))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withHeader("X-Slice-Separator", ",")
+        .withHeader("X-Hits", "1")
+        .withBody("{\"b\":2}")));
+
+    Async async = context.async();
+    cmd.setEndHandler(exitCode -> {
+      context.assertEquals(0, exitCode);
+      verifyRequested(urlEnvelope, context);
+      verifyRequested(url0, context);
+      verifyRequested(url1, context);
+      context.assertEquals("{\"type\":\"FeatureCollection\",\"features\":" +
+          "[{\"a\":1},{\"b\":2}]}", writer.toString());
+      async.complete();
+    });
+
+    cmd.run(new String[] { "--slices", "2", "/hello/world" }, in, out);
+  }
+
+  /**
+   * Test if an invalid number of slices is rejected
+   * @param context the test context
+   * @throws Exception if something goes wrong
+   */
+  @Test
+  public void invalidSlices(TestContext context) throws Exception {
+    Async async = context.async();
+    cmd.setEndHandler(exitCode -> {
+      context.assertEquals(1, exitCode);
+      async.complete();
+    });
+    cmd.run(new String[] { "--slices", "x", "/hello/world" }, in, out);
+  }
 }
@@ -46,4 +46,29 @@ public class GetPropertyCommandTest extends CommandTestBase<GetPropertyCommand>
 
     cmd.run(new String[]{"-l", "/", "-prop", "test"}, in, out);
   }
+
+  /**
+   * Test if distinct values can be retrieved
+   * @param context the test context
+   * @throws Exception if something goes wrong
+   */
+  @Test
+  public void testGetDistinctProperty(TestContext context) throws Exception {
+    String body = "[{\"value\":\"a\",\"count\":2}]";
+    String url = "/store/?property=test&distinct=true";
+    stubFor(get(urlEqualTo(url))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody(body)));
+
+    Async async = context.async();
+    cmd.setEndHandler(exitCode -> {
+      context.assertEquals(0, exitCode);
+      context.assertEquals(body, writer.toString());
+      verifyRequested(url, context);
+      async.complete();
+    });
+
+    cmd.run(new String[]{"-l", "/", "-prop", "test", "--distinct"}, in, out);
+  }
 }
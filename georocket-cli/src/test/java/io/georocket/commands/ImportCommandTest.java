@@ -199,6 +199,54 @@ public class ImportCommandTest extends CommandTestBase<ImportCommand> {
     cmd.run(new String[] { "-props", "hello:world,myKey:my\\:Value,my\\:Key:myValue", testFile.getAbsolutePath() }, in, out);
   }
 
+  /**
+   * Test importing multiple files in parallel
+   * @param context the test context
+   * @throws Exception if something goes wrong
+   */
+  @Test
+  public void importParallel(TestContext context) throws Exception {
+    String url = "/store";
+    stubFor(post(urlEqualTo(url))
+        .willReturn(aResponse()
+            .withStatus(202)));
+
+    File testFile2 = folder.newFile("test2");
+    FileUtils.write(testFile2, XML, StandardCharsets.UTF_8);
+    File testFile3 = folder.newFile("test3");
+    FileUtils.write(testFile3, XML, StandardCharsets.UTF_8);
+
+    Async async = context.async();
+    cmd.setEndHandler(exitCode -> {
+      context.assertEquals(0, exitCode);
+      try {
+        verify(3, postRequestedFor(urlEqualTo(url))
+            .withRequestBody(equalTo(XML)));
+      } catch (VerificationException e) {
+        context.fail(e);
+      }
+      async.complete();
+    });
+
+    cmd.run(new String[] { "-p", "2", testFile.getAbsolutePath(),
+        testFile2.getAbsolutePath(), testFile3.getAbsolutePath() }, in, out);
+  }
+
+  /**
+   * Test that an invalid number of parallel uploads is rejected
+   * @param context the test context
+   * @throws Exception if something goes wrong
+   */
+  @Test
+  public void invalidParallel(TestContext context) throws Exception {
+    Async async = context.async();
+    cmd.setEndHandler(exitCode -> {
+      context.assertEquals(1, exitCode);
+      async.complete();
+    });
+    cmd.run(new String[] { "-p", "0", testFile.getAbsolutePath() }, in, out);
+  }
+
   /**
    * Test importing with tags
    * @param context the test context
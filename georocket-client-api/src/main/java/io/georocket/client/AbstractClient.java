@@ -13,7 +13,9 @@ import io.vertx.core.streams.ReadStream;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -52,6 +54,25 @@ public class AbstractClient {
   protected void getWithParameter(String endpoint, String parameterName,
       String parameterValue, String query, String layer,
       Handler<AsyncResult<ReadStream<Buffer>>> handler) {
+    getWithParameters(endpoint, Collections.singletonMap(parameterName,
+        parameterValue), query, layer, handler);
+  }
+
+  /**
+   * Execute a get request with specified path, query and additional parameters
+   * @param endpoint the endpoint
+   * @param parameters the names and values of the query parameters
+   * @param query a search query specifying which chunks to return (may be
+   * <code>null</code>)
+   * @param layer the name of the layer where to search for chunks recursively
+   * (may be <code>null</code>)
+   * @param handler a handler that will receive the {@link ReadStream} from
+   * which the results matching the given criteria can be read
+   * @since 1.4.0
+   */
+  protected void getWithParameters(String endpoint,
+      Map<String, String> parameters, String query, String layer,
+      Handler<AsyncResult<ReadStream<Buffer>>> handler) {
     if ((query == null || query.isEmpty()) && (layer == null || layer.isEmpty())) {
       handler.handle(Future.failedFuture("No search query and no layer given. "
         + "Do you really wish to export/query the whole data store? If so, "
@@ -65,7 +86,9 @@ public class AbstractClient {
       queryPath += "&";
     }
 
-    String path = endpoint + queryPath + parameterName + "=" + parameterValue;
+    String path = endpoint + queryPath + parameters.entrySet().stream()
+      .map(e -> e.getKey() + "=" + e.getValue())
+      .collect(Collectors.joining("&"));
     HttpClientRequest request = client.get(path);
     request.exceptionHandler(t -> handler.handle(Future.failedFuture(t)));
     request.handler(response -> {
@@ -5,6 +5,7 @@ import java.io.Closeable;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
 
 /**
  * Provides interface to perform operations against a GeoRocket server
@@ -60,6 +61,54 @@ public class GeoRocketClient implements Closeable {
         .setTryUseCompression(true)));
   }
 
+  /**
+   * Create a client connecting to GeoRocket running on the specified host
+   * and port that is able to send multiple requests in parallel (e.g. to
+   * import many files at once)
+   * @param host the GeoRocket host
+   * @param port the GeoRocket port
+   * @param maxParallelRequests the maximum number of requests to send
+   * in parallel
+   * @param http2 true if the requests should be multiplexed over a single
+   * HTTP/2 connection instead of opening one HTTP/1.1 connection per
+   * request. The GeoRocket server accepts HTTP/2 without TLS.
+   * @param vertx a Vert.x instance used to create a HTTP client
+   * @since 1.4.0
+   */
+  public GeoRocketClient(String host, int port, int maxParallelRequests,
+      boolean http2, Vertx vertx) {
+    this(createOptions(host, port, maxParallelRequests, http2), vertx);
+  }
+
+  /**
+   * Create options for a HTTP client that is able to send multiple requests
+   * in parallel
+   * @param host the GeoRocket host
+   * @param port the GeoRocket port
+   * @param maxParallelRequests the maximum number of requests to send
+   * in parallel
+   * @param http2 true if HTTP/2 should be used
+   * @return the options
+   */
+  private static HttpClientOptions createOptions(String host, int port,
+      int maxParallelRequests, boolean http2) {
+    int n = Math.max(1, maxParallelRequests);
+    HttpClientOptions options = new HttpClientOptions()
+        .setDefaultHost(host)
+        .setDefaultPort(port)
+        .setTryUseCompression(true)
+        .setMaxPoolSize(n);
+    if (http2) {
+      // connect with prior knowledge and send all requests over one
+      // connection
+      options.setProtocolVersion(HttpVersion.HTTP_2)
+        .setHttp2ClearTextUpgrade(false)
+        .setHttp2MaxPoolSize(1)
+        .setHttp2MultiplexingLimit(n);
+    }
+    return options;
+  }
+
   /**
    * Create a client connecting to GeoRocket running with
    * specified options
@@ -0,0 +1,54 @@
+package io.georocket.client;
+
+/**
+ * The beginning and the end of the document that results from merging all
+ * slices of a search result. See
+ * {@link StoreClient#getEnvelope(SearchParams, io.vertx.core.Handler)}.
+ * @since 1.4.0
+ * @author Michel Kraemer
+ */
+public class SearchEnvelope {
+  private final String header;
+  private final String footer;
+  private final String separator;
+
+  /**
+   * Create a new envelope
+   * @param header the beginning of the merged document
+   * @param footer the end of the merged document
+   * @param separator the string that has to be put between the chunks of
+   * two slices
+   */
+  public SearchEnvelope(String header, String footer, String separator) {
+    this.header = header;
+    this.footer = footer;
+    this.separator = separator;
+  }
+
+  /**
+   * Get the beginning of the merged document (e.g. the XML header and the
+   * parent elements). It has to be put before the first slice.
+   * @return the beginning of the document (may be empty)
+   */
+  public String getHeader() {
+    return header;
+  }
+
+  /**
+   * Get the end of the merged document. It has to be put after the
+   * last slice.
+   * @return the end of the document (may be empty)
+   */
+  public String getFooter() {
+    return footer;
+  }
+
+  /**
+   * Get the string that has to be put between the merged chunks of two
+   * slices. See {@link SearchResult#getSliceSeparator()}.
+   * @return the separator (may be empty)
+   */
+  public String getSeparator() {
+    return separator;
+  }
+}
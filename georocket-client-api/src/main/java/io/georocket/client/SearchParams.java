@@ -11,6 +11,9 @@ public class SearchParams {
   private String query;
   private String layer;
   private boolean optimisticMerging;
+  private int slice = 0;
+  private int slices = 1;
+  private int compressionLevel = 0;
 
   /**
    * Set a search query specifying which chunks to return
@@ -89,6 +92,74 @@ public class SearchParams {
     return optimisticMerging;
   }
 
+  /**
+   * <p>Split the search result into a number of disjoint slices and only
+   * return one of them. Slices can be requested in parallel to speed up
+   * large exports.</p>
+   * <p>The merged chunks of all slices have to be concatenated in the
+   * order of the slice numbers. The slices contain neither the beginning
+   * nor the end of the merged document. Get them once with
+   * {@link StoreClient#getEnvelope(SearchParams, io.vertx.core.Handler)}.
+   * Use {@link SearchResult#getSliceSeparator()} and
+   * {@link SearchResult#getHits()} to join the slices.</p>
+   * <p>Slicing cannot be combined with optimistic merging.</p>
+   * @param slice the number of the slice to return (from 0 to
+   * {@code slices - 1})
+   * @param slices the total number of slices (1 if the search result should
+   * not be sliced)
+   * @return a reference to this, so the API can be used fluently
+   * @since 1.4.0
+   */
+  public SearchParams setSlice(int slice, int slices) {
+    this.slice = slice;
+    this.slices = slices;
+    return this;
+  }
+
+  /**
+   * Get the number of the slice to return. See {@link #setSlice(int, int)}.
+   * @return the slice number
+   * @since 1.4.0
+   */
+  public int getSlice() {
+    return slice;
+  }
+
+  /**
+   * Get the total number of slices the search result should be split into.
+   * See {@link #setSlice(int, int)}.
+   * @return the number of slices (1 if the result should not be sliced)
+   * @since 1.4.0
+   */
+  public int getSlices() {
+    return slices;
+  }
+
+  /**
+   * Set the GZIP compression level GeoRocket should use for the response.
+   * Lower levels compress faster, higher levels produce smaller responses.
+   * The response is transparently decompressed by the client.
+   * @param compressionLevel the compression level (1-9) or 0 if GeoRocket
+   * should use its default settings
+   * @return a reference to this, so the API can be used fluently
+   * @since 1.4.0
+   */
+  public SearchParams setCompressionLevel(int compressionLevel) {
+    this.compressionLevel = compressionLevel;
+    return this;
+  }
+
+  /**
+   * Get the GZIP compression level GeoRocket should use for the response.
+   * See {@link #setCompressionLevel(int)}.
+   * @return the compression level or 0 if GeoRocket should use its default
+   * settings
+   * @since 1.4.0
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
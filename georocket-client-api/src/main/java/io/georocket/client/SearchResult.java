@@ -10,6 +10,8 @@ import io.vertx.core.streams.ReadStream;
  */
 public class SearchResult {
   private final SearchReadStream response;
+  private final String sliceSeparator;
+  private final long hits;
 
   /**
    * Create a new result
@@ -17,7 +19,23 @@ public class SearchResult {
    * matching the search criteria can be read
    */
   public SearchResult(SearchReadStream response) {
+    this(response, "", -1);
+  }
+
+  /**
+   * Create a new result for a slice of the search result
+   * @param response a {@link ReadStream} from which the merged chunks
+   * matching the search criteria can be read
+   * @param sliceSeparator the string that has to be put between the
+   * chunks of two slices
+   * @param hits the number of chunks in the response (or -1 if unknown)
+   * @since 1.4.0
+   */
+  public SearchResult(SearchReadStream response, String sliceSeparator,
+      long hits) {
     this.response = response;
+    this.sliceSeparator = sliceSeparator;
+    this.hits = hits;
   }
 
   /**
@@ -28,4 +46,26 @@ public class SearchResult {
   public SearchReadStream getResponse() {
     return response;
   }
+
+  /**
+   * Get the string that has to be put between the merged chunks of two
+   * slices when they are concatenated (see
+   * {@link SearchParams#setSlice(int, int)}). The separator is only needed
+   * if both slices contain chunks (see {@link #getHits()}).
+   * @return the separator (may be empty)
+   * @since 1.4.0
+   */
+  public String getSliceSeparator() {
+    return sliceSeparator;
+  }
+
+  /**
+   * Get the number of chunks in the response if GeoRocket has reported it
+   * (e.g. if the search result has been sliced)
+   * @return the number of chunks or -1 if it is unknown
+   * @since 1.4.0
+   */
+  public long getHits() {
+    return hits;
+  }
 }
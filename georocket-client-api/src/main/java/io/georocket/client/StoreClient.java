@@ -7,11 +7,15 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -519,6 +523,14 @@ public class StoreClient extends AbstractClient {
       return;
     }
     String queryPath = prepareQuery(query, layer, params.isOptimisticMerging());
+    if (params.getSlices() > 1) {
+      queryPath += (queryPath.contains("?") ? "&" : "?") +
+          "slice=" + params.getSlice() + "&slices=" + params.getSlices();
+    }
+    if (params.getCompressionLevel() > 0) {
+      queryPath += (queryPath.contains("?") ? "&" : "?") +
+          "compressionLevel=" + params.getCompressionLevel();
+    }
     HttpClientRequest request = client.get(getEndpoint() + queryPath);
     request.putHeader("TE", "trailers");
     request.exceptionHandler(t -> handler.handle(Future.failedFuture(t)));
@@ -529,13 +541,75 @@ public class StoreClient extends AbstractClient {
       } else if (response.statusCode() != 200) {
         fail(response, handler);
       } else {
+        String separator = response.getHeader("X-Slice-Separator");
+        String hits = response.getHeader("X-Hits");
+        long h = -1;
+        if (hits != null) {
+          try {
+            h = Long.parseLong(hits);
+          } catch (NumberFormatException e) {
+            // ignore invalid header
+          }
+        }
         handler.handle(Future.succeededFuture(new SearchResult(
-            new SearchReadStream(response))));
+            new SearchReadStream(response),
+            separator != null ? separator : "", h)));
       }
     });
     configureRequest(request).end();
   }
   
+  /**
+   * <p>Get the beginning and the end of the document that results from
+   * merging all slices of a search result (see
+   * {@link SearchParams#setSlice(int, int)}). GeoRocket only reads the
+   * metadata of the chunks matching the given query and layer, so this
+   * request is cheap compared to the search itself. It has to be made only
+   * once for all slices.</p>
+   * <p>The slice parameters, the compression level, and optimistic merging
+   * in the given search parameters are ignored.</p>
+   * @param params search parameters
+   * @param handler a handler that will receive the {@link SearchEnvelope}
+   * @since 1.4.0
+   */
+  public void getEnvelope(SearchParams params,
+      Handler<AsyncResult<SearchEnvelope>> handler) {
+    String query = params.getQuery();
+    String layer = params.getLayer();
+    if ((query == null || query.isEmpty()) && (layer == null || layer.isEmpty())) {
+      handler.handle(Future.failedFuture("No search query and no layer given. "
+          + "Do you really wish to export/query the whole data store? If so, "
+          + "set the layer to '/'."));
+      return;
+    }
+    String queryPath = prepareQuery(query, layer);
+    queryPath += (queryPath.contains("?") ? "&" : "?") + "envelope=true";
+    HttpClientRequest request = client.get(getEndpoint() + queryPath);
+    request.exceptionHandler(t -> handler.handle(Future.failedFuture(t)));
+    request.handler(response -> {
+      if (response.statusCode() == 404) {
+        fail(response, handler, message -> new NoSuchElementException(
+            ClientAPIException.parse(message).getMessage()));
+      } else if (response.statusCode() != 200) {
+        fail(response, handler);
+      } else {
+        response.bodyHandler(buffer -> {
+          JsonObject obj;
+          try {
+            obj = buffer.toJsonObject();
+          } catch (DecodeException e) {
+            handler.handle(Future.failedFuture(e));
+            return;
+          }
+          handler.handle(Future.succeededFuture(new SearchEnvelope(
+              obj.getString("header", ""), obj.getString("footer", ""),
+              obj.getString("separator", ""))));
+        });
+      }
+    });
+    configureRequest(request).end();
+  }
+
   /**
    * <p>Delete chunks from the GeoRocket data store.</p>
    * <p>Either <code>query</code> or <code>layer</code> must be given to
@@ -705,6 +779,45 @@ public class StoreClient extends AbstractClient {
     getWithParameter(getEndpoint(), "property", property, query, layer, handler);
   }
 
+  /**
+   * <p>Search the GeoRocket store for all values of the specified
+   * property and return a {@link ReadStream} of merged values matching the
+   * given criteria.</p>
+   * <p>If <code>distinct</code> is <code>true</code>, the values will be
+   * aggregated by the server and each value will only be returned once.
+   * In this case, the stream will contain a JSON array of objects with the
+   * attributes <code>value</code> and <code>count</code>, where
+   * <code>count</code> is the number of chunks having the respective
+   * value.</p>
+   * <p>If <code>query</code> is <code>null</code> or empty all chunks from
+   * the given <code>layer</code> (and all sub-layers) will be searched for the
+   * property. If <code>layer</code> is also <code>null</code> or empty the
+   * contents of the whole data store will be searched for the property.</p>
+   * <p>The caller is responsible for handling exceptions through
+   * {@link ReadStream#exceptionHandler(Handler)}.</p>
+   * @param property the name of the property
+   * @param query a search query specifying which chunks should be searched
+   * (may be <code>null</code>)
+   * @param layer the name of the layer where to search for chunks recursively
+   * (may be <code>null</code>)
+   * @param distinct <code>true</code> if only distinct values and their
+   * number of occurrences should be returned
+   * @param handler a handler that will receive the {@link ReadStream} from
+   * which the merged values matching the given criteria can be read
+   * @since 1.4.0
+   */
+  public void getPropertyValues(String property, String query, String layer,
+    boolean distinct, Handler<AsyncResult<ReadStream<Buffer>>> handler) {
+    if (!distinct) {
+      getPropertyValues(property, query, layer, handler);
+      return;
+    }
+    Map<String, String> parameters = new LinkedHashMap<>();
+    parameters.put("property", property);
+    parameters.put("distinct", "true");
+    getWithParameters(getEndpoint(), parameters, query, layer, handler);
+  }
+
   /**
    * Return the HTTP endpoint, the GeoRocket data store path at
    * server side.
@@ -39,6 +39,23 @@ public class StoreClientPropertiesTest extends StoreClientTestBase {
     });
   }
 
+  /**
+   * Test if distinct property values can be get
+   * @param context the test context
+   */
+  @Test
+  public void getDistinctProperties(TestContext context) {
+    String url = "/store/?property=test&distinct=true";
+    stubFor(get(urlEqualTo(url))
+      .willReturn(aResponse()
+        .withStatus(200)));
+    Async async = context.async();
+    client.getStore().getPropertyValues("test", "", "/", true, ar -> {
+      context.assertTrue(ar.succeeded());
+      async.complete();
+    });
+  }
+
   /**
    * Test if properties can be can be set
    * @param context the test context
@@ -148,4 +148,51 @@ public class StoreClientSearchTest extends StoreClientTestBase {
     client.getStore().search(new SearchParams().setQuery("test").setOptimisticMerging(true),
       context.asyncAssertSuccess(assertExport(url, XML, context, context.async())));
   }
+
+  /**
+   * Test a query for one slice of the search result
+   * @param context the test context
+   */
+  @Test
+  public void slice(TestContext context) {
+    String JSON = "{\"type\":\"Feature\"}";
+    String url = "/store/?search=test&slice=1&slices=4&compressionLevel=1";
+    stubFor(get(urlEqualTo(url))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withHeader("X-Slice-Separator", ",")
+        .withHeader("X-Hits", "1")
+        .withBody(JSON)));
+    Async async = context.async();
+    client.getStore().search(new SearchParams().setQuery("test")
+        .setSlice(1, 4).setCompressionLevel(1),
+      context.asyncAssertSuccess(res -> {
+        context.assertEquals(",", res.getSliceSeparator());
+        context.assertEquals(1L, res.getHits());
+        assertExport(url, JSON, context, async).handle(res);
+      }));
+  }
+
+  /**
+   * Test if the envelope of a sliced search result can be requested
+   * @param context the test context
+   */
+  @Test
+  public void envelope(TestContext context) {
+    String url = "/store/?search=test&envelope=true";
+    stubFor(get(urlEqualTo(url))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody("{\"header\":\"<root>\",\"footer\":\"</root>\"," +
+          "\"separator\":\"\"}")));
+    Async async = context.async();
+    client.getStore().getEnvelope(new SearchParams().setQuery("test")
+        .setSlice(1, 4), context.asyncAssertSuccess(envelope -> {
+      context.assertEquals("<root>", envelope.getHeader());
+      context.assertEquals("</root>", envelope.getFooter());
+      context.assertEquals("", envelope.getSeparator());
+      verifyRequested(url, context);
+      async.complete();
+    }));
+  }
 }
@@ -1,5 +1,8 @@
 package io.georocket.util.io;
 
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
@@ -8,6 +11,8 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.streams.WriteStream;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
@@ -15,6 +20,9 @@ import java.util.zip.Deflater;
 /**
  * <p>A {@link WriteStream} that delegates to another one but compresses all
  * data with GZIP.</p>
+ * <p>Data is compressed on a worker thread. Multiple streams compress their
+ * data in parallel, but the data of each stream is always compressed in the
+ * order in which it has been written.</p>
  * <p>The code is loosely based on {@link java.util.zip.GZIPOutputStream}</p>
  * @author Michel Kraemer
  * @since 1.3.0
@@ -35,13 +43,32 @@ public class GzipWriteStream implements WriteStream<Buffer> {
   private int maxWrites = 1024 * 1024;
   private AtomicLong bytesWritten = new AtomicLong();
 
+  /**
+   * Blocking operations waiting to be executed. Only one operation of this
+   * stream runs at a time.
+   */
+  private final Deque<Handler<Void>> pendingOperations = new ArrayDeque<>();
+  private boolean operationRunning;
+
   /**
    * Creates new stream that wraps around another one
    * @param delegate the stream to wrap around
    */
   public GzipWriteStream(WriteStream<Buffer> delegate) {
+    this(delegate, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates new stream that wraps around another one and compresses data
+   * with the given compression level
+   * @param delegate the stream to wrap around
+   * @param level the compression level (0-9 or
+   * {@link Deflater#DEFAULT_COMPRESSION})
+   * @since 1.4.0
+   */
+  public GzipWriteStream(WriteStream<Buffer> delegate, int level) {
     this.delegate = delegate;
-    deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    deflater = new Deflater(level, true);
     crc = new CRC32();
     buf = new byte[1024 * 16 - 64 + 4]; // optimal packet size for TCP
   }
@@ -78,7 +105,7 @@ public class GzipWriteStream implements WriteStream<Buffer> {
 
     // compress the data in a blocking code
     writesOutstanding += data.length();
-    Vertx.currentContext().<Buffer>executeBlocking(f -> {
+    executeBlocking(f -> {
       byte[] bytes = data.getBytes();
       deflater.setInput(bytes, 0, bytes.length);
 
@@ -99,19 +126,56 @@ public class GzipWriteStream implements WriteStream<Buffer> {
       Buffer b = ar.result();
       if (b.length() > 0) {
         delegate.write(b);
-        writesOutstanding -= b.length();
       }
+      writesOutstanding -= data.length();
       checkDrained();
     });
 
     return this;
   }
 
+  /**
+   * Execute a blocking operation on a worker thread after all previous
+   * operations of this stream have finished. Operations of different
+   * streams may run in parallel.
+   * @param blockingCode the blocking operation
+   * @param resultHandler will be called on the current context when the
+   * operation has finished
+   */
+  private void executeBlocking(Handler<Future<Buffer>> blockingCode,
+      Handler<AsyncResult<Buffer>> resultHandler) {
+    Context context = Vertx.currentContext();
+    pendingOperations.add(v -> context.executeBlocking(blockingCode, false,
+      ar -> {
+        try {
+          resultHandler.handle(ar);
+        } finally {
+          operationRunning = false;
+          runNextOperation();
+        }
+      }));
+    runNextOperation();
+  }
+
+  /**
+   * Run the next pending blocking operation if no other one is running
+   */
+  private void runNextOperation() {
+    if (!operationRunning && !pendingOperations.isEmpty()) {
+      operationRunning = true;
+      pendingOperations.poll().handle(null);
+    }
+  }
+
   private void checkDrained() {
-    if (drainHandler != null) {
+    if (drainHandler != null && writesOutstanding < maxWrites) {
       Handler<Void> handler = drainHandler;
       drainHandler = null;
-      handler.handle(null);
+      if (delegate.writeQueueFull()) {
+        delegate.drainHandler(handler);
+      } else {
+        handler.handle(null);
+      }
     }
   }
 
@@ -136,7 +200,7 @@ public class GzipWriteStream implements WriteStream<Buffer> {
   @Override
   public void end() {
     // finish compression in a blocking code
-    Vertx.currentContext().<Buffer>executeBlocking(f -> {
+    executeBlocking(f -> {
       deflater.finish();
       Buffer b = Buffer.buffer();
       while (!deflater.finished()) {
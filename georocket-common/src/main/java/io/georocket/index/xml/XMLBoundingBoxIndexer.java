@@ -3,8 +3,6 @@ package io.georocket.index.xml;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
 
-import org.geotools.referencing.CRS;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.cs.AxisDirection;
@@ -13,7 +11,7 @@ import org.opengis.referencing.operation.TransformException;
 
 import io.georocket.index.CRSAware;
 import io.georocket.index.generic.BoundingBoxIndexer;
-import io.georocket.util.CompoundCRSDecoder;
+import io.georocket.util.CRSCache;
 import io.georocket.util.XMLStreamEvent;
 
 /**
@@ -22,8 +20,6 @@ import io.georocket.util.XMLStreamEvent;
  */
 public class XMLBoundingBoxIndexer extends BoundingBoxIndexer
     implements XMLIndexer, CRSAware {
-  private static final CoordinateReferenceSystem WGS84 = DefaultGeographicCRS.WGS84;
-  
   /**
    * The string of the detected CRS
    */
@@ -149,23 +145,13 @@ public class XMLBoundingBoxIndexer extends BoundingBoxIndexer
     }
 
     try {
-      CoordinateReferenceSystem crs;
-      // decode string
-      if (CompoundCRSDecoder.isCompound(srsName)) {
-        crs = CompoundCRSDecoder.decode(srsName);
-      } else {
-        crs = CRS.decode(srsName);
-      }
-      
-      // only keep horizontal CRS
-      CoordinateReferenceSystem hcrs = CRS.getHorizontalCRS(crs);
-      if (hcrs != null) {
-        crs = hcrs;
-      }
-      
-      // find transformation to WGS84
-      MathTransform transform = CRS.findMathTransform(crs, WGS84, true);
-      boolean flippedCRS = isFlippedCRS(crs);
+      // decode string and find transformation to WGS84. look into the
+      // cache first because there will be many indexer instances for
+      // the same CRS
+      CRSCache.Entry e = CRSCache.getInstance().get(srsName);
+      CoordinateReferenceSystem crs = e.getHorizontalCRS();
+      MathTransform transform = e.getTransform();
+      boolean flippedCRS = e.isFlipped();
 
       this.crsStr = srsName;
       this.crs = crs;
@@ -11,15 +11,20 @@ import static io.georocket.query.ElasticsearchQueryHelper.termQuery;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.georocket.query.KeyValueQueryPart.ComparisonOperator;
 import io.georocket.query.parser.QueryBaseListener;
 import io.georocket.query.parser.QueryLexer;
@@ -39,15 +44,45 @@ import io.georocket.util.PathUtils;
 import io.vertx.core.json.JsonObject;
 
 /**
- * Default implementation of {@link QueryCompiler}
+ * <p>Default implementation of {@link QueryCompiler}</p>
+ * <p>The compiler can keep recently compiled queries in a cache (see
+ * {@link #setCacheSize(long)}). This avoids parsing and optimizing the
+ * same search string again and again if clients send identical queries
+ * (e.g. a map client requesting the same bounding box).</p>
  * @author Michel Kraemer
  */
 public class DefaultQueryCompiler implements QueryCompiler {
+  /**
+   * Typical queries that are parsed by {@link #warmUp()}
+   */
+  private static final String[] WARM_UP_QUERIES = {
+    "foobar",
+    "\"foo bar\" 'foo bar'",
+    "1,2,3,4",
+    "-180.0,-90.0,180.0,90.0 foobar",
+    "EQ(key value)",
+    "NOT(EQ(key value))",
+    "AND(GT(key 1) LTE(key 5))",
+    "OR(GTE(key 1) LT(key 5) foobar)",
+    "AND(1,2,3,4 OR(EQ(key \"value\") NOT(foobar)))"
+  };
+
+  /**
+   * True if {@link #warmUp()} has already been called
+   */
+  private static final AtomicBoolean warmedUp = new AtomicBoolean();
+
   /**
    * Query compilers for individual properties
    */
   protected Collection<? extends QueryCompiler> queryCompilers;
 
+  /**
+   * Compiled and optimized queries by search string, path, and name of the
+   * property that must exist (may be null if caching is disabled)
+   */
+  private Cache<List<String>, JsonObject> cache;
+
   /**
    * Default constructor
    */
@@ -65,6 +100,39 @@ public class DefaultQueryCompiler implements QueryCompiler {
     } else {
       this.queryCompilers = queryCompilers;
     }
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Set the maximum number of compiled queries to keep in the cache. The
+   * cache is disabled by default.
+   * @param maxSize the maximum number of queries (0 disables the cache)
+   */
+  public void setCacheSize(long maxSize) {
+    if (maxSize <= 0) {
+      cache = null;
+    } else {
+      cache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .build();
+    }
+  }
+
+  /**
+   * Parse a number of typical queries. ANTLR builds its prediction cache
+   * while parsing. The cache is shared by all parser instances, so calling
+   * this method once at startup makes the first real queries faster.
+   * Subsequent calls have no effect.
+   */
+  public static void warmUp() {
+    if (!warmedUp.compareAndSet(false, true)) {
+      return;
+    }
+    for (String q : WARM_UP_QUERIES) {
+      parse(q);
+    }
   }
 
   /**
@@ -73,9 +141,34 @@ public class DefaultQueryCompiler implements QueryCompiler {
    * @param path the path where to perform the search (may be null if the
    * whole data store should be searched)
    * @param keyExists the name of a property which must exist in the document
-   * @return the compiled query
+   * @return the compiled query. The caller may modify it.
    */
   public JsonObject compileQuery(String search, String path, String keyExists) {
+    if (cache == null) {
+      return compileQueryUncached(search, path, keyExists);
+    }
+
+    List<String> key = Arrays.asList(search, path, keyExists);
+    JsonObject result = cache.getIfPresent(key);
+    if (result == null) {
+      result = compileQueryUncached(search, path, keyExists);
+      cache.put(key, result);
+    }
+
+    // never hand out the cached object
+    return result.copy();
+  }
+
+  /**
+   * Compile a search string without looking into the cache
+   * @param search the search string to compile
+   * @param path the path where to perform the search (may be null if the
+   * whole data store should be searched)
+   * @param keyExists the name of a property which must exist in the document
+   * @return the compiled query
+   */
+  private JsonObject compileQueryUncached(String search, String path,
+      String keyExists) {
     JsonObject qb = compileQueryNoOptimize(search);
     List<JsonObject> filter = new ArrayList<>();
     
@@ -116,8 +209,7 @@ public class DefaultQueryCompiler implements QueryCompiler {
 
   @Override
   public JsonObject compileQuery(String search) {
-    JsonObject r = compileQueryNoOptimize(search);
-    return ElasticsearchQueryOptimizer.optimize(r);
+    return compileQuery(search, null, null);
   }
 
   /**
@@ -133,10 +225,7 @@ public class DefaultQueryCompiler implements QueryCompiler {
     }
     
     // parse query
-    QueryLexer lexer = new QueryLexer(new ANTLRInputStream(search.trim()));
-    CommonTokenStream tokens = new CommonTokenStream(lexer);
-    QueryParser parser = new QueryParser(tokens);
-    QueryContext ctx = parser.query();
+    QueryContext ctx = parse(search);
     
     // compile query to QueryBuilder
     QueryCompilerListener listener = new QueryCompilerListener();
@@ -148,6 +237,18 @@ public class DefaultQueryCompiler implements QueryCompiler {
     return listener.result.pop();
   }
 
+  /**
+   * Parse a search string
+   * @param search the search string
+   * @return the parse tree
+   */
+  private static QueryContext parse(String search) {
+    QueryLexer lexer = new QueryLexer(new ANTLRInputStream(search.trim()));
+    CommonTokenStream tokens = new CommonTokenStream(lexer);
+    QueryParser parser = new QueryParser(tokens);
+    return parser.query();
+  }
+
   @Override
   public MatchPriority getQueryPriority(String search) {
     return MatchPriority.MUST;
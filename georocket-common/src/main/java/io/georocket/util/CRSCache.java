@@ -0,0 +1,302 @@
+package io.georocket.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.cs.AxisDirection;
+import org.opengis.referencing.operation.MathTransform;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>A process-wide cache for decoded coordinate reference systems and their
+ * transformations to {@link DefaultGeographicCRS#WGS84}.</p>
+ * <p>Decoding a CRS and looking up a transformation through the GeoTools
+ * factories is expensive. Indexers and query compilers typically encounter
+ * the same few CRS strings over and over again, so they should call
+ * {@link #get(String)} instead of decoding the strings themselves.</p>
+ * <p>The cache is bounded. It also remembers strings that could not be
+ * decoded, so invalid CRS strings are not parsed over and over again.
+ * Such entries expire after a short time because decoding may have failed
+ * temporarily (e.g. if the EPSG database could not be accessed).</p>
+ * @author Michel Kraemer
+ */
+public class CRSCache {
+  /**
+   * The default maximum number of entries in the cache
+   */
+  private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+  /**
+   * The default number of seconds after which strings that could not be
+   * decoded are decoded again
+   */
+  private static final long DEFAULT_ERROR_EXPIRY_SECONDS = 30;
+
+  /**
+   * A private class holding the singleton instance of this class
+   */
+  private static class LazyHolder {
+    static final CRSCache INSTANCE = new CRSCache(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * A decoded CRS and its transformation to WGS84
+   */
+  public static class Entry {
+    private final CoordinateReferenceSystem crs;
+    private final CoordinateReferenceSystem horizontalCRS;
+    private final boolean flipped;
+    private final MathTransform transform;
+    private final FactoryException error;
+    private final long errorTime;
+    private final FactoryException transformError;
+
+    /**
+     * Create a new entry
+     * @param crs the decoded CRS
+     * @param horizontalCRS the horizontal component of the CRS
+     * @param flipped true if x and y are flipped in the horizontal CRS
+     * @param transform the transformation from the horizontal CRS to WGS84
+     * (may be <code>null</code> if there is no such transformation)
+     * @param transformError the exception that was thrown while looking for
+     * the transformation (<code>null</code> if the transformation was found)
+     */
+    private Entry(CoordinateReferenceSystem crs,
+        CoordinateReferenceSystem horizontalCRS, boolean flipped,
+        MathTransform transform, FactoryException transformError) {
+      this.crs = crs;
+      this.horizontalCRS = horizontalCRS;
+      this.flipped = flipped;
+      this.transform = transform;
+      this.error = null;
+      this.errorTime = 0;
+      this.transformError = transformError;
+    }
+
+    /**
+     * Create an entry for a CRS string that could not be decoded
+     * @param error the exception that was thrown while decoding the string
+     * @param errorTime the time (in nanoseconds, see {@link Ticker#read()})
+     * when the string could not be decoded
+     */
+    private Entry(FactoryException error, long errorTime) {
+      this.crs = null;
+      this.horizontalCRS = null;
+      this.flipped = false;
+      this.transform = null;
+      this.error = error;
+      this.errorTime = errorTime;
+      this.transformError = null;
+    }
+
+    /**
+     * @return the decoded CRS (may be a compound CRS)
+     */
+    public CoordinateReferenceSystem getCRS() {
+      return crs;
+    }
+
+    /**
+     * @return the horizontal component of the decoded CRS or the decoded
+     * CRS itself if it has no horizontal component
+     */
+    public CoordinateReferenceSystem getHorizontalCRS() {
+      return horizontalCRS;
+    }
+
+    /**
+     * @return true if x and y are flipped in the horizontal CRS
+     */
+    public boolean isFlipped() {
+      return flipped;
+    }
+
+    /**
+     * @return the transformation from the horizontal CRS to WGS84
+     * @throws FactoryException if there is no such transformation
+     */
+    public MathTransform getTransform() throws FactoryException {
+      if (transformError != null) {
+        throw transformError;
+      }
+      return transform;
+    }
+  }
+
+  private final LoadingCache<String, Entry> cache;
+  private final long errorExpiryNanos;
+  private final Ticker ticker;
+
+  /**
+   * Create a new cache
+   * @param maximumSize the maximum number of entries in the cache
+   */
+  CRSCache(long maximumSize) {
+    this(maximumSize, TimeUnit.SECONDS.toMillis(DEFAULT_ERROR_EXPIRY_SECONDS),
+        Ticker.systemTicker());
+  }
+
+  /**
+   * Create a new cache
+   * @param maximumSize the maximum number of entries in the cache
+   * @param errorExpiryMillis the number of milliseconds after which strings
+   * that could not be decoded are decoded again
+   * @param ticker the source of time used to expire such entries
+   */
+  CRSCache(long maximumSize, long errorExpiryMillis, Ticker ticker) {
+    this.errorExpiryNanos = TimeUnit.MILLISECONDS.toNanos(errorExpiryMillis);
+    this.ticker = ticker;
+    cache = CacheBuilder.newBuilder()
+      .maximumSize(maximumSize)
+      .recordStats()
+      .build(new CacheLoader<String, Entry>() {
+        @Override
+        public Entry load(String key) {
+          try {
+            return decode(key);
+          } catch (FactoryException e) {
+            return new Entry(e, ticker.read());
+          }
+        }
+      });
+  }
+
+  /**
+   * Gets the singleton instance of this class
+   * @return the singleton instance
+   */
+  public static CRSCache getInstance() {
+    return LazyHolder.INSTANCE;
+  }
+
+  /**
+   * Check if x and y are flipped in the given CRS
+   * @param crs the CRS
+   * @return true if x and y are flipped, false otherwise
+   */
+  private static boolean isFlipped(CoordinateReferenceSystem crs) {
+    if (crs.getCoordinateSystem().getDimension() == 2) {
+      AxisDirection direction = crs.getCoordinateSystem().getAxis(0).getDirection();
+      if (direction.equals(AxisDirection.NORTH) ||
+        direction.equals(AxisDirection.UP)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Decode a CRS string and find a transformation to WGS84
+   * @param code the CRS string
+   * @return the new cache entry
+   * @throws FactoryException if the string could not be decoded
+   */
+  private static Entry decode(String code) throws FactoryException {
+    CoordinateReferenceSystem crs;
+    if (CompoundCRSDecoder.isCompound(code)) {
+      crs = CompoundCRSDecoder.decodeUncached(code);
+    } else if (WKTCRSDecoder.isWKT(code)) {
+      crs = WKTCRSDecoder.decodeUncached(code);
+    } else {
+      crs = CRS.decode(code);
+    }
+
+    // only use horizontal CRS for the transformation
+    CoordinateReferenceSystem hcrs = CRS.getHorizontalCRS(crs);
+    if (hcrs == null) {
+      hcrs = crs;
+    }
+
+    try {
+      MathTransform transform = CRS.findMathTransform(hcrs,
+        DefaultGeographicCRS.WGS84, true);
+      return new Entry(crs, hcrs, isFlipped(hcrs), transform, null);
+    } catch (FactoryException e) {
+      return new Entry(crs, hcrs, isFlipped(hcrs), null, e);
+    }
+  }
+
+  /**
+   * Get a decoded CRS and its transformation to WGS84. Decode the CRS if it
+   * is not in the cache yet. The string may be a simple CRS code (see
+   * {@link CRS#decode(String)}), a compound CRS (see
+   * {@link CompoundCRSDecoder}) or a WKT string (see {@link WKTCRSDecoder}).
+   * @param code the CRS string
+   * @return the cache entry
+   * @throws FactoryException if the string could not be decoded
+   */
+  public Entry get(String code) throws FactoryException {
+    Entry e;
+    try {
+      e = cache.get(code);
+    } catch (ExecutionException ex) {
+      // should never happen because the loader does not throw checked exceptions
+      throw new IllegalStateException(ex.getCause());
+    }
+    if (e.error != null) {
+      if (ticker.read() - e.errorTime >= errorExpiryNanos) {
+        // try to decode the string again
+        cache.asMap().remove(code, e);
+        return get(code);
+      }
+      throw e.error;
+    }
+    return e;
+  }
+
+  /**
+   * Get the number of times a CRS was found in the cache
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Get the number of times a CRS had to be decoded
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Get all statistics of the cache
+   * @return the statistics
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Get the number of entries currently in the cache
+   * @return the number of entries
+   */
+  public long getSize() {
+    return cache.size();
+  }
+
+  /**
+   * Get the statistics of the cache as a JSON object
+   * @return the statistics
+   */
+  public JsonObject getStatsAsJson() {
+    CacheStats stats = cache.stats();
+    return new JsonObject()
+      .put("size", cache.size())
+      .put("hits", stats.hitCount())
+      .put("misses", stats.missCount())
+      .put("evictions", stats.evictionCount());
+  }
+}
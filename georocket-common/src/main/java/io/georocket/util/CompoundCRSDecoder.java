@@ -35,6 +35,22 @@ public class CompoundCRSDecoder {
     if (!isCompound(code)) {
       throw new NoSuchAuthorityCodeException("No compound CRS", AUTHORITY, code);
     }
+    return CRSCache.getInstance().get(code).getCRS();
+  }
+  
+  /**
+   * Decodes a given code to a {@link org.opengis.referencing.crs.CompoundCRS}
+   * without looking into the {@link CRSCache}
+   * @param code the code
+   * @return the compound CRS
+   * @throws FactoryException if the code does not represent a compound CRS
+   * or if one of its components could not be decoded
+   */
+  static CoordinateReferenceSystem decodeUncached(String code) throws FactoryException {
+    code = code.trim();
+    if (!isCompound(code)) {
+      throw new NoSuchAuthorityCodeException("No compound CRS", AUTHORITY, code);
+    }
     
     code = code.substring(PREFIX.length());
     String[] parts = code.split(",");
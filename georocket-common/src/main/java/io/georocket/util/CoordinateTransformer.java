@@ -28,6 +28,21 @@ public class CoordinateTransformer {
     this.transform = CRS.findMathTransform(crs, WGS84, true);
   }
 
+  /**
+   * Create transformer from a CRS string (see {@link #decode(String)}). The
+   * decoded CRS and its transformation will be looked up in the
+   * {@link CRSCache}. If the CRS is a compound CRS, only its horizontal
+   * component will be transformed.
+   * @param crs the CRS string
+   * @throws FactoryException if the CRS could not be decoded or if no
+   * transformation for the CRS could be found
+   */
+  public CoordinateTransformer(String crs) throws FactoryException {
+    CRSCache.Entry e = CRSCache.getInstance().get(crs);
+    this.flipped = e.isFlipped();
+    this.transform = e.getTransform();
+  }
+
   /**
    * Transform an array of coordinates to {@link DefaultGeographicCRS#WGS84}
    * @param from the source array of coordinates
@@ -103,7 +118,8 @@ public class CoordinateTransformer {
   }
 
   /**
-   * Decode CRS from a string. This might be:
+   * Decode CRS from a string. The result will be looked up in the
+   * {@link CRSCache}. The string might be:
    * <ul>
    *   <li>a simple CRS (see {@link CRS#decode(String)})</li>
    *   <li>a compound CRS (see {@link CompoundCRSDecoder#decode(String)})</li>
@@ -114,14 +130,6 @@ public class CoordinateTransformer {
    * @throws FactoryException if the CRS could not be parsed
    */
   public static CoordinateReferenceSystem decode(String s) throws FactoryException {
-    if (CompoundCRSDecoder.isCompound(s)) {
-      return CompoundCRSDecoder.decode(s);
-    }
-
-    if (WKTCRSDecoder.isWKT(s)) {
-      return WKTCRSDecoder.decode(s);
-    }
-
-    return CRS.decode(s);
+    return CRSCache.getInstance().get(s).getCRS();
   }
 }
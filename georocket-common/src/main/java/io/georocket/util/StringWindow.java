@@ -32,15 +32,23 @@ public class StringWindow {
   private CharBuffer charBuf = CharBuffer.allocate(DEFAULT_CHAR_BUFFER_SIZE);
 
   /**
-   * A temporary buffer holding bytes that still need to be decoded
+   * Bytes of an incomplete character at the end of the last appended
+   * buffer that still need to be decoded (may be <code>null</code>)
    */
-  private Buffer buf = Buffer.buffer();
+  private Buffer remainingBytes;
 
   /**
    * A buffer holding the decoded string
    */
   private StringBuilder decodedBuf = new StringBuilder();
 
+  /**
+   * The number of characters at the beginning of {@link #decodedBuf} that
+   * have already been removed from the window but not yet physically
+   * deleted from the buffer
+   */
+  private int consumed = 0;
+
   /**
    * The current position in the window (i.e. in the decoded string)
    */
@@ -53,7 +61,7 @@ public class StringWindow {
    */
   private void ensureCharBuffer(int length) {
     int maxLength = (int)((double)length * decoder.maxCharsPerByte());
-    if (maxLength > charBuf.length()) {
+    if (maxLength > charBuf.capacity()) {
       charBuf = CharBuffer.allocate(maxLength);
     }
   }
@@ -63,20 +71,19 @@ public class StringWindow {
    * @param buf the data to append
    */
   public void append(Buffer buf) {
-    // append new bytes to buffered bytes or use them directly
-    if (this.buf.length() > 0) {
-      this.buf.appendBuffer(buf);
-    } else {
-      this.buf = buf;
+    // prepend bytes of an incomplete character from the last call (this
+    // happens rarely and only copies a few bytes)
+    if (remainingBytes != null) {
+      buf = remainingBytes.copy().appendBuffer(buf);
+      remainingBytes = null;
     }
 
-    // convert Vert.x buffer to ByteBuffer (ugly!)
-    ByteBuffer byteBuf = ByteBuffer.wrap(this.buf.getBytes());
+    // get a view on the buffer's contents without copying them
+    ByteBuffer byteBuf = buf.getByteBuf().nioBuffer();
 
     // prepare temporary CharBuffer
-    ensureCharBuffer(buf.length());
-    charBuf.position(0);
-    charBuf.limit(charBuf.capacity());
+    ensureCharBuffer(byteBuf.remaining());
+    charBuf.clear();
 
     // decode ByteBuffer to temporary CharBuffer
     CoderResult result = decoder.decode(byteBuf, charBuf, false);
@@ -89,11 +96,15 @@ public class StringWindow {
         new UnmappableCharacterException(result.length()));
     }
 
-    // reset CharBuffer and remove decoded bytes from byte buffer
-    charBuf.flip();
-    this.buf = this.buf.getBuffer(byteBuf.position(), this.buf.length());
+    // keep bytes that could not be decoded yet
+    if (byteBuf.hasRemaining()) {
+      byte[] rest = new byte[byteBuf.remaining()];
+      byteBuf.get(rest);
+      remainingBytes = Buffer.buffer(rest);
+    }
 
     // append to decoded string buffer
+    charBuf.flip();
     this.decodedBuf.append(charBuf);
   }
   
@@ -108,7 +119,12 @@ public class StringWindow {
    * @return the chunk
    */
   public String getChars(int startCharacter, int endCharacter) {
-    return decodedBuf.substring(startCharacter - pos, endCharacter - pos);
+    if (startCharacter < pos) {
+      throw new IndexOutOfBoundsException("Start position " + startCharacter +
+        " is before the window's beginning " + pos);
+    }
+    return decodedBuf.substring(startCharacter - pos + consumed,
+      endCharacter - pos + consumed);
   }
   
   /**
@@ -117,7 +133,15 @@ public class StringWindow {
    * of characters to advance the window forward without changing its end)
    */
   public void advanceTo(int pos) {
-    decodedBuf = decodedBuf.delete(0, pos - this.pos);
+    consumed += pos - this.pos;
     this.pos = pos;
+
+    // only delete characters physically if they make up at least half of
+    // the buffer. this avoids moving the remaining characters around on
+    // every call while still keeping memory consumption bounded.
+    if (consumed >= decodedBuf.length() / 2) {
+      decodedBuf.delete(0, consumed);
+      consumed = 0;
+    }
   }
 }
@@ -37,6 +37,19 @@ public class WKTCRSDecoder {
    * @throws FactoryException if the WKT string is not valid
    */
   public static CoordinateReferenceSystem decode(String wkt) throws FactoryException {
+    if (!isWKT(wkt)) {
+      return decodeUncached(wkt);
+    }
+    return CRSCache.getInstance().get(wkt.trim()).getCRS();
+  }
+
+  /**
+   * Decode a given WKT string without looking into the {@link CRSCache}
+   * @param wkt the WKT string
+   * @return the parsed CRS
+   * @throws FactoryException if the WKT string is not valid
+   */
+  static CoordinateReferenceSystem decodeUncached(String wkt) throws FactoryException {
     return CRS.parseWKT(wkt.trim());
   }
 }
@@ -1,24 +1,48 @@
 package io.georocket.util;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import io.vertx.core.buffer.Buffer;
 
 /**
- * A dynamically resizable buffer that acts like a window being moved over
- * a larger input stream
+ * <p>A dynamically resizable buffer that acts like a window being moved over
+ * a larger input stream</p>
+ * <p>The window keeps references to the buffers appended to it instead of
+ * copying them into one large buffer. Buffers are released as soon as the
+ * window has been advanced past their end. This means appended buffers must
+ * not be modified afterwards.</p>
  * @author Michel Kraemer
  */
 public class Window {
-  private Buffer buf = Buffer.buffer();
-  private int pos = 0;
-  
+  /**
+   * The buffers currently in the window
+   */
+  private final Deque<Buffer> segments = new ArrayDeque<>();
+
+  /**
+   * The absolute position of the first byte of the first buffer in
+   * {@link #segments}
+   */
+  private int segmentsStart = 0;
+
+  /**
+   * The absolute position of the end of the window
+   */
+  private int end = 0;
+
   /**
    * Append data to the window (i.e. make it larger)
    * @param buf the data to append
    */
   public void append(Buffer buf) {
-    this.buf.appendBuffer(buf);
+    if (buf.length() == 0) {
+      return;
+    }
+    segments.addLast(buf);
+    end += buf.length();
   }
-  
+
   /**
    * Return a chunk from the window
    * @param start the start position of the chunk. This value is absolute to
@@ -28,16 +52,46 @@ public class Window {
    * @return the chunk
    */
   public byte[] getBytes(int start, int end) {
-    return buf.getBytes(start - pos, end - pos);
+    if (start < segmentsStart || end > this.end || start > end) {
+      throw new IndexOutOfBoundsException("Range [" + start + ", " + end +
+        ") is out of window bounds [" + segmentsStart + ", " + this.end + ")");
+    }
+
+    byte[] result = new byte[end - start];
+    int resultPos = 0;
+    int segmentStart = segmentsStart;
+    for (Buffer segment : segments) {
+      if (segmentStart >= end) {
+        break;
+      }
+      int segmentEnd = segmentStart + segment.length();
+      if (segmentEnd > start) {
+        // copy the part of the segment that overlaps with the chunk
+        int from = Math.max(start, segmentStart) - segmentStart;
+        int to = Math.min(end, segmentEnd) - segmentStart;
+        segment.getBytes(from, to, result, resultPos);
+        resultPos += to - from;
+      }
+      segmentStart = segmentEnd;
+    }
+
+    return result;
   }
-  
+
   /**
    * Remove bytes from the beginning of the window (i.e. make it smaller)
    * @param pos the number of bytes to remove (or in other words: the number
    * of bytes to advance the window forward without changing its end)
    */
   public void advanceTo(int pos) {
-    buf = buf.getBuffer(pos - this.pos, buf.length());
-    this.pos = pos;
+    // release all buffers that end before the given position
+    while (!segments.isEmpty()) {
+      int len = segments.peekFirst().length();
+      if (segmentsStart + len > pos) {
+        break;
+      }
+      segments.removeFirst();
+      segmentsStart += len;
+    }
   }
 }
@@ -0,0 +1,76 @@
+package io.georocket.util.io;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+/**
+ * A {@link WriteStream} that delegates to another one and keeps a copy of
+ * all written data as long as it does not exceed a given size
+ * @author Michel Kraemer
+ */
+public class RecordingWriteStream implements WriteStream<Buffer> {
+  private final WriteStream<Buffer> delegate;
+  private final long maxSize;
+  private Buffer recording = Buffer.buffer();
+
+  /**
+   * Creates new stream that wraps around another one
+   * @param delegate the stream to wrap around
+   * @param maxSize the maximum number of bytes to record
+   */
+  public RecordingWriteStream(WriteStream<Buffer> delegate, long maxSize) {
+    this.delegate = delegate;
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public RecordingWriteStream exceptionHandler(Handler<Throwable> handler) {
+    delegate.exceptionHandler(handler);
+    return this;
+  }
+
+  @Override
+  public RecordingWriteStream write(Buffer data) {
+    if (recording != null) {
+      if (recording.length() + data.length() > maxSize) {
+        // too large. give up recording.
+        recording = null;
+      } else {
+        recording.appendBuffer(data);
+      }
+    }
+    delegate.write(data);
+    return this;
+  }
+
+  @Override
+  public void end() {
+    delegate.end();
+  }
+
+  @Override
+  public RecordingWriteStream setWriteQueueMaxSize(int maxSize) {
+    delegate.setWriteQueueMaxSize(maxSize);
+    return this;
+  }
+
+  @Override
+  public boolean writeQueueFull() {
+    return delegate.writeQueueFull();
+  }
+
+  @Override
+  public RecordingWriteStream drainHandler(Handler<Void> handler) {
+    delegate.drainHandler(handler);
+    return this;
+  }
+
+  /**
+   * @return all data written so far or {@code null} if the data
+   * exceeded the maximum size
+   */
+  public Buffer getRecording() {
+    return recording;
+  }
+}
@@ -0,0 +1,80 @@
+package io.georocket.util.io;
+
+import io.vertx.core.Handler;
+import io.vertx.rx.java.RxHelper;
+import io.vertx.rxjava.core.buffer.Buffer;
+import io.vertx.rxjava.core.streams.ReadStream;
+import rx.Observable;
+
+/**
+ * <p>A {@link io.vertx.core.streams.ReadStream} that delegates to another one but decompresses all
+ * data with GZIP on a dedicated thread.</p>
+ * <p>This is the rx-ified version of {@link StreamingGzipReadStream}</p>
+ * @author Michel Kraemer
+ */
+public class RxStreamingGzipReadStream implements ReadStream<Buffer> {
+  private final StreamingGzipReadStream delegate;
+  private Observable<Buffer> observable;
+
+  /**
+   * Creates new stream that wraps around another one
+   * @param delegate the stream to wrap around
+   */
+  public RxStreamingGzipReadStream(StreamingGzipReadStream delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Creates new stream that wraps around another one
+   * @param delegate the stream to wrap around
+   */
+  @SuppressWarnings("unchecked")
+  public RxStreamingGzipReadStream(ReadStream<Buffer> delegate) {
+    this(new StreamingGzipReadStream(delegate.getDelegate()));
+  }
+
+  @Override
+  public StreamingGzipReadStream getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public RxStreamingGzipReadStream exceptionHandler(Handler<Throwable> handler) {
+    delegate.exceptionHandler(handler);
+    return this;
+  }
+
+  @Override
+  public RxStreamingGzipReadStream handler(Handler<Buffer> handler) {
+    delegate.handler(buf -> {
+      handler.handle(Buffer.newInstance(buf));
+    });
+    return this;
+  }
+
+  @Override
+  public RxStreamingGzipReadStream pause() {
+    delegate.pause();
+    return this;
+  }
+
+  @Override
+  public RxStreamingGzipReadStream resume() {
+    delegate.resume();
+    return this;
+  }
+
+  @Override
+  public RxStreamingGzipReadStream endHandler(Handler<Void> endHandler) {
+    delegate.endHandler(endHandler);
+    return this;
+  }
+
+  @Override
+  public Observable<Buffer> toObservable() {
+    if (this.observable == null) {
+      this.observable = RxHelper.toObservable(this.delegate, Buffer::newInstance);
+    }
+    return this.observable;
+  }
+}
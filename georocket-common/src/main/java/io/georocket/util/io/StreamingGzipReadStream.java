@@ -0,0 +1,552 @@
+package io.georocket.util.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * <p>A {@link ReadStream} that delegates to another one but decompresses all
+ * data with GZIP. In contrast to {@link GzipReadStream}, this stream is
+ * optimized for throughput:</p>
+ * <ul>
+ * <li>Data is decompressed on a dedicated thread per stream. Incoming
+ * buffers are queued and the thread processes all queued buffers at once,
+ * so there is no hand-off to the worker pool for every single buffer.</li>
+ * <li>Heap buffers are passed to the inflater without copying them. Data
+ * is inflated directly into large output windows that are forwarded to
+ * the handler without copying them again.</li>
+ * <li>Files consisting of multiple GZIP members (e.g. concatenated GZIP
+ * files) are supported.</li>
+ * </ul>
+ * <p>The stream must be used from within a Vert.x context. The handlers will
+ * be called on this context.</p>
+ * @author Michel Kraemer
+ */
+public class StreamingGzipReadStream implements ReadStream<Buffer> {
+  private static final Logger log = LoggerFactory.getLogger(StreamingGzipReadStream.class);
+
+  private final static int FHCRC      = 2;    // Header CRC
+  private final static int FEXTRA     = 4;    // Extra field
+  private final static int FNAME      = 8;    // File name
+  private final static int FCOMMENT   = 16;   // File comment
+
+  /**
+   * The size of the windows uncompressed data is written to
+   */
+  private static final int OUTPUT_WINDOW_SIZE = 64 * 1024;
+
+  /**
+   * The number of seconds after which an idle decompression thread stops
+   */
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+  /**
+   * A counter used to name the decompression threads
+   */
+  private static final AtomicInteger threadCounter = new AtomicInteger();
+
+  /**
+   * Marks the end of the input in {@link #input}
+   */
+  private static final Object END_OF_INPUT = new Object();
+
+  /**
+   * The parser's states
+   */
+  private enum State {
+    HEADER, DATA, TRAILER, IGNORE
+  }
+
+  private final ReadStream<Buffer> delegate;
+  private Context context;
+
+  // fields only accessed by the decompression thread
+  private Inflater inflater;
+  private final CRC32 crc = new CRC32();
+  private State state = State.HEADER;
+  private Buffer headerBuffer;
+  private Buffer trailerBuffer;
+  private int membersRead;
+  private byte[] inputWindow;
+  private byte[] outputWindow;
+  private int outputWindowPos;
+
+  // fields shared between the event loop and the decompression thread
+  private final ExecutorService executor;
+  private final Queue<Object> input = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean decompressing = new AtomicBoolean();
+  private volatile boolean failed;
+
+  // fields only accessed on the event loop
+  private final Deque<Buffer> output = new ArrayDeque<>();
+  private boolean paused;
+  private boolean ended;
+  private Handler<Buffer> handler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+
+  /**
+   * Creates new stream that wraps around another one
+   * @param delegate the stream to wrap around
+   */
+  public StreamingGzipReadStream(ReadStream<Buffer> delegate) {
+    this.delegate = delegate;
+    this.executor = new ThreadPoolExecutor(0, 1, THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+          Thread t = new Thread(r, "georocket-gzip-inflater-" +
+              threadCounter.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  @Override
+  public StreamingGzipReadStream exceptionHandler(Handler<Throwable> handler) {
+    exceptionHandler = handler;
+    delegate.exceptionHandler(handler);
+    return this;
+  }
+
+  @Override
+  public StreamingGzipReadStream handler(Handler<Buffer> handler) {
+    this.handler = handler;
+    if (handler == null) {
+      delegate.handler(null);
+      delegate.endHandler(null);
+      return this;
+    }
+
+    context = Vertx.currentContext();
+    if (context == null) {
+      throw new IllegalStateException("This stream must be used from " +
+          "within a Vert.x context");
+    }
+
+    delegate.endHandler(v -> enqueue(END_OF_INPUT));
+    delegate.handler(this::enqueue);
+    return this;
+  }
+
+  @Override
+  public StreamingGzipReadStream pause() {
+    paused = true;
+    delegate.pause();
+    return this;
+  }
+
+  @Override
+  public StreamingGzipReadStream resume() {
+    paused = false;
+    deliver();
+    if (!paused) {
+      delegate.resume();
+    }
+    return this;
+  }
+
+  @Override
+  public StreamingGzipReadStream endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+
+  /**
+   * Put a buffer or {@link #END_OF_INPUT} into the queue and make sure the
+   * decompression thread processes it
+   * @param item the item to enqueue
+   */
+  private void enqueue(Object item) {
+    if (failed) {
+      return;
+    }
+    input.add(item);
+    if (decompressing.compareAndSet(false, true)) {
+      executor.execute(this::drainInput);
+    }
+  }
+
+  /**
+   * Process all items in the queue. Runs on the decompression thread.
+   */
+  private void drainInput() {
+    while (true) {
+      List<Buffer> result = new ArrayList<>();
+      boolean end = false;
+      Throwable error = null;
+      Object item;
+      try {
+        while ((item = input.poll()) != null) {
+          if (item == END_OF_INPUT) {
+            finishInput();
+            end = true;
+          } else {
+            decompress((Buffer)item, result);
+          }
+        }
+        flushOutputWindow(result);
+      } catch (Throwable t) {
+        error = t;
+      }
+
+      if (error != null || end) {
+        // release native resources like GZIPInputStream.close() does
+        input.clear();
+        endInflater();
+        executor.shutdown();
+      }
+      if (error != null) {
+        failed = true;
+      }
+
+      Throwable finalError = error;
+      boolean finalEnd = end;
+      if (!result.isEmpty() || finalEnd || finalError != null) {
+        context.runOnContext(v -> onDecompressed(result, finalEnd, finalError));
+      }
+
+      if (error != null || end) {
+        return;
+      }
+
+      decompressing.set(false);
+      if (input.isEmpty() || !decompressing.compareAndSet(false, true)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Will be called on the event loop when the decompression thread has
+   * processed data
+   * @param result the uncompressed data
+   * @param end true if the end of the stream has been reached
+   * @param error an error that has happened (may be <code>null</code>)
+   */
+  private void onDecompressed(List<Buffer> result, boolean end, Throwable error) {
+    output.addAll(result);
+    if (error != null) {
+      output.clear();
+      handleException(error);
+      return;
+    }
+    if (end) {
+      ended = true;
+    }
+    deliver();
+  }
+
+  /**
+   * Forward uncompressed data to the handler as long as the stream is
+   * not paused
+   */
+  private void deliver() {
+    while (!paused && !output.isEmpty()) {
+      Buffer b = output.poll();
+      if (handler != null) {
+        handler.handle(b);
+      }
+    }
+    if (!paused && ended && output.isEmpty()) {
+      ended = false;
+      if (endHandler != null) {
+        endHandler.handle(null);
+      }
+    }
+  }
+
+  /**
+   * Forward an exception to the exception handler
+   * @param t the exception
+   */
+  private void handleException(Throwable t) {
+    if (exceptionHandler != null && t instanceof Exception) {
+      exceptionHandler.handle(t);
+    } else {
+      log.error("Unhandled exception", t);
+    }
+  }
+
+  /**
+   * Decompress a buffer. Runs on the decompression thread.
+   * @param data the compressed data
+   * @param result a list to which uncompressed data should be added
+   * @throws ZipException if the data is not in GZIP format
+   * @throws DataFormatException if the compressed data is corrupt
+   */
+  private void decompress(Buffer data, List<Buffer> result)
+      throws ZipException, DataFormatException {
+    byte[] in;
+    int off;
+    int len;
+    ByteBuf bb = data.getByteBuf();
+    if (bb.hasArray()) {
+      // no need to copy
+      in = bb.array();
+      off = bb.arrayOffset() + bb.readerIndex();
+      len = bb.readableBytes();
+    } else {
+      len = bb.readableBytes();
+      if (inputWindow == null || inputWindow.length < len) {
+        inputWindow = new byte[len];
+      }
+      bb.getBytes(bb.readerIndex(), inputWindow, 0, len);
+      in = inputWindow;
+      off = 0;
+    }
+
+    while (len > 0) {
+      switch (state) {
+        case HEADER: {
+          if (headerBuffer == null) {
+            headerBuffer = Buffer.buffer();
+          }
+          headerBuffer.appendBytes(in, off, len);
+          len = 0;
+          int headerSize = tryParseHeader(headerBuffer);
+          if (headerSize == 0) {
+            // wait for more data
+            break;
+          }
+          if (headerSize < 0) {
+            if (membersRead == 0) {
+              throw new ZipException("Not in GZIP format");
+            }
+            // ignore trailing garbage like GZIPInputStream does
+            headerBuffer = null;
+            state = State.IGNORE;
+            break;
+          }
+          in = headerBuffer.getBytes(headerSize, headerBuffer.length());
+          off = 0;
+          len = in.length;
+          headerBuffer = null;
+          inflater = new Inflater(true);
+          crc.reset();
+          state = State.DATA;
+          break;
+        }
+
+        case DATA: {
+          inflater.setInput(in, off, len);
+          int consumed = inflate(result);
+          off += consumed;
+          len -= consumed;
+          break;
+        }
+
+        case TRAILER: {
+          if (trailerBuffer == null) {
+            trailerBuffer = Buffer.buffer(8);
+          }
+          int n = Math.min(8 - trailerBuffer.length(), len);
+          trailerBuffer.appendBytes(in, off, n);
+          off += n;
+          len -= n;
+          if (trailerBuffer.length() == 8) {
+            checkTrailer(trailerBuffer);
+            endInflater();
+            trailerBuffer = null;
+            membersRead++;
+            state = State.HEADER;
+          }
+          break;
+        }
+
+        default:
+          // ignore everything
+          len = 0;
+          break;
+      }
+    }
+  }
+
+  /**
+   * Inflate the inflater's current input into the output window
+   * @param result a list to which full output windows should be added
+   * @return the number of input bytes consumed
+   * @throws ZipException if the data is not in GZIP format
+   * @throws DataFormatException if the compressed data is corrupt
+   */
+  private int inflate(List<Buffer> result)
+      throws ZipException, DataFormatException {
+    int total = inflater.getRemaining();
+    while (true) {
+      if (outputWindow == null) {
+        outputWindow = new byte[OUTPUT_WINDOW_SIZE];
+        outputWindowPos = 0;
+      }
+      int n = inflater.inflate(outputWindow, outputWindowPos,
+          outputWindow.length - outputWindowPos);
+      if (n > 0) {
+        crc.update(outputWindow, outputWindowPos, n);
+        outputWindowPos += n;
+        if (outputWindowPos == outputWindow.length) {
+          flushOutputWindow(result);
+        }
+        continue;
+      }
+      if (inflater.finished()) {
+        state = State.TRAILER;
+        return total - inflater.getRemaining();
+      }
+      if (inflater.needsDictionary()) {
+        throw new ZipException("Unexpected preset dictionary");
+      }
+      if (inflater.needsInput()) {
+        return total;
+      }
+    }
+  }
+
+  /**
+   * Add the current output window to the given list if it contains data
+   * @param result the list
+   */
+  private void flushOutputWindow(List<Buffer> result) {
+    if (outputWindow != null && outputWindowPos > 0) {
+      // the window is not reused, so the buffer can wrap it
+      result.add(Buffer.buffer(Unpooled.wrappedBuffer(outputWindow,
+          0, outputWindowPos)));
+      outputWindow = null;
+      outputWindowPos = 0;
+    }
+  }
+
+  /**
+   * Release the native resources of the current inflater. Runs on the
+   * decompression thread.
+   */
+  private void endInflater() {
+    if (inflater != null) {
+      inflater.end();
+      inflater = null;
+    }
+  }
+
+  /**
+   * Will be called when the end of the compressed input has been reached
+   * @throws ZipException if the input ended unexpectedly
+   */
+  private void finishInput() throws ZipException {
+    if (state == State.DATA || state == State.TRAILER ||
+        (state == State.HEADER && membersRead == 0)) {
+      throw new ZipException("Unexpected end of GZIP stream");
+    }
+  }
+
+  /**
+   * Try to parse a GZIP header from the given buffer
+   * @param buf the buffer to parse
+   * @return the size of the header, 0 if the buffer was not large enough,
+   * or -1 if the buffer does not start with a GZIP header
+   * @throws ZipException if the header is corrupt or unsupported
+   */
+  private int tryParseHeader(Buffer buf) throws ZipException {
+    if (buf.length() >= 2 &&
+        buf.getUnsignedShortLE(0) != GZIPInputStream.GZIP_MAGIC) {
+      return -1;
+    }
+
+    // check if the header is large enough for mandatory fields
+    if (buf.length() < 10) {
+      return 0;
+    }
+
+    // Check compression method
+    if (buf.getByte(2) != 8) {
+      throw new ZipException("Unsupported compression method");
+    }
+
+    // Read flags
+    int flg = buf.getByte(3);
+
+    int n = 2 + 2 + 6;
+
+    // Skip optional extra field
+    if ((flg & FEXTRA) == FEXTRA) {
+      if (buf.length() < n + 2) {
+        return 0;
+      }
+      int m = buf.getUnsignedShortLE(n);
+      n += m + 2;
+    }
+
+    // Skip optional file name
+    if ((flg & FNAME) == FNAME) {
+      do {
+        if (buf.length() <= n) {
+          return 0;
+        }
+        n++;
+      } while (buf.getByte(n - 1) != 0);
+    }
+
+    // Skip optional file comment
+    if ((flg & FCOMMENT) == FCOMMENT) {
+      do {
+        if (buf.length() <= n) {
+          return 0;
+        }
+        n++;
+      } while (buf.getByte(n - 1) != 0);
+    }
+
+    // Check optional header CRC
+    if ((flg & FHCRC) == FHCRC) {
+      if (buf.length() < n + 2) {
+        return 0;
+      }
+      CRC32 headerCrc = new CRC32();
+      headerCrc.update(buf.getBytes(0, n));
+      int v = (int)headerCrc.getValue() & 0xffff;
+      if (buf.getUnsignedShortLE(n) != v) {
+        throw new ZipException("Corrupt GZIP header");
+      }
+      n += 2;
+    }
+
+    if (buf.length() < n) {
+      return 0;
+    }
+
+    return n;
+  }
+
+  /**
+   * Check the trailer of a GZIP member
+   * @param trailer the trailer
+   * @throws ZipException if the trailer does not match the uncompressed data
+   */
+  private void checkTrailer(Buffer trailer) throws ZipException {
+    long v = trailer.getUnsignedIntLE(0);
+    long bytesWritten = trailer.getUnsignedIntLE(4);
+    if (v != crc.getValue() ||
+        bytesWritten != (inflater.getBytesWritten() & 0xffffffffL)) {
+      throw new ZipException("Corrupt GZIP trailer");
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package io.georocket.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.referencing.CRS;
+import org.junit.Test;
+import org.opengis.referencing.FactoryException;
+
+import com.google.common.base.Ticker;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Test the {@link CRSCache}
+ * @author Michel Kraemer
+ */
+public class CRSCacheTest {
+  /**
+   * Test if a CRS is only decoded once
+   * @throws Exception if something has happened
+   */
+  @Test
+  public void cached() throws Exception {
+    CRSCache cache = new CRSCache(10);
+    CRSCache.Entry e1 = cache.get("EPSG:31467");
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    CRSCache.Entry e2 = cache.get("EPSG:31467");
+    assertSame(e1, e2);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    assertEquals(CRS.decode("EPSG:31467"), e1.getCRS());
+    assertFalse(e1.isFlipped());
+    double[] dst = new double[2];
+    e1.getTransform().transform(new double[] { 3477534.683, 5605739.857 },
+        0, dst, 0, 1);
+    assertEquals(8.681739535269804, dst[0], 0.00001);
+    assertEquals(50.58691850210496, dst[1], 0.00001);
+  }
+
+  /**
+   * Test if the horizontal component of a compound CRS is extracted
+   * @throws Exception if something has happened
+   */
+  @Test
+  public void compound() throws Exception {
+    CRSCache cache = new CRSCache(10);
+    CRSCache.Entry e = cache.get("urn:ogc:def:crs,crs:EPSG:6.12:3068,crs:EPSG:6.12:5783");
+    assertEquals(CRS.decode("EPSG:3068"), e.getHorizontalCRS());
+    assertEquals(CRS.decode("EPSG:3068"), CRS.getHorizontalCRS(e.getCRS()));
+    assertEquals(CRS.decode("EPSG:5783"), CRS.getVerticalCRS(e.getCRS()));
+  }
+
+  /**
+   * Test if a flipped CRS is detected
+   * @throws Exception if something has happened
+   */
+  @Test
+  public void flipped() throws Exception {
+    CRSCache cache = new CRSCache(10);
+    assertTrue(cache.get("urn:ogc:def:crs:EPSG::4326").isFlipped());
+  }
+
+  /**
+   * Test if invalid CRS strings are only decoded once
+   */
+  @Test
+  public void invalid() {
+    CRSCache cache = new CRSCache(10);
+    for (int i = 0; i < 2; ++i) {
+      try {
+        cache.get("invalid string");
+        fail("Expected a FactoryException");
+      } catch (FactoryException e) {
+        // this is what we expect
+      }
+    }
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  /**
+   * Test if invalid CRS strings are decoded again after some time
+   */
+  @Test
+  public void invalidExpires() {
+    AtomicLong now = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return now.get();
+      }
+    };
+    CRSCache cache = new CRSCache(10, 1000, ticker);
+    for (int i = 0; i < 3; ++i) {
+      try {
+        cache.get("invalid string");
+        fail("Expected a FactoryException");
+      } catch (FactoryException e) {
+        // this is what we expect
+      }
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+    }
+    // the string should have been decoded at the first attempt and again
+    // at the third attempt after its entry had expired
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1, cache.getSize());
+  }
+
+  /**
+   * Test if the statistics contain the number of hits, misses, evictions,
+   * and entries
+   * @throws Exception if something has happened
+   */
+  @Test
+  public void statsAsJson() throws Exception {
+    CRSCache cache = new CRSCache(1);
+    cache.get("EPSG:4326");
+    cache.get("EPSG:4326");
+    cache.get("EPSG:25832");
+    JsonObject stats = cache.getStatsAsJson();
+    assertEquals(1L, (long)stats.getLong("size"));
+    assertEquals(1L, (long)stats.getLong("hits"));
+    assertEquals(2L, (long)stats.getLong("misses"));
+    assertEquals(1L, (long)stats.getLong("evictions"));
+  }
+}
@@ -0,0 +1,74 @@
+package io.georocket.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Test {@link StringWindow}
+ * @author Michel Kraemer
+ */
+public class StringWindowTest {
+  /**
+   * Get characters spanning multiple buffers
+   */
+  @Test
+  public void multipleBuffers() {
+    StringWindow w = new StringWindow();
+    w.append(Buffer.buffer("Hel"));
+    w.append(Buffer.buffer("lo w"));
+    w.append(Buffer.buffer("orld"));
+    assertEquals("Hello world", w.getChars(0, 11));
+    assertEquals("lo wo", w.getChars(3, 8));
+  }
+
+  /**
+   * Decode a multi-byte character that has been split across two buffers
+   */
+  @Test
+  public void splitCharacter() {
+    byte[] bytes = "a\u00e4\u20acb".getBytes(StandardCharsets.UTF_8);
+    StringWindow w = new StringWindow();
+    // split inside the two-byte character
+    w.append(Buffer.buffer(new byte[] { bytes[0], bytes[1] }));
+    // split inside the three-byte character
+    w.append(Buffer.buffer(new byte[] { bytes[2], bytes[3] }));
+    w.append(Buffer.buffer(new byte[] { bytes[4], bytes[5], bytes[6] }));
+    assertEquals("a\u00e4\u20acb", w.getChars(0, 4));
+  }
+
+  /**
+   * Advance the window and check if the remaining characters can still
+   * be retrieved
+   */
+  @Test
+  public void advance() {
+    StringWindow w = new StringWindow();
+    w.append(Buffer.buffer("Hello"));
+    w.advanceTo(1);
+    assertEquals("ello", w.getChars(1, 5));
+    w.advanceTo(2);
+    assertEquals("llo", w.getChars(2, 5));
+    w.append(Buffer.buffer(" world"));
+    w.advanceTo(4);
+    assertEquals("o world", w.getChars(4, 11));
+    w.advanceTo(11);
+    w.append(Buffer.buffer("!"));
+    assertEquals("!", w.getChars(11, 12));
+  }
+
+  /**
+   * Make sure characters before the window's beginning cannot be retrieved
+   */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void outOfBounds() {
+    StringWindow w = new StringWindow();
+    w.append(Buffer.buffer("Hello"));
+    w.advanceTo(1);
+    w.getChars(0, 2);
+  }
+}
@@ -0,0 +1,229 @@
+package io.georocket.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntBiFunction;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * <p>Compares the throughput of {@link Window} and {@link StringWindow} with
+ * the implementations they replaced. The old implementations copied the
+ * whole remaining window every time it was advanced (and
+ * {@link StringWindow} additionally copied all pending bytes on every
+ * append).</p>
+ * <p>The benchmark simulates a splitter: data is appended in small buffers
+ * like it is received from the network, and whenever a chunk is complete,
+ * it is retrieved from the window and the window is advanced to its end.
+ * This is done for small chunks (many advances) and for large chunks
+ * (windows that contain several megabytes).</p>
+ * <p>This is not a unit test. Run it manually with
+ * <code>java -cp ... io.georocket.util.WindowBenchmark</code>.</p>
+ * @author Michel Kraemer
+ */
+public class WindowBenchmark {
+  private static final int INPUT_SIZE = 64 * 1024 * 1024;
+  private static final int NETWORK_BUFFER_SIZE = 8 * 1024;
+  private static final int SMALL_CHUNK_SIZE = 512;
+  private static final int LARGE_CHUNK_SIZE = 8 * 1024 * 1024;
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+
+  /**
+   * Wraps around the window to measure
+   */
+  private static class BenchmarkWindow {
+    final Consumer<Buffer> append;
+    final ToIntBiFunction<Integer, Integer> get;
+    final IntConsumer advanceTo;
+
+    BenchmarkWindow(Consumer<Buffer> append,
+        ToIntBiFunction<Integer, Integer> get, IntConsumer advanceTo) {
+      this.append = append;
+      this.get = get;
+      this.advanceTo = advanceTo;
+    }
+  }
+
+  /**
+   * The implementation of {@link Window} before it avoided whole-buffer
+   * copies
+   */
+  private static class CopyingWindow {
+    private Buffer buf = Buffer.buffer();
+    private int pos = 0;
+
+    void append(Buffer buf) {
+      this.buf.appendBuffer(buf);
+    }
+
+    byte[] getBytes(int start, int end) {
+      return buf.getBytes(start - pos, end - pos);
+    }
+
+    void advanceTo(int pos) {
+      buf = buf.getBuffer(pos - this.pos, buf.length());
+      this.pos = pos;
+    }
+  }
+
+  /**
+   * The implementation of {@link StringWindow} before it avoided
+   * whole-buffer copies
+   */
+  private static class CopyingStringWindow {
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private CharBuffer charBuf = CharBuffer.allocate(2048);
+    private Buffer buf = Buffer.buffer();
+    private StringBuilder decodedBuf = new StringBuilder();
+    private int pos = 0;
+
+    void append(Buffer buf) {
+      if (this.buf.length() > 0) {
+        this.buf.appendBuffer(buf);
+      } else {
+        this.buf = buf;
+      }
+      ByteBuffer byteBuf = ByteBuffer.wrap(this.buf.getBytes());
+      int maxLength = (int)((double)buf.length() * decoder.maxCharsPerByte());
+      if (maxLength > charBuf.length()) {
+        charBuf = CharBuffer.allocate(maxLength);
+      }
+      charBuf.position(0);
+      charBuf.limit(charBuf.capacity());
+      CoderResult result = decoder.decode(byteBuf, charBuf, false);
+      if (result.isError()) {
+        throw new IllegalStateException("Could not decode input");
+      }
+      charBuf.flip();
+      this.buf = this.buf.getBuffer(byteBuf.position(), this.buf.length());
+      decodedBuf.append(charBuf);
+    }
+
+    String getChars(int startCharacter, int endCharacter) {
+      return decodedBuf.substring(startCharacter - pos, endCharacter - pos);
+    }
+
+    void advanceTo(int pos) {
+      decodedBuf = decodedBuf.delete(0, pos - this.pos);
+      this.pos = pos;
+    }
+  }
+
+  /**
+   * Create ASCII test data (so character and byte positions are the same)
+   * @return the data split into network buffers
+   */
+  private static Buffer[] makeData() {
+    byte[] line = "<building><pos>8.6599 49.87424</pos></building>\n"
+        .getBytes(StandardCharsets.UTF_8);
+    byte[] data = new byte[INPUT_SIZE];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = line[i % line.length];
+    }
+    Buffer[] result = new Buffer[INPUT_SIZE / NETWORK_BUFFER_SIZE];
+    for (int i = 0; i < result.length; ++i) {
+      int from = i * NETWORK_BUFFER_SIZE;
+      result[i] = Buffer.buffer(Arrays.copyOfRange(data, from,
+          from + NETWORK_BUFFER_SIZE));
+    }
+    return result;
+  }
+
+  /**
+   * Append all data to a window and retrieve chunks of the given size
+   * @param data the data split into network buffers
+   * @param window the window
+   * @param chunkSize the size of each chunk
+   * @return the number of bytes retrieved from the window
+   */
+  private static long run(Buffer[] data, BenchmarkWindow window,
+      int chunkSize) {
+    long retrieved = 0;
+    int available = 0;
+    int chunkStart = 0;
+    for (Buffer b : data) {
+      window.append.accept(b);
+      available += b.length();
+      while (available - chunkStart >= chunkSize) {
+        int chunkEnd = chunkStart + chunkSize;
+        retrieved += window.get.applyAsInt(chunkStart, chunkEnd);
+        window.advanceTo.accept(chunkEnd);
+        chunkStart = chunkEnd;
+      }
+    }
+    return retrieved;
+  }
+
+  /**
+   * Measure the throughput of a window
+   * @param name the name of the configuration
+   * @param data the data split into network buffers
+   * @param factory creates the window to measure
+   * @param chunkSize the size of each chunk
+   */
+  private static void measure(String name, Buffer[] data,
+      Supplier<BenchmarkWindow> factory, int chunkSize) {
+    for (int i = 0; i < WARMUP_RUNS; ++i) {
+      run(data, factory.get(), chunkSize);
+    }
+    long start = System.nanoTime();
+    long bytes = 0;
+    for (int i = 0; i < RUNS; ++i) {
+      bytes += run(data, factory.get(), chunkSize);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format("%-40s %8.1f MB/s",
+        name, bytes / seconds / 1024 / 1024));
+  }
+
+  /**
+   * Measure all windows with chunks of the given size
+   * @param data the data split into network buffers
+   * @param chunkSize the size of each chunk
+   */
+  private static void measureAll(Buffer[] data, int chunkSize) {
+    String suffix = " (" + chunkSize + " bytes/chunk)";
+
+    measure("Window, copying" + suffix, data, () -> {
+      CopyingWindow w = new CopyingWindow();
+      return new BenchmarkWindow(w::append,
+          (start, end) -> w.getBytes(start, end).length, w::advanceTo);
+    }, chunkSize);
+
+    measure("Window" + suffix, data, () -> {
+      Window w = new Window();
+      return new BenchmarkWindow(w::append,
+          (start, end) -> w.getBytes(start, end).length, w::advanceTo);
+    }, chunkSize);
+
+    measure("StringWindow, copying" + suffix, data, () -> {
+      CopyingStringWindow w = new CopyingStringWindow();
+      return new BenchmarkWindow(w::append,
+          (start, end) -> w.getChars(start, end).length(), w::advanceTo);
+    }, chunkSize);
+
+    measure("StringWindow" + suffix, data, () -> {
+      StringWindow w = new StringWindow();
+      return new BenchmarkWindow(w::append,
+          (start, end) -> w.getChars(start, end).length(), w::advanceTo);
+    }, chunkSize);
+  }
+
+  /**
+   * Run the benchmark
+   * @param args the program arguments (not used)
+   */
+  public static void main(String[] args) {
+    Buffer[] data = makeData();
+    measureAll(data, SMALL_CHUNK_SIZE);
+    measureAll(data, LARGE_CHUNK_SIZE);
+  }
+}
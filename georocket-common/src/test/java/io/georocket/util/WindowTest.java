@@ -0,0 +1,81 @@
+package io.georocket.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Test {@link Window}
+ * @author Michel Kraemer
+ */
+public class WindowTest {
+  /**
+   * Convert a byte array to a string
+   * @param bytes the bytes
+   * @return the string
+   */
+  private static String str(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get bytes from a single buffer
+   */
+  @Test
+  public void singleBuffer() {
+    Window w = new Window();
+    w.append(Buffer.buffer("Hello world"));
+    assertEquals("Hello", str(w.getBytes(0, 5)));
+    assertEquals("world", str(w.getBytes(6, 11)));
+  }
+
+  /**
+   * Get bytes spanning multiple buffers
+   */
+  @Test
+  public void multipleBuffers() {
+    Window w = new Window();
+    w.append(Buffer.buffer("Hel"));
+    w.append(Buffer.buffer(""));
+    w.append(Buffer.buffer("lo w"));
+    w.append(Buffer.buffer("orld"));
+    assertEquals("Hello world", str(w.getBytes(0, 11)));
+    assertEquals("lo wo", str(w.getBytes(3, 8)));
+    assertEquals("", str(w.getBytes(5, 5)));
+  }
+
+  /**
+   * Advance the window and check if the remaining bytes can still be
+   * retrieved
+   */
+  @Test
+  public void advance() {
+    Window w = new Window();
+    w.append(Buffer.buffer("Hel"));
+    w.append(Buffer.buffer("lo w"));
+    w.advanceTo(2);
+    assertEquals("llo w", str(w.getBytes(2, 7)));
+    w.advanceTo(5);
+    w.append(Buffer.buffer("orld"));
+    assertEquals(" world", str(w.getBytes(5, 11)));
+    w.advanceTo(11);
+    w.append(Buffer.buffer("!"));
+    assertEquals("!", str(w.getBytes(11, 12)));
+  }
+
+  /**
+   * Make sure bytes before the window's beginning cannot be retrieved
+   */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void outOfBounds() {
+    Window w = new Window();
+    w.append(Buffer.buffer("Hel"));
+    w.append(Buffer.buffer("lo w"));
+    w.advanceTo(4);
+    w.getBytes(1, 5);
+  }
+}
@@ -0,0 +1,157 @@
+package io.georocket.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * <p>Compares the throughput of {@link GzipReadStream} and
+ * {@link StreamingGzipReadStream}. {@link RxGzipReadStream} and
+ * {@link RxStreamingGzipReadStream} only wrap these classes, so they are
+ * not measured separately.</p>
+ * <p>This is not a unit test. Run it manually with
+ * <code>java -cp ... io.georocket.util.io.GzipReadStreamBenchmark</code>.</p>
+ * @author Michel Kraemer
+ */
+public class GzipReadStreamBenchmark {
+  private static final int UNCOMPRESSED_SIZE = 64 * 1024 * 1024;
+  private static final int NETWORK_BUFFER_SIZE = 8 * 1024;
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+
+  /**
+   * A stream that emits a buffer in small chunks like a network
+   * connection would do
+   */
+  private static class ChunkedReadStream implements ReadStream<Buffer> {
+    private final byte[] data;
+    private Handler<Void> endHandler;
+
+    ChunkedReadStream(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+      for (int i = 0; i < data.length; i += NETWORK_BUFFER_SIZE) {
+        int len = Math.min(NETWORK_BUFFER_SIZE, data.length - i);
+        handler.handle(Buffer.buffer(len).appendBytes(data, i, len));
+      }
+      if (endHandler != null) {
+        endHandler.handle(null);
+      }
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+      this.endHandler = endHandler;
+      return this;
+    }
+  }
+
+  /**
+   * Create XML-like test data that compresses similarly to real files
+   * @return the compressed data
+   * @throws IOException if the data could not be compressed
+   */
+  private static byte[] makeData() throws IOException {
+    Random random = new Random(0);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gos = new GZIPOutputStream(baos, 64 * 1024)) {
+      int written = 0;
+      while (written < UNCOMPRESSED_SIZE) {
+        byte[] line = ("<building id=\"b" + random.nextInt() + "\"><pos>" +
+            random.nextDouble() + " " + random.nextDouble() +
+            "</pos></building>\n").getBytes(StandardCharsets.UTF_8);
+        gos.write(line);
+        written += line.length;
+      }
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * Decompress data once
+   * @param vertx the Vert.x instance
+   * @param data the compressed data
+   * @param factory creates the stream to measure
+   * @return the number of uncompressed bytes
+   * @throws Exception if decompression failed
+   */
+  private static long run(Vertx vertx, byte[] data,
+      Function<ReadStream<Buffer>, ReadStream<Buffer>> factory) throws Exception {
+    CompletableFuture<Long> result = new CompletableFuture<>();
+    vertx.runOnContext(v -> {
+      long[] count = new long[1];
+      ReadStream<Buffer> s = factory.apply(new ChunkedReadStream(data));
+      s.exceptionHandler(result::completeExceptionally);
+      s.endHandler(v2 -> result.complete(count[0]));
+      s.handler(b -> count[0] += b.length());
+    });
+    return result.get();
+  }
+
+  /**
+   * Measure the throughput of a stream
+   * @param name the stream's name
+   * @param vertx the Vert.x instance
+   * @param data the compressed data
+   * @param factory creates the stream to measure
+   * @throws Exception if decompression failed
+   */
+  private static void measure(String name, Vertx vertx, byte[] data,
+      Function<ReadStream<Buffer>, ReadStream<Buffer>> factory) throws Exception {
+    for (int i = 0; i < WARMUP_RUNS; ++i) {
+      run(vertx, data, factory);
+    }
+    long start = System.nanoTime();
+    long bytes = 0;
+    for (int i = 0; i < RUNS; ++i) {
+      bytes += run(vertx, data, factory);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format("%-25s %8.1f MB/s (uncompressed)",
+        name, bytes / seconds / 1024 / 1024));
+  }
+
+  /**
+   * Run the benchmark
+   * @param args the program arguments (not used)
+   * @throws Exception if the benchmark failed
+   */
+  public static void main(String[] args) throws Exception {
+    byte[] data = makeData();
+    Vertx vertx = Vertx.vertx();
+    try {
+      measure("GzipReadStream", vertx, data, GzipReadStream::new);
+      measure("StreamingGzipReadStream", vertx, data, StreamingGzipReadStream::new);
+    } finally {
+      vertx.close();
+    }
+  }
+}
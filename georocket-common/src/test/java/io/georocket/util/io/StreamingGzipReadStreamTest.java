@@ -0,0 +1,213 @@
+package io.georocket.util.io;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Test for {@link StreamingGzipReadStream}
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class StreamingGzipReadStreamTest {
+  /**
+   * Run the test on a Vert.x test context
+   */
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /**
+   * Create a temporary folder
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ByteBuffer makeBuffer() {
+    ByteBuffer bb = ByteBuffer.allocate(1024 * 1024 * 5);
+    for (int i = 0; i < bb.capacity() / Character.BYTES; ++i) {
+      bb.putChar((char)('a' + (i % 26)));
+    }
+    bb.flip();
+    return bb;
+  }
+
+  private static byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gos = new GZIPOutputStream(baos)) {
+      gos.write(data);
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * Decompress the contents of a file
+   * @param file the file
+   * @param context the test context
+   * @param expected the expected uncompressed contents
+   */
+  private void decompressFile(File file, TestContext context, byte[] expected) {
+    Async async = context.async();
+    rule.vertx().fileSystem().open(file.getPath(), new OpenOptions(),
+        context.asyncAssertSuccess(f -> {
+      StreamingGzipReadStream s = new StreamingGzipReadStream(f);
+      s.exceptionHandler(context::fail);
+      Buffer buf = Buffer.buffer();
+      s.endHandler(v -> {
+        context.assertEquals(ByteBuffer.wrap(expected),
+            ByteBuffer.wrap(buf.getBytes()));
+        async.complete();
+      });
+      s.handler(buf::appendBuffer);
+    }));
+  }
+
+  /**
+   * Tries to decompress a compressed file
+   * @param context the test context
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void decompress(TestContext context) throws Exception {
+    ByteBuffer bb = makeBuffer();
+    File tempFile = tempFolder.newFile();
+    try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+      fos.write(compress(bb.array()));
+    }
+    decompressFile(tempFile, context, bb.array());
+  }
+
+  /**
+   * Tries to decompress a file consisting of multiple GZIP members
+   * @param context the test context
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void decompressMultipleMembers(TestContext context) throws Exception {
+    ByteBuffer bb = makeBuffer();
+    byte[] hello = "Hello World!\n".getBytes(StandardCharsets.UTF_8);
+
+    File tempFile = tempFolder.newFile();
+    try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+      fos.write(compress(bb.array()));
+      fos.write(compress(hello));
+      fos.write(compress(bb.array()));
+    }
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(bb.array());
+    expected.write(hello);
+    expected.write(bb.array());
+    decompressFile(tempFile, context, expected.toByteArray());
+  }
+
+  /**
+   * Check if data after the last GZIP member is ignored
+   * @param context the test context
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void trailingGarbage(TestContext context) throws Exception {
+    byte[] hello = "Hello World!\n".getBytes(StandardCharsets.UTF_8);
+    Buffer b = Buffer.buffer(compress(hello))
+        .appendBytes(new byte[] { 0, 0, 0, 0 });
+
+    Async async = context.async();
+    StreamingGzipReadStream s = new StreamingGzipReadStream(
+        new BufferReadStream(b));
+    Buffer decompressed = Buffer.buffer();
+    s.exceptionHandler(context::fail);
+    s.endHandler(v -> {
+      context.assertEquals(Buffer.buffer(hello), decompressed);
+      async.complete();
+    });
+    s.handler(decompressed::appendBuffer);
+  }
+
+  /**
+   * Check if a corrupt trailer is detected
+   * @param context the test context
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void corruptTrailer(TestContext context) throws Exception {
+    byte[] compressed = compress("Hello World!\n".getBytes(StandardCharsets.UTF_8));
+    compressed[compressed.length - 1]++;
+
+    Async async = context.async();
+    StreamingGzipReadStream s = new StreamingGzipReadStream(
+        new BufferReadStream(Buffer.buffer(compressed)));
+    s.exceptionHandler(t -> {
+      context.assertTrue(t instanceof ZipException);
+      async.complete();
+    });
+    s.endHandler(v -> context.fail("Stream must not end"));
+    s.handler(b -> {
+      // ignore
+    });
+  }
+
+  /**
+   * Check if a truncated file is detected
+   * @param context the test context
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void truncated(TestContext context) throws Exception {
+    byte[] compressed = compress("Hello World!\n".getBytes(StandardCharsets.UTF_8));
+
+    Async async = context.async();
+    StreamingGzipReadStream s = new StreamingGzipReadStream(
+        new BufferReadStream(Buffer.buffer(compressed).getBuffer(0,
+            compressed.length - 4)));
+    s.exceptionHandler(t -> {
+      context.assertTrue(t instanceof ZipException);
+      async.complete();
+    });
+    s.endHandler(v -> context.fail("Stream must not end"));
+    s.handler(b -> {
+      // ignore
+    });
+  }
+
+  /**
+   * Check if no data is forwarded while the stream is paused
+   * @param context the test context
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void pause(TestContext context) throws Exception {
+    byte[] hello = "Hello World!\n".getBytes(StandardCharsets.UTF_8);
+
+    Async async = context.async();
+    StreamingGzipReadStream s = new StreamingGzipReadStream(
+        new BufferReadStream(Buffer.buffer(compress(hello))));
+    Buffer decompressed = Buffer.buffer();
+    s.exceptionHandler(context::fail);
+    s.endHandler(v -> {
+      context.assertEquals(Buffer.buffer(hello), decompressed);
+      async.complete();
+    });
+    s.handler(decompressed::appendBuffer);
+    s.pause();
+    rule.vertx().setTimer(200, l -> {
+      context.assertEquals(0, decompressed.length());
+      s.resume();
+    });
+  }
+}
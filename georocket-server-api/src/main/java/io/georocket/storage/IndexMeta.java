@@ -15,6 +15,7 @@ public class IndexMeta {
   private final String correlationId;
   private final String filename;
   private final long timestamp;
+  private final Map<String, Object> document;
 
   /**
    * Default constructor
@@ -81,12 +82,35 @@ public class IndexMeta {
    */
   public IndexMeta(String correlationId, String filename, long timestamp,
       List<String> tags, Map<String, Object> properties, String fallbackCRSString) {
+    this(correlationId, filename, timestamp, tags, properties,
+        fallbackCRSString, null);
+  }
+  
+  /**
+   * Construct the parameters
+   * @param correlationId identifies to which specific import this meta data belongs
+   * @param filename the name of the source file containing the chunks to be indexed
+   * @param timestamp the timestamp for this import
+   * @param tags the list of tags to attach to the chunk (may be null)
+   * @param properties the map of properties to attach to the chunk (may be null)
+   * @param fallbackCRSString a string representing the CRS that should be used
+   * to index the chunk to import if it does not specify a CRS itself (may be
+   * null if no CRS is available as fallback)
+   * @param document the Elasticsearch document that has already been created
+   * for the chunk while it was imported (may be null if the chunk should be
+   * parsed and indexed after it has been added to the store)
+   * @since 1.4.0
+   */
+  public IndexMeta(String correlationId, String filename, long timestamp,
+      List<String> tags, Map<String, Object> properties, String fallbackCRSString,
+      Map<String, Object> document) {
     this.correlationId = correlationId;
     this.filename = filename;
     this.timestamp = timestamp;
     this.tags = tags;
     this.properties = properties;
     this.fallbackCRSString = fallbackCRSString;
+    this.document = document;
   }
 
   /**
@@ -133,4 +157,14 @@ public class IndexMeta {
   public String getFallbackCRSString() {
     return fallbackCRSString;
   }
+  
+  /**
+   * @return the Elasticsearch document that has already been created for the
+   * chunk while it was imported (may be null if the chunk should be parsed
+   * and indexed after it has been added to the store)
+   * @since 1.4.0
+   */
+  public Map<String, Object> getDocument() {
+    return document;
+  }
 }
@@ -1,8 +1,12 @@
 package io.georocket.storage;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +27,25 @@ public interface Store {
   void add(String chunk, ChunkMeta chunkMeta, String path, IndexMeta indexMeta,
       Handler<AsyncResult<Void>> handler);
 
+  /**
+   * <p>Add a chunk to the store. The chunk is given as UTF-8 encoded bytes
+   * (e.g. a composite buffer consisting of a header, a slice of the imported
+   * file, and a footer).</p>
+   * <p>The default implementation converts the chunk to a string and calls
+   * {@link #add(String, ChunkMeta, String, IndexMeta, Handler)}. Stores
+   * should override this method to avoid the conversion.</p>
+   * @param chunk the chunk to add
+   * @param chunkMeta the chunk's metadata
+   * @param path the path where the chunk should be stored (may be null)
+   * @param indexMeta metadata affecting the way the chunk will be indexed
+   * @param handler will be called when the chunk has been added to the store
+   * @since 1.4.0
+   */
+  default void add(Buffer chunk, ChunkMeta chunkMeta, String path,
+      IndexMeta indexMeta, Handler<AsyncResult<Void>> handler) {
+    add(chunk.toString(), chunkMeta, path, indexMeta, handler);
+  }
+
   /**
    * Get a chunk from the store. The returned {@link ChunkReadStream} must
    * be closed after use to release all resources.
@@ -31,6 +54,59 @@ public interface Store {
    */
   void getOne(String path, Handler<AsyncResult<ChunkReadStream>> handler);
 
+  /**
+   * <p>Get multiple chunks from the store at once. Stores with a high
+   * overhead per request (e.g. remote object stores or databases) should
+   * override this method and fetch all chunks with as few requests as
+   * possible.</p>
+   * <p>The default implementation calls {@link #getOne(String, Handler)} for
+   * all paths at the same time.</p>
+   * <p>All returned {@link ChunkReadStream}s must be closed after use. If
+   * any of the chunks cannot be retrieved, the handler will be called with
+   * the error and all chunks retrieved so far will be closed.</p>
+   * @param paths the absolute paths to the chunks
+   * @param handler will be called with the chunks in the same order as the
+   * given paths
+   * @since 1.4.0
+   */
+  default void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    if (paths.isEmpty()) {
+      handler.handle(Future.succeededFuture(new ArrayList<>()));
+      return;
+    }
+
+    ChunkReadStream[] result = new ChunkReadStream[paths.size()];
+    int[] remaining = new int[] { paths.size() };
+    Throwable[] error = new Throwable[1];
+    for (int i = 0; i < paths.size(); ++i) {
+      int index = i;
+      getOne(paths.get(i), ar -> {
+        if (ar.failed()) {
+          if (error[0] == null) {
+            error[0] = ar.cause();
+          }
+        } else {
+          result[index] = ar.result();
+        }
+        remaining[0]--;
+        if (remaining[0] > 0) {
+          return;
+        }
+        if (error[0] != null) {
+          for (ChunkReadStream crs : result) {
+            if (crs != null) {
+              crs.close();
+            }
+          }
+          handler.handle(Future.failedFuture(error[0]));
+        } else {
+          handler.handle(Future.succeededFuture(Arrays.asList(result)));
+        }
+      });
+    }
+  }
+
   /**
    * Delete all chunks from the store that match a given query
    * @param search the search query
@@ -66,6 +142,31 @@ public interface Store {
    */
   void get(String search, String path, Handler<AsyncResult<StoreCursor>> handler);
 
+  /**
+   * <p>Get one of several disjoint slices of the chunks matching a query.
+   * All slices together contain exactly the chunks that
+   * {@link #get(String, String, Handler)} would return. Slices can be
+   * retrieved in parallel.</p>
+   * <p>The default implementation only supports a single slice and
+   * delegates to {@link #get(String, String, Handler)}. Stores whose
+   * index supports slicing should override this method.</p>
+   * @param search the search query
+   * @param path the path where to search for the chunks (may be null)
+   * @param slice the number of the slice to get (starting at 0)
+   * @param slices the total number of slices
+   * @param handler will be called when the chunks have been retrieved from the store
+   * @since 1.4.0
+   */
+  default void get(String search, String path, int slice, int slices,
+      Handler<AsyncResult<StoreCursor>> handler) {
+    if (slices <= 1) {
+      get(search, path, handler);
+    } else {
+      handler.handle(Future.failedFuture(new UnsupportedOperationException(
+          "This store does not support slicing")));
+    }
+  }
+
   /**
    * Start scrolling but load only one frame.
    * @param search the search query
@@ -102,6 +203,34 @@ public interface Store {
   void getPropertyValues(String search, String path, String property,
     Handler<AsyncResult<AsyncCursor<String>>> handler);
 
+  /**
+   * Get the distinct values of the specified attribute together with the
+   * number of chunks having each value. In contrast to
+   * {@link #getAttributeValues(String, String, String, Handler)}, the values
+   * are aggregated by the store, so each value is only returned once.
+   * @param search the search query
+   * @param path the path where to search for the values (may be null)
+   * @param attribute the name of the attribute
+   * @param handler will be called when the values have been retrieved from the store
+   * @since 1.4.0
+   */
+  void getDistinctAttributeValues(String search, String path, String attribute,
+    Handler<AsyncResult<AsyncCursor<ValueCount>>> handler);
+
+  /**
+   * Get the distinct values of the specified property together with the
+   * number of chunks having each value. In contrast to
+   * {@link #getPropertyValues(String, String, String, Handler)}, the values
+   * are aggregated by the store, so each value is only returned once.
+   * @param search the search query
+   * @param path the path where to search for the values (may be null)
+   * @param property the name of the property
+   * @param handler will be called when the values have been retrieved from the store
+   * @since 1.4.0
+   */
+  void getDistinctPropertyValues(String search, String path, String property,
+    Handler<AsyncResult<AsyncCursor<ValueCount>>> handler);
+
   /**
    * Set the properties of a list of chunks selected by search and path
    * @param search the search query
@@ -141,4 +270,18 @@ public interface Store {
    */
   void removeTags(String search, String path, List<String> tags,
     Handler<AsyncResult<Void>> handler);
+
+  /**
+   * <p>Check if the store's contents are accessible from all GeoRocket
+   * instances in a cluster (e.g. because the store is backed by a
+   * distributed file system or a database server).</p>
+   * <p>Chunks imported on one cluster node may only be indexed on other
+   * nodes if the store is shared. The default implementation returns
+   * <code>false</code>.</p>
+   * @return true if the store is shared between cluster nodes
+   * @since 1.4.0
+   */
+  default boolean isShared() {
+    return false;
+  }
 }
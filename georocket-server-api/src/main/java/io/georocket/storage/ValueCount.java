@@ -0,0 +1,56 @@
+package io.georocket.storage;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A distinct value of a property or an attribute together with the number
+ * of chunks having this value
+ * @since 1.4.0
+ * @author Michel Kraemer
+ */
+public class ValueCount {
+  private final String value;
+  private final long count;
+
+  /**
+   * Default constructor
+   * @param value the value
+   * @param count the number of chunks having this value
+   */
+  public ValueCount(String value, long count) {
+    this.value = value;
+    this.count = count;
+  }
+
+  /**
+   * Create a new object from its JSON representation
+   * @param json the JSON object
+   * @see #toJsonObject()
+   */
+  public ValueCount(JsonObject json) {
+    this(json.getString("value"), json.getLong("count", 0L));
+  }
+
+  /**
+   * @return the value
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @return the number of chunks having this value
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return this object as a {@link JsonObject}
+   */
+  public JsonObject toJsonObject() {
+    return new JsonObject()
+      .put("value", value)
+      .put("count", count);
+  }
+}
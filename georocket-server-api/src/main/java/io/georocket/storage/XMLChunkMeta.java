@@ -1,5 +1,8 @@
 package io.georocket.storage;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -18,7 +21,10 @@ public class XMLChunkMeta extends ChunkMeta {
    */
   public static final String MIME_TYPE = "application/xml";
 
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
   private final List<XMLStartElement> parents;
+  private final String parentsId;
   
   /**
    * Create a new metadata object
@@ -30,29 +36,125 @@ public class XMLChunkMeta extends ChunkMeta {
    * right before all its parent XML elements are closed)
    */
   public XMLChunkMeta(List<XMLStartElement> parents, int start, int end) {
+    this(parents, null, start, end);
+  }
+  
+  /**
+   * Create a new metadata object
+   * @param parents the chunk's parents (i.e. the XML start elements the
+   * chunk is wrapped in)
+   * @param parentsId an ID identifying the chunk's parents (see
+   * {@link #makeParentsId(List)}). May be <code>null</code>.
+   * @param start the position in the stored blob where the chunk starts
+   * (typically right after all its parent XML elements)
+   * @param end the position in the stored blob where the chunk ends (typically
+   * right before all its parent XML elements are closed)
+   * @since 1.4.0
+   */
+  public XMLChunkMeta(List<XMLStartElement> parents, String parentsId,
+      int start, int end) {
     super(start, end, MIME_TYPE);
     this.parents = parents;
+    this.parentsId = parentsId;
   }
   
   /**
-   * Create a new metadata object from a JsonObject
+   * Create a new metadata object from a JsonObject. If the object only
+   * references the chunk's parents by ID (see {@link #toReferenceJsonObject()}),
+   * {@link #getParents()} will return <code>null</code>. Use
+   * {@link #XMLChunkMeta(JsonObject, List)} in this case.
    * @param json the JsonObject
    */
   public XMLChunkMeta(JsonObject json) {
+    this(json, parentsFromJson(json.getJsonArray("parents")));
+  }
+  
+  /**
+   * Create a new metadata object from a JsonObject and a list of parents
+   * that have been resolved from the ID the object references
+   * @param json the JsonObject
+   * @param parents the chunk's parents (i.e. the XML start elements the
+   * chunk is wrapped in)
+   * @since 1.4.0
+   */
+  public XMLChunkMeta(JsonObject json, List<XMLStartElement> parents) {
     super(json);
-    this.parents = json.getJsonArray("parents").stream()
+    this.parents = parents;
+    this.parentsId = json.getString("parentsId");
+  }
+  
+  /**
+   * Convert a JSON array to a list of parents
+   * @param json the array (may be <code>null</code>)
+   * @return the list of parents or <code>null</code> if the array was
+   * <code>null</code>
+   * @since 1.4.0
+   */
+  public static List<XMLStartElement> parentsFromJson(JsonArray json) {
+    if (json == null) {
+      return null;
+    }
+    return json.stream()
         .map(e -> XMLStartElement.fromJsonObject((JsonObject)e))
         .collect(Collectors.toList());
   }
   
+  /**
+   * Convert a list of parents to a JSON array
+   * @param parents the list of parents
+   * @return the JSON array
+   * @since 1.4.0
+   */
+  public static JsonArray parentsToJson(List<XMLStartElement> parents) {
+    JsonArray ps = new JsonArray();
+    parents.forEach(p -> ps.add(p.toJsonObject()));
+    return ps;
+  }
+  
+  /**
+   * Calculate an ID that identifies a list of parents by its content. Equal
+   * lists always get the same ID, so the ID can be used to store the parents
+   * of many chunks only once.
+   * @param parents the list of parents
+   * @return the ID (a hex-encoded SHA-256 hash)
+   * @since 1.4.0
+   */
+  public static String makeParentsId(List<XMLStartElement> parents) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform must support SHA-256
+      throw new IllegalStateException(e);
+    }
+    byte[] hash = digest.digest(parentsToJson(parents).encode()
+        .getBytes(StandardCharsets.UTF_8));
+    char[] result = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; ++i) {
+      result[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+      result[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+    }
+    return new String(result);
+  }
+  
   /**
    * @return the chunk's parents (i.e. the XML start elements the
-   * chunk is wrapped in)
+   * chunk is wrapped in). May be <code>null</code> if the object has been
+   * created from JSON that only references the parents by ID.
    */
   public List<XMLStartElement> getParents() {
     return parents;
   }
   
+  /**
+   * @return an ID identifying the chunk's parents (see
+   * {@link #makeParentsId(List)}) or <code>null</code> if the ID is unknown
+   * @since 1.4.0
+   */
+  public String getParentsId() {
+    return parentsId;
+  }
+  
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -87,9 +189,30 @@ public class XMLChunkMeta extends ChunkMeta {
    * @return this object as a {@link JsonObject}
    */
   public JsonObject toJsonObject() {
-    JsonArray ps = new JsonArray();
-    parents.forEach(p -> ps.add(p.toJsonObject()));
-    return super.toJsonObject()
-        .put("parents", ps);
+    JsonObject result = super.toJsonObject();
+    if (parentsId != null) {
+      result.put("parentsId", parentsId);
+    }
+    if (parents != null) {
+      result.put("parents", parentsToJson(parents));
+    }
+    return result;
+  }
+  
+  /**
+   * Convert this object to a {@link JsonObject} that only references the
+   * chunk's parents by ID. If the ID is unknown, the parents will be
+   * included as in {@link #toJsonObject()}.
+   * @return the {@link JsonObject}
+   * @since 1.4.0
+   */
+  public JsonObject toReferenceJsonObject() {
+    JsonObject result = super.toJsonObject();
+    if (parentsId != null) {
+      result.put("parentsId", parentsId);
+    } else if (parents != null) {
+      result.put("parents", parentsToJson(parents));
+    }
+    return result;
   }
 }
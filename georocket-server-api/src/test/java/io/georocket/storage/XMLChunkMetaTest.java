@@ -0,0 +1,86 @@
+package io.georocket.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.georocket.util.XMLStartElement;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Tests {@link XMLChunkMeta}
+ * @author Michel Kraemer
+ */
+public class XMLChunkMetaTest {
+  private static final List<XMLStartElement> PARENTS = Arrays.asList(
+      new XMLStartElement(null, "root", new String[] { "", "xsi" },
+          new String[] { "uri0", "http://www.w3.org/2001/XMLSchema-instance" },
+          new String[] { "xsi" }, new String[] { "schemaLocation" },
+          new String[] { "uri0 location0" }),
+      new XMLStartElement("test"));
+
+  /**
+   * Check if equal parents get the same ID and different parents don't
+   */
+  @Test
+  public void makeParentsId() {
+    String id1 = XMLChunkMeta.makeParentsId(PARENTS);
+    String id2 = XMLChunkMeta.makeParentsId(Arrays.asList(
+        PARENTS.get(0), new XMLStartElement("test")));
+    String id3 = XMLChunkMeta.makeParentsId(PARENTS.subList(0, 1));
+    assertEquals(64, id1.length());
+    assertEquals(id1, id2);
+    assertNotEquals(id1, id3);
+  }
+
+  /**
+   * Check if an object can be converted to JSON and back
+   */
+  @Test
+  public void toJsonObject() {
+    String id = XMLChunkMeta.makeParentsId(PARENTS);
+    XMLChunkMeta meta = new XMLChunkMeta(PARENTS, id, 10, 20);
+    XMLChunkMeta meta2 = new XMLChunkMeta(meta.toJsonObject());
+    assertEquals(meta, meta2);
+    assertEquals(id, meta2.getParentsId());
+  }
+
+  /**
+   * Check if an object can be converted to JSON that only references
+   * its parents and then be resolved again
+   */
+  @Test
+  public void toReferenceJsonObject() {
+    String id = XMLChunkMeta.makeParentsId(PARENTS);
+    XMLChunkMeta meta = new XMLChunkMeta(PARENTS, id, 10, 20);
+    JsonObject json = meta.toReferenceJsonObject();
+    assertFalse(json.containsKey("parents"));
+    assertEquals(id, json.getString("parentsId"));
+
+    XMLChunkMeta unresolved = new XMLChunkMeta(json);
+    assertNull(unresolved.getParents());
+    assertEquals(id, unresolved.getParentsId());
+
+    XMLChunkMeta resolved = new XMLChunkMeta(json, PARENTS);
+    assertEquals(meta, resolved);
+  }
+
+  /**
+   * Check if the parents are included in the JSON object if their ID
+   * is unknown
+   */
+  @Test
+  public void toReferenceJsonObjectWithoutId() {
+    XMLChunkMeta meta = new XMLChunkMeta(PARENTS, 10, 20);
+    JsonObject json = meta.toReferenceJsonObject();
+    assertTrue(json.containsKey("parents"));
+    assertEquals(meta, new XMLChunkMeta(json));
+  }
+}
@@ -13,6 +13,7 @@ import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
@@ -62,9 +63,23 @@ public class GeoRocket extends AbstractVerticle {
    * @return a single that will carry the verticle's deployment id
    */
   protected Single<String> deployVerticle(Class<? extends Verticle> cls) {
+    return deployVerticle(cls, 1);
+  }
+
+  /**
+   * Deploy a number of instances of a verticle with the standard
+   * configuration of this instance
+   * @param cls the class of the verticle class to deploy
+   * @param instances the number of instances to deploy
+   * @return a single that will carry the verticle's deployment id
+   */
+  protected Single<String> deployVerticle(Class<? extends Verticle> cls,
+      int instances) {
     return Single.defer(() -> {
       ObservableFuture<String> observable = RxHelper.observableFuture();
-      DeploymentOptions options = new DeploymentOptions().setConfig(config());
+      DeploymentOptions options = new DeploymentOptions()
+        .setConfig(config())
+        .setInstances(instances);
       vertx.deployVerticle(cls.getName(), options, observable.toHandler());
       return observable.toSingle();
     });
@@ -98,12 +113,17 @@ public class GeoRocket extends AbstractVerticle {
   }
 
   /**
-   * Deploy the importer verticle
+   * Deploy the importer verticle. Deploy as many instances as configured,
+   * so multiple files can be split on multiple cores. Each instance
+   * schedules its own imports, so the order and fairness guaranteed by
+   * {@link ImportScheduler} only apply within one instance.
    * @return a single that will complete when the verticle was deployed
    * and will carry the verticle's deployment id
    */
   protected Single<String> deployImporter() {
-    return deployVerticle(ImporterVerticle.class);
+    int instances = config().getInteger(ConfigConstants.IMPORTER_INSTANCES,
+        ConfigConstants.DEFAULT_IMPORTER_INSTANCES);
+    return deployVerticle(ImporterVerticle.class, Math.max(1, instances));
   }
 
   /**
@@ -237,8 +257,13 @@ public class GeoRocket extends AbstractVerticle {
   protected HttpServerOptions createHttpServerOptions() {
     boolean compress = config().getBoolean(ConfigConstants.HTTP_COMPRESS, true);
 
+    int compressionLevel = config().getInteger(
+        ConfigConstants.HTTP_COMPRESSION_LEVEL,
+        ConfigConstants.DEFAULT_HTTP_COMPRESSION_LEVEL);
+
     HttpServerOptions serverOptions = new HttpServerOptions()
-        .setCompressionSupported(compress);
+        .setCompressionSupported(compress)
+        .setCompressionLevel(compressionLevel);
 
     boolean ssl = config().getBoolean(ConfigConstants.HTTP_SSL, false);
     if (ssl) {
@@ -460,13 +485,6 @@ public class GeoRocket extends AbstractVerticle {
       // ignore
     }
 
-    Vertx vertx = Vertx.vertx();
-
-    // register schedulers that run Rx operations on the Vert.x event bus
-    RxJavaHooks.setOnComputationScheduler(s -> RxHelper.scheduler(vertx));
-    RxJavaHooks.setOnIOScheduler(s -> RxHelper.blockingScheduler(vertx));
-    RxJavaHooks.setOnNewThreadScheduler(s -> RxHelper.scheduler(vertx));
-
     DeploymentOptions options = new DeploymentOptions();
 
     try {
@@ -493,6 +511,41 @@ public class GeoRocket extends AbstractVerticle {
     log.info("Initial heap size: " + SizeFormat.format(memoryInit) +
         ", max heap size: " + SizeFormat.format(memoryMax));
 
+    boolean cluster = options.getConfig().getBoolean(
+        ConfigConstants.CLUSTER_ENABLED, ConfigConstants.DEFAULT_CLUSTER_ENABLED);
+    if (!cluster) {
+      deploy(Vertx.vertx(), options);
+      return;
+    }
+
+    // join the cluster. the cluster manager is found on the classpath.
+    VertxOptions vertxOptions = new VertxOptions().setClustered(true);
+    String clusterHost = options.getConfig().getString(
+        ConfigConstants.CLUSTER_HOST);
+    if (clusterHost != null) {
+      vertxOptions.setClusterHost(clusterHost);
+    }
+    log.info("Joining cluster ...");
+    Vertx.clusteredVertx(vertxOptions, ar -> {
+      if (ar.failed()) {
+        log.fatal("Could not join cluster", ar.cause());
+        System.exit(1);
+      }
+      deploy(ar.result(), options);
+    });
+  }
+
+  /**
+   * Deploy the main verticle
+   * @param vertx the Vert.x instance to deploy the verticle to
+   * @param options the deployment options containing the configuration
+   */
+  private static void deploy(Vertx vertx, DeploymentOptions options) {
+    // register schedulers that run Rx operations on the Vert.x event bus
+    RxJavaHooks.setOnComputationScheduler(s -> RxHelper.scheduler(vertx));
+    RxJavaHooks.setOnIOScheduler(s -> RxHelper.blockingScheduler(vertx));
+    RxJavaHooks.setOnNewThreadScheduler(s -> RxHelper.scheduler(vertx));
+
     // deploy main verticle
     vertx.deployVerticle(GeoRocket.class.getName(), options, ar -> {
         if (ar.failed()) {
@@ -0,0 +1,179 @@
+package io.georocket;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import rx.Completable;
+
+/**
+ * <p>Schedules imports and limits the number of imports running in
+ * parallel.</p>
+ * <p>Imports are started in the order they were submitted. However, large
+ * files may never occupy all available slots. If more than one import may
+ * run in parallel, one slot is always reserved for small files, so they do
+ * not have to wait until a large file has been imported completely.</p>
+ * <p>This class is not thread-safe. It must only be used from the event
+ * loop of the verticle that created it. Every importer instance has its own
+ * scheduler, so the guarantees above do not hold across instances.</p>
+ * @author Michel Kraemer
+ */
+public class ImportScheduler {
+  private static Logger log = LoggerFactory.getLogger(ImportScheduler.class);
+
+  /**
+   * An import waiting to be started
+   */
+  private static class QueuedImport {
+    final long seq;
+    final boolean large;
+    final Supplier<Completable> task;
+
+    QueuedImport(long seq, boolean large, Supplier<Completable> task) {
+      this.seq = seq;
+      this.large = large;
+      this.task = task;
+    }
+  }
+
+  /**
+   * The maximum number of imports to run in parallel
+   */
+  private final int maxParallelImports;
+
+  /**
+   * The maximum number of imports of large files to run in parallel
+   */
+  private final int maxParallelLargeImports;
+
+  /**
+   * The size in bytes above which a file is considered large
+   */
+  private final long largeFileSize;
+
+  /**
+   * Imports of small files waiting to be started
+   */
+  private final Deque<QueuedImport> small = new ArrayDeque<>();
+
+  /**
+   * Imports of large files waiting to be started
+   */
+  private final Deque<QueuedImport> large = new ArrayDeque<>();
+
+  /**
+   * A counter used to keep the order in which imports were submitted
+   */
+  private long seq;
+
+  /**
+   * The number of imports currently running
+   */
+  private int running;
+
+  /**
+   * The number of imports of large files currently running
+   */
+  private int runningLarge;
+
+  /**
+   * Create a new scheduler
+   * @param maxParallelImports the maximum number of imports to run in
+   * parallel
+   * @param largeFileSize the size in bytes above which a file is considered
+   * large
+   */
+  public ImportScheduler(int maxParallelImports, long largeFileSize) {
+    this.maxParallelImports = Math.max(1, maxParallelImports);
+    this.maxParallelLargeImports = Math.max(1, this.maxParallelImports - 1);
+    this.largeFileSize = largeFileSize;
+  }
+
+  /**
+   * Submit an import. Start it immediately if possible or put it into the
+   * queue otherwise.
+   * @param size the size of the file to import in bytes
+   * @param task a function that starts the import and returns a Completable
+   * that completes when the import has finished
+   */
+  public void submit(long size, Supplier<Completable> task) {
+    QueuedImport qi = new QueuedImport(seq++, size > largeFileSize, task);
+    if (qi.large) {
+      large.add(qi);
+    } else {
+      small.add(qi);
+    }
+    schedule();
+  }
+
+  /**
+   * @return the number of imports currently running
+   */
+  public int getRunning() {
+    return running;
+  }
+
+  /**
+   * @return the number of imports waiting to be started
+   */
+  public int getQueued() {
+    return small.size() + large.size();
+  }
+
+  /**
+   * Start as many queued imports as possible
+   */
+  private void schedule() {
+    while (running < maxParallelImports) {
+      boolean largeAllowed = runningLarge < maxParallelLargeImports;
+      QueuedImport next;
+      if (!small.isEmpty() && (large.isEmpty() || !largeAllowed ||
+          small.peek().seq < large.peek().seq)) {
+        next = small.poll();
+      } else if (!large.isEmpty() && largeAllowed) {
+        next = large.poll();
+      } else {
+        break;
+      }
+      start(next);
+    }
+  }
+
+  /**
+   * Start an import
+   * @param qi the import to start
+   */
+  private void start(QueuedImport qi) {
+    running++;
+    if (qi.large) {
+      runningLarge++;
+    }
+
+    Completable c;
+    try {
+      c = qi.task.get();
+    } catch (Throwable t) {
+      c = Completable.error(t);
+    }
+
+    c.subscribe(() -> finished(qi), err -> {
+      // the task should handle errors itself
+      log.error("Import failed", err);
+      finished(qi);
+    });
+  }
+
+  /**
+   * Will be called when an import has finished
+   * @param qi the import that has finished
+   */
+  private void finished(QueuedImport qi) {
+    running--;
+    if (qi.large) {
+      runningLarge--;
+    }
+    schedule();
+  }
+}
@@ -1,11 +1,20 @@
 package io.georocket;
 
+import com.google.common.collect.ImmutableList;
 import io.georocket.constants.AddressConstants;
 import io.georocket.constants.ConfigConstants;
+import io.georocket.index.ChunkIndexer;
+import io.georocket.index.IndexerFactory;
+import io.georocket.index.xml.JsonIndexerFactory;
 import io.georocket.index.xml.XMLCRSIndexer;
+import io.georocket.index.xml.XMLIndexerFactory;
+import io.georocket.input.SplitPlan;
+import io.georocket.input.SplitPlan.Range;
 import io.georocket.input.Splitter.Result;
+import io.georocket.input.geojson.GeoJsonBoundaryScanner;
 import io.georocket.input.geojson.GeoJsonSplitter;
 import io.georocket.input.xml.FirstLevelSplitter;
+import io.georocket.input.xml.XMLBoundaryScanner;
 import io.georocket.input.xml.XMLSplitter;
 import io.georocket.storage.ChunkMeta;
 import io.georocket.storage.IndexMeta;
@@ -13,36 +22,51 @@ import io.georocket.storage.RxStore;
 import io.georocket.storage.StoreFactory;
 import io.georocket.tasks.ImportingTask;
 import io.georocket.tasks.TaskError;
+import io.georocket.tasks.TaskVerticle;
+import io.georocket.util.FilteredServiceLoader;
 import io.georocket.util.JsonParserTransformer;
+import io.georocket.util.JsonStreamEvent;
 import io.georocket.util.RxUtils;
 import io.georocket.util.StringWindow;
 import io.georocket.util.UTF8BomFilter;
 import io.georocket.util.Window;
 import io.georocket.util.XMLParserTransformer;
-import io.georocket.util.io.RxGzipReadStream;
+import io.georocket.util.XMLStreamEvent;
+import io.georocket.util.io.EventBusReadStream;
+import io.georocket.util.io.RxStreamingGzipReadStream;
 import io.vertx.core.file.OpenOptions;
 import io.vertx.core.impl.NoStackTraceThrowable;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.rx.java.RxHelper;
 import io.vertx.rxjava.core.AbstractVerticle;
 import io.vertx.rxjava.core.buffer.Buffer;
 import io.vertx.rxjava.core.eventbus.Message;
-import io.vertx.rxjava.core.file.AsyncFile;
 import io.vertx.rxjava.core.file.FileSystem;
 import io.vertx.rxjava.core.streams.ReadStream;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jooq.lambda.Seq;
 import rx.Completable;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Single;
+import rx.schedulers.Schedulers;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -57,49 +81,167 @@ public class ImporterVerticle extends AbstractVerticle {
   
   private static final int MAX_RETRIES = 5;
   private static final int RETRY_INTERVAL = 1000;
-  private static final int MAX_PARALLEL_IMPORTS = 1;
+
+  /**
+   * The maximum number of buffers of a streaming import that may be sent to
+   * the importer before it has consumed them
+   */
+  private static final int STREAM_WINDOW = 32;
+
+  /**
+   * The maximum number of chunks of a file split in parallel that are
+   * added to the store at the same time
+   */
+  private static final int MAX_PARALLEL_ADDS = 16;
+
+  /**
+   * Holds the thread pool on which files are split in parallel. The pool is
+   * shared between all importer instances.
+   */
+  private static class SplitPoolHolder {
+    static final ForkJoinPool POOL = new ForkJoinPool(
+        Runtime.getRuntime().availableProcessors());
+  }
   
   protected RxStore store;
   private String incoming;
-  private boolean paused;
-  private Set<AsyncFile> filesBeingImported = new HashSet<>();
+
+  /**
+   * Decides which queued file should be imported next
+   */
+  private ImportScheduler scheduler;
+
+  /**
+   * {@code true} if chunks should be indexed while they are being split
+   */
+  private boolean singlePass;
+
+  /**
+   * The {@link XMLIndexerFactory} objects used to index XML chunks in
+   * single-pass mode (see {@link #singlePass})
+   */
+  private List<XMLIndexerFactory> xmlIndexerFactories;
+
+  /**
+   * The {@link JsonIndexerFactory} objects used to index JSON chunks in
+   * single-pass mode (see {@link #singlePass})
+   */
+  private List<JsonIndexerFactory> jsonIndexerFactories;
+
+  /**
+   * {@code true} if large files should be split on multiple threads
+   */
+  private boolean parallelSplitting;
+
+  /**
+   * The minimum size of a file in bytes to be split in parallel
+   */
+  private long parallelSplittingMinFileSize;
+
+  /**
+   * The preferred number of bytes in a range of a file split in parallel
+   */
+  private long parallelSplittingRangeSize;
+
+  /**
+   * The maximum number of ranges of a file to split at the same time
+   */
+  private int parallelSplittingParallelism;
 
   @Override
   public void start() {
     log.info("Launching importer ...");
 
+    singlePass = config().getBoolean(ConfigConstants.INDEX_SINGLE_PASS,
+        ConfigConstants.DEFAULT_INDEX_SINGLE_PASS);
+    if (singlePass) {
+      // load and copy all indexer factories now and not lazily to avoid
+      // concurrent modifications to the service loader's internal cache
+      List<IndexerFactory> indexerFactories = ImmutableList.copyOf(
+          FilteredServiceLoader.load(IndexerFactory.class));
+      xmlIndexerFactories = ImmutableList.copyOf(Seq.seq(indexerFactories)
+        .filter(f -> f instanceof XMLIndexerFactory)
+        .cast(XMLIndexerFactory.class));
+      jsonIndexerFactories = ImmutableList.copyOf(Seq.seq(indexerFactories)
+        .filter(f -> f instanceof JsonIndexerFactory)
+        .cast(JsonIndexerFactory.class));
+    }
+
     store = new RxStore(StoreFactory.createStore(getVertx()));
     String storagePath = config().getString(ConfigConstants.STORAGE_FILE_PATH);
     incoming = storagePath + "/incoming";
     
+    int maxParallelImports = config().getInteger(
+        ConfigConstants.IMPORTER_MAX_PARALLEL_IMPORTS,
+        ConfigConstants.DEFAULT_IMPORTER_MAX_PARALLEL_IMPORTS);
+    long largeFileSize = config().getLong(
+        ConfigConstants.IMPORTER_LARGE_FILE_SIZE,
+        ConfigConstants.DEFAULT_IMPORTER_LARGE_FILE_SIZE);
+    scheduler = new ImportScheduler(maxParallelImports, largeFileSize);
+
+    parallelSplitting = config().getBoolean(
+        ConfigConstants.IMPORTER_PARALLEL_SPLITTING_ENABLED,
+        ConfigConstants.DEFAULT_IMPORTER_PARALLEL_SPLITTING_ENABLED);
+    parallelSplittingMinFileSize = config().getLong(
+        ConfigConstants.IMPORTER_PARALLEL_SPLITTING_MIN_FILE_SIZE,
+        ConfigConstants.DEFAULT_IMPORTER_PARALLEL_SPLITTING_MIN_FILE_SIZE);
+    parallelSplittingRangeSize = config().getLong(
+        ConfigConstants.IMPORTER_PARALLEL_SPLITTING_RANGE_SIZE,
+        ConfigConstants.DEFAULT_IMPORTER_PARALLEL_SPLITTING_RANGE_SIZE);
+    parallelSplittingParallelism = Math.max(1, config().getInteger(
+        ConfigConstants.IMPORTER_PARALLEL_SPLITTING_PARALLELISM,
+        Runtime.getRuntime().availableProcessors()));
+
     vertx.eventBus().<JsonObject>localConsumer(AddressConstants.IMPORTER_IMPORT)
       .toObservable()
-      .onBackpressureBuffer() // unlimited buffer
-      .flatMapCompletable(msg -> {
-        // call onImport() but ignore errors. onImport() will handle errors for us.
-        return onImport(msg).onErrorComplete();
-      }, false, MAX_PARALLEL_IMPORTS)
-      .subscribe(v -> {
-        // ignore
-      }, err -> {
+      .subscribe(this::onImportMessage, err -> {
         // This is bad. It will unsubscribe the consumer from the eventbus!
         // Should never happen anyhow. If it does, something else has
         // completely gone wrong.
         log.fatal("Could not import file", err);
       });
+  }
+
+  /**
+   * Receives a name of a file to import and passes it to the scheduler
+   * @param msg the event bus message containing the filename
+   */
+  private void onImportMessage(Message<JsonObject> msg) {
+    if (msg.body().getString("stream") != null) {
+      // the file is streamed directly from the HTTP request. files of
+      // unknown size are considered large.
+      long size = msg.body().getLong("size", -1L);
+      long importSize = size < 0 ? Long.MAX_VALUE : size;
+      scheduler.submit(importSize, () -> onImport(msg, importSize)
+          .onErrorComplete());
+      return;
+    }
 
-    vertx.eventBus().localConsumer(AddressConstants.IMPORTER_PAUSE, this::onPause);
+    String filepath = incoming + "/" + msg.body().getString("filename");
+    vertx.fileSystem().rxProps(filepath)
+      .map(props -> props.size())
+      .onErrorReturn(err -> {
+        // let onImport() handle the error
+        return 0L;
+      })
+      .subscribe(size -> scheduler.submit(size, () -> {
+        // call onImport() but ignore errors. onImport() will handle errors for us.
+        return onImport(msg, size).onErrorComplete();
+      }));
   }
 
   /**
-   * Receives a name of a file to import
+   * Receives a name of a file to import or the address of a stream to
+   * import the file from
    * @param msg the event bus message containing the filename
+   * @param size the size of the file in bytes
    * @return a Completable that will complete when the file has been imported
    */
-  protected Completable onImport(Message<JsonObject> msg) {
+  protected Completable onImport(Message<JsonObject> msg, long size) {
     JsonObject body = msg.body();
     String filename = body.getString("filename");
     String filepath = incoming + "/" + filename;
+    String stream = body.getString("stream");
     String layer = body.getString("layer", "/");
     String contentType = body.getString("contentType");
     String correlationId = body.getString("correlationId");
@@ -120,24 +262,36 @@ public class ImporterVerticle extends AbstractVerticle {
 
     log.info("Importing [" + correlationId + "] to layer '" + layer + "'");
 
-    FileSystem fs = vertx.fileSystem();
-    OpenOptions openOptions = new OpenOptions().setCreate(false).setWrite(false);
-    return fs.rxOpen(filepath, openOptions)
-      .flatMap(f -> {
-        filesBeingImported.add(f);
-        return importFile(contentType, f, correlationId, filename, timestamp,
-            layer, tags, properties, fallbackCRSString, contentEncoding)
-          .doAfterTerminate(() -> {
-            // delete file from 'incoming' folder
-            log.debug("Deleting " + filepath + " from incoming folder");
-            filesBeingImported.remove(f);
-            f.rxClose()
-              .flatMap(v -> fs.rxDelete(filepath))
-              .subscribe(v -> {}, err -> {
-                log.error("Could not delete file from 'incoming' folder", err);
-              });
-          });
-      })
+    Single<Integer> result;
+    if (stream != null) {
+      // read the file directly from the HTTP request
+      EventBusReadStream rs = new EventBusReadStream(vertx.getDelegate(),
+          stream, STREAM_WINDOW);
+      result = Single.defer(() -> importFile(contentType,
+          ReadStream.newInstance(rs), correlationId, filename, timestamp,
+          layer, tags, properties, fallbackCRSString, contentEncoding))
+        .doOnError(rs::fail);
+    } else {
+      FileSystem fs = vertx.fileSystem();
+      OpenOptions openOptions = new OpenOptions().setCreate(false).setWrite(false);
+      Single<Integer> importSequentially = Single.defer(() -> fs.rxOpen(filepath, openOptions))
+        .flatMap(f -> importFile(contentType, f, correlationId, filename,
+            timestamp, layer, tags, properties, fallbackCRSString, contentEncoding)
+          .doAfterTerminate(() ->
+            deleteFromIncoming(filepath, f.rxClose().toCompletable())));
+
+      result = makeSplitPlan(filepath, contentType, contentEncoding, size)
+        .flatMap(plan -> importFileParallel(plan, filepath, contentType,
+            correlationId, filename, timestamp, layer, tags, properties,
+            fallbackCRSString)
+          .doAfterTerminate(() -> deleteFromIncoming(filepath,
+              Completable.complete()))
+          .toObservable())
+        .switchIfEmpty(Observable.defer(importSequentially::toObservable))
+        .toSingle();
+    }
+
+    return result
       .doOnSuccess(chunkCount -> {
         long duration = System.currentTimeMillis() - timestamp;
         log.info("Finished importing [" + correlationId + "] with " + chunkCount +
@@ -151,6 +305,214 @@ public class ImporterVerticle extends AbstractVerticle {
       .toCompletable();
   }
 
+  /**
+   * Delete a file from the 'incoming' folder
+   * @param filepath the path to the file
+   * @param close a Completable that closes the file before it is deleted
+   */
+  private void deleteFromIncoming(String filepath, Completable close) {
+    log.debug("Deleting " + filepath + " from incoming folder");
+    close.andThen(Completable.defer(() ->
+        vertx.fileSystem().rxDelete(filepath).toCompletable()))
+      .subscribe(() -> {}, err -> {
+        log.error("Could not delete file from 'incoming' folder", err);
+      });
+  }
+
+  /**
+   * Check if the given content type denotes an XML file
+   * @param contentType the content type
+   * @return true if the content type denotes an XML file
+   */
+  private static boolean isXML(String contentType) {
+    return belongsTo(contentType, "application", "xml") ||
+        belongsTo(contentType, "text", "xml");
+  }
+
+  /**
+   * Scan a file and create a plan to split it in parallel. Check if parallel
+   * splitting is enabled and applicable to the file first.
+   * @param filepath the path to the file
+   * @param contentType the file's content type
+   * @param contentEncoding the file's content encoding (may be
+   * <code>null</code>)
+   * @param size the size of the file in bytes
+   * @return an observable that emits the plan or that completes without
+   * emitting anything if the file should be split sequentially
+   */
+  private Observable<SplitPlan> makeSplitPlan(String filepath,
+      String contentType, String contentEncoding, long size) {
+    if (!parallelSplitting || size < parallelSplittingMinFileSize ||
+        (contentEncoding != null && !contentEncoding.isEmpty())) {
+      return Observable.empty();
+    }
+
+    boolean xml = isXML(contentType);
+    if (!xml && !belongsTo(contentType, "application", "json")) {
+      return Observable.empty();
+    }
+
+    long start = System.currentTimeMillis();
+    return Observable.fromCallable(() -> {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath),
+            StandardOpenOption.READ)) {
+          if (xml) {
+            return new XMLBoundaryScanner(parallelSplittingRangeSize)
+                .scan(channel);
+          }
+          return new GeoJsonBoundaryScanner(parallelSplittingRangeSize)
+              .scan(channel);
+        }
+      })
+      .subscribeOn(Schedulers.from(SplitPoolHolder.POOL))
+      .observeOn(RxHelper.scheduler(context))
+      .onErrorReturn(err -> {
+        // the sequential splitter will report the error
+        log.warn("Could not scan file for parallel splitting", err);
+        return null;
+      })
+      .filter(plan -> plan != null)
+      .doOnNext(plan -> log.info("Splitting file in parallel. Found " +
+          plan.getRanges().size() + " ranges after " +
+          (System.currentTimeMillis() - start) + " ms"));
+  }
+
+  /**
+   * Read a range of bytes from a file
+   * @param filepath the path to the file
+   * @param range the range to read
+   * @return the bytes read
+   * @throws IOException if the file could not be read
+   */
+  private static byte[] readRange(String filepath, Range range)
+      throws IOException {
+    byte[] data = new byte[range.getLength()];
+    ByteBuffer bb = ByteBuffer.wrap(data);
+    try (FileChannel channel = FileChannel.open(Paths.get(filepath),
+        StandardOpenOption.READ)) {
+      while (bb.hasRemaining()) {
+        if (channel.read(bb, range.getStart() + bb.position()) < 0) {
+          throw new EOFException("Unexpected end of file " + filepath);
+        }
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Import a file by splitting ranges of it in parallel. The ranges are
+   * split on the {@link SplitPoolHolder#POOL} but the chunks are added to
+   * the store in the order of the ranges.
+   * @param plan the plan describing how to split the file
+   * @param filepath the path to the file
+   * @param contentType the file's content type
+   * @param correlationId a unique identifier for this import process
+   * @param filename the name of the file currently being imported
+   * @param timestamp denotes when the import process has started
+   * @param layer the layer where the file should be stored (may be null)
+   * @param tags the list of tags to attach to the file (may be null)
+   * @param properties the map of properties to attach to the file (may be null)
+   * @param fallbackCRSString the CRS which should be used if the imported
+   * file does not specify one (may be <code>null</code>)
+   * @return a single that will emit with the number if chunks imported
+   * when the file has been imported
+   */
+  protected Single<Integer> importFileParallel(SplitPlan plan, String filepath,
+      String contentType, String correlationId, String filename,
+      long timestamp, String layer, List<String> tags,
+      Map<String, Object> properties, String fallbackCRSString) {
+    boolean xml = isXML(contentType);
+    Scheduler splitScheduler = Schedulers.from(SplitPoolHolder.POOL);
+    Observable<Integer> result = Observable.from(plan.getRanges())
+      .concatMapEager(range -> Observable.fromCallable(() -> {
+          byte[] data = readRange(filepath, range);
+          if (xml) {
+            return splitXMLRange(plan, range, data, fallbackCRSString);
+          }
+          return splitJSONRange(plan, data);
+        }).subscribeOn(splitScheduler),
+        parallelSplittingParallelism, parallelSplittingParallelism)
+      .observeOn(RxHelper.scheduler(context))
+      .flatMapIterable(chunks -> chunks)
+      .flatMapSingle(chunk -> {
+        Result<? extends ChunkMeta> r = chunk.getLeft();
+        IndexMeta indexMeta = new IndexMeta(correlationId, filename,
+            timestamp, tags, properties, chunk.getRight(), r.getDocument());
+        return addToStore(r.getChunk(), r.getMeta(), layer, indexMeta)
+            .toSingleDefault(1);
+      }, false, MAX_PARALLEL_ADDS);
+    return trackImport(correlationId, result);
+  }
+
+  /**
+   * Split a range of an XML file. This method is called on the
+   * {@link SplitPoolHolder#POOL}.
+   * @param plan the plan describing how to split the file
+   * @param range the range to split
+   * @param data the bytes of the range
+   * @param fallbackCRSString the CRS which should be used if the imported
+   * file does not specify one (may be <code>null</code>)
+   * @return the chunks and the CRS to save in their metadata
+   */
+  private List<Pair<Result<? extends ChunkMeta>, String>> splitXMLRange(
+      SplitPlan plan, Range range, byte[] data, String fallbackCRSString) {
+    Window window = new Window();
+    String inheritedCRS = plan.getInheritedCRS(range);
+    XMLCRSIndexer crsIndexer = new XMLCRSIndexer();
+    Supplier<String> crs = () -> {
+      if (inheritedCRS != null) {
+        return inheritedCRS;
+      }
+      if (crsIndexer.getCRS() != null) {
+        return crsIndexer.getCRS();
+      }
+      return fallbackCRSString;
+    };
+    ChunkIndexer<XMLStreamEvent> chunkIndexer = null;
+    if (singlePass) {
+      chunkIndexer = new ChunkIndexer<>(xmlIndexerFactories, crs);
+    }
+    XMLSplitter splitter = new FirstLevelSplitter(window, chunkIndexer);
+    return plan.wrap(data)
+      .doOnNext(window::append)
+      .compose(new XMLParserTransformer())
+      .doOnNext(e -> {
+        if (inheritedCRS == null && crsIndexer.getCRS() == null) {
+          crsIndexer.onEvent(e);
+        }
+      })
+      .flatMap(splitter::onEventObservable)
+      .map(r -> Pair.<Result<? extends ChunkMeta>, String>of(r, crs.get()))
+      .toList()
+      .toBlocking()
+      .single();
+  }
+
+  /**
+   * Split a range of a GeoJSON file. This method is called on the
+   * {@link SplitPoolHolder#POOL}.
+   * @param plan the plan describing how to split the file
+   * @param data the bytes of the range
+   * @return the chunks (the CRS is always <code>null</code>)
+   */
+  private List<Pair<Result<? extends ChunkMeta>, String>> splitJSONRange(
+      SplitPlan plan, byte[] data) {
+    StringWindow window = new StringWindow();
+    ChunkIndexer<JsonStreamEvent> chunkIndexer = null;
+    if (singlePass) {
+      chunkIndexer = new ChunkIndexer<>(jsonIndexerFactories);
+    }
+    GeoJsonSplitter splitter = new GeoJsonSplitter(window, chunkIndexer);
+    return plan.wrap(data)
+      .doOnNext(window::append)
+      .compose(new JsonParserTransformer())
+      .flatMap(splitter::onEventObservable)
+      .map(r -> Pair.<Result<? extends ChunkMeta>, String>of(r, null))
+      .toList()
+      .toBlocking()
+      .single();
+  }
+
   /**
    * Import a file from the given read stream into the store. Inspect the file's
    * content type and forward to the correct import method.
@@ -175,19 +537,13 @@ public class ImporterVerticle extends AbstractVerticle {
       String contentEncoding) {
     if ("gzip".equals(contentEncoding)) {
       log.debug("Importing file compressed with GZIP");
-      f = new RxGzipReadStream(f);
+      f = new RxStreamingGzipReadStream(f);
     } else if (contentEncoding != null && !contentEncoding.isEmpty()) {
       log.warn("Unknown content encoding: `" + contentEncoding + "'. Trying anyway.");
     }
 
-    // let the task verticle know that we're now importing
-    ImportingTask startTask = new ImportingTask(correlationId);
-    startTask.setStartTime(Instant.now());
-    vertx.eventBus().publish(AddressConstants.TASK_INC, JsonObject.mapFrom(startTask));
-
     Observable<Integer> result;
-    if (belongsTo(contentType, "application", "xml") ||
-        belongsTo(contentType, "text", "xml")) {
+    if (isXML(contentType)) {
       result = importXML(f, correlationId, filename, timestamp, layer, tags,
         properties, fallbackCRSString);
     } else if (belongsTo(contentType, "application", "json")) {
@@ -198,6 +554,25 @@ public class ImporterVerticle extends AbstractVerticle {
           + "file '%s'", contentType, filename)));
     }
 
+    return trackImport(correlationId, result);
+  }
+
+  /**
+   * Let the task verticle know that an import has started, how many chunks
+   * have been imported, and when the import has finished
+   * @param correlationId a unique identifier for this import process
+   * @param result an observable that emits the number 1 for each chunk
+   * imported
+   * @return a single that will emit with the number if chunks imported
+   * when the file has been imported
+   */
+  private Single<Integer> trackImport(String correlationId,
+      Observable<Integer> result) {
+    // let the task verticle know that we're now importing
+    ImportingTask startTask = new ImportingTask(correlationId);
+    startTask.setStartTime(Instant.now());
+    TaskVerticle.publishInc(vertx.getDelegate(), startTask);
+
     Consumer<Throwable> onFinish = t -> {
       // let the task verticle know that the import process has finished
       ImportingTask endTask = new ImportingTask(correlationId);
@@ -205,8 +580,7 @@ public class ImporterVerticle extends AbstractVerticle {
       if (t != null) {
         endTask.addError(new TaskError(t));
       }
-      vertx.eventBus().publish(AddressConstants.TASK_INC,
-          JsonObject.mapFrom(endTask));
+      TaskVerticle.publishInc(vertx.getDelegate(), endTask);
     };
 
     return result.window(100)
@@ -215,8 +589,7 @@ public class ImporterVerticle extends AbstractVerticle {
         // let the task verticle know that we imported n chunks
         ImportingTask currentTask = new ImportingTask(correlationId);
         currentTask.setImportedChunks(n);
-        vertx.eventBus().publish(AddressConstants.TASK_INC,
-            JsonObject.mapFrom(currentTask));
+        TaskVerticle.publishInc(vertx.getDelegate(), currentTask);
       })
       .reduce(0, (a, b) -> a + b)
       .toSingle()
@@ -242,9 +615,18 @@ public class ImporterVerticle extends AbstractVerticle {
       Map<String, Object> properties, String fallbackCRSString) {
     UTF8BomFilter bomFilter = new UTF8BomFilter();
     Window window = new Window();
-    XMLSplitter splitter = new FirstLevelSplitter(window);
     AtomicInteger processing = new AtomicInteger(0);
     XMLCRSIndexer crsIndexer = new XMLCRSIndexer();
+    ChunkIndexer<XMLStreamEvent> chunkIndexer = null;
+    if (singlePass) {
+      chunkIndexer = new ChunkIndexer<>(xmlIndexerFactories, () -> {
+        if (crsIndexer.getCRS() != null) {
+          return crsIndexer.getCRS();
+        }
+        return fallbackCRSString;
+      });
+    }
+    XMLSplitter splitter = new FirstLevelSplitter(window, chunkIndexer);
     return f.toObservable()
         .map(Buffer::getDelegate)
         .map(bomFilter::filter)
@@ -263,7 +645,7 @@ public class ImporterVerticle extends AbstractVerticle {
             crsString = crsIndexer.getCRS();
           }
           IndexMeta indexMeta = new IndexMeta(correlationId, filename,
-              timestamp, tags, properties, crsString);
+              timestamp, tags, properties, crsString, result.getDocument());
           return addToStoreWithPause(result, layer, indexMeta, f, processing)
               .toSingleDefault(1);
         });
@@ -284,7 +666,11 @@ public class ImporterVerticle extends AbstractVerticle {
       String filename, long timestamp, String layer, List<String> tags, Map<String, Object> properties) {
     UTF8BomFilter bomFilter = new UTF8BomFilter();
     StringWindow window = new StringWindow();
-    GeoJsonSplitter splitter = new GeoJsonSplitter(window);
+    ChunkIndexer<JsonStreamEvent> chunkIndexer = null;
+    if (singlePass) {
+      chunkIndexer = new ChunkIndexer<>(jsonIndexerFactories);
+    }
+    GeoJsonSplitter splitter = new GeoJsonSplitter(window, chunkIndexer);
     AtomicInteger processing = new AtomicInteger(0);
     return f.toObservable()
         .map(Buffer::getDelegate)
@@ -294,44 +680,21 @@ public class ImporterVerticle extends AbstractVerticle {
         .flatMap(splitter::onEventObservable)
         .flatMapSingle(result -> {
           IndexMeta indexMeta = new IndexMeta(correlationId, filename,
-              timestamp, tags, properties, null);
+              timestamp, tags, properties, null, result.getDocument());
           return addToStoreWithPause(result, layer, indexMeta, f, processing)
               .toSingleDefault(1);
         });
   }
 
-  /**
-   * Handle a pause message
-   * @param msg the message
-   */
-  private void onPause(Message<Boolean> msg) {
-    Boolean paused = msg.body();
-    if (paused == null || !paused) {
-      if (this.paused) {
-        log.info("Resuming import");
-        this.paused = false;
-        for (AsyncFile f : filesBeingImported) {
-          f.resume();
-        }
-      }
-    } else {
-      if (!this.paused) {
-        log.info("Pausing import");
-        this.paused = true;
-        for (AsyncFile f : filesBeingImported) {
-          f.pause();
-        }
-      }
-    }
-  }
-
   /**
    * Add a chunk to the store. Pause the given read stream before adding and
    * increase the given counter. Decrease the counter after the chunk has been
    * written and only resume the read stream if the counter is <code>0</code>.
    * This is necessary because the writing to the store may take longer than
    * reading. We need to pause reading so the store is not overloaded (i.e.
-   * we handle back-pressure here).
+   * we handle back-pressure here). The store itself waits until the indexer
+   * is able to accept the chunk, so reading is also paused if the indexer
+   * is too busy.
    * @param chunk the chunk to write
    * @param layer the layer the chunk should be added to (may be null)
    * @param indexMeta metadata specifying how the chunk should be indexed
@@ -353,7 +716,7 @@ public class ImporterVerticle extends AbstractVerticle {
         .doOnCompleted(() -> {
           // resume stream only after all chunks from the current
           // buffer have been stored
-          if (processing.decrementAndGet() == 0 && !paused) {
+          if (processing.decrementAndGet() == 0) {
             f.resume();
           }
         });
@@ -367,8 +730,8 @@ public class ImporterVerticle extends AbstractVerticle {
    * @param indexMeta metadata specifying how the chunk should be indexed
    * @return a Completable that will complete when the operation has finished
    */
-  protected Completable addToStore(String chunk, ChunkMeta meta,
-      String layer, IndexMeta indexMeta) {
+  protected Completable addToStore(io.vertx.core.buffer.Buffer chunk,
+      ChunkMeta meta, String layer, IndexMeta indexMeta) {
     return Completable.defer(() -> store.rxAdd(chunk, meta, layer, indexMeta))
         .retryWhen(RxUtils.makeRetry(MAX_RETRIES, RETRY_INTERVAL, log));
   }
@@ -8,10 +8,15 @@ package io.georocket.constants;
 public final class AddressConstants {
   public static final String GEOROCKET = "georocket";
   public static final String IMPORTER_IMPORT = "georocket.importer.import";
-  public static final String IMPORTER_PAUSE = "georocket.importer.pause";
+  public static final String IMPORTER_STREAM = "georocket.importer.stream";
   public static final String INDEXER_ADD = "georocket.indexer.add";
+  public static final String INDEXER_CREDITS_REQUEST = "georocket.indexer.credits.request";
+  public static final String INDEXER_CREDITS_REQUEST_REMOTE = "georocket.indexer.credits.request.remote";
+  public static final String INDEXER_CREDITS_RETURN = "georocket.indexer.credits.return";
   public static final String INDEXER_QUERY = "georocket.indexer.query";
   public static final String INDEXER_DELETE = "georocket.indexer.delete";
+  public static final String INDEXER_GET_STATS = "georocket.indexer.stats.get";
+  public static final String INDEXER_CHANGED = "georocket.indexer.changed";
   public static final String METADATA_GET_ATTRIBUTE_VALUES = "georocket.metadata.attribute.values.get";
   public static final String METADATA_GET_PROPERTY_VALUES = "georocket.metadata.property.values.get";
   public static final String METADATA_SET_PROPERTIES = "georocket.metadata.properties.set";
@@ -19,10 +19,15 @@ public final class ConfigConstants {
   public static final String PORT = "georocket.port";
 
   public static final String HTTP_COMPRESS = "georocket.http.compress";
+  public static final String HTTP_COMPRESSION_LEVEL = "georocket.http.compressionLevel";
   public static final String HTTP_SSL = "georocket.http.ssl";
   public static final String HTTP_CERT_PATH = "georocket.http.certPath";
   public static final String HTTP_KEY_PATH = "georocket.http.keyPath";
   public static final String HTTP_ALPN = "georocket.http.alpn";
+  public static final String HTTP_RESULT_CACHE_ENABLED = "georocket.http.resultCache.enabled";
+  public static final String HTTP_RESULT_CACHE_MAX_SIZE = "georocket.http.resultCache.maxSize";
+  public static final String HTTP_RESULT_CACHE_MAX_ENTRY_SIZE = "georocket.http.resultCache.maxEntrySize";
+  public static final String HTTP_MERGE_SPOOL_MAX_MEMORY_SIZE = "georocket.http.mergeSpool.maxMemorySize";
 
   public static final String HTTP_CORS_ENABLE = "georocket.http.cors.enable";
   public static final String HTTP_CORS_ALLOW_ORIGIN = "georocket.http.cors.allowOrigin";
@@ -34,11 +39,21 @@ public final class ConfigConstants {
 
   public static final String LOG_CONFIG = "georocket.logConfig";
 
+  public static final String CLUSTER_ENABLED = "georocket.cluster.enabled";
+  public static final String CLUSTER_HOST = "georocket.cluster.host";
+
   public static final String STORAGE_CLASS = "georocket.storage.class";
+  public static final String STORAGE_READ_AHEAD_MAX_CHUNKS = "georocket.storage.readAhead.maxChunks";
+  public static final String STORAGE_READ_AHEAD_MAX_BYTES = "georocket.storage.readAhead.maxBytes";
+  public static final String STORAGE_CURSOR_PAGE_SIZE = "georocket.storage.cursor.pageSize";
+  public static final String STORAGE_CURSOR_PREFETCH_PAGES = "georocket.storage.cursor.prefetchPages";
   public static final String STORAGE_H2_PATH = "georocket.storage.h2.path";
   public static final String STORAGE_H2_COMPRESS = "georocket.storage.h2.compress";
   public static final String STORAGE_H2_MAP_NAME = "georocket.storage.h2.mapName"; // undocumented
   public static final String STORAGE_FILE_PATH = "georocket.storage.file.path";
+  public static final String STORAGE_SEGMENT_PATH = "georocket.storage.segment.path";
+  public static final String STORAGE_SEGMENT_MAX_SIZE = "georocket.storage.segment.maxSize";
+  public static final String STORAGE_SEGMENT_COMPACTION_THRESHOLD = "georocket.storage.segment.compactionThreshold";
   public static final String STORAGE_HDFS_DEFAULT_FS = "georocket.storage.hdfs.defaultFS";
   public static final String STORAGE_HDFS_PATH = "georocket.storage.hdfs.path";
   public static final String STORAGE_MONGODB_CONNECTION_STRING = "georocket.storage.mongodb.connectionString";
@@ -52,11 +67,26 @@ public final class ConfigConstants {
   public static final String STORAGE_S3_FORCE_SIGNATURE_V2 = "georocket.storage.s3.forceSignatureV2";
   public static final String STORAGE_S3_REQUEST_EXPIRY_SECONDS = "georocket.storage.s3.requestExpirySeconds";
   
+  public static final String IMPORTER_INSTANCES = "georocket.importer.instances";
+  public static final String IMPORTER_MAX_PARALLEL_IMPORTS = "georocket.importer.maxParallelImports";
+  public static final String IMPORTER_LARGE_FILE_SIZE = "georocket.importer.largeFileSize";
+  public static final String IMPORTER_PARALLEL_SPLITTING_ENABLED = "georocket.importer.parallelSplitting.enabled";
+  public static final String IMPORTER_PARALLEL_SPLITTING_MIN_FILE_SIZE = "georocket.importer.parallelSplitting.minFileSize";
+  public static final String IMPORTER_PARALLEL_SPLITTING_RANGE_SIZE = "georocket.importer.parallelSplitting.rangeSize";
+  public static final String IMPORTER_PARALLEL_SPLITTING_PARALLELISM = "georocket.importer.parallelSplitting.parallelism";
+  public static final String IMPORTER_STREAMING_ENABLED = "georocket.importer.streaming.enabled";
+
   public static final String INDEX_MAX_BULK_SIZE = "georocket.index.maxBulkSize";
   public static final String INDEX_MAX_PARALLEL_INSERTS = "georocket.index.maxParallelInserts";
+  public static final String INDEX_MAX_BULK_BYTES = "georocket.index.maxBulkBytes";
+  public static final String INDEX_BULK_TARGET_LATENCY_MILLIS = "georocket.index.bulkTargetLatencyMillis";
   public static final String INDEX_MAX_QUEUED_CHUNKS = "georocket.index.maxQueuedChunks";
+  public static final String INDEX_MAX_QUEUED_BYTES = "georocket.index.maxQueuedBytes";
+  public static final String INDEX_SINGLE_PASS = "georocket.index.singlePass";
   public static final String INDEX_INDEXABLE_CHUNK_CACHE_MAX_SIZE = "georocket.index.indexableChunkCache.maxSize";
   public static final String INDEX_INDEXABLE_CHUNK_CACHE_MAX_TIME_SECONDS = "georocket.index.indexableChunkCache.maxTimeSeconds";
+  public static final String INDEX_INDEXABLE_CHUNK_CACHE_OFF_HEAP = "georocket.index.indexableChunkCache.offHeap";
+  public static final String INDEX_PARENT_CONTEXTS_SWEEP_INTERVAL_SECONDS = "georocket.index.parentContexts.sweepIntervalSeconds";
   public static final String INDEX_ELASTICSEARCH_EMBEDDED = "georocket.index.elasticsearch.embedded";
   public static final String INDEX_ELASTICSEARCH_HOST = "georocket.index.elasticsearch.host";
   public static final String INDEX_ELASTICSEARCH_PORT = "georocket.index.elasticsearch.port";
@@ -70,17 +100,50 @@ public final class ConfigConstants {
 
   public static final String QUERY_COMPILER_CLASS = "georocket.query.defaultQueryCompiler"; // undocumented
   public static final String QUERY_DEFAULT_CRS = "georocket.query.defaultCRS";
+  public static final String QUERY_CACHE_SIZE = "georocket.query.cacheSize";
 
   public static final String TASKS_RETAIN_SECONDS = "georocket.tasks.retainSeconds";
 
   public static final String DEFAULT_HOST = "127.0.0.1";
   public static final int DEFAULT_PORT = 63020;
 
+  public static final boolean DEFAULT_CLUSTER_ENABLED = false;
+
+  public static final int DEFAULT_HTTP_COMPRESSION_LEVEL = 6;
+  public static final boolean DEFAULT_HTTP_RESULT_CACHE_ENABLED = false;
+  public static final long DEFAULT_HTTP_RESULT_CACHE_MAX_SIZE = 1024L * 1024 * 64; // 64 MB
+  public static final long DEFAULT_HTTP_RESULT_CACHE_MAX_ENTRY_SIZE = 1024L * 1024; // 1 MB
+  public static final long DEFAULT_HTTP_MERGE_SPOOL_MAX_MEMORY_SIZE = 1024L * 1024; // 1 MB
+
+  public static final int DEFAULT_STORAGE_READ_AHEAD_MAX_CHUNKS = 1;
+  public static final int DEFAULT_STORAGE_READ_AHEAD_MAX_CHUNKS_REMOTE = 8;
+  public static final long DEFAULT_STORAGE_READ_AHEAD_MAX_BYTES = 1024L * 1024 * 16; // 16 MB
+  public static final int DEFAULT_STORAGE_CURSOR_PAGE_SIZE = 100;
+  public static final int DEFAULT_STORAGE_CURSOR_PREFETCH_PAGES = 1;
+  public static final long DEFAULT_STORAGE_SEGMENT_MAX_SIZE = 1024L * 1024 * 256; // 256 MB
+  public static final double DEFAULT_STORAGE_SEGMENT_COMPACTION_THRESHOLD = 0.5;
+
+  public static final int DEFAULT_IMPORTER_INSTANCES = 1;
+  public static final int DEFAULT_IMPORTER_MAX_PARALLEL_IMPORTS = 2;
+  public static final long DEFAULT_IMPORTER_LARGE_FILE_SIZE = 1024L * 1024 * 64; // 64 MB
+  public static final boolean DEFAULT_IMPORTER_PARALLEL_SPLITTING_ENABLED = false;
+  public static final long DEFAULT_IMPORTER_PARALLEL_SPLITTING_MIN_FILE_SIZE = 1024L * 1024 * 256; // 256 MB
+  public static final long DEFAULT_IMPORTER_PARALLEL_SPLITTING_RANGE_SIZE = 1024L * 1024 * 8; // 8 MB
+  public static final boolean DEFAULT_IMPORTER_STREAMING_ENABLED = false;
+
   public static final int DEFAULT_INDEX_MAX_BULK_SIZE = 200;
   public static final int DEFAULT_INDEX_MAX_PARALLEL_INSERTS = 5;
+  public static final long DEFAULT_INDEX_MAX_BULK_BYTES = 1024L * 1024 * 10; // 10 MB
+  public static final long DEFAULT_INDEX_BULK_TARGET_LATENCY_MILLIS = 2000;
   public static final int DEFAULT_INDEX_MAX_QUEUED_CHUNKS = 10000;
+  public static final long DEFAULT_INDEX_MAX_QUEUED_BYTES = 1024L * 1024 * 128; // 128 MB
+  public static final boolean DEFAULT_INDEX_SINGLE_PASS = false;
   public static final long DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_MAX_SIZE = 1024L * 1024 * 64; // 64 MB
   public static final long DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_MAX_TIME_SECONDS = 60;
+  public static final boolean DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_OFF_HEAP = true;
+  public static final long DEFAULT_INDEX_PARENT_CONTEXTS_SWEEP_INTERVAL_SECONDS = 3600;
+
+  public static final long DEFAULT_QUERY_CACHE_SIZE = 1000;
 
   public static final long DEFAULT_TASKS_RETAIN_SECONDS = 60 * 2;
 
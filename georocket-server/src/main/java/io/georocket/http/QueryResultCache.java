@@ -0,0 +1,253 @@
+package io.georocket.http;
+
+import io.georocket.constants.AddressConstants;
+import io.georocket.constants.ConfigConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>A cache for merged responses of search queries. Clients such as map
+ * viewers often send the same query over and over again. If the merged
+ * result is small enough (see
+ * {@link ConfigConstants#HTTP_RESULT_CACHE_MAX_ENTRY_SIZE}), it can be
+ * sent from the cache without querying the index and reading the chunks
+ * from the store again. The cache has a configurable maximum size in bytes
+ * (see {@link ConfigConstants#HTTP_RESULT_CACHE_MAX_SIZE}). Results are kept
+ * outside the Java heap and the least recently used ones are evicted
+ * first.</p>
+ * <p>The cache maintains a generation counter that is incremented whenever
+ * the indexer or the metadata verticle publish a message to
+ * {@link AddressConstants#INDEXER_CHANGED} (i.e. whenever chunks have been
+ * added, deleted, or their metadata has been modified). Results from an
+ * older generation are never returned. The generation is also used to
+ * create ETags for conditional requests.</p>
+ * @author Michel Kraemer
+ */
+public class QueryResultCache {
+  /**
+   * The number of milliseconds after which the generation is incremented
+   * again after a change. Elasticsearch makes changes visible to searches
+   * only after the index has been refreshed (every second by default).
+   * Results that were created in the meantime may still contain the old
+   * data and must not be returned.
+   */
+  private static final long REFRESH_DELAY_MILLIS = 2000;
+
+  /**
+   * A private class holding the singleton instance of this class
+   */
+  private static class LazyHolder {
+    static final QueryResultCache INSTANCE = new QueryResultCache();
+  }
+
+  /**
+   * A cached result
+   */
+  private static class Entry {
+    final ByteBuf data;
+    final int length;
+    final long generation;
+
+    Entry(ByteBuf data, int length, long generation) {
+      this.data = data;
+      this.length = length;
+      this.generation = generation;
+    }
+  }
+
+  private final long maximumSize;
+  private final long maximumEntrySize;
+
+  /**
+   * A random string that distinguishes the ETags of this instance from the
+   * ones generated before a restart or by other nodes in a cluster
+   */
+  private final String epoch = Long.toHexString(
+      ThreadLocalRandom.current().nextLong());
+
+  /**
+   * The cached results in the order they have been accessed (least
+   * recently used first)
+   */
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+  private long generation;
+  private long refreshTimerId = -1;
+
+  /**
+   * Get the current Vert.x context
+   * @return the context
+   * @throws RuntimeException if the method was not called from within a
+   * Vert.x context
+   */
+  private static Context getCurrentContext() {
+    Context ctx = Vertx.currentContext();
+    if (ctx == null) {
+      throw new RuntimeException("This class must be initiated within " +
+        "a Vert.x context");
+    }
+    return ctx;
+  }
+
+  /**
+   * Create a new cache
+   */
+  QueryResultCache() {
+    this(getCurrentContext().config().getLong(ConfigConstants.HTTP_RESULT_CACHE_MAX_SIZE,
+            ConfigConstants.DEFAULT_HTTP_RESULT_CACHE_MAX_SIZE),
+        getCurrentContext().config().getLong(ConfigConstants.HTTP_RESULT_CACHE_MAX_ENTRY_SIZE,
+            ConfigConstants.DEFAULT_HTTP_RESULT_CACHE_MAX_ENTRY_SIZE));
+  }
+
+  /**
+   * Create a new cache and listen to changes of the index. Must be called
+   * from within a Vert.x context.
+   * @param maximumSize the cache's maximum size in bytes
+   * @param maximumEntrySize the maximum size of a single result in bytes
+   */
+  QueryResultCache(long maximumSize, long maximumEntrySize) {
+    this.maximumSize = maximumSize;
+    this.maximumEntrySize = Math.min(maximumSize, maximumEntrySize);
+
+    Vertx vertx = getCurrentContext().owner();
+    vertx.eventBus().consumer(AddressConstants.INDEXER_CHANGED, msg -> {
+      invalidate();
+      synchronized (this) {
+        if (refreshTimerId != -1) {
+          vertx.cancelTimer(refreshTimerId);
+        }
+        refreshTimerId = vertx.setTimer(REFRESH_DELAY_MILLIS, id -> {
+          synchronized (this) {
+            refreshTimerId = -1;
+          }
+          invalidate();
+        });
+      }
+    });
+  }
+
+  /**
+   * Gets the singleton instance of this class. Must be called from within a
+   * Vert.x context.
+   * @return the singleton instance
+   * @throws RuntimeException if the method was not called from within a
+   * Vert.x context
+   */
+  public static QueryResultCache getInstance() {
+    return LazyHolder.INSTANCE;
+  }
+
+  /**
+   * Get the current generation. Call this method before the query is
+   * executed and pass the value to {@link #put(String, long, Buffer)}.
+   * @return the generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Get a weak ETag for results of the given generation
+   * @param generation the generation
+   * @return the ETag
+   */
+  public String getETag(long generation) {
+    return "W/\"" + epoch + "-" + generation + "\"";
+  }
+
+  /**
+   * Get the maximum size of a result that can be added to the cache
+   * @return the size in bytes
+   */
+  public long getMaximumEntrySize() {
+    return maximumEntrySize;
+  }
+
+  /**
+   * Add a result to the cache. Do nothing if the result is too large or
+   * if the index has changed since the given generation.
+   * @param key the result's key
+   * @param generation the generation at the time the query was executed
+   * @param result the merged result
+   * @return true if the result has been added
+   */
+  public synchronized boolean put(String key, long generation, Buffer result) {
+    int length = result.length();
+    if (generation != this.generation || length > maximumEntrySize) {
+      return false;
+    }
+
+    remove(key);
+    Iterator<Entry> it = entries.values().iterator();
+    while (size + length > maximumSize && it.hasNext()) {
+      Entry e = it.next();
+      it.remove();
+      size -= e.length;
+      e.data.release();
+    }
+
+    ByteBuf src = result.getByteBuf();
+    ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+    buf.writeBytes(src, src.readerIndex(), length);
+    entries.put(key, new Entry(buf, length, generation));
+    size += length;
+    return true;
+  }
+
+  /**
+   * Get a result from the cache
+   * @param key the result's key
+   * @return the result or {@code null} if it was not found in the cache or
+   * if it was outdated
+   */
+  public synchronized Buffer get(String key) {
+    Entry e = entries.get(key);
+    if (e == null || e.generation != generation) {
+      remove(key);
+      return null;
+    }
+    byte[] bytes = new byte[e.length];
+    e.data.getBytes(0, bytes);
+    return Buffer.buffer(bytes);
+  }
+
+  /**
+   * Remove a result from the cache. Must be called while holding the lock.
+   * @param key the result's key
+   */
+  private void remove(String key) {
+    Entry e = entries.remove(key);
+    if (e != null) {
+      size -= e.length;
+      e.data.release();
+    }
+  }
+
+  /**
+   * Increment the generation and remove all results from the cache
+   */
+  public synchronized void invalidate() {
+    generation++;
+    for (Entry e : entries.values()) {
+      e.data.release();
+    }
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Get the cache's size in bytes
+   * @return the size
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+}
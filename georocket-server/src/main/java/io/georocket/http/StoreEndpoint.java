@@ -1,26 +1,41 @@
 package io.georocket.http;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import io.georocket.ServerAPIException;
 import io.georocket.constants.AddressConstants;
 import io.georocket.constants.ConfigConstants;
+import io.georocket.index.IndexerFactory;
+import io.georocket.output.ChunkMetaSpool;
 import io.georocket.output.Merger;
 import io.georocket.output.MultiMerger;
+import io.georocket.query.DefaultQueryCompiler;
+import io.georocket.storage.AsyncCursor;
 import io.georocket.storage.ChunkMeta;
+import io.georocket.storage.ChunkReadAhead;
+import io.georocket.storage.ChunkReadStream;
 import io.georocket.storage.DeleteMeta;
 import io.georocket.storage.RxAsyncCursor;
 import io.georocket.storage.RxStore;
 import io.georocket.storage.RxStoreCursor;
 import io.georocket.storage.StoreCursor;
 import io.georocket.storage.StoreFactory;
+import io.georocket.storage.ValueCount;
 import io.georocket.tasks.ReceivingTask;
 import io.georocket.tasks.TaskError;
+import io.georocket.tasks.TaskVerticle;
+import io.georocket.util.FilteredServiceLoader;
 import io.georocket.util.HttpException;
 import io.georocket.util.MimeTypeUtils;
+import io.georocket.util.io.BufferWriteStream;
+import io.georocket.util.io.EventBusWriteStream;
+import io.georocket.util.io.GzipWriteStream;
+import io.georocket.util.io.RecordingWriteStream;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.file.AsyncFile;
 import io.vertx.core.file.FileSystem;
 import io.vertx.core.file.OpenOptions;
@@ -31,6 +46,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.core.streams.Pump;
+import io.vertx.core.streams.WriteStream;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.rx.java.ObservableFuture;
@@ -78,10 +94,48 @@ public class StoreEndpoint implements Endpoint {
    * the missing chunks (e.g. with optimistic merging disabled) or not.</p>
    */
   private static String TRAILER_UNMERGED_CHUNKS = "GeoRocket-Unmerged-Chunks";
+
+  /**
+   * The maximum number of bytes of an uploaded file to keep in memory while
+   * trying to determine its content type
+   */
+  private static final int MAX_SNIFF_BYTES = 1024 * 100;
   
   private Vertx vertx;
   private RxStore store;
   private String storagePath;
+  private int readAheadMaxChunks;
+  private long readAheadMaxBytes;
+
+  /**
+   * The maximum size of chunk metadata kept in memory while a search result
+   * is merged. Larger results are spooled to a file.
+   */
+  private long mergeSpoolMaxMemorySize;
+
+  /**
+   * {@code true} if uploaded files should be imported while they are being
+   * received
+   */
+  private boolean streamingImport;
+
+  /**
+   * The minimum size of an uploaded file in bytes to be split in parallel or
+   * a negative value if parallel splitting is disabled
+   */
+  private long parallelSplittingMinFileSize;
+
+  /**
+   * The cache for merged search results (may be {@code null} if the cache
+   * is disabled)
+   */
+  private QueryResultCache resultCache;
+
+  /**
+   * Compiles search queries to create keys for the result cache (may be
+   * {@code null} if the cache is disabled)
+   */
+  private DefaultQueryCompiler queryCompiler;
 
   @Override
   public String getMountPoint() {
@@ -93,8 +147,32 @@ public class StoreEndpoint implements Endpoint {
     this.vertx = vertx;
 
     store = new RxStore(StoreFactory.createStore(vertx));
-    storagePath = vertx.getOrCreateContext().config()
-      .getString(ConfigConstants.STORAGE_FILE_PATH);
+    JsonObject config = vertx.getOrCreateContext().config();
+    storagePath = config.getString(ConfigConstants.STORAGE_FILE_PATH);
+    readAheadMaxChunks = config.getInteger(
+        ConfigConstants.STORAGE_READ_AHEAD_MAX_CHUNKS,
+        StoreFactory.getDefaultReadAheadMaxChunks(vertx));
+    readAheadMaxBytes = config.getLong(
+        ConfigConstants.STORAGE_READ_AHEAD_MAX_BYTES,
+        ConfigConstants.DEFAULT_STORAGE_READ_AHEAD_MAX_BYTES);
+    mergeSpoolMaxMemorySize = config.getLong(
+        ConfigConstants.HTTP_MERGE_SPOOL_MAX_MEMORY_SIZE,
+        ConfigConstants.DEFAULT_HTTP_MERGE_SPOOL_MAX_MEMORY_SIZE);
+    streamingImport = config.getBoolean(
+        ConfigConstants.IMPORTER_STREAMING_ENABLED,
+        ConfigConstants.DEFAULT_IMPORTER_STREAMING_ENABLED);
+    parallelSplittingMinFileSize = -1;
+    if (config.getBoolean(ConfigConstants.IMPORTER_PARALLEL_SPLITTING_ENABLED,
+        ConfigConstants.DEFAULT_IMPORTER_PARALLEL_SPLITTING_ENABLED)) {
+      parallelSplittingMinFileSize = config.getLong(
+          ConfigConstants.IMPORTER_PARALLEL_SPLITTING_MIN_FILE_SIZE,
+          ConfigConstants.DEFAULT_IMPORTER_PARALLEL_SPLITTING_MIN_FILE_SIZE);
+    }
+    if (config.getBoolean(ConfigConstants.HTTP_RESULT_CACHE_ENABLED,
+        ConfigConstants.DEFAULT_HTTP_RESULT_CACHE_ENABLED)) {
+      resultCache = QueryResultCache.getInstance();
+      queryCompiler = createQueryCompiler(config);
+    }
 
     Router router = Router.router(vertx);
     router.get("/*").handler(this::onGet);
@@ -105,6 +183,28 @@ public class StoreEndpoint implements Endpoint {
     return router;
   }
 
+  /**
+   * Create a query compiler that normalizes search queries to keys for the
+   * result cache
+   * @param config the configuration
+   * @return the query compiler
+   */
+  private DefaultQueryCompiler createQueryCompiler(JsonObject config) {
+    String cls = config.getString(ConfigConstants.QUERY_COMPILER_CLASS,
+      DefaultQueryCompiler.class.getName());
+    DefaultQueryCompiler result;
+    try {
+      result = (DefaultQueryCompiler)Class.forName(cls).newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException("Could not create a DefaultQueryCompiler", e);
+    }
+    result.setQueryCompilers(ImmutableList.copyOf(
+        FilteredServiceLoader.load(IndexerFactory.class)));
+    result.setCacheSize(config.getLong(ConfigConstants.QUERY_CACHE_SIZE,
+      ConfigConstants.DEFAULT_QUERY_CACHE_SIZE));
+    return result;
+  }
+
   /**
    * Create a new merger
    * @param ctx routing context
@@ -117,55 +217,123 @@ public class StoreEndpoint implements Endpoint {
   }
 
   /**
-   * Initialize the given merger. Perform a search using the given search string
-   * and pass all chunk metadata retrieved to the merger.
+   * Convert a cursor to an observable emitting chunk metadata and
+   * chunk paths
+   * @param data the cursor
+   * @return the observable
+   */
+  private Observable<Pair<ChunkMeta, String>> toObservable(Single<StoreCursor> data) {
+    return data
+      .map(RxStoreCursor::new)
+      .flatMapObservable(RxStoreCursor::toObservable);
+  }
+
+  /**
+   * Initialize the given merger. Pass all chunk metadata retrieved from the
+   * given cursor to the merger and save the metadata and the chunk paths
+   * to the given spool, so they can later be replayed without performing
+   * the search again.
    * @param merger the merger to initialize
    * @param data data to use for the initialization
+   * @param spool the spool to write the retrieved chunk metadata to
    * @return a Completable that will complete when the merger has been
    * initialized with all results
    */
-  private Completable initializeMerger(Merger<ChunkMeta> merger, Single<StoreCursor> data) {
-    return data
-      .map(RxStoreCursor::new)
-      .flatMapObservable(RxStoreCursor::toObservable)
-      .map(Pair::getLeft)
-      .flatMapCompletable(merger::init)
+  private Completable initializeMerger(Merger<ChunkMeta> merger,
+      Single<StoreCursor> data, ChunkMetaSpool spool) {
+    return toObservable(data)
+      .concatMap(p -> merger.init(p.getLeft())
+        .andThen(spool.write(p.getLeft(), p.getRight()))
+        .toObservable())
       .toCompletable();
   }
   
   /**
-   * Perform a search and merge all retrieved chunks using the given merger
+   * Merge a single chunk using the given merger and close it afterwards. Wait
+   * until the response's write queue has been drained before the next chunk
+   * is processed.
+   * @param merger the merger
+   * @param crs the chunk to merge
+   * @param meta the chunk's metadata
+   * @param out the response to write the merged chunk to
+   * @return a single emitting a pair whose left value is the number of merged
+   * chunks and whose right value is the number of chunks not accepted by the
+   * merger
+   */
+  private Single<Pair<Long, Long>> mergeChunk(Merger<ChunkMeta> merger,
+      ChunkReadStream crs, ChunkMeta meta, WriteStream<Buffer> out) {
+    return merger.merge(crs, meta, out)
+      .toSingleDefault(Pair.of(1L, 0L)) // left: count, right: not_accepted
+      .onErrorResumeNext(t -> {
+        if (t instanceof IllegalStateException) {
+          // Chunk cannot be merged. maybe it's a new one that has
+          // been added after the merger was initialized. Just
+          // ignore it, but emit a warning later
+          return Single.just(Pair.of(0L, 1L));
+        }
+        return Single.error(t);
+      })
+      .doAfterTerminate(() -> {
+        // don't forget to close the chunk!
+        crs.close();
+      })
+      .flatMap(r -> {
+        if (!out.writeQueueFull()) {
+          return Single.just(r);
+        }
+        ObservableFuture<Void> o = RxHelper.observableFuture();
+        Handler<AsyncResult<Void>> handler = o.toHandler();
+        out.drainHandler(v -> {
+          out.drainHandler(null);
+          handler.handle(Future.succeededFuture());
+        });
+        return o.toSingle().map(v -> r);
+      });
+  }
+
+  /**
+   * Merge all given chunks using the given merger
    * @param merger the merger
-   * @param data Data to merge into the response
-   * @param out the response to write the merged chunks to
+   * @param data chunk metadata and paths of the chunks to merge
+   * @param out the stream to write the merged chunks to
+   * @param response the HTTP response
    * @param trailersAllowed {@code true} if the HTTP client accepts trailers
-   * @return a single that will emit one item when all chunks have been merged
+   * @param sliced {@code true} if the chunks belong to a slice of the
+   * result. In this case, neither the beginning nor the end of the merged
+   * document are written.
+   * @return a single that will emit the number of chunks that could not be
+   * merged when all chunks have been merged
    */
-  private Completable doMerge(Merger<ChunkMeta> merger, Single<StoreCursor> data,
-      HttpServerResponse out, boolean trailersAllowed) {
-    return data
-      .map(RxStoreCursor::new)
-      .flatMapObservable(RxStoreCursor::toObservable)
-      .flatMapSingle(p -> store.rxGetOne(p.getRight())
-        .flatMap(crs -> merger.merge(crs, p.getLeft(), out)
-          .toSingleDefault(Pair.of(1L, 0L)) // left: count, right: not_accepted
-          .onErrorResumeNext(t -> {
-            if (t instanceof IllegalStateException) {
-              // Chunk cannot be merged. maybe it's a new one that has
-              // been added after the merger was initialized. Just
-              // ignore it, but emit a warning later
-              return Single.just(Pair.of(0L, 1L));
-            }
-            return Single.error(t);
-          })
-          .doAfterTerminate(() -> {
-            // don't forget to close the chunk!
-            crs.close();
-          })), false, 1 /* write only one chunk concurrently to the output stream */)
+  private Single<Long> doMerge(Merger<ChunkMeta> merger,
+      Observable<Pair<ChunkMeta, String>> data, WriteStream<Buffer> out,
+      HttpServerResponse response, boolean trailersAllowed, boolean sliced) {
+    if (sliced) {
+      // the client gets the beginning and the end of the document
+      // with a separate envelope request
+      merger.skipHeader();
+    }
+
+    Observable<Pair<Long, Long>> merged;
+    if (readAheadMaxChunks > 1) {
+      // fetch the next chunks while the current one is being merged
+      ChunkReadAhead readAhead = new ChunkReadAhead(store,
+          readAheadMaxChunks, readAheadMaxBytes);
+      merged = readAhead.fetch(data)
+        .concatMap(p -> mergeChunk(merger, p.getRight(), p.getLeft(), out)
+          .toObservable());
+    } else {
+      merged = data
+        .flatMapSingle(p -> store.rxGetOne(p.getRight())
+          .flatMap(crs -> mergeChunk(merger, crs, p.getLeft(), out)),
+          false, 1 /* write only one chunk concurrently to the output stream */);
+    }
+
+    return merged
       .defaultIfEmpty(Pair.of(0L, 0L))
       .reduce((p1, p2) -> Pair.of(p1.getLeft() + p2.getLeft(),
           p1.getRight() + p2.getRight()))
-      .flatMapCompletable(p -> {
+      .toSingle()
+      .flatMap(p -> {
         long count = p.getLeft();
         long notaccepted = p.getRight();
         if (notaccepted > 0) {
@@ -177,24 +345,31 @@ public class StoreEndpoint implements Endpoint {
               + "just repeat the request.");
         }
         if (trailersAllowed) {
-          out.putTrailer(TRAILER_UNMERGED_CHUNKS, String.valueOf(notaccepted));
+          response.putTrailer(TRAILER_UNMERGED_CHUNKS, String.valueOf(notaccepted));
+        }
+        if (sliced) {
+          // a slice may be empty
+          return Single.just(notaccepted);
         }
         if (count > 0) {
           merger.finish(out);
-          return Completable.complete();
+          return Single.just(notaccepted);
         } else {
-          return Completable.error(new FileNotFoundException("Not Found"));
+          return Single.error(new FileNotFoundException("Not Found"));
         }
-      })
-      .toCompletable();
+      });
   }
 
   /**
    * Read the context, select the right StoreCursor and set the response header.
-   * For the first call to this method within a request the <code>preview</code>
-   * parameter must equal <code>true</code> and for the second one (if there
-   * is one) the parameter must equal <code>false</code>. This method must not
-   * be called more than two times within a request.
+   * If the cursor is used to initialize the merger, the <code>preview</code>
+   * parameter must equal <code>true</code>. If the chunks are merged directly
+   * without initializing the merger (i.e. if optimistic merging is enabled),
+   * the parameter must equal <code>false</code>. If this method is called
+   * two times within a request, the <code>preview</code> parameter must equal
+   * <code>true</code> for the first call and <code>false</code> for the
+   * second one. This method must not be called more than two times within
+   * a request.
    * @param context the routing context
    * @param preview <code>true</code> if the cursor should be used to generate
    * a preview or to initialize the merger
@@ -273,15 +448,26 @@ public class StoreEndpoint implements Endpoint {
     String search = request.getParam("search");
     String property = request.getParam("property");
     String attribute = request.getParam("attribute");
+    boolean distinct = BooleanUtils.toBoolean(request.getParam("distinct"));
 
     if (property != null && attribute != null) {
       response
         .setStatusCode(400)
         .end("You can only get the values of a property or an attribute, but not both");
     } else if (property != null) {
-      getPropertyValues(search, path, property, response);
+      if (distinct) {
+        writeDistinctValues(store.rxGetDistinctPropertyValues(search, path,
+            property), response);
+      } else {
+        getPropertyValues(search, path, property, response);
+      }
     } else if (attribute != null) {
-      getAttributeValues(search, path, attribute, response);
+      if (distinct) {
+        writeDistinctValues(store.rxGetDistinctAttributeValues(search, path,
+            attribute), response);
+      } else {
+        getAttributeValues(search, path, attribute, response);
+      }
     } else {
       getChunks(context);
     }
@@ -306,6 +492,119 @@ public class StoreEndpoint implements Endpoint {
     return (te != null && te.toLowerCase().contains("trailers"));
   }
 
+  /**
+   * Get the value of an optional integer request parameter
+   * @param request the HTTP request
+   * @param name the parameter's name
+   * @param defaultValue the value to return if the parameter is not set
+   * @return the parameter's value
+   * @throws NumberFormatException if the parameter is not a valid integer
+   */
+  private static int getIntParam(HttpServerRequest request, String name,
+      int defaultValue) {
+    String value = request.getParam(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    return Integer.parseInt(value);
+  }
+
+  /**
+   * Checks if the client accepts GZIP-compressed responses
+   * @param request the HTTP request
+   * @return {@code true} if the client accepts GZIP, {@code false} otherwise
+   */
+  private static boolean isGzipAccepted(HttpServerRequest request) {
+    String ae = request.getHeader("Accept-Encoding");
+    return (ae != null && ae.toLowerCase().contains("gzip"));
+  }
+
+  /**
+   * Create a key for the result cache. The key consists of the compiled
+   * search query (which also contains the path), so equivalent queries
+   * share the same key, and the name of the merger.
+   * @param context the routing context
+   * @param merger the merger that will be used to merge the result
+   * @return the key or {@code null} if the query could not be compiled
+   */
+  private String makeCacheKey(RoutingContext context, Merger<ChunkMeta> merger) {
+    String path = getEndpointPath(context);
+    String search = context.request().getParam("search");
+    try {
+      return merger.getClass().getName() + ":" +
+          queryCompiler.compileQuery(search, path).encode();
+    } catch (RuntimeException e) {
+      // the query is invalid. let the store report the error.
+      return null;
+    }
+  }
+
+  /**
+   * Checks if the client already has the current version of the result
+   * @param request the HTTP request
+   * @param etag the result's current ETag
+   * @return {@code true} if the ETag matches one of those given in the
+   * <code>If-None-Match</code> header
+   */
+  private static boolean isNotModified(HttpServerRequest request, String etag) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    String opaqueTag = StringUtils.removeStart(etag, "W/");
+    for (String t : Splitter.on(',').trimResults().omitEmptyStrings()
+        .split(ifNoneMatch)) {
+      // use weak comparison
+      if (t.equals("*") || StringUtils.removeStart(t, "W/").equals(opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Respond with the beginning and the end of the document that results
+   * from merging the slices of all chunks matching the specified query and
+   * path. Initialize the merger with the metadata of all chunks but do not
+   * read any chunk. Clients that download a result in slices make this
+   * request once and put the merged slices in between.
+   * @param context the routing context
+   */
+  private void getEnvelope(RoutingContext context) {
+    HttpServerRequest request = context.request();
+    HttpServerResponse response = context.response();
+
+    // merge the same way as the slices
+    Merger<ChunkMeta> merger = createMerger(context, true);
+    String path = getEndpointPath(context);
+    String search = request.getParam("search");
+    toObservable(store.rxGet(search, path))
+      .concatMap(p -> merger.init(p.getLeft()).andThen(Observable.just(p)))
+      .count()
+      .toSingle()
+      .subscribe(count -> {
+        if (count == 0) {
+          fail(response, new FileNotFoundException("Not Found"));
+          return;
+        }
+        BufferWriteStream header = new BufferWriteStream();
+        merger.writeHeader(header);
+        BufferWriteStream footer = new BufferWriteStream();
+        merger.finish(footer);
+        response
+          .putHeader("Content-Type", "application/json")
+          .putHeader("X-Total-Hits", String.valueOf(count))
+          .end(new JsonObject()
+            .put("header", header.getBuffer().toString())
+            .put("footer", footer.getBuffer().toString())
+            .put("separator", merger.getSeparator())
+            .encode());
+      }, err -> {
+        log.error("Could not compute envelope", err);
+        fail(response, err);
+      });
+  }
+
   /**
    * Retrieve all chunks matching the specified query and path
    * @param context the routing context
@@ -314,41 +613,193 @@ public class StoreEndpoint implements Endpoint {
     HttpServerRequest request = context.request();
     HttpServerResponse response = context.response();
 
-    // Our responses must always be chunked because we cannot calculate
-    // the exact content-length beforehand. We perform two searches, one to
-    // initialize the merger and one to do the actual merge. The problem is
-    // that the result set may change between these two searches and so we
-    // cannot calculate the content-length just from looking at the result
-    // from the first search.
-    response.setChunked(true);
+    int slice;
+    int slices;
+    int compressionLevel;
+    try {
+      slice = getIntParam(request, "slice", 0);
+      slices = getIntParam(request, "slices", 1);
+      compressionLevel = getIntParam(request, "compressionLevel", -1);
+    } catch (NumberFormatException e) {
+      response
+        .setStatusCode(400)
+        .end("Parameters slice, slices, and compressionLevel must be integers");
+      return;
+    }
+
+    if (slices < 1 || slice < 0 || slice >= slices) {
+      response
+        .setStatusCode(400)
+        .end("Invalid slice " + slice + " of " + slices + " slices");
+      return;
+    }
+
+    boolean scrolling = BooleanUtils.toBoolean(request.getParam("scroll")) ||
+        request.getParam("scrollId") != null;
+    boolean envelope = BooleanUtils.toBoolean(request.getParam("envelope"));
+    if ((slices > 1 || envelope) &&
+        (scrolling || isOptimisticMerging(request))) {
+      response
+        .setStatusCode(400)
+        .end("Slicing cannot be combined with scrolling or optimistic merging");
+      return;
+    }
+
+    if (request.getParam("compressionLevel") != null &&
+        (compressionLevel < 1 || compressionLevel > 9)) {
+      response
+        .setStatusCode(400)
+        .end("Compression level must be between 1 and 9");
+      return;
+    }
+
+    if (envelope) {
+      getEnvelope(context);
+      return;
+    }
 
     boolean optimisticMerging = isOptimisticMerging(request);
     boolean isTrailerAccepted = isTrailerAccepted(request);
+    Merger<ChunkMeta> merger = createMerger(context,
+        optimisticMerging || slices > 1);
+
+    // look for the merged result in the cache if the request always
+    // returns the whole result
+    String cacheKey = null;
+    long generation = 0;
+    if (resultCache != null && slices == 1 && !scrolling &&
+        !optimisticMerging) {
+      cacheKey = makeCacheKey(context, merger);
+    }
+    if (cacheKey != null) {
+      generation = resultCache.getGeneration();
+      String etag = resultCache.getETag(generation);
+      response.putHeader("ETag", etag);
+      if (isNotModified(request, etag)) {
+        response
+          .setStatusCode(304)
+          .end();
+        return;
+      }
+    }
+
+    // compress the response on worker threads if the client has asked
+    // for a specific compression level. the HTTP server will not compress
+    // the response again because the content encoding is already set.
+    WriteStream<Buffer> responseStream;
+    if (compressionLevel > 0 && isGzipAccepted(request)) {
+      response.putHeader("Content-Encoding", "gzip");
+      responseStream = new GzipWriteStream(response, compressionLevel);
+    } else {
+      responseStream = response;
+    }
+
+    // Our responses must always be chunked because we cannot calculate
+    // the exact content-length beforehand. The merger needs to know the
+    // metadata of all chunks before it can merge the first one, but we do
+    // not want to load all chunks twice.
+    response.setChunked(true);
 
     if (isTrailerAccepted) {
       response.putHeader("Trailer", TRAILER_UNMERGED_CHUNKS);
     }
 
-    // perform two searches: first initialize the merger and then
-    // merge all retrieved chunks
-    Merger<ChunkMeta> merger = createMerger(context, optimisticMerging);
+    RecordingWriteStream recorder = null;
+    if (cacheKey != null) {
+      Buffer cached = resultCache.get(cacheKey);
+      if (cached != null) {
+        if (isTrailerAccepted) {
+          response.putTrailer(TRAILER_UNMERGED_CHUNKS, "0");
+        }
+        responseStream.write(cached);
+        responseStream.end();
+        return;
+      }
+
+      // keep a copy of the merged result so it can be added to the cache
+      recorder = new RecordingWriteStream(responseStream,
+          resultCache.getMaximumEntrySize());
+    }
+    WriteStream<Buffer> out = recorder != null ? recorder : responseStream;
 
     Completable c;
     if (optimisticMerging) {
-      // skip initialization if optimistic merging is enabled
-      c = Completable.complete();
+      // skip initialization if optimistic merging is enabled and
+      // merge retrieved chunks directly
+      c = doMerge(merger, toObservable(prepareCursor(context, false)),
+          out, response, isTrailerAccepted, false).toCompletable();
+    } else if (slices > 1) {
+      // only search the requested slice. initialize the merger with its
+      // chunks and spool the results, then replay them to merge the chunks.
+      // the merger was created for optimistic merging, so GeoJSON chunks
+      // are always wrapped in a FeatureCollection and all slices are
+      // consistent with each other and with the envelope.
+      String path = getEndpointPath(context);
+      String search = request.getParam("search");
+      c = ChunkMetaSpool.create(vertx, storagePath + "/tmp",
+          mergeSpoolMaxMemorySize).flatMap(spool ->
+        store.rxGet(search, path, slice, slices)
+          .flatMap(cursor -> {
+            response.putHeader("X-Hits", String.valueOf(
+                cursor.getInfo().getTotalHits()));
+            return initializeMerger(merger, Single.just(cursor), spool)
+              .andThen(Single.defer(() -> {
+                // tell the client how to concatenate the slices
+                response.putHeader("X-Slice-Separator", merger.getSeparator());
+                return doMerge(merger, spool.replay(), out, response,
+                    isTrailerAccepted, true);
+              }));
+          })
+          .onErrorResumeNext(err -> spool.delete().andThen(Single.<Long>error(err)))
+          .flatMap(notaccepted -> spool.delete().toSingleDefault(notaccepted)))
+        .toCompletable();
     } else {
-      c = initializeMerger(merger, prepareCursor(context, true));
+      // perform only one search: initialize the merger and spool the
+      // results, then replay the spooled results to merge the chunks
+      Single<Long> merged = ChunkMetaSpool.create(vertx, storagePath + "/tmp",
+          mergeSpoolMaxMemorySize).flatMap(spool ->
+        initializeMerger(merger, prepareCursor(context, true), spool)
+          .doOnCompleted(() -> {
+            // the client expects a scrollId consisting of two parts (one
+            // for the preview and one for the real query). we only
+            // performed one query, so both parts are the same.
+            String scrollId = response.headers().get("X-Scroll-Id");
+            if (scrollId != null) {
+              response.putHeader("X-Scroll-Id", scrollId + ":" + scrollId);
+            }
+          })
+          .andThen(Single.defer(() -> doMerge(merger, spool.replay(),
+              out, response, isTrailerAccepted, false)))
+          .onErrorResumeNext(err -> spool.delete().andThen(Single.<Long>error(err)))
+          .flatMap(notaccepted -> spool.delete().toSingleDefault(notaccepted)));
+
+      if (recorder != null) {
+        // only cache complete results that are small enough
+        String key = cacheKey;
+        long gen = generation;
+        RecordingWriteStream r = recorder;
+        merged = merged.doOnSuccess(notaccepted -> {
+          Buffer result = r.getRecording();
+          if (notaccepted == 0 && result != null) {
+            resultCache.put(key, gen, result);
+          }
+        });
+      }
+
+      c = merged.toCompletable();
     }
 
-    c.andThen(Completable.defer(() -> doMerge(merger, prepareCursor(context, false),
-        response, isTrailerAccepted)))
-      .subscribe(response::end, err -> {
-        if (!(err instanceof FileNotFoundException)) {
-          log.error("Could not perform query", err);
-        }
-        fail(response, err);
-      });
+    c.subscribe(out::end, err -> {
+      if (!(err instanceof FileNotFoundException)) {
+        log.error("Could not perform query", err);
+      }
+      if (!response.headWritten()) {
+        // the error message is not compressed and must not be revalidated
+        response.headers().remove("Content-Encoding");
+        response.headers().remove("ETag");
+      }
+      fail(response, err);
+    });
   }
 
   /**
@@ -413,6 +864,36 @@ public class StoreEndpoint implements Endpoint {
           .end());
   }
 
+  /**
+   * Write distinct values and the number of chunks having each value as a
+   * JSON array to the response
+   * @param values a single emitting a cursor over the values
+   * @param response the http response
+   */
+  private void writeDistinctValues(Single<AsyncCursor<ValueCount>> values,
+      HttpServerResponse response) {
+    final Boolean[] first = {true};
+    response.setChunked(true);
+    response.write("[");
+
+    values
+      .flatMapObservable(x -> new RxAsyncCursor<>(x).toObservable())
+      .subscribe(
+        x -> {
+          if (first[0]) {
+            first[0] = false;
+          } else {
+            response.write(",");
+          }
+          response.write(x.toJsonObject().encode());
+        },
+        err -> fail(response, err),
+        () -> response
+          .write("]")
+          .setStatusCode(200)
+          .end());
+  }
+
   /**
    * Try to detect the content type of a file
    * @param filepath the absolute path to the file to analyse
@@ -496,6 +977,12 @@ public class StoreEndpoint implements Endpoint {
     long startTime = System.currentTimeMillis();
     this.onReceivingFileStarted(correlationId, startTime);
 
+    if (shouldStream(request)) {
+      importStreaming(request, filename, layer, tags, properties,
+          fallbackCRSString, correlationId, startTime);
+      return;
+    }
+
     // create directory for incoming files
     FileSystem fs = vertx.fileSystem();
     ObservableFuture<Void> observable = RxHelper.observableFuture();
@@ -524,26 +1011,11 @@ public class StoreEndpoint implements Endpoint {
         return pumpObservable;
       })
       .flatMap(v -> {
-        String contentTypeHeader = request.getHeader("Content-Type");
-        String mimeType = null;
-
-        try {
-          ContentType contentType = ContentType.parse(contentTypeHeader);
-          mimeType = contentType.getMimeType();
-        } catch (ParseException | IllegalArgumentException ex) {
-          // mimeType already null
-        }
-
-        String contentEncoding = request.getHeader("Content-Encoding");
-        boolean gzip = false;
-        if ("gzip".equals(contentEncoding)) {
-          gzip = true;
-        }
+        String mimeType = getMimeType(request);
+        boolean gzip = "gzip".equals(request.getHeader("Content-Encoding"));
 
         // detect content type of file to import
-        if (mimeType == null || mimeType.trim().isEmpty() ||
-            mimeType.equals("application/octet-stream") ||
-            mimeType.equals("application/x-www-form-urlencoded")) {
+        if (isGenericMimeType(mimeType)) {
           // fallback: if the client has not sent a Content-Type or if it's
           // a generic one, then try to guess it
           log.debug("Mime type '" + mimeType + "' is invalid or generic. "
@@ -559,33 +1031,11 @@ public class StoreEndpoint implements Endpoint {
         long duration = System.currentTimeMillis() - startTime;
         this.onReceivingFileFinished(correlationId, duration, null);
 
-        String contentEncoding = request.getHeader("Content-Encoding");
-
-        // run importer
-        JsonObject msg = new JsonObject()
-            .put("filename", filename)
-            .put("layer", layer)
-            .put("contentType", detectedContentType)
-            .put("correlationId", correlationId)
-            .put("contentEncoding", contentEncoding);
-
-        if (tags != null) {
-          msg.put("tags", new JsonArray(tags));
-        }
-
-        if (!properties.isEmpty()) {
-          msg.put("properties", new JsonObject(properties));
-        }
-
-        if (fallbackCRSString != null) {
-          msg.put("fallbackCRSString", fallbackCRSString);
-        }
+        JsonObject msg = makeImportMessage(request, filename, layer,
+            detectedContentType, correlationId, tags, properties,
+            fallbackCRSString);
 
-        request.response()
-          .setStatusCode(202) // Accepted
-          .putHeader("X-Correlation-Id", correlationId)
-          .setStatusMessage("Accepted file - importing in progress")
-          .end();
+        respondAccepted(request.response(), correlationId);
 
         // run importer
         vertx.eventBus().send(AddressConstants.IMPORTER_IMPORT, msg);
@@ -598,11 +1048,254 @@ public class StoreEndpoint implements Endpoint {
       });
   }
 
+  /**
+   * Get the mime type from the Content-Type header of the given request
+   * @param request the request
+   * @return the mime type or <code>null</code> if the header is missing or
+   * invalid
+   */
+  private static String getMimeType(HttpServerRequest request) {
+    String contentTypeHeader = request.getHeader("Content-Type");
+    try {
+      return ContentType.parse(contentTypeHeader).getMimeType();
+    } catch (ParseException | IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Check if the given mime type is missing or too generic, so the
+   * content type of an uploaded file has to be guessed
+   * @param mimeType the mime type (may be <code>null</code>)
+   * @return true if the content type has to be guessed
+   */
+  private static boolean isGenericMimeType(String mimeType) {
+    return mimeType == null || mimeType.trim().isEmpty() ||
+        mimeType.equals("application/octet-stream") ||
+        mimeType.equals("application/x-www-form-urlencoded");
+  }
+
+  /**
+   * Create a message telling the importer to import a file
+   * @param request the HTTP request containing the file
+   * @param filename the name of the file to import
+   * @param layer the layer where the file should be stored
+   * @param contentType the file's content type
+   * @param correlationId a unique identifier for the import process
+   * @param tags the tags to attach to the file (may be <code>null</code>)
+   * @param properties the properties to attach to the file
+   * @param fallbackCRSString the CRS which should be used if the file does
+   * not specify one (may be <code>null</code>)
+   * @return the message
+   */
+  private static JsonObject makeImportMessage(HttpServerRequest request,
+      String filename, String layer, String contentType, String correlationId,
+      List<String> tags, Map<String, Object> properties,
+      String fallbackCRSString) {
+    JsonObject msg = new JsonObject()
+        .put("filename", filename)
+        .put("layer", layer)
+        .put("contentType", contentType)
+        .put("correlationId", correlationId)
+        .put("contentEncoding", request.getHeader("Content-Encoding"));
+
+    if (tags != null) {
+      msg.put("tags", new JsonArray(tags));
+    }
+
+    if (!properties.isEmpty()) {
+      msg.put("properties", new JsonObject(properties));
+    }
+
+    if (fallbackCRSString != null) {
+      msg.put("fallbackCRSString", fallbackCRSString);
+    }
+
+    return msg;
+  }
+
+  /**
+   * Tell the client that the file has been accepted
+   * @param response the HTTP response
+   * @param correlationId a unique identifier for the import process
+   */
+  private static void respondAccepted(HttpServerResponse response,
+      String correlationId) {
+    response
+      .setStatusCode(202) // Accepted
+      .putHeader("X-Correlation-Id", correlationId)
+      .setStatusMessage("Accepted file - importing in progress")
+      .end();
+  }
+
+  /**
+   * Get the size of the request body from the Content-Length header
+   * @param request the request
+   * @return the size or -1 if it is unknown
+   */
+  private static long getContentLength(HttpServerRequest request) {
+    String contentLength = request.getHeader("Content-Length");
+    if (contentLength == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentLength.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Check if the file in the given request should be imported while it is
+   * being received or if it should be written to the 'incoming' folder
+   * first. Files that can be split in parallel have to be written to disk.
+   * @param request the request
+   * @return true if the file should be imported while it is being received
+   */
+  private boolean shouldStream(HttpServerRequest request) {
+    if (!streamingImport) {
+      return false;
+    }
+    String contentEncoding = request.getHeader("Content-Encoding");
+    return parallelSplittingMinFileSize < 0 ||
+        (contentEncoding != null && !contentEncoding.isEmpty()) ||
+        getContentLength(request) < parallelSplittingMinFileSize;
+  }
+
+  /**
+   * Read the first buffers of the given request into memory until the
+   * content type of the uploaded file can be determined. Pause the request
+   * afterwards.
+   * @param request the request
+   * @param gzip true if the uploaded file is compressed with GZIP
+   * @return a single emitting the detected content type and the buffers
+   * read so far
+   */
+  private Single<Pair<String, Buffer>> sniffContentType(
+      HttpServerRequest request, boolean gzip) {
+    ObservableFuture<Pair<String, Buffer>> result = RxHelper.observableFuture();
+    Handler<AsyncResult<Pair<String, Buffer>>> resultHandler = result.toHandler();
+
+    Buffer prefix = Buffer.buffer();
+    Handler<Void> finish = v -> {
+      request.pause();
+      request.handler(null);
+      request.endHandler(null);
+      request.exceptionHandler(null);
+      String mimeType = MimeTypeUtils.detect(prefix.getBytes(), gzip);
+      if (mimeType == null) {
+        log.warn("Could not detect file type. Using application/octet-stream.");
+        mimeType = "application/octet-stream";
+      }
+      resultHandler.handle(Future.succeededFuture(Pair.of(mimeType, prefix)));
+    };
+
+    request.handler(buf -> {
+      prefix.appendBuffer(buf);
+      if (prefix.length() >= MAX_SNIFF_BYTES ||
+          MimeTypeUtils.detect(prefix.getBytes(), gzip) != null) {
+        finish.handle(null);
+      }
+    });
+    request.endHandler(finish);
+    request.exceptionHandler(t -> {
+      request.handler(null);
+      request.endHandler(null);
+      resultHandler.handle(Future.failedFuture(t));
+    });
+    request.resume();
+
+    return result.toSingle();
+  }
+
+  /**
+   * Import the file in the given request while it is being received. Send
+   * the request body to the importer over the event bus. Only read as fast
+   * as the importer can process the data. Respond to the client as soon as
+   * the file has been received completely.
+   * @param request the HTTP request
+   * @param filename the name of the file to import
+   * @param layer the layer where the file should be stored
+   * @param tags the tags to attach to the file (may be <code>null</code>)
+   * @param properties the properties to attach to the file
+   * @param fallbackCRSString the CRS which should be used if the file does
+   * not specify one (may be <code>null</code>)
+   * @param correlationId a unique identifier for the import process
+   * @param startTime the time when the upload has started
+   */
+  private void importStreaming(HttpServerRequest request, String filename,
+      String layer, List<String> tags, Map<String, Object> properties,
+      String fallbackCRSString, String correlationId, long startTime) {
+    HttpServerResponse response = request.response();
+    Handler<AsyncResult<Void>> onFinished = ar -> {
+      if (response.ended()) {
+        return;
+      }
+      long duration = System.currentTimeMillis() - startTime;
+      if (ar.succeeded()) {
+        this.onReceivingFileFinished(correlationId, duration, null);
+        respondAccepted(response, correlationId);
+      } else {
+        this.onReceivingFileFinished(correlationId, duration, ar.cause());
+        fail(response, ar.cause());
+      }
+    };
+
+    String mimeType = getMimeType(request);
+    Single<Pair<String, Buffer>> contentType;
+    if (isGenericMimeType(mimeType)) {
+      log.debug("Mime type '" + mimeType + "' is invalid or generic. "
+          + "Trying to guess the right type.");
+      boolean gzip = "gzip".equals(request.getHeader("Content-Encoding"));
+      contentType = sniffContentType(request, gzip).doOnSuccess(p -> {
+        log.info("Guessed mime type '" + p.getLeft() + "'.");
+      });
+    } else {
+      contentType = Single.just(Pair.of(mimeType, Buffer.buffer()));
+    }
+
+    contentType.subscribe(p -> {
+      String address = AddressConstants.IMPORTER_STREAM + "." + correlationId;
+      EventBusWriteStream ws = new EventBusWriteStream(vertx, address);
+      if (p.getRight().length() > 0) {
+        ws.write(p.getRight());
+      }
+
+      JsonObject msg = makeImportMessage(request, filename, layer,
+          p.getLeft(), correlationId, tags, properties, fallbackCRSString)
+        .put("stream", address)
+        .put("size", getContentLength(request));
+      vertx.eventBus().send(AddressConstants.IMPORTER_IMPORT, msg);
+
+      if (request.isEnded()) {
+        ws.end(onFinished);
+        return;
+      }
+
+      Pump pump = Pump.pump(request, ws);
+      ws.exceptionHandler(t -> {
+        // the importer has failed. discard the rest of the request.
+        pump.stop();
+        request.handler(buf -> {});
+        request.endHandler(null);
+        request.resume();
+        onFinished.handle(Future.failedFuture(t));
+      });
+      request.exceptionHandler(t -> {
+        ws.fail(t);
+        onFinished.handle(Future.failedFuture(t));
+      });
+      request.endHandler(v -> ws.end(onFinished));
+      pump.start();
+      request.resume();
+    }, err -> onFinished.handle(Future.failedFuture(err)));
+  }
+
   private void onReceivingFileStarted(String correlationId, long startTime) {
     log.info("Receiving file [" + correlationId + "]");
     ReceivingTask task = new ReceivingTask(correlationId);
     task.setStartTime(Instant.now());
-    vertx.eventBus().publish(AddressConstants.TASK_INC, JsonObject.mapFrom(task));
+    TaskVerticle.publishInc(vertx, task);
   }
 
   private void onReceivingFileFinished(String correlationId, long duration,
@@ -619,7 +1312,7 @@ public class StoreEndpoint implements Endpoint {
     if (error != null) {
       task.addError(new TaskError(error));
     }
-    vertx.eventBus().publish(AddressConstants.TASK_INC, JsonObject.mapFrom(task));
+    TaskVerticle.publishInc(vertx, task);
   }
 
   /**
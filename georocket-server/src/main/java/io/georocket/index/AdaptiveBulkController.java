@@ -0,0 +1,167 @@
+package io.georocket.index;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>Controls the size of bulk requests and the number of bulk requests
+ * running in parallel based on the feedback received from Elasticsearch.</p>
+ * <p>The controller follows an additive-increase/multiplicative-decrease
+ * (AIMD) scheme. As long as bulk requests finish within the target latency,
+ * the number of bytes per bulk request is increased step by step. If the
+ * latency also stays flat, one more bulk request is allowed to run in
+ * parallel. If a request exceeds the target latency, the bulk size is
+ * reduced. If Elasticsearch rejects requests because its queues are full,
+ * both the bulk size and the number of parallel requests are halved.</p>
+ * <p>The controller never exceeds the given maximum values.</p>
+ * @author Michel Kraemer
+ */
+public class AdaptiveBulkController {
+  /**
+   * The number of steps in which the bulk size grows from the minimum to
+   * the maximum value
+   */
+  private static final int INCREASE_STEPS = 16;
+
+  /**
+   * The factor by which the bulk size is reduced if a request took longer
+   * than the target latency
+   */
+  private static final double LATENCY_DECREASE_FACTOR = 0.75;
+
+  /**
+   * The factor by which the bulk size and the number of parallel requests
+   * are reduced if Elasticsearch rejected a request
+   */
+  private static final double REJECTION_DECREASE_FACTOR = 0.5;
+
+  /**
+   * A request's latency is considered flat if it is not larger than the
+   * average latency times this factor
+   */
+  private static final double FLAT_LATENCY_FACTOR = 1.25;
+
+  /**
+   * The weight of a new latency value in the moving average
+   */
+  private static final double LATENCY_SMOOTHING = 0.2;
+
+  private final long minBulkBytes;
+  private final long maxBulkBytes;
+  private final int maxConcurrency;
+  private final long targetLatency;
+
+  private long bulkBytes;
+  private int concurrency = 1;
+  private double averageLatency = -1;
+  private int successesSinceIncrease;
+  private long totalRequests;
+  private long totalRejections;
+  private long totalSlowRequests;
+
+  /**
+   * Create a new controller
+   * @param minBulkBytes the minimum number of bytes per bulk request
+   * @param maxBulkBytes the maximum number of bytes per bulk request
+   * @param maxConcurrency the maximum number of bulk requests running
+   * in parallel
+   * @param targetLatency the maximum time in milliseconds a bulk
+   * request should take
+   */
+  public AdaptiveBulkController(long minBulkBytes, long maxBulkBytes,
+      int maxConcurrency, long targetLatency) {
+    this.minBulkBytes = Math.max(1, Math.min(minBulkBytes, maxBulkBytes));
+    this.maxBulkBytes = Math.max(this.minBulkBytes, maxBulkBytes);
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+    this.targetLatency = targetLatency;
+    bulkBytes = Math.max(this.minBulkBytes, this.maxBulkBytes / 4);
+  }
+
+  /**
+   * @return the number of bytes the next bulk request should have
+   */
+  public long getBulkBytes() {
+    return bulkBytes;
+  }
+
+  /**
+   * @return the number of bulk requests that should run in parallel
+   */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Notify the controller that a bulk request was successful
+   * @param bytes the number of bytes sent in the request
+   * @param latency the time in milliseconds the request took
+   */
+  public void onSuccess(long bytes, long latency) {
+    totalRequests++;
+
+    double previousAverage = averageLatency;
+    if (averageLatency < 0) {
+      averageLatency = latency;
+    } else {
+      averageLatency = (1 - LATENCY_SMOOTHING) * averageLatency +
+          LATENCY_SMOOTHING * latency;
+    }
+
+    if (latency > targetLatency) {
+      totalSlowRequests++;
+      bulkBytes = Math.max(minBulkBytes,
+          (long)(bulkBytes * LATENCY_DECREASE_FACTOR));
+      successesSinceIncrease = 0;
+      return;
+    }
+
+    // only grow if the request was large enough to tell us something
+    // about the current bulk size
+    if (bytes >= bulkBytes / 2) {
+      long step = Math.max(1, (maxBulkBytes - minBulkBytes) / INCREASE_STEPS);
+      bulkBytes = Math.min(maxBulkBytes, bulkBytes + step);
+    }
+
+    // add one parallel request per round of requests if the latency
+    // has not increased
+    successesSinceIncrease++;
+    boolean flat = previousAverage < 0 ||
+        latency <= previousAverage * FLAT_LATENCY_FACTOR;
+    if (!flat) {
+      successesSinceIncrease = 0;
+    } else if (successesSinceIncrease >= concurrency &&
+        concurrency < maxConcurrency) {
+      concurrency++;
+      successesSinceIncrease = 0;
+    }
+  }
+
+  /**
+   * Notify the controller that Elasticsearch rejected a bulk request or
+   * some of its items because it was too busy
+   */
+  public void onRejected() {
+    totalRequests++;
+    totalRejections++;
+    bulkBytes = Math.max(minBulkBytes,
+        (long)(bulkBytes * REJECTION_DECREASE_FACTOR));
+    concurrency = Math.max(1, (int)(concurrency * REJECTION_DECREASE_FACTOR));
+    successesSinceIncrease = 0;
+  }
+
+  /**
+   * Get the controller's current state
+   * @return a JSON object describing the state
+   */
+  public JsonObject toJsonObject() {
+    return new JsonObject()
+      .put("bulkBytes", bulkBytes)
+      .put("maxBulkBytes", maxBulkBytes)
+      .put("concurrency", concurrency)
+      .put("maxConcurrency", maxConcurrency)
+      .put("averageLatency", Math.max(0, Math.round(averageLatency)))
+      .put("targetLatency", targetLatency)
+      .put("totalRequests", totalRequests)
+      .put("totalRejections", totalRejections)
+      .put("totalSlowRequests", totalSlowRequests);
+  }
+}
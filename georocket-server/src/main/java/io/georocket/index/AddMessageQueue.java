@@ -0,0 +1,130 @@
+package io.georocket.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>A queue of add messages waiting to be indexed in a bulk. Keeps track of
+ * the estimated number of bytes of all queued chunks.</p>
+ * <p>Messages whose chunks have been rejected by Elasticsearch because it
+ * was too busy can be put back to the head of the queue, so they are
+ * indexed with the next bulk. The queue counts how often each message has
+ * been put back and refuses to retry it endlessly.</p>
+ * @param <T> the type of the queued messages
+ * @author Michel Kraemer
+ */
+class AddMessageQueue<T> {
+  private final Deque<T> messages = new ArrayDeque<>();
+  private final Map<T, Integer> retries = new IdentityHashMap<>();
+  private final ToLongFunction<T> sizeEstimator;
+  private long bytes;
+
+  /**
+   * Create a new queue
+   * @param sizeEstimator a function that estimates the size of the chunk
+   * a message refers to
+   */
+  AddMessageQueue(ToLongFunction<T> sizeEstimator) {
+    this.sizeEstimator = sizeEstimator;
+  }
+
+  /**
+   * Add a message to the tail of the queue
+   * @param msg the message
+   */
+  void add(T msg) {
+    messages.add(msg);
+    bytes += sizeEstimator.applyAsLong(msg);
+  }
+
+  /**
+   * Get the message at the head of the queue without removing it
+   * @return the message or {@code null} if the queue is empty
+   */
+  T peek() {
+    return messages.peek();
+  }
+
+  /**
+   * Remove the message at the head of the queue
+   * @return the message or {@code null} if the queue is empty
+   */
+  T poll() {
+    T msg = messages.poll();
+    if (msg != null) {
+      bytes -= sizeEstimator.applyAsLong(msg);
+    }
+    return msg;
+  }
+
+  /**
+   * @return true if the queue is empty
+   */
+  boolean isEmpty() {
+    return messages.isEmpty();
+  }
+
+  /**
+   * @return the number of queued messages
+   */
+  int size() {
+    return messages.size();
+  }
+
+  /**
+   * @return the estimated number of bytes of all queued chunks
+   */
+  long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Put messages that have been removed from the queue back to its head.
+   * Keep their order. Do not put back messages that have already been
+   * retried the given number of times.
+   * @param msgs the messages to retry
+   * @param maxRetries the maximum number of times a message may be retried
+   * @return the messages that have not been put back
+   */
+  List<T> retry(List<T> msgs, int maxRetries) {
+    List<T> exhausted = new ArrayList<>();
+    for (int i = msgs.size() - 1; i >= 0; --i) {
+      T msg = msgs.get(i);
+      int n = retries.getOrDefault(msg, 0);
+      if (n >= maxRetries) {
+        retries.remove(msg);
+        exhausted.add(0, msg);
+        continue;
+      }
+      retries.put(msg, n + 1);
+      messages.addFirst(msg);
+      bytes += sizeEstimator.applyAsLong(msg);
+    }
+    return exhausted;
+  }
+
+  /**
+   * Forget how often the given messages have been retried. Call this
+   * method as soon as the messages have been processed.
+   * @param msgs the messages
+   */
+  void forget(Collection<T> msgs) {
+    if (!retries.isEmpty()) {
+      msgs.forEach(retries::remove);
+    }
+  }
+
+  /**
+   * @return the number of messages that have been retried at least once
+   * and have not been processed yet
+   */
+  int getRetryingCount() {
+    return retries.size();
+  }
+}
@@ -0,0 +1,123 @@
+package io.georocket.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import io.georocket.index.xml.StreamIndexer;
+import io.georocket.util.StreamEvent;
+
+/**
+ * <p>Converts a chunk to an Elasticsearch document by forwarding stream
+ * events to a set of {@link StreamIndexer}s.</p>
+ * <p>The indexer can be used to convert a chunk that has been read from the
+ * store, or to index chunks while they are being split. In the latter case,
+ * the splitter passes all events belonging to the current chunk to
+ * {@link #onEvent(StreamEvent)} and calls {@link #finish()} as soon as the
+ * chunk is complete. New {@link StreamIndexer}s will be created automatically
+ * for the next chunk.</p>
+ * @author Michel Kraemer
+ * @param <T> the type of the stream events to index
+ */
+public class ChunkIndexer<T extends StreamEvent> {
+  /**
+   * The factories used to create the indexers
+   */
+  private final List<? extends IndexerFactory> indexerFactories;
+
+  /**
+   * Provides the CRS that should be used if the chunk does not specify
+   * one itself (may return <code>null</code>)
+   */
+  private final Supplier<String> fallbackCRSString;
+
+  /**
+   * The indexers for the current chunk or <code>null</code> if there is
+   * no current chunk
+   */
+  private List<StreamIndexer<T>> indexers;
+
+  /**
+   * Create a new chunk indexer
+   * @param indexerFactories the factories used to create the indexers
+   */
+  public ChunkIndexer(List<? extends IndexerFactory> indexerFactories) {
+    this(indexerFactories, () -> null);
+  }
+
+  /**
+   * Create a new chunk indexer
+   * @param indexerFactories the factories used to create the indexers
+   * @param fallbackCRSString provides a string representing the CRS that
+   * should be used to index a chunk if it does not specify a CRS itself. The
+   * supplier will be called every time a new chunk starts. It may return
+   * <code>null</code> if there is no CRS available as fallback.
+   */
+  public ChunkIndexer(List<? extends IndexerFactory> indexerFactories,
+      Supplier<String> fallbackCRSString) {
+    this.indexerFactories = indexerFactories;
+    this.fallbackCRSString = fallbackCRSString;
+  }
+
+  /**
+   * Create new indexers for the next chunk
+   */
+  private void start() {
+    String crsStr = fallbackCRSString.get();
+    indexers = new ArrayList<>(indexerFactories.size());
+    for (IndexerFactory factory : indexerFactories) {
+      @SuppressWarnings("unchecked")
+      StreamIndexer<T> i = (StreamIndexer<T>)factory.createIndexer();
+      if (crsStr != null && i instanceof CRSAware) {
+        ((CRSAware)i).setFallbackCRSString(crsStr);
+      }
+      indexers.add(i);
+    }
+  }
+
+  /**
+   * Forward a stream event of the current chunk to all indexers. Start a new
+   * chunk if necessary.
+   * @param event the event
+   */
+  public void onEvent(T event) {
+    if (indexers == null) {
+      start();
+    }
+    for (StreamIndexer<T> i : indexers) {
+      i.onEvent(event);
+    }
+  }
+
+  /**
+   * @return true if the current chunk has received at least one event
+   * and has not been finished yet
+   */
+  public boolean isIndexing() {
+    return indexers != null;
+  }
+
+  /**
+   * Finish the current chunk and create the Elasticsearch document
+   * @return the document or <code>null</code> if the current chunk has not
+   * received any events
+   */
+  public Map<String, Object> finish() {
+    if (indexers == null) {
+      return null;
+    }
+    Map<String, Object> doc = new HashMap<>();
+    indexers.forEach(i -> doc.putAll(i.getResult()));
+    indexers = null;
+    return doc;
+  }
+
+  /**
+   * Discard the current chunk without creating a document
+   */
+  public void reset() {
+    indexers = null;
+  }
+}
@@ -0,0 +1,388 @@
+package io.georocket.index;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.georocket.constants.AddressConstants;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * <p>Requests credits from indexers before chunks are sent to them. This
+ * implements flow control between importers and indexers. An importer may
+ * only send as many chunks and bytes to an indexer as the indexer has
+ * granted. Credits are released by the indexer as soon as the chunks have
+ * been indexed.</p>
+ * <p>Credits are requested in blocks and kept per key (e.g. per import).
+ * Each block is bound to the indexer that has granted it. Chunks must be
+ * sent to the address returned by {@link #acquire(String, long, Handler)}
+ * and must contain the number of bytes acquired in a field named
+ * <code>credit</code>. Credits that have not been used for a while are
+ * returned to the indexer.</p>
+ * <p>Credits are requested from the indexers on this node first because
+ * they can read the chunks from their cache. In a cluster with a shared
+ * store, credits are requested from indexers on other nodes if the local
+ * ones are busy. This spreads the indexing work of large imports across
+ * the cluster.</p>
+ * <p>If no indexer supports flow control, chunks are sent to
+ * {@link AddressConstants#INDEXER_ADD} without credits.</p>
+ * @author Michel Kraemer
+ */
+public class CreditClient {
+  private static Logger log = LoggerFactory.getLogger(CreditClient.class);
+
+  /**
+   * The number of chunks to request at once
+   */
+  private static final long REQUEST_CHUNKS = 100;
+
+  /**
+   * The number of bytes to request at once
+   */
+  private static final long REQUEST_BYTES = 1024 * 1024 * 4;
+
+  /**
+   * The number of milliseconds after which unused credits are returned
+   */
+  private static final long IDLE_TIMEOUT = 5000;
+
+  /**
+   * The minimum and maximum number of milliseconds to wait before credits
+   * are requested again if the indexer did not grant any
+   */
+  private static final long MIN_RETRY_INTERVAL = 50;
+  private static final long MAX_RETRY_INTERVAL = 2000;
+
+  /**
+   * A caller waiting for credits
+   */
+  private static class Waiter {
+    final long bytes;
+    final Handler<String> handler;
+
+    Waiter(long bytes, Handler<String> handler) {
+      this.bytes = bytes;
+      this.handler = handler;
+    }
+  }
+
+  /**
+   * Credits granted to a key
+   */
+  private static class Pool {
+    final String key;
+    final Deque<Waiter> waiters = new ArrayDeque<>();
+    String address;
+    String returnAddress;
+    long chunks;
+    long bytes;
+    boolean requesting;
+    long retryInterval = MIN_RETRY_INTERVAL;
+    long idleTimerId = -1;
+
+    Pool(String key) {
+      this.key = key;
+    }
+  }
+
+  private final Vertx vertx;
+  private final boolean remote;
+  private final Map<String, Pool> pools = new HashMap<>();
+
+  /**
+   * Maps addresses of indexers to the addresses where unused credits
+   * have to be returned to
+   */
+  private final Map<String, String> returnAddresses = new HashMap<>();
+
+  /**
+   * Addresses of indexers running on this node
+   */
+  private final Set<String> localAddresses = new HashSet<>();
+
+  /**
+   * Create a new client
+   * @param vertx the Vert.x instance
+   * @param remote true if chunks may be sent to indexers on other cluster
+   * nodes. This only has an effect if Vert.x is clustered. Indexers on this
+   * node are always preferred.
+   */
+  public CreditClient(Vertx vertx, boolean remote) {
+    this.vertx = vertx;
+    this.remote = remote && vertx.isClustered();
+  }
+
+  /**
+   * Acquire credits for a chunk
+   * @param key the key to acquire credits for (e.g. the correlation ID of
+   * the import). May be <code>null</code>.
+   * @param bytes the size of the chunk
+   * @param handler will be called with the address the chunk should be
+   * sent to as soon as credits are available
+   */
+  public void acquire(String key, long bytes, Handler<String> handler) {
+    if (key == null) {
+      key = "";
+    }
+    Pool pool = pools.computeIfAbsent(key, Pool::new);
+    if (pool.idleTimerId != -1) {
+      vertx.cancelTimer(pool.idleTimerId);
+      pool.idleTimerId = -1;
+    }
+    pool.waiters.add(new Waiter(bytes, handler));
+    serve(pool);
+  }
+
+  /**
+   * Give back credits acquired for a chunk that could not be sent
+   * @param key the key the credits have been acquired for
+   * @param address the address returned by {@link #acquire(String, long, Handler)}
+   * @param bytes the size of the chunk
+   */
+  public void refund(String key, String address, long bytes) {
+    if (key == null) {
+      key = "";
+    }
+    Pool pool = pools.get(key);
+    if (pool != null && address.equals(pool.address)) {
+      pool.chunks++;
+      pool.bytes += bytes;
+      serve(pool);
+      return;
+    }
+    String returnAddress = returnAddresses.get(address);
+    if (returnAddress != null) {
+      sendReturn(returnAddress, key, 1, bytes);
+    }
+  }
+
+  /**
+   * Check if an address returned by {@link #acquire(String, long, Handler)}
+   * belongs to an indexer on this node. Only these indexers can read chunks
+   * from this node's {@link IndexableChunkCache}.
+   * @param address the address
+   * @return true if the indexer runs on this node
+   */
+  public boolean isLocal(String address) {
+    return AddressConstants.INDEXER_ADD.equals(address) ||
+        localAddresses.contains(address);
+  }
+
+  /**
+   * Pass credits to waiting callers and request more if necessary
+   * @param pool the pool of credits
+   */
+  private void serve(Pool pool) {
+    while (!pool.waiters.isEmpty()) {
+      Waiter w = pool.waiters.peek();
+      if (pool.address == null || pool.chunks < 1 || pool.bytes < w.bytes) {
+        break;
+      }
+      pool.waiters.poll();
+      pool.chunks--;
+      pool.bytes -= w.bytes;
+      w.handler.handle(pool.address);
+    }
+
+    if (!pool.waiters.isEmpty()) {
+      if (!pool.requesting) {
+        request(pool);
+      }
+    } else if (pool.idleTimerId == -1 && !pool.requesting) {
+      pool.idleTimerId = vertx.setTimer(IDLE_TIMEOUT, id -> {
+        pool.idleTimerId = -1;
+        if (pool.waiters.isEmpty() && !pool.requesting) {
+          returnCredits(pool);
+          pools.remove(pool.key);
+        }
+      });
+    }
+  }
+
+  /**
+   * Request credits from the indexers on this node first and then, if they
+   * are busy and remote indexing is allowed, from indexers on other nodes
+   * @param pool the pool the credits should be added to
+   */
+  private void request(Pool pool) {
+    pool.requesting = true;
+    sendRequest(pool, AddressConstants.INDEXER_CREDITS_REQUEST, ar -> {
+      if (ar.failed()) {
+        if (isNoHandlers(ar.cause())) {
+          if (remote) {
+            requestRemote(pool, false);
+          } else {
+            sendWithoutCredits(pool);
+          }
+        } else {
+          log.warn("Could not request credits from indexer", ar.cause());
+          retry(pool);
+        }
+        return;
+      }
+
+      localAddresses.add(ar.result().body().getString("address"));
+      if (!onGrant(pool, ar.result().body())) {
+        if (remote) {
+          requestRemote(pool, true);
+        } else {
+          retry(pool);
+        }
+      }
+    });
+  }
+
+  /**
+   * Request credits from indexers on other cluster nodes. Chunks sent to
+   * these indexers are not in their cache and have to be read from the
+   * shared store, so this is only done if the local indexers are busy.
+   * @param pool the pool the credits should be added to
+   * @param localIndexerAvailable true if there is an indexer on this node
+   * (which is just busy at the moment)
+   */
+  private void requestRemote(Pool pool, boolean localIndexerAvailable) {
+    sendRequest(pool, AddressConstants.INDEXER_CREDITS_REQUEST_REMOTE, ar -> {
+      if (ar.failed()) {
+        if (isNoHandlers(ar.cause()) && !localIndexerAvailable) {
+          sendWithoutCredits(pool);
+        } else {
+          if (!isNoHandlers(ar.cause())) {
+            log.warn("Could not request credits from remote indexer",
+                ar.cause());
+          }
+          retry(pool);
+        }
+        return;
+      }
+
+      if (!onGrant(pool, ar.result().body())) {
+        retry(pool);
+      }
+    });
+  }
+
+  /**
+   * Send a credit request to the given address
+   * @param pool the pool the credits should be added to
+   * @param address the address to send the request to
+   * @param handler will be called with the indexer's reply
+   */
+  private void sendRequest(Pool pool, String address,
+      Handler<AsyncResult<Message<JsonObject>>> handler) {
+    long minBytes = Math.max(0, pool.waiters.peek().bytes -
+        (pool.address != null ? pool.bytes : 0));
+    JsonObject req = new JsonObject()
+      .put("key", pool.key)
+      .put("chunks", REQUEST_CHUNKS)
+      .put("bytes", Math.max(REQUEST_BYTES, minBytes))
+      .put("minBytes", minBytes);
+    vertx.eventBus().send(address, req, handler);
+  }
+
+  /**
+   * Check if a failed request could not be delivered because there was
+   * no handler registered for its address
+   * @param t the cause of the failure
+   * @return true if there was no handler
+   */
+  private static boolean isNoHandlers(Throwable t) {
+    return t instanceof ReplyException &&
+        ((ReplyException)t).failureType() == ReplyFailure.NO_HANDLERS;
+  }
+
+  /**
+   * Let all waiting callers send their chunks to
+   * {@link AddressConstants#INDEXER_ADD} because there is no indexer
+   * supporting flow control
+   * @param pool the pool of credits
+   */
+  private void sendWithoutCredits(Pool pool) {
+    pool.requesting = false;
+    while (!pool.waiters.isEmpty()) {
+      pool.waiters.poll().handler.handle(AddressConstants.INDEXER_ADD);
+    }
+    serve(pool);
+  }
+
+  /**
+   * Add credits granted by an indexer to a pool
+   * @param pool the pool
+   * @param grant the indexer's reply
+   * @return true if the indexer has granted credits, false if it was too
+   * busy
+   */
+  private boolean onGrant(Pool pool, JsonObject grant) {
+    long chunks = grant.getLong("chunks", 0L);
+    long bytes = grant.getLong("bytes", 0L);
+    if (chunks < 1) {
+      return false;
+    }
+
+    String address = grant.getString("address");
+    String returnAddress = grant.getString("returnAddress");
+    returnAddresses.put(address, returnAddress);
+    if (!address.equals(pool.address)) {
+      // the credits come from another indexer
+      returnCredits(pool);
+      pool.address = address;
+      pool.returnAddress = returnAddress;
+    }
+    pool.chunks += chunks;
+    pool.bytes += bytes;
+    pool.requesting = false;
+    pool.retryInterval = MIN_RETRY_INTERVAL;
+    serve(pool);
+    return true;
+  }
+
+  /**
+   * Request credits again after a while
+   * @param pool the pool the credits should be added to
+   */
+  private void retry(Pool pool) {
+    long interval = pool.retryInterval;
+    pool.retryInterval = Math.min(MAX_RETRY_INTERVAL, interval * 2);
+    vertx.setTimer(interval, id -> {
+      pool.requesting = false;
+      serve(pool);
+    });
+  }
+
+  /**
+   * Return unused credits to the indexer that has granted them
+   * @param pool the pool of credits
+   */
+  private void returnCredits(Pool pool) {
+    if (pool.returnAddress != null && (pool.chunks > 0 || pool.bytes > 0)) {
+      sendReturn(pool.returnAddress, pool.key, pool.chunks, pool.bytes);
+    }
+    pool.chunks = 0;
+    pool.bytes = 0;
+  }
+
+  /**
+   * Send unused credits to an indexer
+   * @param returnAddress the address to send the credits to
+   * @param key the key the credits have been granted to
+   * @param chunks the number of chunks to return
+   * @param bytes the number of bytes to return
+   */
+  private void sendReturn(String returnAddress, String key, long chunks,
+      long bytes) {
+    vertx.eventBus().send(returnAddress, new JsonObject()
+      .put("key", key)
+      .put("chunks", chunks)
+      .put("bytes", bytes));
+  }
+}
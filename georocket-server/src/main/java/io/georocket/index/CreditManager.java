@@ -0,0 +1,198 @@
+package io.georocket.index;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Keeps track of the credits an indexer has granted to importers. A
+ * credit allows an importer to send a given number of chunks with a given
+ * total number of bytes to the indexer. The indexer releases the credits
+ * as soon as the chunks have been indexed.</p>
+ * <p>The number of chunks and bytes granted but not released yet never
+ * exceeds the configured maximum values. The only exception is a single
+ * chunk larger than the maximum number of bytes. It will be granted as
+ * soon as no other credits are outstanding.</p>
+ * <p>Credits are granted per key (e.g. per import). If multiple keys
+ * request credits at the same time, each of them gets a fair share. Keys
+ * that have been refused credits recently count as well, so a key that
+ * requests credits while another one holds all of them gets its share as
+ * soon as credits are released.</p>
+ * @author Michel Kraemer
+ */
+public class CreditManager {
+  /**
+   * The number of milliseconds after which a key that has been refused
+   * credits does not count as waiting anymore. Must be larger than the
+   * maximum interval in which {@link CreditClient} retries requests.
+   */
+  private static final long WAITING_TIMEOUT_MILLIS = 5000;
+
+  /**
+   * The number of chunks and bytes granted to a key
+   */
+  private static class Usage {
+    long chunks;
+    long bytes;
+  }
+
+  private final long maxChunks;
+  private final long maxBytes;
+  private final LongSupplier clock;
+  private final Map<String, Usage> usages = new HashMap<>();
+
+  /**
+   * Keys that have been refused credits and the time of their last request
+   */
+  private final Map<String, Long> waiting = new HashMap<>();
+  private long outstandingChunks;
+  private long outstandingBytes;
+
+  /**
+   * Create a new manager
+   * @param maxChunks the maximum number of chunks that may be outstanding
+   * @param maxBytes the maximum number of bytes that may be outstanding
+   */
+  public CreditManager(long maxChunks, long maxBytes) {
+    this(maxChunks, maxBytes, System::currentTimeMillis);
+  }
+
+  /**
+   * Create a new manager
+   * @param maxChunks the maximum number of chunks that may be outstanding
+   * @param maxBytes the maximum number of bytes that may be outstanding
+   * @param clock returns the current time in milliseconds
+   */
+  CreditManager(long maxChunks, long maxBytes, LongSupplier clock) {
+    this.maxChunks = Math.max(1, maxChunks);
+    this.maxBytes = Math.max(1, maxBytes);
+    this.clock = clock;
+  }
+
+  /**
+   * Request credits
+   * @param key the key requesting credits (may be <code>null</code>)
+   * @param chunks the number of chunks requested
+   * @param bytes the number of bytes requested
+   * @param minBytes the minimum number of bytes the caller needs to do any
+   * progress (i.e. the size of the next chunk it wants to send)
+   * @return an array containing the number of chunks and bytes granted.
+   * Both values are <code>0</code> if no credits could be granted.
+   */
+  public long[] request(String key, long chunks, long bytes, long minBytes) {
+    if (key == null) {
+      key = "";
+    }
+    minBytes = Math.max(0, minBytes);
+    bytes = Math.max(bytes, minBytes);
+
+    long now = clock.getAsLong();
+    Usage u = usages.get(key);
+    long usedChunks = u != null ? u.chunks : 0;
+    long usedBytes = u != null ? u.bytes : 0;
+    int active = countActiveKeys(key, now);
+
+    long shareChunks = Math.max(1, maxChunks / active) - usedChunks;
+    long shareBytes = Math.max(minBytes, maxBytes / active) - usedBytes;
+    long c = Math.min(chunks, Math.min(maxChunks - outstandingChunks, shareChunks));
+    long b = Math.min(bytes, Math.min(maxBytes - outstandingBytes, shareBytes));
+
+    if (c < 1 || b < minBytes) {
+      if (outstandingChunks > 0 || chunks < 1) {
+        waiting.put(key, now);
+        return new long[] { 0, 0 };
+      }
+      // nothing is outstanding but the chunk is larger than we
+      // would normally allow. grant it anyhow or it will never be indexed.
+      c = 1;
+      b = minBytes;
+    }
+
+    waiting.remove(key);
+    if (u == null) {
+      u = new Usage();
+      usages.put(key, u);
+    }
+    u.chunks += c;
+    u.bytes += b;
+    outstandingChunks += c;
+    outstandingBytes += b;
+
+    return new long[] { c, b };
+  }
+
+  /**
+   * Count the keys that hold credits or that are waiting for them, including
+   * the given one. Forget waiting keys that have not requested credits
+   * for a while.
+   * @param key the key currently requesting credits
+   * @param now the current time in milliseconds
+   * @return the number of keys
+   */
+  private int countActiveKeys(String key, long now) {
+    int result = usages.size();
+    boolean found = usages.containsKey(key);
+    Iterator<Map.Entry<String, Long>> it = waiting.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Long> e = it.next();
+      if (now - e.getValue() > WAITING_TIMEOUT_MILLIS) {
+        it.remove();
+      } else if (!usages.containsKey(e.getKey())) {
+        result++;
+        found |= e.getKey().equals(key);
+      }
+    }
+    return found ? result : result + 1;
+  }
+
+  /**
+   * Release credits because chunks have been indexed or because they
+   * have not been used
+   * @param key the key the credits have been granted to (may be
+   * <code>null</code>)
+   * @param chunks the number of chunks to release
+   * @param bytes the number of bytes to release
+   */
+  public void release(String key, long chunks, long bytes) {
+    if (key == null) {
+      key = "";
+    }
+    Usage u = usages.get(key);
+    if (u == null) {
+      return;
+    }
+
+    chunks = Math.min(chunks, u.chunks);
+    bytes = Math.min(bytes, u.bytes);
+    u.chunks -= chunks;
+    u.bytes -= bytes;
+    outstandingChunks -= chunks;
+    outstandingBytes -= bytes;
+
+    if (u.chunks <= 0 && u.bytes <= 0) {
+      usages.remove(key);
+    }
+  }
+
+  /**
+   * @return the number of chunks granted but not released yet
+   */
+  public long getOutstandingChunks() {
+    return outstandingChunks;
+  }
+
+  /**
+   * @return the number of bytes granted but not released yet
+   */
+  public long getOutstandingBytes() {
+    return outstandingBytes;
+  }
+
+  /**
+   * @return the number of keys with outstanding credits
+   */
+  public int getActiveKeys() {
+    return usages.size();
+  }
+}
@@ -1,21 +1,43 @@
 package io.georocket.index;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import io.georocket.constants.ConfigConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
 
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * A cache for chunks that are about to be indexed. The cache keeps chunks only
- * until they have been requested or until a configurable time has passed (see
+ * <p>A cache for chunks that are about to be indexed. The cache keeps chunks
+ * only until they have been requested or until a configurable time has
+ * passed (see
  * {@link ConfigConstants#INDEX_INDEXABLE_CHUNK_CACHE_MAX_TIME_SECONDS}). The
- * cache has a configurable maximum size (see
- * {@link ConfigConstants#INDEX_INDEXABLE_CHUNK_CACHE_MAX_SIZE}).
+ * cache has a configurable maximum size in bytes (see
+ * {@link ConfigConstants#INDEX_INDEXABLE_CHUNK_CACHE_MAX_SIZE}).</p>
+ * <p>Chunks are kept outside the Java heap by default (see
+ * {@link ConfigConstants#INDEX_INDEXABLE_CHUNK_CACHE_OFF_HEAP}) so a large
+ * cache does not put pressure on the garbage collector.</p>
+ * <p>Each chunk is read exactly once. Evicting a chunk before it has been
+ * read means it has to be fetched from the store again. The cache therefore
+ * never evicts chunks to make room for new ones. Instead, producers can call
+ * {@link #put(String, Buffer, Handler)} to wait until the indexer has
+ * consumed enough chunks.</p>
+ * <p>Chunks that have been added under credits granted by the indexer (see
+ * {@link CreditManager}) are pinned. The credits guarantee that the indexer
+ * will request them, so they never expire. They stay in the cache until
+ * the indexer requests them or calls {@link #remove(String)} after it has
+ * released the credits.</p>
  * @author Michel Kraemer
  */
 public class IndexableChunkCache {
@@ -26,9 +48,96 @@ public class IndexableChunkCache {
     static final IndexableChunkCache INSTANCE = new IndexableChunkCache();
   }
 
+  /**
+   * A cached chunk
+   */
+  private static class Entry {
+    final Buffer onHeap;
+    final ByteBuf offHeap;
+    final int length;
+    final long expiresAt;
+
+    Entry(Buffer onHeap, ByteBuf offHeap, int length, long expiresAt) {
+      this.onHeap = onHeap;
+      this.offHeap = offHeap;
+      this.length = length;
+      this.expiresAt = expiresAt;
+    }
+
+    /**
+     * <p>Get the chunk and free the memory it occupies off-heap.</p>
+     * <p>Off-heap chunks are copied to the heap on purpose. The memory is
+     * taken from a pool and has to be returned explicitly. The indexer
+     * passes chunks through prefetch maps, read streams and parsers that
+     * never release buffers, so a slice of the pooled buffer would leak as
+     * soon as a chunk is dropped (e.g. because its bulk request failed).
+     * The XML and JSON parsers need byte arrays anyhow, so the chunk would
+     * be copied to the heap shortly afterwards.</p>
+     * @return the chunk
+     */
+    Buffer take() {
+      if (offHeap == null) {
+        return onHeap;
+      }
+      byte[] bytes = new byte[length];
+      offHeap.getBytes(0, bytes);
+      offHeap.release();
+      return Buffer.buffer(bytes);
+    }
+
+    /**
+     * Free the memory the chunk occupies off-heap
+     */
+    void release() {
+      if (offHeap != null) {
+        offHeap.release();
+      }
+    }
+  }
+
+  /**
+   * A producer waiting for space in the cache
+   */
+  private static class Waiter {
+    final String path;
+    final Buffer chunk;
+    final boolean pinned;
+    final Context context;
+    final Handler<Boolean> handler;
+
+    Waiter(String path, Buffer chunk, boolean pinned, Context context,
+        Handler<Boolean> handler) {
+      this.path = path;
+      this.chunk = chunk;
+      this.pinned = pinned;
+      this.context = context;
+      this.handler = handler;
+    }
+  }
+
   private final long maximumSize;
-  private final Cache<String, Buffer> cache;
-  private final AtomicLong size = new AtomicLong();
+  private final long maximumTimeMillis;
+  private final boolean offHeap;
+
+  /**
+   * The cached chunks in the order they have been added and therefore
+   * also in the order they will expire
+   */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+  /**
+   * Cached chunks bound by credits. They never expire.
+   */
+  private final Map<String, Entry> pinned = new HashMap<>();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private long size;
+  private boolean expiryTimerActive;
+
+  private long hits;
+  private long misses;
+  private long expirations;
+  private long rejections;
+  private long waits;
 
   /**
    * Get the current Vert.x context
@@ -52,20 +161,30 @@ public class IndexableChunkCache {
     this(getCurrentContext().config().getLong(ConfigConstants.INDEX_INDEXABLE_CHUNK_CACHE_MAX_SIZE,
             ConfigConstants.DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_MAX_SIZE),
         getCurrentContext().config().getLong(ConfigConstants.INDEX_INDEXABLE_CHUNK_CACHE_MAX_TIME_SECONDS,
-            ConfigConstants.DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_MAX_TIME_SECONDS));
+            ConfigConstants.DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_MAX_TIME_SECONDS),
+        getCurrentContext().config().getBoolean(ConfigConstants.INDEX_INDEXABLE_CHUNK_CACHE_OFF_HEAP,
+            ConfigConstants.DEFAULT_INDEX_INDEXABLE_CHUNK_CACHE_OFF_HEAP));
   }
 
   /**
-   * Create a new cache
+   * Create a new cache that keeps chunks off-heap
    * @param maximumSize the cache's maximum size in bytes
    * @param maximumTime the maximum number of seconds a chunk stays in the cache
    */
   IndexableChunkCache(long maximumSize, long maximumTime) {
+    this(maximumSize, maximumTime, true);
+  }
+
+  /**
+   * Create a new cache
+   * @param maximumSize the cache's maximum size in bytes
+   * @param maximumTime the maximum number of seconds a chunk stays in the cache
+   * @param offHeap true if chunks should be kept outside the Java heap
+   */
+  IndexableChunkCache(long maximumSize, long maximumTime, boolean offHeap) {
     this.maximumSize = maximumSize;
-    cache = CacheBuilder.newBuilder()
-      .expireAfterWrite(maximumTime, TimeUnit.SECONDS)
-      .<String, Buffer>removalListener(n -> size.addAndGet(-n.getValue().length()))
-      .build();
+    this.maximumTimeMillis = maximumTime * 1000;
+    this.offHeap = offHeap;
   }
 
   /**
@@ -84,30 +203,135 @@ public class IndexableChunkCache {
    * the cache's maximum size
    * @param path the chunk's path
    * @param chunk the chunk
+   * @return true if the chunk has been added, false if there was not
+   * enough space
    */
-  public void put(String path, Buffer chunk) {
-    long chunkSize = chunk.length();
-    long oldSize;
-    long newSize;
-    boolean cleanUpCalled = false;
-    while (true) {
-      oldSize = size.get();
-      newSize = oldSize + chunkSize;
-      if (newSize > maximumSize) {
-        // make sure the chunk can be added if there were still some
-        // removal events pending
-        if (!cleanUpCalled) {
-          cleanUpCalled = true;
-          cache.cleanUp();
-          continue;
-        }
-        return;
+  public boolean put(String path, Buffer chunk) {
+    boolean added;
+    List<Waiter> served;
+    synchronized (this) {
+      cleanUp();
+      served = serveWaiters();
+      added = waiters.isEmpty() && tryPut(path, chunk, false);
+      if (!added) {
+        rejections++;
       }
-      if (size.compareAndSet(oldSize, newSize)) {
-        break;
+    }
+    notifyWaiters(served);
+    return added;
+  }
+
+  /**
+   * Adds a chunk to the cache. If the cache is full, wait until the indexer
+   * has consumed enough chunks or until enough chunks have expired. Chunks
+   * larger than the cache's maximum size are never added. Must be called
+   * from within a Vert.x context.
+   * @param path the chunk's path
+   * @param chunk the chunk
+   * @param handler will be called on the caller's context as soon as the
+   * chunk has been added (with <code>true</code>) or if it was too large
+   * to be added (with <code>false</code>)
+   */
+  public void put(String path, Buffer chunk, Handler<Boolean> handler) {
+    put(path, chunk, false, handler);
+  }
+
+  /**
+   * Adds a chunk to the cache. If the cache is full, wait until the indexer
+   * has consumed enough chunks or until enough chunks have expired. Chunks
+   * larger than the cache's maximum size are never added. Must be called
+   * from within a Vert.x context.
+   * @param path the chunk's path
+   * @param chunk the chunk
+   * @param pinned true if the indexer has granted credits for the chunk.
+   * In this case, the chunk does not expire.
+   * @param handler will be called on the caller's context as soon as the
+   * chunk has been added (with <code>true</code>) or if it was too large
+   * to be added (with <code>false</code>)
+   */
+  public void put(String path, Buffer chunk, boolean pinned,
+      Handler<Boolean> handler) {
+    Context context = getCurrentContext();
+    Boolean added = null;
+    List<Waiter> served;
+    synchronized (this) {
+      cleanUp();
+      served = serveWaiters();
+      if (chunk.length() > maximumSize) {
+        rejections++;
+        added = false;
+      } else if (waiters.isEmpty() && tryPut(path, chunk, pinned)) {
+        added = true;
+      } else {
+        waits++;
+        waiters.add(new Waiter(path, chunk, pinned, context, handler));
+        scheduleExpiry(context);
       }
     }
-    cache.put(path, chunk);
+    notifyWaiters(served);
+    if (added != null) {
+      handler.handle(added);
+    }
+  }
+
+  /**
+   * Add a chunk if there is enough space. Must be called while holding the
+   * lock.
+   * @param path the chunk's path
+   * @param chunk the chunk
+   * @param pinned true if the chunk should never expire
+   * @return true if the chunk has been added
+   */
+  private boolean tryPut(String path, Buffer chunk, boolean pinned) {
+    int length = chunk.length();
+    Entry old = entries.get(path);
+    if (old == null) {
+      old = this.pinned.get(path);
+    }
+    long oldLength = old != null ? old.length : 0;
+    if (size - oldLength + length > maximumSize) {
+      return false;
+    }
+
+    if (old != null) {
+      removeEntry(path).release();
+    }
+
+    Entry e;
+    long expiresAt = System.currentTimeMillis() + maximumTimeMillis;
+    if (offHeap) {
+      ByteBuf src = chunk.getByteBuf();
+      ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+      buf.writeBytes(src, src.readerIndex(), length);
+      e = new Entry(null, buf, length, expiresAt);
+    } else {
+      e = new Entry(chunk, null, length, expiresAt);
+    }
+    if (pinned) {
+      this.pinned.put(path, e);
+    } else {
+      entries.put(path, e);
+    }
+    size += length;
+    return true;
+  }
+
+  /**
+   * Remove a chunk from the cache without releasing its memory. Must be
+   * called while holding the lock.
+   * @param path the chunk's path
+   * @return the removed entry or <code>null</code> if the chunk was not
+   * found in the cache
+   */
+  private Entry removeEntry(String path) {
+    Entry e = entries.remove(path);
+    if (e == null) {
+      e = pinned.remove(path);
+    }
+    if (e != null) {
+      size -= e.length;
+    }
+    return e;
   }
 
   /**
@@ -116,26 +340,149 @@ public class IndexableChunkCache {
    * @return the chunk or {@code null} if the chunk was not found in the cache
    */
   public Buffer get(String path) {
-    Buffer r = cache.getIfPresent(path);
-    if (r != null) {
-      cache.invalidate(path);
+    Buffer r = null;
+    List<Waiter> served;
+    synchronized (this) {
+      cleanUp();
+      Entry e = removeEntry(path);
+      if (e == null) {
+        misses++;
+      } else {
+        hits++;
+        r = e.take();
+      }
+      served = serveWaiters();
     }
+    notifyWaiters(served);
     return r;
   }
 
+  /**
+   * Remove a chunk from the cache if it is still there. The indexer calls
+   * this method when it has released the credits of a chunk, so pinned
+   * chunks that have never been requested (e.g. because the bulk request
+   * failed) do not occupy the cache forever.
+   * @param path the chunk's path
+   */
+  public void remove(String path) {
+    List<Waiter> served;
+    synchronized (this) {
+      Entry e = removeEntry(path);
+      if (e == null) {
+        return;
+      }
+      e.release();
+      served = serveWaiters();
+    }
+    notifyWaiters(served);
+  }
+
+  /**
+   * Remove expired chunks. Must be called while holding the lock.
+   */
+  private void cleanUp() {
+    long now = System.currentTimeMillis();
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Entry e = it.next();
+      if (e.expiresAt > now) {
+        // all following entries have been added later
+        break;
+      }
+      it.remove();
+      size -= e.length;
+      e.release();
+      expirations++;
+    }
+  }
+
+  /**
+   * Add the chunks of waiting producers in the order they arrived as long
+   * as there is enough space. Must be called while holding the lock.
+   * @return the producers whose chunks have been added
+   */
+  private List<Waiter> serveWaiters() {
+    List<Waiter> served = new ArrayList<>();
+    while (!waiters.isEmpty()) {
+      Waiter w = waiters.peek();
+      if (!tryPut(w.path, w.chunk, w.pinned)) {
+        break;
+      }
+      waiters.poll();
+      served.add(w);
+    }
+    return served;
+  }
+
+  /**
+   * Tell producers that their chunks have been added
+   * @param served the producers
+   */
+  private static void notifyWaiters(List<Waiter> served) {
+    for (Waiter w : served) {
+      w.context.runOnContext(v -> w.handler.handle(true));
+    }
+  }
+
+  /**
+   * Make sure waiting producers are served when the oldest chunk expires
+   * even if the indexer does not request any chunks in the meantime. Must
+   * be called while holding the lock.
+   * @param context the context to run the timer on
+   */
+  private void scheduleExpiry(Context context) {
+    if (expiryTimerActive || entries.isEmpty()) {
+      return;
+    }
+    expiryTimerActive = true;
+    Entry oldest = entries.values().iterator().next();
+    long delay = Math.max(1, oldest.expiresAt - System.currentTimeMillis() + 1);
+    context.owner().setTimer(delay, id -> {
+      List<Waiter> served;
+      synchronized (this) {
+        expiryTimerActive = false;
+        cleanUp();
+        served = serveWaiters();
+        if (!waiters.isEmpty()) {
+          scheduleExpiry(context);
+        }
+      }
+      notifyWaiters(served);
+    });
+  }
+
   /**
    * Get the cache's size in bytes
    * @return the size
    */
-  public long getSize() {
-    return size.get();
+  public synchronized long getSize() {
+    return size;
   }
 
   /**
    * Get the number of chunks currently in the cache
    * @return the number of chunks
    */
-  public long getNumberOfChunks() {
-    return cache.size();
+  public synchronized long getNumberOfChunks() {
+    return entries.size() + pinned.size();
+  }
+
+  /**
+   * Get statistics about the cache
+   * @return a JSON object containing the statistics
+   */
+  public synchronized JsonObject getStats() {
+    return new JsonObject()
+      .put("offHeap", offHeap)
+      .put("size", size)
+      .put("maxSize", maximumSize)
+      .put("chunks", entries.size() + pinned.size())
+      .put("pinnedChunks", pinned.size())
+      .put("waitingProducers", waiters.size())
+      .put("hits", hits)
+      .put("misses", misses)
+      .put("expirations", expirations)
+      .put("rejections", rejections)
+      .put("waits", waits);
   }
 }
@@ -9,7 +9,6 @@ import io.georocket.index.generic.DefaultMetaIndexerFactory;
 import io.georocket.index.xml.JsonIndexerFactory;
 import io.georocket.index.xml.MetaIndexer;
 import io.georocket.index.xml.MetaIndexerFactory;
-import io.georocket.index.xml.StreamIndexer;
 import io.georocket.index.xml.XMLIndexerFactory;
 import io.georocket.query.DefaultQueryCompiler;
 import io.georocket.storage.ChunkMeta;
@@ -23,7 +22,10 @@ import io.georocket.storage.XMLChunkMeta;
 import io.georocket.tasks.IndexingTask;
 import io.georocket.tasks.RemovingTask;
 import io.georocket.tasks.TaskError;
+import io.georocket.tasks.TaskVerticle;
+import io.georocket.util.CRSCache;
 import io.georocket.util.FilteredServiceLoader;
+import io.georocket.util.HttpException;
 import io.georocket.util.JsonParserTransformer;
 import io.georocket.util.MapUtils;
 import io.georocket.util.RxUtils;
@@ -31,6 +33,7 @@ import io.georocket.util.StreamEvent;
 import io.georocket.util.XMLParserTransformer;
 import io.georocket.util.io.DelegateChunkReadStream;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.impl.NoStackTraceThrowable;
 import io.vertx.core.json.JsonArray;
@@ -52,10 +55,14 @@ import rx.functions.Func1;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -71,6 +78,17 @@ public class IndexerVerticle extends AbstractVerticle {
   private static Logger log = LoggerFactory.getLogger(IndexerVerticle.class);
   
   private static final long BUFFER_TIMESPAN = 5000;
+
+  /**
+   * The minimum number of bytes the indexer sends to Elasticsearch in one
+   * bulk request (as long as there are enough chunks)
+   */
+  private static final long MIN_BULK_BYTES = 64 * 1024;
+
+  /**
+   * The size assumed for chunks whose size is unknown
+   */
+  private static final long DEFAULT_CHUNK_SIZE = 1024;
   private static final int MAX_RETRIES = 5;
   private static final int RETRY_INTERVAL = 1000;
 
@@ -84,10 +102,26 @@ public class IndexerVerticle extends AbstractVerticle {
    */
   private static final String TYPE_NAME = "object";
 
+  /**
+   * Elasticsearch index for parents of XML chunks
+   * @see ParentContextRegistry
+   */
+  private static final String PARENTS_INDEX_NAME = "georocket_parents";
+
   /**
    * The Elasticsearch client
    */
   private ElasticsearchClient client;
+
+  /**
+   * The Elasticsearch client for {@link #PARENTS_INDEX_NAME}
+   */
+  private ElasticsearchClient parentsClient;
+
+  /**
+   * Stores the parents of XML chunks only once
+   */
+  private ParentContextRegistry parentContexts;
   
   /**
    * The GeoRocket store
@@ -133,24 +167,56 @@ public class IndexerVerticle extends AbstractVerticle {
    */
   private int maxParallelInserts;
 
-  /**
-   * The maximum number of chunks the indexer queues due to backpressure before
-   * it tells the importer to pause (see {@link #queuedAddMessages}). If this
-   * happens, the indexer will later unpause the importer as soon as at least
-   * half of the queued chunks have been indexed.
-   */
-  private int maxQueuedChunks;
-  
   /**
    * The number of add message currently queued due to backpressure
-   * (see {@link #onAdd(List)})
+   * (see {@link #onAdd(List, List)})
    */
   private int queuedAddMessages;
 
   /**
-   * {@code true} if the importer is currently paused due to backpressure
+   * Keeps track of the credits granted to importers. Limits the number of
+   * chunks and bytes importers may send to this indexer before they have
+   * been indexed.
+   */
+  private CreditManager creditManager;
+
+  /**
+   * The address where this indexer instance receives chunks for which
+   * credits have been granted
+   */
+  private String addAddress;
+
+  /**
+   * The address where this indexer instance receives unused credits
+   */
+  private String creditsReturnAddress;
+
+  /**
+   * Add messages waiting to be indexed
+   */
+  private final AddMessageQueue<Message<JsonObject>> pendingAddMessages =
+      new AddMessageQueue<>(this::estimateChunkSize);
+
+  /**
+   * The number of bulk processes currently running
+   */
+  private int runningBulks;
+
+  /**
+   * Controls the size of bulks and the number of bulk processes
    */
-  private boolean pauseImport;
+  private AdaptiveBulkController bulkController;
+
+  /**
+   * The number of seconds between two sweeps of unreferenced parent
+   * contexts (0 if they should not be swept)
+   */
+  private long parentContextsSweepInterval;
+
+  /**
+   * True if unreferenced parent contexts are currently being swept
+   */
+  private boolean sweepingParentContexts;
   
   @Override
   public void start(Future<Void> startFuture) {
@@ -160,8 +226,24 @@ public class IndexerVerticle extends AbstractVerticle {
         ConfigConstants.DEFAULT_INDEX_MAX_BULK_SIZE);
     maxParallelInserts = config().getInteger(ConfigConstants.INDEX_MAX_PARALLEL_INSERTS,
         ConfigConstants.DEFAULT_INDEX_MAX_PARALLEL_INSERTS);
-    maxQueuedChunks = config().getInteger(ConfigConstants.INDEX_MAX_QUEUED_CHUNKS,
+    int maxQueuedChunks = config().getInteger(ConfigConstants.INDEX_MAX_QUEUED_CHUNKS,
         ConfigConstants.DEFAULT_INDEX_MAX_QUEUED_CHUNKS);
+    long maxQueuedBytes = config().getLong(ConfigConstants.INDEX_MAX_QUEUED_BYTES,
+        ConfigConstants.DEFAULT_INDEX_MAX_QUEUED_BYTES);
+    creditManager = new CreditManager(maxQueuedChunks, maxQueuedBytes);
+    String instanceId = UUID.randomUUID().toString();
+    addAddress = AddressConstants.INDEXER_ADD + "." + instanceId;
+    creditsReturnAddress = AddressConstants.INDEXER_CREDITS_RETURN + "." + instanceId;
+    long maxBulkBytes = config().getLong(ConfigConstants.INDEX_MAX_BULK_BYTES,
+        ConfigConstants.DEFAULT_INDEX_MAX_BULK_BYTES);
+    long bulkTargetLatency = config().getLong(
+        ConfigConstants.INDEX_BULK_TARGET_LATENCY_MILLIS,
+        ConfigConstants.DEFAULT_INDEX_BULK_TARGET_LATENCY_MILLIS);
+    bulkController = new AdaptiveBulkController(MIN_BULK_BYTES, maxBulkBytes,
+        maxParallelInserts, bulkTargetLatency);
+    parentContextsSweepInterval = config().getLong(
+        ConfigConstants.INDEX_PARENT_CONTEXTS_SWEEP_INTERVAL_SECONDS,
+        ConfigConstants.DEFAULT_INDEX_PARENT_CONTEXTS_SWEEP_INTERVAL_SECONDS);
     
     // load and copy all indexer factories now and not lazily to avoid
     // concurrent modifications to the service loader's internal cache
@@ -181,12 +263,20 @@ public class IndexerVerticle extends AbstractVerticle {
     queryCompiler = createQueryCompiler();
     queryCompiler.setQueryCompilers(indexerFactories);
     
-    new ElasticsearchClientFactory(vertx).createElasticsearchClient(INDEX_NAME)
+    ElasticsearchClientFactory clientFactory = new ElasticsearchClientFactory(vertx);
+    clientFactory.createElasticsearchClient(INDEX_NAME)
       .doOnSuccess(es -> {
         client = es;
       })
       .flatMapCompletable(v -> client.ensureIndex())
       .andThen(Completable.defer(this::ensureMapping))
+      .andThen(Single.defer(() ->
+          clientFactory.createElasticsearchClient(PARENTS_INDEX_NAME)))
+      .doOnSuccess(es -> {
+        parentsClient = es;
+        parentContexts = new ParentContextRegistry(es);
+      })
+      .flatMapCompletable(v -> parentContexts.init())
       .subscribe(() -> {
         registerMessageConsumers();
         startFuture.complete();
@@ -196,16 +286,24 @@ public class IndexerVerticle extends AbstractVerticle {
   private DefaultQueryCompiler createQueryCompiler() {
     JsonObject config = vertx.getOrCreateContext().config();
     String cls = config.getString(ConfigConstants.QUERY_COMPILER_CLASS, DefaultQueryCompiler.class.getName());
+    DefaultQueryCompiler result;
     try {
-      return (DefaultQueryCompiler)Class.forName(cls).newInstance();
+      result = (DefaultQueryCompiler)Class.forName(cls).newInstance();
     } catch (ReflectiveOperationException e) {
       throw new RuntimeException("Could not create a DefaultQueryCompiler", e);
     }
+    result.setCacheSize(config.getLong(ConfigConstants.QUERY_CACHE_SIZE,
+      ConfigConstants.DEFAULT_QUERY_CACHE_SIZE));
+    DefaultQueryCompiler.warmUp();
+    return result;
   }
   
   @Override
   public void stop() {
     client.close();
+    if (parentsClient != null) {
+      parentsClient.close();
+    }
   }
 
   /**
@@ -213,8 +311,35 @@ public class IndexerVerticle extends AbstractVerticle {
    */
   private void registerMessageConsumers() {
     registerAdd();
+    registerCredits();
     registerDelete();
     registerQuery();
+    registerGetStats();
+    registerParentContextsSweep();
+  }
+
+  /**
+   * Regularly delete parent contexts that are not referenced by any chunk
+   * anymore (see {@link ParentContextRegistry#sweep(ElasticsearchClient, String)})
+   */
+  private void registerParentContextsSweep() {
+    if (parentContextsSweepInterval <= 0) {
+      return;
+    }
+    vertx.setPeriodic(parentContextsSweepInterval * 1000, id -> {
+      if (sweepingParentContexts) {
+        return;
+      }
+      sweepingParentContexts = true;
+      parentContexts.sweep(client, TYPE_NAME)
+        .doAfterTerminate(() -> sweepingParentContexts = false)
+        .subscribe(n -> {
+          if (n > 0) {
+            log.info("Deleted " + n + " unreferenced parent contexts");
+          }
+        }, err -> log.error("Could not delete unreferenced parent contexts",
+            err));
+    });
   }
 
   /**
@@ -229,48 +354,211 @@ public class IndexerVerticle extends AbstractVerticle {
    * Register consumer for add messages
    */
   private void registerAdd() {
-    vertx.eventBus().<JsonObject>consumer(AddressConstants.INDEXER_ADD)
+    // chunks sent without credits (e.g. by older importers). these chunks
+    // may only be read from this node's cache or store, so do not accept
+    // them from other cluster nodes.
+    vertx.eventBus().<JsonObject>localConsumer(AddressConstants.INDEXER_ADD)
+      .toObservable()
+      .subscribe(this::queueAddMessage);
+
+    // chunks for which this instance has granted credits
+    vertx.eventBus().<JsonObject>consumer(addAddress)
       .toObservable()
-      .doOnNext(v -> {
-        queuedAddMessages++;
+      .subscribe(this::queueAddMessage);
+
+    // regularly index chunks even if there are not enough for a full bulk
+    vertx.setPeriodic(BUFFER_TIMESPAN, id -> startBulks(true));
+  }
+
+  /**
+   * Queue an add message until it can be indexed in a bulk
+   * @param msg the message
+   */
+  private void queueAddMessage(Message<JsonObject> msg) {
+    queuedAddMessages++;
+    pendingAddMessages.add(msg);
+    startBulks(false);
+  }
+
+  /**
+   * Register consumers for credit requests and returned credits. Credit
+   * requests from other cluster nodes are only accepted if the store is
+   * shared because chunks imported on other nodes have to be read from it.
+   * @see CreditClient
+   */
+  private void registerCredits() {
+    vertx.eventBus().<JsonObject>localConsumer(AddressConstants.INDEXER_CREDITS_REQUEST)
+      .toObservable()
+      .subscribe(this::onCreditsRequest);
+
+    if (vertx.isClustered() && store.isShared()) {
+      vertx.eventBus().<JsonObject>consumer(
+          AddressConstants.INDEXER_CREDITS_REQUEST_REMOTE)
+        .toObservable()
+        .subscribe(this::onCreditsRequest);
+    }
+
+    vertx.eventBus().<JsonObject>consumer(creditsReturnAddress)
+      .toObservable()
+      .subscribe(msg -> {
+        JsonObject body = msg.body();
+        creditManager.release(body.getString("key"),
+            body.getLong("chunks", 0L), body.getLong("bytes", 0L));
+      });
+  }
+
+  /**
+   * Handle a credit request
+   * @param msg the request
+   */
+  private void onCreditsRequest(Message<JsonObject> msg) {
+    JsonObject body = msg.body();
+    long[] granted = creditManager.request(body.getString("key"),
+        body.getLong("chunks", 1L), body.getLong("bytes", 0L),
+        body.getLong("minBytes", 0L));
+    msg.reply(new JsonObject()
+      .put("chunks", granted[0])
+      .put("bytes", granted[1])
+      .put("address", addAddress)
+      .put("returnAddress", creditsReturnAddress));
+  }
 
-        // pause import if necessary
-        if (queuedAddMessages > maxQueuedChunks && !pauseImport) {
-          pauseImport = true;
-          vertx.eventBus().send(AddressConstants.IMPORTER_PAUSE, pauseImport);
+  /**
+   * Release the credits of indexed add messages. Also remove their chunks
+   * from the cache of indexable chunks in case they have not been requested.
+   * @param messages the messages
+   */
+  private void releaseCredits(List<Message<JsonObject>> messages) {
+    IndexableChunkCache cache = IndexableChunkCache.getInstance();
+    for (Message<JsonObject> msg : messages) {
+      Long credit = msg.body().getLong("credit");
+      if (credit != null) {
+        creditManager.release(msg.body().getString("correlationId"), 1, credit);
+        String path = msg.body().getString("path");
+        if (path != null) {
+          cache.remove(path);
         }
-      })
-      .buffer(BUFFER_TIMESPAN, TimeUnit.MILLISECONDS, maxBulkSize)
-      .onBackpressureBuffer() // unlimited buffer
-      .flatMapCompletable(messages -> {
-        queuedAddMessages -= messages.size();
-
-        // resume import if possible
-        if (pauseImport && queuedAddMessages <= maxQueuedChunks / 2) {
-          pauseImport = false;
-          vertx.eventBus().send(AddressConstants.IMPORTER_PAUSE, pauseImport);
+      }
+    }
+  }
+
+  /**
+   * Estimate the size of the chunk referred to by an add message
+   * @param msg the message
+   * @return the chunk's estimated size in bytes
+   */
+  private long estimateChunkSize(Message<JsonObject> msg) {
+    Long credit = msg.body().getLong("credit");
+    if (credit != null) {
+      // the importer told us the exact size
+      return credit;
+    }
+    JsonObject meta = msg.body().getJsonObject("meta");
+    if (meta == null) {
+      return DEFAULT_CHUNK_SIZE;
+    }
+    long start = meta.getLong("start", 0L);
+    long end = meta.getLong("end", start);
+    return end > start ? end - start : DEFAULT_CHUNK_SIZE;
+  }
+
+  /**
+   * Start as many bulk processes for pending add messages as the
+   * {@link #bulkController} allows
+   * @param force {@code true} if bulk processes should be started even if
+   * there are not enough pending messages for a full bulk
+   */
+  private void startBulks(boolean force) {
+    while (!pendingAddMessages.isEmpty() &&
+        runningBulks < bulkController.getConcurrency()) {
+      long bulkBytes = bulkController.getBulkBytes();
+      boolean full = pendingAddMessages.size() >= maxBulkSize ||
+          pendingAddMessages.getBytes() >= bulkBytes;
+      if (!full && !force) {
+        break;
+      }
+
+      List<Message<JsonObject>> messages = new ArrayList<>();
+      long bytes = 0;
+      while (!pendingAddMessages.isEmpty() && messages.size() < maxBulkSize) {
+        long size = estimateChunkSize(pendingAddMessages.peek());
+        if (!messages.isEmpty() && bytes + size > bulkBytes) {
+          break;
         }
+        messages.add(pendingAddMessages.poll());
+        bytes += size;
+      }
 
-        return onAdd(messages)
-          .onErrorComplete(err -> {
-            // reply with error to all peers
-            log.error("Could not index document", err);
-            messages.forEach(msg -> msg.fail(throwableToCode(err), err.getMessage()));
-            // ignore error
-            return true;
-          });
-      }, false, maxParallelInserts)
-      .toCompletable()
+      startBulk(messages);
+    }
+  }
+
+  /**
+   * Start a bulk process for the given add messages
+   * @param messages the messages
+   */
+  private void startBulk(List<Message<JsonObject>> messages) {
+    runningBulks++;
+    queuedAddMessages -= messages.size();
+
+    List<Message<JsonObject>> rejected = new ArrayList<>();
+    onAdd(messages, rejected)
+      .onErrorComplete(err -> {
+        // reply with error to all peers
+        log.error("Could not index document", err);
+        messages.forEach(msg -> msg.fail(throwableToCode(err), err.getMessage()));
+        // ignore error
+        return true;
+      })
       .subscribe(() -> {
-        // ignore
-      }, err -> {
-        // This is bad. It will unsubscribe the consumer from the eventbus!
-        // Should never happen anyhow. If it does, something else has
-        // completely gone wrong.
-        log.fatal("Could not index document", err);
+        runningBulks--;
+        List<Message<JsonObject>> done = without(messages, rejected);
+        if (!rejected.isEmpty()) {
+          vertx.setTimer(RETRY_INTERVAL, id -> retryRejected(rejected));
+        }
+        pendingAddMessages.forget(done);
+        releaseCredits(done);
+        startBulks(false);
       });
   }
-  
+
+  /**
+   * Remove messages from a list
+   * @param messages the list
+   * @param toRemove the messages to remove (compared by identity)
+   * @return a list containing all messages that should not be removed
+   */
+  private static List<Message<JsonObject>> without(
+      List<Message<JsonObject>> messages, List<Message<JsonObject>> toRemove) {
+    if (toRemove.isEmpty()) {
+      return messages;
+    }
+    Set<Message<JsonObject>> r = Collections.newSetFromMap(
+        new IdentityHashMap<>());
+    r.addAll(toRemove);
+    return Seq.seq(messages).filter(msg -> !r.contains(msg)).toList();
+  }
+
+  /**
+   * Put add messages whose chunks have been rejected by Elasticsearch back
+   * into the queue of pending messages. Fail messages that have already
+   * been retried {@link #MAX_RETRIES} times.
+   * @param rejected the rejected messages
+   */
+  private void retryRejected(List<Message<JsonObject>> rejected) {
+    List<Message<JsonObject>> exhausted =
+        pendingAddMessages.retry(rejected, MAX_RETRIES);
+    queuedAddMessages += rejected.size() - exhausted.size();
+    if (!exhausted.isEmpty()) {
+      log.error("Elasticsearch rejected " + exhausted.size() + " chunks " +
+          MAX_RETRIES + " times. Giving up.");
+      exhausted.forEach(msg -> msg.fail(429,
+          "Elasticsearch rejected the chunk too many times"));
+      releaseCredits(exhausted);
+    }
+    startBulks(true);
+  }
+
   /**
    * Register consumer for delete messages
    */
@@ -303,6 +591,31 @@ public class IndexerVerticle extends AbstractVerticle {
       });
   }
   
+  /**
+   * Register consumer for requests asking for the current state of
+   * the indexer. The stats only describe this node, so requests from other
+   * nodes are not answered.
+   */
+  private void registerGetStats() {
+    vertx.eventBus().<Void>localConsumer(AddressConstants.INDEXER_GET_STATS)
+      .toObservable()
+      .subscribe(msg -> {
+        JsonObject stats = new JsonObject()
+          .put("queuedChunks", queuedAddMessages)
+          .put("pendingChunks", pendingAddMessages.size())
+          .put("pendingBytes", pendingAddMessages.getBytes())
+          .put("retryingChunks", pendingAddMessages.getRetryingCount())
+          .put("runningBulks", runningBulks)
+          .put("outstandingCreditChunks", creditManager.getOutstandingChunks())
+          .put("outstandingCreditBytes", creditManager.getOutstandingBytes())
+          .put("bulkController", bulkController.toJsonObject())
+          .put("indexableChunkCache",
+              IndexableChunkCache.getInstance().getStats())
+          .put("crsCache", CRSCache.getInstance().getStatsAsJson());
+        msg.reply(stats);
+      });
+  }
+
   private Completable ensureMapping() {
     // merge mappings from all indexers
     Map<String, Object> mappings = new HashMap<>();
@@ -317,12 +630,16 @@ public class IndexerVerticle extends AbstractVerticle {
   /**
    * Insert multiple Elasticsearch documents into the index. Perform a
    * bulk request. This method replies to all messages if the bulk request
-   * was successful.
+   * was successful. Messages whose documents have been rejected because
+   * Elasticsearch was too busy are not replied to but added to the given
+   * list, so they can be retried.
    * @param documents a list of tuples containing document IDs, documents to
    * index, and the respective messages from which the documents were created
+   * @param rejected a list to which rejected messages will be added
    * @return a Completable that completes when the operation has finished
    */
-  private Completable insertDocuments(List<Tuple3<String, JsonObject, Message<JsonObject>>> documents) {
+  private Completable insertDocuments(List<Tuple3<String, JsonObject, Message<JsonObject>>> documents,
+      List<Message<JsonObject>> rejected) {
     long startTimeStamp = System.currentTimeMillis();
     
     List<String> chunkPaths = Seq.seq(documents)
@@ -343,6 +660,8 @@ public class IndexerVerticle extends AbstractVerticle {
       .map(Tuple3::v3)
       .toList();
     
+    long bytes = Seq.seq(messages).mapToLong(this::estimateChunkSize).sum();
+    
     return client.bulkInsert(TYPE_NAME, docsToInsert).flatMapCompletable(bres -> {
       JsonArray items = bres.getJsonArray("items");
       for (int i = 0; i < items.size(); ++i) {
@@ -350,13 +669,25 @@ public class IndexerVerticle extends AbstractVerticle {
         JsonObject item = jo.getJsonObject("index");
         Message<JsonObject> msg = messages.get(i);
         if (client.bulkResponseItemHasErrors(item)) {
-          msg.fail(500, client.bulkResponseItemGetErrorMessage(item));
+          if (isRejected(item)) {
+            // Elasticsearch is too busy. try again later.
+            rejected.add(msg);
+          } else {
+            msg.fail(500, client.bulkResponseItemGetErrorMessage(item));
+          }
         } else {
           msg.reply(null);
         }
       }
       
       long stopTimeStamp = System.currentTimeMillis();
+      if (!rejected.isEmpty()) {
+        bulkController.onRejected();
+      } else {
+        bulkController.onSuccess(bytes, stopTimeStamp - startTimeStamp);
+      }
+      notifyIndexChanged();
+
       String errorMessage = client.bulkResponseGetErrorMessage(bres);
       if (errorMessage != null) {
         log.error("Indexing failed");
@@ -367,9 +698,43 @@ public class IndexerVerticle extends AbstractVerticle {
       }
 
       return Completable.complete();
+    }).onErrorResumeNext(err -> {
+      if (err instanceof HttpException &&
+          ((HttpException)err).getStatusCode() == 429) {
+        // Elasticsearch rejected the whole bulk. try again later.
+        log.warn("Elasticsearch rejected bulk of " + messages.size() +
+            " chunks. Trying again later.");
+        bulkController.onRejected();
+        rejected.addAll(messages);
+        return Completable.complete();
+      }
+      return Completable.error(err);
     });
   }
 
+  /**
+   * Tell all listeners (e.g. result caches on all nodes) that chunks have
+   * been added to or removed from the index
+   */
+  private void notifyIndexChanged() {
+    vertx.eventBus().publish(AddressConstants.INDEXER_CHANGED, null);
+  }
+
+  /**
+   * Check if an item of a bulk response has been rejected because
+   * Elasticsearch was too busy
+   * @param item the item
+   * @return {@code true} if the item has been rejected
+   */
+  static boolean isRejected(JsonObject item) {
+    if (item.getInteger("status", 0) == 429) {
+      return true;
+    }
+    JsonObject error = item.getJsonObject("error");
+    return error != null &&
+        "es_rejected_execution_exception".equals(error.getString("type"));
+  }
+
   /**
    * Send indexer tasks for the correlation IDs in the given messages
    * to the task verticle
@@ -388,8 +753,7 @@ public class IndexerVerticle extends AbstractVerticle {
         currentTask = new IndexingTask(correlationId);
         currentTask.setStartTime(Instant.now());
       } else if (!currentTask.getCorrelationId().equals(correlationId)) {
-        vertx.eventBus().publish(AddressConstants.TASK_INC,
-          JsonObject.mapFrom(currentTask));
+        TaskVerticle.publishInc(vertx.getDelegate(), currentTask);
         currentTask = new IndexingTask(correlationId);
         currentTask.setStartTime(Instant.now());
       }
@@ -400,8 +764,7 @@ public class IndexerVerticle extends AbstractVerticle {
     }
 
     if (currentTask != null) {
-      vertx.eventBus().publish(AddressConstants.TASK_INC,
-        JsonObject.mapFrom(currentTask));
+      TaskVerticle.publishInc(vertx.getDelegate(), currentTask);
     }
   }
 
@@ -436,8 +799,7 @@ public class IndexerVerticle extends AbstractVerticle {
     RemovingTask removingTask = new RemovingTask(correlationId);
     removingTask.setStartTime(Instant.now());
     removingTask.setTotalChunks(totalChunks);
-    vertx.eventBus().publish(AddressConstants.TASK_INC,
-        JsonObject.mapFrom(removingTask));
+    TaskVerticle.publishInc(vertx.getDelegate(), removingTask);
   }
 
   /**
@@ -457,17 +819,22 @@ public class IndexerVerticle extends AbstractVerticle {
     if (error != null) {
       removingTask.addError(error);
     }
-    vertx.eventBus().publish(AddressConstants.TASK_INC,
-        JsonObject.mapFrom(removingTask));
+    TaskVerticle.publishInc(vertx.getDelegate(), removingTask);
   }
 
   /**
-   * Get a chunk from the store but first look into the cache of indexable chunks
+   * Get a chunk from the store but first look into the chunks fetched by
+   * {@link #prefetchChunks(List, Map)} and into the cache of indexable chunks
    * @param path the chunk's path
+   * @param prefetched chunks that have already been fetched
    * @return the chunk
    */
-  private Single<ChunkReadStream> getChunkFromStore(String path) {
-    Buffer chunk = IndexableChunkCache.getInstance().get(path);
+  private Single<ChunkReadStream> getChunkFromStore(String path,
+      Map<String, Buffer> prefetched) {
+    Buffer chunk = prefetched.remove(path);
+    if (chunk == null) {
+      chunk = IndexableChunkCache.getInstance().get(path);
+    }
     if (chunk != null) {
       return Single.just(new DelegateChunkReadStream(chunk));
     }
@@ -480,11 +847,13 @@ public class IndexerVerticle extends AbstractVerticle {
    * @param path the path to the chunk to open
    * @param chunkMeta metadata about the chunk
    * @param indexMeta metadata used to index the chunk
+   * @param prefetched chunks that have already been fetched
    * @return an observable that emits the document
    */
   private Observable<Map<String, Object>> openChunkToDocument(
-      String path, ChunkMeta chunkMeta, IndexMeta indexMeta) {
-    return Observable.defer(() -> getChunkFromStore(path)
+      String path, ChunkMeta chunkMeta, IndexMeta indexMeta,
+      Map<String, Buffer> prefetched) {
+    return Observable.defer(() -> getChunkFromStore(path, prefetched)
       .flatMapObservable(chunk -> {
         List<? extends IndexerFactory> factories;
         Transformer<Buffer, ? extends StreamEvent> parserTransformer;
@@ -505,12 +874,7 @@ public class IndexerVerticle extends AbstractVerticle {
         }
         
         // call meta indexers
-        Map<String, Object> metaResults = new HashMap<>();
-        for (MetaIndexerFactory metaIndexerFactory : metaIndexerFactories) {
-          MetaIndexer metaIndexer = metaIndexerFactory.createIndexer();
-          metaIndexer.onIndexChunk(path, chunkMeta, indexMeta);
-          metaResults.putAll(metaIndexer.getResult());
-        }
+        Map<String, Object> metaResults = callMetaIndexers(path, chunkMeta, indexMeta);
 
         // convert chunk to document and close it
         return chunkToDocument(chunk, indexMeta.getFallbackCRSString(),
@@ -522,6 +886,43 @@ public class IndexerVerticle extends AbstractVerticle {
       .retryWhen(makeRetry());
   }
   
+  /**
+   * Call all meta indexers for the given chunk
+   * @param path the path to the chunk
+   * @param chunkMeta metadata about the chunk
+   * @param indexMeta metadata used to index the chunk
+   * @return the merged results of all meta indexers
+   */
+  private Map<String, Object> callMetaIndexers(String path,
+      ChunkMeta chunkMeta, IndexMeta indexMeta) {
+    Map<String, Object> metaResults = new HashMap<>();
+    for (MetaIndexerFactory metaIndexerFactory : metaIndexerFactories) {
+      MetaIndexer metaIndexer = metaIndexerFactory.createIndexer();
+      metaIndexer.onIndexChunk(path, chunkMeta, indexMeta);
+      metaResults.putAll(metaIndexer.getResult());
+    }
+    return metaResults;
+  }
+
+  /**
+   * Complete a document that has already been created while the chunk was
+   * imported (see {@link IndexMeta#getDocument()}). Add the results of the
+   * meta indexers to it.
+   * @param path the path to the chunk
+   * @param chunkMeta metadata about the chunk
+   * @param indexMeta metadata used to index the chunk
+   * @param doc the document created during the import
+   * @return an observable that emits the complete document
+   */
+  private Observable<Map<String, Object>> completeDocument(String path,
+      ChunkMeta chunkMeta, IndexMeta indexMeta, JsonObject doc) {
+    return Observable.fromCallable(() -> {
+      Map<String, Object> result = new HashMap<>(doc.getMap());
+      result.putAll(callMetaIndexers(path, chunkMeta, indexMeta));
+      return result;
+    });
+  }
+  
   /**
    * Convert a chunk to a Elasticsearch document
    * @param chunk the chunk to convert
@@ -539,26 +940,14 @@ public class IndexerVerticle extends AbstractVerticle {
       ChunkReadStream chunk, String fallbackCRSString,
       Transformer<Buffer, T> parserTransformer,
       List<? extends IndexerFactory> indexerFactories) {
-    List<StreamIndexer<T>> indexers = new ArrayList<>();
-    indexerFactories.forEach(factory -> {
-      @SuppressWarnings("unchecked")
-      StreamIndexer<T> i = (StreamIndexer<T>)factory.createIndexer();
-      if (fallbackCRSString != null && i instanceof CRSAware) {
-        ((CRSAware)i).setFallbackCRSString(fallbackCRSString);
-      }
-      indexers.add(i);
-    });
+    ChunkIndexer<T> indexer = new ChunkIndexer<>(indexerFactories,
+        () -> fallbackCRSString);
     
     return RxHelper.toObservable(chunk)
       .compose(parserTransformer)
-      .doOnNext(e -> indexers.forEach(i -> i.onEvent(e)))
+      .doOnNext(indexer::onEvent)
       .last() // "wait" until the whole chunk has been consumed
-      .map(e -> {
-        // create the Elasticsearch document
-        Map<String, Object> doc = new HashMap<>();
-        indexers.forEach(i -> doc.putAll(i.getResult()));
-        return doc;
-      });
+      .map(e -> indexer.finish()); // create the Elasticsearch document
   }
 
   /**
@@ -580,15 +969,66 @@ public class IndexerVerticle extends AbstractVerticle {
     }
   }
 
+  /**
+   * Fetch the chunks of all given messages that have to be opened and
+   * converted to documents. Take chunks from the cache of indexable chunks
+   * if possible and fetch all others from the store with a single request.
+   * If this request fails, the chunks will be fetched one by one later.
+   * @param messages the list of add messages
+   * @param prefetched a map to which the fetched chunks will be added
+   * @return a Completable that completes when the chunks have been fetched
+   */
+  private Completable prefetchChunks(List<Message<JsonObject>> messages,
+      Map<String, Buffer> prefetched) {
+    IndexableChunkCache cache = IndexableChunkCache.getInstance();
+    List<String> missing = new ArrayList<>();
+    for (Message<JsonObject> msg : messages) {
+      JsonObject body = msg.body();
+      String path = body.getString("path");
+      if (path == null || body.getJsonObject("meta") == null ||
+          body.getJsonObject("doc") != null) {
+        continue;
+      }
+      Buffer chunk = cache.get(path);
+      if (chunk != null) {
+        prefetched.put(path, chunk);
+      } else {
+        missing.add(path);
+      }
+    }
+
+    if (missing.size() < 2) {
+      // nothing to gain from a batch request
+      return Completable.complete();
+    }
+
+    return store.rxGetMany(missing)
+      .flatMapObservable(streams -> Observable.range(0, streams.size())
+        .concatMap(i -> RxHelper.toObservable(streams.get(i))
+          .collect(Buffer::buffer, Buffer::appendBuffer)
+          .doOnNext(chunk -> prefetched.put(missing.get(i), chunk)))
+        .doAfterTerminate(() -> streams.forEach(ChunkReadStream::close)))
+      .toCompletable()
+      .doOnError(t -> log.warn("Could not fetch " + missing.size() +
+          " chunks at once. Fetching them one by one.", t))
+      .onErrorComplete();
+  }
+
   /**
    * Will be called when chunks should be added to the index
    * @param messages the list of add messages that contain the paths to
    * the chunks to be indexed
+   * @param rejected a list to which messages will be added whose chunks
+   * have been rejected by Elasticsearch and should be retried
    * @return a Completable that completes when the operation has finished
    */
-  private Completable onAdd(List<Message<JsonObject>> messages) {
+  private Completable onAdd(List<Message<JsonObject>> messages,
+      List<Message<JsonObject>> rejected) {
     startIndexerTasks(messages);
-    return Observable.from(messages)
+    List<XMLChunkMeta> xmlChunkMetas = new ArrayList<>();
+    Map<String, Buffer> prefetched = new HashMap<>();
+    return prefetchChunks(messages, prefetched)
+      .andThen(Observable.defer(() -> Observable.from(messages)))
       .flatMap(msg -> {
         // get path to chunk from message
         JsonObject body = msg.body();
@@ -624,11 +1064,33 @@ public class IndexerVerticle extends AbstractVerticle {
         long timestamp = body.getLong("timestamp", System.currentTimeMillis());
 
         ChunkMeta chunkMeta = getMeta(meta);
+        if (chunkMeta instanceof XMLChunkMeta) {
+          // make sure the chunk references its parents by ID, so they
+          // only have to be stored once
+          XMLChunkMeta xmlChunkMeta = (XMLChunkMeta)chunkMeta;
+          if (xmlChunkMeta.getParentsId() == null &&
+              xmlChunkMeta.getParents() != null) {
+            xmlChunkMeta = new XMLChunkMeta(xmlChunkMeta.getParents(),
+                XMLChunkMeta.makeParentsId(xmlChunkMeta.getParents()),
+                xmlChunkMeta.getStart(), xmlChunkMeta.getEnd());
+            chunkMeta = xmlChunkMeta;
+          }
+          xmlChunkMetas.add(xmlChunkMeta);
+        }
         IndexMeta indexMeta = new IndexMeta(correlationId, filename, timestamp,
             tags, properties, fallbackCRSString);
 
-        // open chunk and create IndexRequest
-        return openChunkToDocument(path, chunkMeta, indexMeta)
+        // use the document created during the import if there is one.
+        // otherwise, open chunk and create IndexRequest
+        JsonObject doc = body.getJsonObject("doc");
+        Observable<Map<String, Object>> docObservable;
+        if (doc != null) {
+          docObservable = completeDocument(path, chunkMeta, indexMeta, doc);
+        } else {
+          docObservable = openChunkToDocument(path, chunkMeta, indexMeta,
+              prefetched);
+        }
+        return docObservable
           .map(doc -> Tuple.tuple(path, new JsonObject(doc), msg))
           .onErrorResumeNext(err -> {
             msg.fail(throwableToCode(err), throwableToMessage(err, ""));
@@ -638,12 +1100,14 @@ public class IndexerVerticle extends AbstractVerticle {
       .toList()
       .flatMapCompletable(l -> {
         if (!l.isEmpty()) {
-          return insertDocuments(l);
+          // store parents of XML chunks before the chunks reference them
+          return parentContexts.register(xmlChunkMetas)
+            .andThen(Completable.defer(() -> insertDocuments(l, rejected)));
         }
         return Completable.complete();
       })
       .toCompletable()
-      .doOnCompleted(() -> updateIndexerTasks(messages));
+      .doOnCompleted(() -> updateIndexerTasks(without(messages, rejected)));
   }
 
   /**
@@ -656,14 +1120,43 @@ public class IndexerVerticle extends AbstractVerticle {
     String path = body.getString("path");
     String scrollId = body.getString("scrollId");
     int pageSize = body.getInteger("size", 100);
+    int slice = body.getInteger("slice", 0);
+    int slices = body.getInteger("slices", 1);
     String timeout = "1m"; // one minute
     
     JsonObject parameters = new JsonObject()
       .put("size", pageSize);
 
+    if (slices > 1) {
+      // let Elasticsearch split the result into disjoint slices that can
+      // be scrolled independently (and in parallel)
+      parameters.put("slice", new JsonObject()
+        .put("id", slice)
+        .put("max", slices));
+    }
+
     // We only need the chunk meta. Exclude all other source fields.
     parameters.put("_source", "chunkMeta");
 
+    // convert hits to JSON as soon as they have been parsed, so the
+    // response does not have to be kept in memory
+    JsonArray resultHits = new JsonArray();
+    Set<String> parentsIds = new HashSet<>();
+    Handler<JsonObject> hitHandler = hit -> {
+      String id = hit.getString("_id");
+      JsonObject source = hit.getJsonObject("_source");
+      JsonObject jsonMeta = source.getJsonObject("chunkMeta");
+      ChunkMeta meta = getMeta(jsonMeta);
+      if (meta instanceof XMLChunkMeta &&
+          ((XMLChunkMeta)meta).getParents() == null) {
+        // the chunk only references its parents
+        parentsIds.add(((XMLChunkMeta)meta).getParentsId());
+      }
+      JsonObject obj = meta.toJsonObject()
+        .put("id", id);
+      resultHits.add(obj);
+    };
+
     Single<JsonObject> single;
     if (scrollId == null) {
       // Execute a new search. Use a post_filter because we only want to get
@@ -676,34 +1169,31 @@ public class IndexerVerticle extends AbstractVerticle {
       } catch (Throwable t) {
         return Single.error(t);
       }
-      single = client.beginScroll(TYPE_NAME, null, postFilter, parameters, timeout);
+      single = client.beginScrollHits(TYPE_NAME, null, postFilter,
+          parameters, timeout, hitHandler);
     } else {
       // continue searching
-      single = client.continueScroll(scrollId, timeout);
+      single = client.continueScrollHits(scrollId, timeout, hitHandler);
     }
 
-    return single.map(sr -> {
-      // iterate through all hits and convert them to JSON
-      JsonObject hits = sr.getJsonObject("hits");
-      long totalHits = hits.getLong("total");
-      JsonArray resultHits = new JsonArray();
-      JsonArray hitsHits = hits.getJsonArray("hits");
-      for (Object o : hitsHits) {
-        JsonObject hit = (JsonObject)o;
-        String id = hit.getString("_id");
-        JsonObject source = hit.getJsonObject("_source");
-        JsonObject jsonMeta = source.getJsonObject("chunkMeta");
-        ChunkMeta meta = getMeta(jsonMeta);
-        JsonObject obj = meta.toJsonObject()
-          .put("id", id);
-        resultHits.add(obj);
-      }
+    return single.flatMap(sr -> {
+      long totalHits = sr.getJsonObject("hits").getLong("total");
 
       // create result and send it to the client
-      return new JsonObject()
+      JsonObject result = new JsonObject()
         .put("totalHits", totalHits)
         .put("hits", resultHits)
         .put("scrollId", sr.getString("_scroll_id"));
+      if (parentsIds.isEmpty()) {
+        return Single.just(result);
+      }
+
+      // send referenced parents only once and not with every hit
+      return parentContexts.resolve(parentsIds).map(parents -> {
+        JsonObject resultParents = new JsonObject();
+        parents.forEach(resultParents::put);
+        return result.put("parents", resultParents);
+      });
     });
   }
 
@@ -732,6 +1222,7 @@ public class IndexerVerticle extends AbstractVerticle {
     long startTimeStamp = System.currentTimeMillis();
     return client.bulkDelete(TYPE_NAME, paths).flatMapCompletable(bres -> {
       long stopTimeStamp = System.currentTimeMillis();
+      notifyIndexChanged();
       if (client.bulkResponseHasErrors(bres)) {
         String error = client.bulkResponseGetErrorMessage(bres);
         log.error("One or more chunks could not be deleted");
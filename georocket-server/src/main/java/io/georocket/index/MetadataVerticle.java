@@ -95,11 +95,16 @@ public class MetadataVerticle extends AbstractVerticle {
     JsonObject config = vertx.getOrCreateContext().config();
     String cls = config.getString(ConfigConstants.QUERY_COMPILER_CLASS,
       DefaultQueryCompiler.class.getName());
+    DefaultQueryCompiler result;
     try {
-      return (DefaultQueryCompiler)Class.forName(cls).newInstance();
+      result = (DefaultQueryCompiler)Class.forName(cls).newInstance();
     } catch (ReflectiveOperationException e) {
       throw new RuntimeException("Could not create a DefaultQueryCompiler", e);
     }
+    result.setCacheSize(config.getLong(ConfigConstants.QUERY_CACHE_SIZE,
+      ConfigConstants.DEFAULT_QUERY_CACHE_SIZE));
+    DefaultQueryCompiler.warmUp();
+    return result;
   }
 
   private Completable ensureMapping() {
@@ -141,10 +146,16 @@ public class MetadataVerticle extends AbstractVerticle {
   }
 
   private Single<JsonObject> onGetAttributeValues(JsonObject body) {
+    if (body.getBoolean("distinct", false)) {
+      return onGetDistinctValues(body, "genAttrs", body.getString("attribute"));
+    }
     return onGetMap(body, "genAttrs", body.getString("attribute"));
   }
 
   private Single<JsonObject> onGetPropertyValues(JsonObject body) {
+    if (body.getBoolean("distinct", false)) {
+      return onGetDistinctValues(body, "props", body.getString("property"));
+    }
     return onGetMap(body, "props", body.getString("property"));
   }
 
@@ -169,6 +180,97 @@ public class MetadataVerticle extends AbstractVerticle {
       });
   }
 
+  /**
+   * <p>Get the distinct values of a key in the given map together with the
+   * number of matching documents having each value. The values are
+   * aggregated by Elasticsearch using a composite aggregation, so only the
+   * distinct values are transferred and not one value per document.</p>
+   * <p>The aggregation is paged. The returned scroll ID contains the key
+   * after which the next page starts and the number of values returned so
+   * far. The number of total hits is only exact for the last page. For all
+   * other pages it is one more than the number of values returned so far,
+   * so the cursor knows there are more values to fetch.</p>
+   * @param body the message containing the search, the path, the page size
+   * and the scroll ID returned with the last page (if there is one)
+   * @param map the name of the map containing the key
+   * @param key the key whose values should be retrieved
+   * @return a single emitting a page of distinct values
+   */
+  private Single<JsonObject> onGetDistinctValues(JsonObject body, String map,
+      String key) {
+    String search = body.getString("search");
+    String path = body.getString("path");
+    String scrollId = body.getString("scrollId");
+    int pageSize = body.getInteger("pageSize", 100);
+
+    JsonObject after = null;
+    long seen = 0;
+    if (scrollId != null) {
+      JsonObject s = new JsonObject(scrollId);
+      after = s.getJsonObject("after");
+      seen = s.getLong("seen", 0L);
+    }
+
+    // fetch one more bucket than requested, so we know if there is
+    // another page
+    JsonObject composite = new JsonObject()
+      .put("size", pageSize + 1)
+      .put("sources", new JsonArray().add(new JsonObject()
+        .put("value", new JsonObject()
+          .put("terms", new JsonObject()
+            .put("field", map + "." + key)))));
+    if (after != null) {
+      composite.put("after", after);
+    }
+    JsonObject aggregations = new JsonObject()
+      .put("values", new JsonObject()
+        .put("composite", composite));
+
+    JsonObject query;
+    try {
+      // we are not interested in scoring, so wrap the query in a filter
+      query = new JsonObject()
+        .put("constant_score", new JsonObject()
+          .put("filter", queryCompiler.compileQuery(search, path,
+              map + "." + key)));
+    } catch (Throwable t) {
+      return Single.error(t);
+    }
+
+    JsonObject parameters = new JsonObject()
+      .put("size", 0);
+    long finalSeen = seen;
+    return client.search(TYPE_NAME, query, null, aggregations, parameters)
+      .map(result -> {
+        JsonArray buckets = result.getJsonObject("aggregations")
+          .getJsonObject("values").getJsonArray("buckets");
+        boolean more = buckets.size() > pageSize;
+        int count = Math.min(buckets.size(), pageSize);
+
+        JsonArray hits = new JsonArray();
+        JsonObject lastKey = null;
+        for (int i = 0; i < count; ++i) {
+          JsonObject bucket = buckets.getJsonObject(i);
+          lastKey = bucket.getJsonObject("key");
+          hits.add(new JsonObject()
+            .put("value", String.valueOf(lastKey.getValue("value")))
+            .put("count", bucket.getLong("doc_count")));
+        }
+
+        long total = finalSeen + count;
+        JsonObject response = new JsonObject()
+          .put("hits", hits)
+          .put("totalHits", more ? total + 1 : total);
+        if (more) {
+          response.put("scrollId", new JsonObject()
+            .put("after", lastKey)
+            .put("seen", total)
+            .encode());
+        }
+        return response;
+      });
+  }
+
   private Single<JsonObject> executeQuery(JsonObject body, String keyExists) {
     String search = body.getString("search");
     String path = body.getString("path");
@@ -269,7 +371,9 @@ public class MetadataVerticle extends AbstractVerticle {
       }
       String script = Resources.toString(url, StandardCharsets.UTF_8);
       updateScript.put("inline", script);
-      return updateDocuments(postFilter, updateScript);
+      return updateDocuments(postFilter, updateScript)
+        .doAfterTerminate(() -> vertx.eventBus().publish(
+            AddressConstants.INDEXER_CHANGED, null));
     } catch (IOException e) {
       return Completable.error(e);
     }
@@ -0,0 +1,309 @@
+package io.georocket.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jooq.lambda.tuple.Tuple;
+import org.jooq.lambda.tuple.Tuple2;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.georocket.index.elasticsearch.ElasticsearchClient;
+import io.georocket.storage.XMLChunkMeta;
+import io.vertx.core.impl.NoStackTraceThrowable;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import rx.Completable;
+import rx.Single;
+
+/**
+ * <p>Stores the parents of XML chunks (i.e. the XML start elements the chunks
+ * are wrapped in) in a separate Elasticsearch index.</p>
+ * <p>Typically, thousands of chunks share the same parents. The registry
+ * stores each distinct list of parents only once under an ID calculated
+ * from its contents (see {@link XMLChunkMeta#makeParentsId(List)}). The
+ * chunks only reference their parents by this ID, which keeps the main
+ * index and query results small.</p>
+ * <p>The registry keeps recently used lists of parents in memory, so they
+ * do not have to be stored or retrieved again.</p>
+ * <p>Lists of parents are not removed when the chunks referencing them are
+ * deleted because other chunks may still reference them. Instead,
+ * {@link #sweep(ElasticsearchClient, String)} should be called
+ * periodically. It deletes all lists that have not been stored for at
+ * least {@link #SWEEP_MIN_AGE_MINUTES} minutes and that are not
+ * referenced by any chunk anymore. Until then, unreferenced lists remain
+ * in the index. The registry stores a list again if it has not done so
+ * for {@link #REGISTERED_EXPIRY_MINUTES} minutes, so lists that are still
+ * being used by imports are never old enough to be swept.</p>
+ * @author Michel Kraemer
+ */
+public class ParentContextRegistry {
+  /**
+   * The Elasticsearch type of the documents holding the parents
+   */
+  private static final String TYPE_NAME = "parents";
+
+  /**
+   * The maximum number of lists of parents to keep in memory
+   */
+  private static final int MAX_CACHE_SIZE = 1000;
+
+  /**
+   * The number of minutes after which a list of parents is stored again
+   * although it has already been stored by this registry
+   */
+  private static final long REGISTERED_EXPIRY_MINUTES = 10;
+
+  /**
+   * The minimum number of minutes since a list of parents has been stored
+   * before {@link #sweep(ElasticsearchClient, String)} may delete it. Must be
+   * considerably larger than {@link #REGISTERED_EXPIRY_MINUTES}, so chunks
+   * that are currently being indexed do not lose their parents.
+   */
+  private static final long SWEEP_MIN_AGE_MINUTES = 30;
+
+  /**
+   * The number of lists of parents to check in one step of a sweep
+   */
+  private static final int SWEEP_BATCH_SIZE = 1000;
+
+  /**
+   * The field in the chunk documents that references the parents
+   */
+  private static final String PARENTS_ID_FIELD = "chunkMeta.parentsId";
+
+  /**
+   * The Elasticsearch client operating on the registry's index
+   */
+  private final ElasticsearchClient client;
+
+  /**
+   * Lists of parents that have been stored or retrieved recently
+   */
+  private final Cache<String, JsonArray> cache;
+
+  /**
+   * IDs of the lists of parents that have been stored recently
+   */
+  private final Cache<String, Boolean> registered;
+
+  /**
+   * Create a new registry
+   * @param client the Elasticsearch client operating on the registry's index
+   */
+  public ParentContextRegistry(ElasticsearchClient client) {
+    this.client = client;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHE_SIZE)
+      .build();
+    this.registered = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHE_SIZE)
+      .expireAfterWrite(REGISTERED_EXPIRY_MINUTES, TimeUnit.MINUTES)
+      .build();
+  }
+
+  /**
+   * Make sure the registry's index and mapping exist
+   * @return a Completable that completes when the registry is ready
+   */
+  public Completable init() {
+    // the parents only have to be retrieved by ID. don't index them.
+    // the timestamp is required to sweep unreferenced parents.
+    JsonObject mapping = new JsonObject()
+      .put("properties", new JsonObject()
+        .put("parents", new JsonObject()
+          .put("type", "object")
+          .put("enabled", false))
+        .put("timestamp", new JsonObject()
+          .put("type", "date")));
+    return client.ensureIndex()
+      .andThen(Completable.defer(() -> client.ensureMapping(TYPE_NAME, mapping)));
+  }
+
+  /**
+   * Store the parents of the given chunks if they have not been stored yet.
+   * Chunks without a parents ID are ignored.
+   * @param metas the metadata of the chunks
+   * @return a Completable that completes when the parents have been stored
+   */
+  public Completable register(Collection<XMLChunkMeta> metas) {
+    Map<String, JsonArray> toInsert = new LinkedHashMap<>();
+    for (XMLChunkMeta meta : metas) {
+      String id = meta.getParentsId();
+      if (id == null || meta.getParents() == null ||
+          toInsert.containsKey(id) || registered.getIfPresent(id) != null) {
+        continue;
+      }
+      toInsert.put(id, XMLChunkMeta.parentsToJson(meta.getParents()));
+    }
+
+    if (toInsert.isEmpty()) {
+      return Completable.complete();
+    }
+
+    long timestamp = System.currentTimeMillis();
+    List<Tuple2<String, JsonObject>> docs = new ArrayList<>();
+    toInsert.forEach((id, parents) -> docs.add(Tuple.tuple(id,
+        new JsonObject()
+          .put("parents", parents)
+          .put("timestamp", timestamp))));
+
+    return client.bulkInsert(TYPE_NAME, docs).flatMapCompletable(bres -> {
+      if (client.bulkResponseHasErrors(bres)) {
+        return Completable.error(new NoStackTraceThrowable(
+            client.bulkResponseGetErrorMessage(bres)));
+      }
+      cache.putAll(toInsert);
+      toInsert.keySet().forEach(id -> registered.put(id, Boolean.TRUE));
+      return Completable.complete();
+    });
+  }
+
+  /**
+   * Retrieve lists of parents by their IDs
+   * @param ids the IDs
+   * @return a single emitting a map of IDs and lists of parents
+   */
+  public Single<Map<String, JsonArray>> resolve(Collection<String> ids) {
+    Map<String, JsonArray> result = new HashMap<>();
+    JsonArray missing = new JsonArray();
+    for (String id : ids) {
+      if (result.containsKey(id)) {
+        continue;
+      }
+      JsonArray parents = cache.getIfPresent(id);
+      if (parents != null) {
+        result.put(id, parents);
+      } else if (!missing.contains(id)) {
+        missing.add(id);
+      }
+    }
+
+    if (missing.isEmpty()) {
+      return Single.just(result);
+    }
+
+    return client.multiGet(TYPE_NAME, missing).flatMap(res -> {
+      JsonArray docs = res.getJsonArray("docs", new JsonArray());
+      for (int i = 0; i < docs.size(); ++i) {
+        JsonObject doc = docs.getJsonObject(i);
+        String id = doc.getString("_id");
+        if (!doc.getBoolean("found", false)) {
+          return Single.error(new NoStackTraceThrowable(
+              "Could not find parent context " + id));
+        }
+        JsonArray parents = doc.getJsonObject("_source").getJsonArray("parents");
+        cache.put(id, parents);
+        result.put(id, parents);
+      }
+      return Single.just(result);
+    });
+  }
+
+  /**
+   * Delete lists of parents that are not referenced by any chunk anymore
+   * and that have not been stored for at least
+   * {@link #SWEEP_MIN_AGE_MINUTES} minutes
+   * @param chunksClient the Elasticsearch client operating on the index
+   * containing the chunk documents
+   * @param chunksType the Elasticsearch type of the chunk documents
+   * @return a single emitting the number of deleted lists
+   */
+  public Single<Long> sweep(ElasticsearchClient chunksClient,
+      String chunksType) {
+    long maxTimestamp = System.currentTimeMillis() -
+        TimeUnit.MINUTES.toMillis(SWEEP_MIN_AGE_MINUTES);
+    JsonObject query = new JsonObject()
+      .put("range", new JsonObject()
+        .put("timestamp", new JsonObject()
+          .put("lt", maxTimestamp)));
+    JsonObject parameters = new JsonObject()
+      .put("size", SWEEP_BATCH_SIZE)
+      .put("_source", false);
+    return client.beginScroll(TYPE_NAME, query, parameters, "1m")
+      .flatMap(sr -> sweepPage(chunksClient, chunksType, sr, 0L));
+  }
+
+  /**
+   * Delete the unreferenced lists of parents from a page of search hits
+   * and continue with the next page
+   * @param chunksClient the Elasticsearch client operating on the index
+   * containing the chunk documents
+   * @param chunksType the Elasticsearch type of the chunk documents
+   * @param sr the current page
+   * @param deleted the number of lists deleted so far
+   * @return a single emitting the total number of deleted lists
+   */
+  private Single<Long> sweepPage(ElasticsearchClient chunksClient,
+      String chunksType, JsonObject sr, long deleted) {
+    JsonArray hits = sr.getJsonObject("hits").getJsonArray("hits");
+    if (hits.isEmpty()) {
+      return Single.just(deleted);
+    }
+
+    JsonArray ids = new JsonArray();
+    for (int i = 0; i < hits.size(); ++i) {
+      ids.add(hits.getJsonObject(i).getString("_id"));
+    }
+
+    // find out which of the lists are still referenced
+    JsonObject query = new JsonObject()
+      .put("terms", new JsonObject()
+        .put(PARENTS_ID_FIELD, ids));
+    JsonObject aggregations = new JsonObject()
+      .put("parentsIds", new JsonObject()
+        .put("terms", new JsonObject()
+          .put("field", PARENTS_ID_FIELD)
+          .put("size", ids.size())));
+    JsonObject parameters = new JsonObject()
+      .put("size", 0);
+
+    return chunksClient.search(chunksType, query, null, aggregations, parameters)
+      .flatMap(res -> {
+        Set<String> referenced = new HashSet<>();
+        JsonArray buckets = res.getJsonObject("aggregations")
+          .getJsonObject("parentsIds").getJsonArray("buckets");
+        for (int i = 0; i < buckets.size(); ++i) {
+          referenced.add(buckets.getJsonObject(i).getString("key"));
+        }
+
+        JsonArray unreferenced = new JsonArray();
+        for (Object id : ids) {
+          if (!referenced.contains(id)) {
+            unreferenced.add(id);
+          }
+        }
+        if (unreferenced.isEmpty()) {
+          return Single.just(0L);
+        }
+
+        return client.bulkDelete(TYPE_NAME, unreferenced).flatMap(bres -> {
+          if (client.bulkResponseHasErrors(bres)) {
+            return Single.error(new NoStackTraceThrowable(
+                client.bulkResponseGetErrorMessage(bres)));
+          }
+          for (Object id : unreferenced) {
+            cache.invalidate(id);
+          }
+          return Single.just((long)unreferenced.size());
+        });
+      })
+      .flatMap(n -> {
+        String scrollId = sr.getString("_scroll_id");
+        if (scrollId == null) {
+          return Single.just(deleted + n);
+        }
+        return client.continueScroll(scrollId, "1m")
+          .flatMap(next -> sweepPage(chunksClient, chunksType, next,
+              deleted + n));
+      });
+  }
+}
@@ -0,0 +1,201 @@
+package io.georocket.index.elasticsearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPOutputStream;
+
+import org.jooq.lambda.tuple.Tuple2;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>Encodes the body of an Elasticsearch bulk request. The body is not
+ * created at once. It is encoded chunk by chunk instead, so a chunk can
+ * be sent while the next one is being generated.</p>
+ * <p>Action lines and documents are written directly into the chunks with
+ * a Jackson generator. No intermediate objects or buffers are created per
+ * document. If requested, the body is compressed with GZIP on the fly.</p>
+ * <p>The encoder is immutable and {@link #encode(boolean)} can be called
+ * multiple times, for example if a request has to be retried.</p>
+ * @author Michel Kraemer
+ */
+public class BulkRequestEncoder {
+  /**
+   * The default size of a chunk in bytes
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  private final String action;
+  private final List<String> ids;
+  private final List<JsonObject> documents;
+  private final int chunkSize;
+
+  /**
+   * Create a new encoder
+   * @param action the bulk action (e.g. <code>index</code>)
+   * @param ids the IDs of the documents
+   * @param documents the documents (may be <code>null</code> if the
+   * action does not require a document)
+   * @param chunkSize the minimum size of a chunk in bytes
+   */
+  private BulkRequestEncoder(String action, List<String> ids,
+      List<JsonObject> documents, int chunkSize) {
+    this.action = action;
+    this.ids = ids;
+    this.documents = documents;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Create an encoder for a bulk request that inserts documents
+   * @param documents a list of document IDs and actual documents to insert
+   * @return the encoder
+   */
+  public static BulkRequestEncoder index(List<Tuple2<String, JsonObject>> documents) {
+    return index(documents, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Create an encoder for a bulk request that inserts documents
+   * @param documents a list of document IDs and actual documents to insert
+   * @param chunkSize the minimum size of a chunk in bytes
+   * @return the encoder
+   */
+  public static BulkRequestEncoder index(List<Tuple2<String, JsonObject>> documents,
+      int chunkSize) {
+    List<String> ids = new ArrayList<>(documents.size());
+    List<JsonObject> docs = new ArrayList<>(documents.size());
+    for (Tuple2<String, JsonObject> d : documents) {
+      ids.add(d.v1);
+      docs.add(d.v2);
+    }
+    return new BulkRequestEncoder("index", ids, docs, chunkSize);
+  }
+
+  /**
+   * Create an encoder for a bulk request that deletes documents
+   * @param ids the IDs of the documents to delete
+   * @return the encoder
+   */
+  public static BulkRequestEncoder delete(JsonArray ids) {
+    List<String> l = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); ++i) {
+      l.add(ids.getString(i));
+    }
+    return new BulkRequestEncoder("delete", l, null, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Start encoding the body
+   * @param compress true if the body should be compressed with GZIP
+   * @return an iterator generating the chunks of the body. The iterator
+   * always generates at least one chunk. It throws an
+   * {@link UncheckedIOException} if a chunk could not be encoded.
+   */
+  public Iterator<Buffer> encode(boolean compress) {
+    return new Chunks(compress);
+  }
+
+  /**
+   * An output stream writing into the current chunk
+   */
+  private static class ChunkOutputStream extends OutputStream {
+    ByteBuf chunk;
+
+    @Override
+    public void write(int b) {
+      chunk.writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      chunk.writeBytes(b, off, len);
+    }
+  }
+
+  /**
+   * Generates the chunks of the body
+   */
+  private class Chunks implements Iterator<Buffer> {
+    private final ChunkOutputStream out = new ChunkOutputStream();
+    private final JsonGenerator generator;
+    private int next = 0;
+    private boolean finished = false;
+
+    /**
+     * Create the generator
+     * @param compress true if the body should be compressed with GZIP
+     */
+    Chunks(boolean compress) {
+      try {
+        OutputStream os = compress ? new GZIPOutputStream(out, 8192) : out;
+        generator = Json.mapper.getFactory().createGenerator(os);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !finished;
+    }
+
+    @Override
+    public Buffer next() {
+      if (finished) {
+        throw new NoSuchElementException();
+      }
+
+      out.chunk = Unpooled.buffer(chunkSize + chunkSize / 4);
+      try {
+        while (out.chunk.readableBytes() < chunkSize && next < ids.size()) {
+          writeItem(next);
+          ++next;
+          generator.flush();
+        }
+        if (next == ids.size()) {
+          // writes the GZIP trailer if necessary
+          generator.close();
+          finished = true;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      ByteBuf result = out.chunk;
+      out.chunk = null;
+      return Buffer.buffer(result);
+    }
+
+    /**
+     * Write the action line and the document of an item
+     * @param i the item's index
+     * @throws IOException if the item could not be written
+     */
+    private void writeItem(int i) throws IOException {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart(action);
+      generator.writeStringField("_id", ids.get(i));
+      generator.writeEndObject();
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+      if (documents != null) {
+        generator.writeObject(documents.get(i));
+        generator.writeRaw('\n');
+      }
+    }
+  }
+}
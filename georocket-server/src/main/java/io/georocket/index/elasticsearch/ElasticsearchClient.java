@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.jooq.lambda.tuple.Tuple2;
 
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import rx.Completable;
@@ -90,6 +91,66 @@ public interface ElasticsearchClient {
    */
   Single<JsonObject> continueScroll(String scrollId, String timeout);
   
+  /**
+   * Perform a search and start scrolling over the result documents. In
+   * contrast to {@link #beginScroll(String, JsonObject, JsonObject, JsonObject, String)},
+   * the search hits are not included in the returned object. They are
+   * passed to the given handler one by one instead. Implementations may
+   * call the handler while the response is still being received.
+   * @param type the type of the documents to search
+   * @param query the query to send (may be <code>null</code>, in this case
+   * <code>postFilter</code> must be set)
+   * @param postFilter a filter to apply (may be <code>null</code>, in this case
+   * <code>query</code> must be set)
+   * @param parameters the elasticsearch parameters
+   * @param timeout the time after which the returned scroll id becomes invalid
+   * @param hitHandler a handler that will be called for each search hit
+   * @return an object containing the total number of hits and a scroll id
+   * that can be passed to {@link #continueScrollHits(String, String, Handler)}
+   * to get more results
+   */
+  default Single<JsonObject> beginScrollHits(String type, JsonObject query,
+      JsonObject postFilter, JsonObject parameters, String timeout,
+      Handler<JsonObject> hitHandler) {
+    return beginScroll(type, query, postFilter, parameters, timeout)
+      .map(sr -> extractHits(sr, hitHandler));
+  }
+
+  /**
+   * Continue scrolling through search results. Call
+   * {@link #beginScrollHits(String, JsonObject, JsonObject, JsonObject, String, Handler)}
+   * to get a scroll id
+   * @param scrollId the scroll id
+   * @param timeout the time after which the scroll id becomes invalid
+   * @param hitHandler a handler that will be called for each search hit
+   * @return an object containing the total number of hits and possibly a
+   * new scroll id
+   */
+  default Single<JsonObject> continueScrollHits(String scrollId, String timeout,
+      Handler<JsonObject> hitHandler) {
+    return continueScroll(scrollId, timeout)
+      .map(sr -> extractHits(sr, hitHandler));
+  }
+
+  /**
+   * Remove the search hits from a search response and pass them to a handler
+   * @param response the search response
+   * @param hitHandler a handler that will be called for each search hit
+   * @return the search response without hits
+   */
+  static JsonObject extractHits(JsonObject response, Handler<JsonObject> hitHandler) {
+    JsonObject hits = response.getJsonObject("hits");
+    if (hits != null) {
+      Object hitsHits = hits.remove("hits");
+      if (hitsHits instanceof JsonArray) {
+        for (Object hit : (JsonArray)hitsHits) {
+          hitHandler.handle((JsonObject)hit);
+        }
+      }
+    }
+    return response;
+  }
+
   /**
    * Perform a search. The result set might not contain all documents. If you
    * want to scroll over all results use
@@ -135,6 +196,18 @@ public interface ElasticsearchClient {
   Single<JsonObject> search(String type, JsonObject query,
     JsonObject postFilter, JsonObject aggregations, JsonObject parameters);
 
+  /**
+   * Get a number of documents by their IDs in one request. In contrast to
+   * {@link #search(String, JsonObject, JsonObject)}, this operation is
+   * real-time, which means documents can be retrieved immediately after
+   * they have been inserted.
+   * @param type the type of the documents to get
+   * @param ids the IDs of the documents to get
+   * @return an object containing the documents as returned from
+   * Elasticsearch (i.e. an array called <code>docs</code>)
+   */
+  Single<JsonObject> multiGet(String type, JsonArray ids);
+
   /**
    * Perform a count operation. The result is the number of documents
    * matching the query (without the documents themselves). If no query
@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.jooq.lambda.tuple.Tuple2;
 
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import rx.Completable;
@@ -52,12 +53,31 @@ public class EmbeddedElasticsearchClient implements ElasticsearchClient {
     return delegate.continueScroll(scrollId, timeout);
   }
 
+  @Override
+  public Single<JsonObject> beginScrollHits(String type, JsonObject query,
+      JsonObject postFilter, JsonObject parameters, String timeout,
+      Handler<JsonObject> hitHandler) {
+    return delegate.beginScrollHits(type, query, postFilter, parameters,
+        timeout, hitHandler);
+  }
+
+  @Override
+  public Single<JsonObject> continueScrollHits(String scrollId, String timeout,
+      Handler<JsonObject> hitHandler) {
+    return delegate.continueScrollHits(scrollId, timeout, hitHandler);
+  }
+
   @Override
   public Single<JsonObject> search(String type, JsonObject query,
     JsonObject postFilter, JsonObject aggregations, JsonObject parameters) {
     return delegate.search(type, query, postFilter, aggregations, parameters);
   }
 
+  @Override
+  public Single<JsonObject> multiGet(String type, JsonArray ids) {
+    return delegate.multiGet(type, ids);
+  }
+
   @Override
   public Single<Long> count(String type, JsonObject query) {
     return delegate.count(type, query);
@@ -12,6 +12,7 @@ import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.impl.NoStackTraceThrowable;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
@@ -28,6 +29,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * An HTTP client that can perform requests against multiple hosts using
@@ -145,13 +148,32 @@ public class LoadBalancingHttpClient {
   }
 
   /**
-   * Perform an HTTP request and convert the response to a JSON object
+   * An error that happened while a response was being parsed after items
+   * have already been passed to the item handler. Requests failing with
+   * this error must not be retried, or else the items would be handled
+   * twice.
+   */
+  private static class PartialResponseException extends NoStackTraceThrowable {
+    private static final long serialVersionUID = 7094402349389468563L;
+
+    PartialResponseException(Throwable cause) {
+      super("Could not read whole response: " + cause.getMessage());
+    }
+  }
+
+  /**
+   * Perform an HTTP request and parse the response while it is being
+   * received
    * @param req the request to perform
-   * @param body the body to send in the request (may be {@code null})
+   * @param bodyWriter writes the request body and ends the request. Gets
+   * a handler that should be called if the body could not be written.
+   * @param parser the parser for the response
    * @return an observable emitting the parsed response body (may be
    * {@code null} if no body was received)
    */
-  private Single<JsonObject> performRequest(HttpClientRequest req, Buffer body) {
+  private Single<JsonObject> performRequest(HttpClientRequest req,
+      BiConsumer<HttpClientRequest, Handler<Throwable>> bodyWriter,
+      StreamingResponseParser parser) {
     ObservableFuture<JsonObject> observable = RxHelper.observableFuture();
     Handler<AsyncResult<JsonObject>> handler = observable.toHandler();
 
@@ -160,14 +182,40 @@ public class LoadBalancingHttpClient {
     req.handler(res -> {
       int code = res.statusCode();
       if (code == 200) {
-        Buffer buf = Buffer.buffer();
-        res.handler(buf::appendBuffer);
+        boolean[] failed = new boolean[1];
+        Handler<Throwable> fail = t -> {
+          if (failed[0]) {
+            return;
+          }
+          failed[0] = true;
+          if (parser.getItemCount() > 0) {
+            t = new PartialResponseException(t);
+          }
+          handler.handle(Future.failedFuture(t));
+        };
+        res.exceptionHandler(fail);
+        res.handler(buf -> {
+          if (failed[0]) {
+            return;
+          }
+          try {
+            parser.feed(buf);
+          } catch (Throwable t) {
+            fail.handle(t);
+          }
+        });
         res.endHandler(v -> {
-          if (buf.length() > 0) {
-            handler.handle(Future.succeededFuture(buf.toJsonObject()));
-          } else {
-            handler.handle(Future.succeededFuture());
+          if (failed[0]) {
+            return;
           }
+          JsonObject result;
+          try {
+            result = parser.end();
+          } catch (Throwable t) {
+            fail.handle(t);
+            return;
+          }
+          handler.handle(Future.succeededFuture(result));
         });
       } else {
         Buffer buf = Buffer.buffer();
@@ -177,6 +225,20 @@ public class LoadBalancingHttpClient {
       }
     });
 
+    bodyWriter.accept(req, t -> {
+      req.reset();
+      handler.handle(Future.failedFuture(t));
+    });
+
+    return observable.toSingle();
+  }
+
+  /**
+   * Write a body to a request and end it
+   * @param req the request
+   * @param body the body to send in the request (may be {@code null})
+   */
+  private void writeBody(HttpClientRequest req, Buffer body) {
     if (body != null) {
       req.putHeader("Accept", "application/json");
       req.putHeader("Content-Type", "application/json");
@@ -193,8 +255,74 @@ public class LoadBalancingHttpClient {
     } else {
       req.end();
     }
+  }
 
-    return observable.toSingle();
+  /**
+   * Encode a bulk request body and write it to a request. The body is
+   * encoded chunk by chunk while the previous chunks are being sent.
+   * Bodies that fit into a single chunk are sent without chunked transfer
+   * encoding.
+   * @param req the request
+   * @param encoder the encoder generating the body
+   * @param fail a handler that will be called if the body could not
+   * be encoded
+   */
+  private void writeBody(HttpClientRequest req, BulkRequestEncoder encoder,
+      Handler<Throwable> fail) {
+    req.putHeader("Accept", "application/json");
+    req.putHeader("Content-Type", "application/x-ndjson");
+
+    Iterator<Buffer> chunks;
+    Buffer first;
+    try {
+      chunks = encoder.encode(compressRequestBodies);
+      first = chunks.next();
+    } catch (Throwable t) {
+      fail.handle(t);
+      return;
+    }
+
+    if (compressRequestBodies) {
+      req.putHeader("Content-Encoding", "gzip");
+    }
+
+    if (!chunks.hasNext()) {
+      req.setChunked(false);
+      req.putHeader("Content-Length", String.valueOf(first.length()));
+      req.end(first);
+      return;
+    }
+
+    req.setChunked(true);
+    req.write(first);
+    writeChunks(req, chunks, fail);
+  }
+
+  /**
+   * Write chunks to a request as long as its write queue is not full and
+   * end the request after the last chunk
+   * @param req the request
+   * @param chunks the chunks to write
+   * @param fail a handler that will be called if a chunk could not
+   * be encoded
+   */
+  private void writeChunks(HttpClientRequest req, Iterator<Buffer> chunks,
+      Handler<Throwable> fail) {
+    try {
+      while (chunks.hasNext()) {
+        if (req.writeQueueFull()) {
+          req.drainHandler(v -> writeChunks(req, chunks, fail));
+          return;
+        }
+        req.write(chunks.next());
+      }
+    } catch (Throwable t) {
+      // do not end the request. the server must not receive an
+      // incomplete body.
+      fail.handle(t);
+      return;
+    }
+    req.end();
   }
 
   /**
@@ -227,10 +355,57 @@ public class LoadBalancingHttpClient {
    * {@code null} if no body was received)
    */
   public Single<JsonObject> performRequest(HttpMethod method, String uri, Buffer body) {
-    return performRequestNoRetry(method, uri, body).retryWhen(errors -> {
+    return performRequest(method, uri, body, StreamingResponseParser::new);
+  }
+
+  /**
+   * Perform an HTTP request and parse the response while it is being
+   * received. Requests will not be retried if the parser has already
+   * handled items.
+   * @param method the HTTP method
+   * @param uri the request URI
+   * @param body the body to send in the request (may be {@code null})
+   * @param parserFactory creates a new parser for each attempt
+   * @return a single emitting the parsed response body (may be
+   * {@code null} if no body was received)
+   * @see StreamingResponseParser
+   */
+  public Single<JsonObject> performRequest(HttpMethod method, String uri,
+      Buffer body, Supplier<StreamingResponseParser> parserFactory) {
+    return retry(performRequestNoRetry(method, uri, body, parserFactory));
+  }
+
+  /**
+   * Perform an HTTP request with a bulk body that is encoded while it is
+   * being sent and parse the response while it is being received. The body
+   * will be encoded again if the request has to be retried.
+   * @param method the HTTP method
+   * @param uri the request URI
+   * @param encoder the encoder generating the body
+   * @param parserFactory creates a new parser for each attempt
+   * @return a single emitting the parsed response body (may be
+   * {@code null} if no body was received)
+   * @see BulkRequestEncoder
+   * @see StreamingResponseParser
+   */
+  public Single<JsonObject> performRequest(HttpMethod method, String uri,
+      BulkRequestEncoder encoder, Supplier<StreamingResponseParser> parserFactory) {
+    return retry(performRequestNoRetry(method, uri,
+        (req, fail) -> writeBody(req, encoder, fail), parserFactory));
+  }
+
+  /**
+   * Retry a request if it failed with an error that is not an HTTP error
+   * @param request the request
+   * @return a single that retries the request
+   */
+  private Single<JsonObject> retry(Single<JsonObject> request) {
+    return request.retryWhen(errors -> {
       Observable<Throwable> o = errors.flatMap(error -> {
-        if (error instanceof HttpException) {
-          // immediately forward HTTP errors, don't retry
+        if (error instanceof HttpException ||
+            error instanceof PartialResponseException) {
+          // immediately forward HTTP errors and errors that happened
+          // after items have been handled, don't retry
           return Observable.error(error);
         }
         return Observable.just(error);
@@ -249,10 +424,43 @@ public class LoadBalancingHttpClient {
    * {@code null} if no body was received)
    */
   public Single<JsonObject> performRequestNoRetry(HttpMethod method, String uri, Buffer body) {
+    return performRequestNoRetry(method, uri, body, StreamingResponseParser::new);
+  }
+
+  /**
+   * Perform an HTTP request and parse the response while it is being
+   * received. Select any host and do not retry on failure.
+   * @param method the HTTP method
+   * @param uri the request URI
+   * @param body the body to send in the request (may be {@code null})
+   * @param parserFactory creates the parser for the response
+   * @return a single emitting the parsed response body (may be
+   * {@code null} if no body was received)
+   * @see StreamingResponseParser
+   */
+  public Single<JsonObject> performRequestNoRetry(HttpMethod method, String uri,
+      Buffer body, Supplier<StreamingResponseParser> parserFactory) {
+    return performRequestNoRetry(method, uri,
+        (req, fail) -> writeBody(req, body), parserFactory);
+  }
+
+  /**
+   * Perform an HTTP request and parse the response while it is being
+   * received. Select any host and do not retry on failure.
+   * @param method the HTTP method
+   * @param uri the request URI
+   * @param bodyWriter writes the request body and ends the request
+   * @param parserFactory creates the parser for the response
+   * @return a single emitting the parsed response body (may be
+   * {@code null} if no body was received)
+   */
+  private Single<JsonObject> performRequestNoRetry(HttpMethod method, String uri,
+      BiConsumer<HttpClientRequest, Handler<Throwable>> bodyWriter,
+      Supplier<StreamingResponseParser> parserFactory) {
     return Single.defer(() -> {
       HttpClient client = nextClient();
       HttpClientRequest req = client.request(method, uri);
-      return performRequest(req, body);
+      return performRequest(req, bodyWriter, parserFactory.get());
     });
   }
 
@@ -1,6 +1,7 @@
 package io.georocket.index.elasticsearch;
 
 import io.georocket.util.HttpException;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
@@ -17,6 +18,7 @@ import rx.Single;
 import java.net.URI;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -26,6 +28,20 @@ import java.util.List;
 public class RemoteElasticsearchClient implements ElasticsearchClient {
   private static Logger log = LoggerFactory.getLogger(RemoteElasticsearchClient.class);
 
+  /**
+   * The fields of search hits that are passed to hit handlers. All other
+   * fields are skipped while the response is being parsed.
+   */
+  private static final List<String> HIT_FIELDS = Arrays.asList("_id", "_source");
+
+  /**
+   * The fields of bulk response items that are kept. Elasticsearch echoes
+   * a lot of information about every document, which we do not need.
+   */
+  private static final List<String> BULK_ITEM_FIELDS = Arrays.asList(
+      "index._id", "index.status", "index.error",
+      "delete._id", "delete.status", "delete.error");
+
   /**
    * The vertx instance
    */
@@ -123,22 +139,20 @@ public class RemoteElasticsearchClient implements ElasticsearchClient {
   public Single<JsonObject> bulkInsert(String type,
       List<Tuple2<String, JsonObject>> documents) {
     String uri = "/" + index + "/" + type + "/_bulk";
-    
-    // prepare the whole body now because it's much faster to send
-    // it at once instead of using HTTP chunked mode.
-    Buffer body = Buffer.buffer();
-    for (Tuple2<String, JsonObject> e : documents) {
-      String id = e.v1;
-      Buffer source = e.v2.toBuffer();
-      JsonObject subject = new JsonObject().put("_id", id);
-      body.appendString("{\"index\":")
-          .appendBuffer(subject.toBuffer())
-          .appendString("}\n")
-          .appendBuffer(source)
-          .appendString("\n");
-    }
-    
-    return client.performRequest(HttpMethod.POST, uri, body);
+    return performBulkRequest(uri, BulkRequestEncoder.index(documents));
+  }
+
+  /**
+   * Perform a bulk request and only keep the information about each item
+   * that is needed to check for errors
+   * @param uri the request URI
+   * @param encoder encodes the request body
+   * @return the parsed bulk response
+   */
+  private Single<JsonObject> performBulkRequest(String uri,
+      BulkRequestEncoder encoder) {
+    return client.performRequest(HttpMethod.POST, uri, encoder,
+        () -> new StreamingResponseParser("items", BULK_ITEM_FIELDS, null));
   }
   
   @Override
@@ -146,7 +160,31 @@ public class RemoteElasticsearchClient implements ElasticsearchClient {
       JsonObject postFilter, JsonObject aggregations, JsonObject parameters, String timeout) {
     String uri = "/" + index + "/" + type + "/_search";
     uri += "?scroll=" + timeout;
-    
+    JsonObject source = makeScrollSource(query, postFilter, aggregations, parameters);
+    return client.performRequest(HttpMethod.GET, uri, source.toBuffer());
+  }
+
+  @Override
+  public Single<JsonObject> beginScrollHits(String type, JsonObject query,
+      JsonObject postFilter, JsonObject parameters, String timeout,
+      Handler<JsonObject> hitHandler) {
+    String uri = "/" + index + "/" + type + "/_search";
+    uri += "?scroll=" + timeout;
+    JsonObject source = makeScrollSource(query, postFilter, null, parameters);
+    return client.performRequest(HttpMethod.GET, uri, source.toBuffer(),
+        () -> new StreamingResponseParser("hits.hits", HIT_FIELDS, hitHandler));
+  }
+
+  /**
+   * Create the body of a request that starts scrolling
+   * @param query the query to send (may be <code>null</code>)
+   * @param postFilter a filter to apply (may be <code>null</code>)
+   * @param aggregations the aggregations to apply (may be <code>null</code>)
+   * @param parameters the elasticsearch parameters
+   * @return the request body
+   */
+  private JsonObject makeScrollSource(JsonObject query, JsonObject postFilter,
+      JsonObject aggregations, JsonObject parameters) {
     JsonObject source = new JsonObject();
     parameters.forEach(entry ->
       source.put(entry.getKey(), entry.getValue()));
@@ -164,7 +202,7 @@ public class RemoteElasticsearchClient implements ElasticsearchClient {
     // sort by doc (fastest way to scroll)
     source.put("sort", new JsonArray().add("_doc"));
     
-    return client.performRequest(HttpMethod.GET, uri, source.toBuffer());
+    return source;
   }
   
   @Override
@@ -177,6 +215,19 @@ public class RemoteElasticsearchClient implements ElasticsearchClient {
     
     return client.performRequest(HttpMethod.GET, uri, source.toBuffer());
   }
+
+  @Override
+  public Single<JsonObject> continueScrollHits(String scrollId, String timeout,
+      Handler<JsonObject> hitHandler) {
+    String uri = "/_search/scroll";
+
+    JsonObject source = new JsonObject();
+    source.put("scroll", timeout);
+    source.put("scroll_id", scrollId);
+
+    return client.performRequest(HttpMethod.GET, uri, source.toBuffer(),
+        () -> new StreamingResponseParser("hits.hits", HIT_FIELDS, hitHandler));
+  }
   
   @Override
   public Single<JsonObject> search(String type, JsonObject query,
@@ -200,6 +251,13 @@ public class RemoteElasticsearchClient implements ElasticsearchClient {
     return client.performRequest(HttpMethod.GET, uri, source.toBuffer());
   }
 
+  @Override
+  public Single<JsonObject> multiGet(String type, JsonArray ids) {
+    String uri = "/" + index + "/" + type + "/_mget";
+    JsonObject source = new JsonObject().put("ids", ids);
+    return client.performRequest(HttpMethod.GET, uri, source.toBuffer());
+  }
+
   @Override
   public Single<Long> count(String type, JsonObject query) {
     String uri = "/" + index + "/" + type + "/_count";
@@ -239,19 +297,7 @@ public class RemoteElasticsearchClient implements ElasticsearchClient {
   @Override
   public Single<JsonObject> bulkDelete(String type, JsonArray ids) {
     String uri = "/" + index + "/" + type + "/_bulk";
-    
-    // prepare the whole body now because it's much faster to send
-    // it at once instead of using HTTP chunked mode.
-    Buffer body = Buffer.buffer();
-    for (int i = 0; i < ids.size(); ++i) {
-      String id = ids.getString(i);
-      JsonObject subject = new JsonObject().put("_id", id);
-      body.appendString("{\"delete\":")
-          .appendBuffer(subject.toBuffer())
-          .appendString("}\n");
-    }
-    
-    return client.performRequest(HttpMethod.POST, uri, body);
+    return performBulkRequest(uri, BulkRequestEncoder.delete(ids));
   }
   
   @Override
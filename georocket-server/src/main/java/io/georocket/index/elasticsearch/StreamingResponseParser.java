@@ -0,0 +1,389 @@
+package io.georocket.index.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>Incrementally parses a JSON response from Elasticsearch while it is
+ * being received. The response does not have to be buffered completely
+ * before it can be parsed.</p>
+ * <p>The parser can be configured with the path to an array containing
+ * items (e.g. <code>hits.hits</code> in a search response or
+ * <code>items</code> in a bulk response). Each item will be passed to a
+ * handler as soon as it has been parsed and will then be discarded.
+ * Optionally, only a given set of fields will be kept in each item. All
+ * other fields will be skipped without creating objects for them.</p>
+ * <p>Everything outside the array of items will be collected in the result
+ * object returned by {@link #end()}.</p>
+ * @author Michel Kraemer
+ */
+public class StreamingResponseParser {
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  /**
+   * Specifies which fields of an item should be kept
+   */
+  private enum Mode {
+    /**
+     * Keep the field and all its children
+     */
+    ALL,
+
+    /**
+     * Keep the field but check its children
+     */
+    FILTER,
+
+    /**
+     * Skip the field and all its children
+     */
+    SKIP
+  }
+
+  /**
+   * An object or array currently being parsed
+   */
+  private static class Frame {
+    final Object container;
+    final Mode mode;
+    final String relativePath;
+    final int depth;
+    final boolean onItemsPath;
+    final boolean items;
+    final boolean item;
+
+    Frame(Object container, Mode mode, String relativePath, int depth,
+        boolean onItemsPath, boolean items, boolean item) {
+      this.container = container;
+      this.mode = mode;
+      this.relativePath = relativePath;
+      this.depth = depth;
+      this.onItemsPath = onItemsPath;
+      this.items = items;
+      this.item = item;
+    }
+  }
+
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private final List<String> itemsPath;
+  private final Set<String> itemFields;
+  private final Set<String> itemFieldsWithChildren = new HashSet<>();
+  private final Handler<JsonObject> itemHandler;
+  private final Deque<Frame> frames = new ArrayDeque<>();
+  private String currentField;
+  private Mode childMode;
+  private String childPath;
+  private JsonObject result;
+  private JsonArray collectedItems;
+  private int itemCount;
+
+  /**
+   * Create a parser that does not handle items separately and just
+   * collects the whole response
+   */
+  public StreamingResponseParser() {
+    this(null, null, null);
+  }
+
+  /**
+   * Create a parser
+   * @param itemsPath the dot-separated path to the array containing the
+   * items (e.g. <code>hits.hits</code>). May be <code>null</code> if items
+   * should not be handled separately.
+   * @param itemFields the dot-separated paths of the fields to keep in each
+   * item (e.g. <code>_id</code> or <code>index.status</code>). A field
+   * will be kept with all its children if its path is in this collection.
+   * If the collection only contains paths below the field, the field will
+   * be kept but only with these children. May be <code>null</code> if all
+   * fields should be kept.
+   * @param itemHandler a handler that will be called for each item. May be
+   * <code>null</code> if the items should be collected in the result object.
+   */
+  public StreamingResponseParser(String itemsPath, Collection<String> itemFields,
+      Handler<JsonObject> itemHandler) {
+    parser = createParser();
+    feeder = (ByteArrayFeeder)parser.getNonBlockingInputFeeder();
+    this.itemsPath = itemsPath != null ?
+        Arrays.asList(itemsPath.split("\\.")) : null;
+    this.itemFields = itemFields != null ? new HashSet<>(itemFields) : null;
+    if (itemFields != null) {
+      for (String f : itemFields) {
+        int i = f.lastIndexOf('.');
+        while (i > 0) {
+          itemFieldsWithChildren.add(f.substring(0, i));
+          i = f.lastIndexOf('.', i - 1);
+        }
+      }
+    }
+    this.itemHandler = itemHandler;
+  }
+
+  /**
+   * Create a non-blocking JSON parser
+   * @return the parser
+   */
+  private static JsonParser createParser() {
+    try {
+      return jsonFactory.createNonBlockingByteArrayParser();
+    } catch (IOException e) {
+      // should never happen because we do not read from any source yet
+      throw new IllegalStateException("Could not create JSON parser", e);
+    }
+  }
+
+  /**
+   * @return the number of items parsed so far
+   */
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  /**
+   * Feed a part of the response into the parser
+   * @param buf the part of the response
+   * @throws IOException if the response could not be parsed
+   */
+  public void feed(Buffer buf) throws IOException {
+    ByteBuf bb = buf.getByteBuf();
+    byte[] bytes;
+    int offset;
+    int len = bb.readableBytes();
+    if (bb.hasArray()) {
+      bytes = bb.array();
+      offset = bb.arrayOffset() + bb.readerIndex();
+    } else {
+      bytes = new byte[len];
+      bb.getBytes(bb.readerIndex(), bytes);
+      offset = 0;
+    }
+    feeder.feedInput(bytes, offset, offset + len);
+    processTokens();
+  }
+
+  /**
+   * Signal that the whole response has been fed into the parser
+   * @return everything outside the array of items (or the whole response
+   * if there is no such array or if the items should be collected). May
+   * be <code>null</code> if the response was empty.
+   * @throws IOException if the response could not be parsed or if it
+   * was incomplete
+   */
+  public JsonObject end() throws IOException {
+    feeder.endOfInput();
+    processTokens();
+    if (!frames.isEmpty()) {
+      throw new JsonParseException(parser, "Unexpected end of response");
+    }
+    parser.close();
+    return result;
+  }
+
+  /**
+   * Process all tokens currently available
+   * @throws IOException if the response could not be parsed
+   */
+  private void processTokens() throws IOException {
+    JsonToken t;
+    while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+      switch (t) {
+        case FIELD_NAME:
+          currentField = parser.getCurrentName();
+          break;
+
+        case START_OBJECT:
+        case START_ARRAY:
+          startContainer(t == JsonToken.START_OBJECT);
+          break;
+
+        case END_OBJECT:
+        case END_ARRAY:
+          endContainer();
+          break;
+
+        case VALUE_STRING:
+          addValue(parser.getText());
+          break;
+
+        case VALUE_NUMBER_INT:
+          addValue(parser.getNumberValue());
+          break;
+
+        case VALUE_NUMBER_FLOAT:
+          addValue(parser.getDoubleValue());
+          break;
+
+        case VALUE_TRUE:
+          addValue(Boolean.TRUE);
+          break;
+
+        case VALUE_FALSE:
+          addValue(Boolean.FALSE);
+          break;
+
+        case VALUE_NULL:
+          addValue(null);
+          break;
+
+        default:
+          throw new JsonParseException(parser, "Unexpected token: " + t);
+      }
+    }
+  }
+
+  /**
+   * Determine the mode of a new value in the current frame and its path
+   * relative to the item it belongs to. Save the results in
+   * {@link #childMode} and {@link #childPath}.
+   */
+  private void determineChildMode() {
+    Frame parent = frames.peek();
+    if (parent == null) {
+      // the value is the root object
+      childMode = Mode.ALL;
+      childPath = null;
+    } else if (parent.items) {
+      // the value is an item
+      childMode = itemFields == null ? Mode.ALL : Mode.FILTER;
+      childPath = "";
+    } else if (parent.relativePath == null) {
+      // the value is not part of an item
+      childMode = Mode.ALL;
+      childPath = null;
+    } else if (parent.mode != Mode.FILTER || parent.container instanceof JsonArray) {
+      // array elements inherit the mode of the array
+      childMode = parent.mode;
+      childPath = parent.relativePath;
+    } else {
+      childPath = parent.relativePath.isEmpty() ? currentField :
+          parent.relativePath + "." + currentField;
+      if (itemFieldsWithChildren.contains(childPath)) {
+        childMode = Mode.FILTER;
+      } else if (itemFields.contains(childPath)) {
+        childMode = Mode.ALL;
+      } else {
+        childMode = Mode.SKIP;
+      }
+    }
+  }
+
+  /**
+   * Handle the start of an object or array
+   * @param object true if an object starts, false if an array starts
+   */
+  private void startContainer(boolean object) {
+    Frame parent = frames.peek();
+    determineChildMode();
+    Mode mode = childMode;
+    String relativePath = childPath;
+    int depth = parent == null ? 0 : parent.depth + 1;
+
+    boolean onItemsPath = false;
+    boolean items = false;
+    boolean item = parent != null && parent.items;
+    if (itemsPath != null && relativePath == null) {
+      if (parent == null) {
+        onItemsPath = true;
+      } else if (parent.onItemsPath && parent.container instanceof JsonObject &&
+          depth <= itemsPath.size() && itemsPath.get(depth - 1).equals(currentField)) {
+        onItemsPath = true;
+        items = !object && depth == itemsPath.size();
+      }
+    }
+
+    Object container = null;
+    if (mode != Mode.SKIP) {
+      container = object ? new JsonObject() : new JsonArray();
+      if (items) {
+        if (itemHandler == null) {
+          // collect items in the result
+          collectedItems = (JsonArray)container;
+          add(parent, container);
+        }
+      } else if (!item) {
+        add(parent, container);
+      }
+    }
+
+    frames.push(new Frame(container, mode, relativePath, depth,
+        onItemsPath, items, item));
+  }
+
+  /**
+   * Handle the end of an object or array
+   */
+  private void endContainer() {
+    Frame f = frames.pop();
+    if (f.item) {
+      ++itemCount;
+      if (f.container instanceof JsonObject) {
+        if (itemHandler != null) {
+          itemHandler.handle((JsonObject)f.container);
+        } else {
+          collectedItems.add(f.container);
+        }
+      }
+    } else if (frames.isEmpty() && f.container instanceof JsonObject) {
+      result = (JsonObject)f.container;
+    }
+  }
+
+  /**
+   * Add a scalar value to the current frame
+   * @param value the value
+   */
+  private void addValue(Object value) {
+    Frame parent = frames.peek();
+    if (parent == null || parent.items) {
+      // ignore top-level scalars and scalar items
+      return;
+    }
+    determineChildMode();
+    if (childMode != Mode.SKIP) {
+      add(parent, value);
+    }
+  }
+
+  /**
+   * Add a value to the container of a frame
+   * @param frame the frame (may be <code>null</code> if the value is
+   * the root object)
+   * @param value the value to add
+   */
+  private void add(Frame frame, Object value) {
+    if (frame == null || frame.container == null) {
+      return;
+    }
+    if (frame.container instanceof JsonObject) {
+      if (value == null) {
+        ((JsonObject)frame.container).putNull(currentField);
+      } else {
+        ((JsonObject)frame.container).put(currentField, value);
+      }
+    } else {
+      if (value == null) {
+        ((JsonArray)frame.container).addNull();
+      } else {
+        ((JsonArray)frame.container).add(value);
+      }
+    }
+  }
+}
@@ -17,9 +17,7 @@ import io.vertx.core.Context;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import org.geotools.referencing.CRS;
 import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
 
 /**
@@ -105,7 +103,6 @@ public abstract class BoundingBoxIndexerFactory implements IndexerFactory {
 
   @Override
   public JsonObject compileQuery(String search) {
-    CoordinateReferenceSystem crs = null;
     String crsCode = null;
     String co;
     int index = search.lastIndexOf(':');
@@ -122,9 +119,10 @@ public abstract class BoundingBoxIndexerFactory implements IndexerFactory {
       .mapToDouble(Double::parseDouble)
       .toArray();
 
+    CoordinateTransformer transformer = null;
     if (crsCode != null) {
       try {
-        crs = CRS.decode(crsCode);
+        transformer = new CoordinateTransformer(crsCode);
       } catch (FactoryException e) {
         throw new RuntimeException(
           String.format("CRS %s could not be parsed: %s",
@@ -132,7 +130,7 @@ public abstract class BoundingBoxIndexerFactory implements IndexerFactory {
       }
     } else if (defaultCrs != null) {
       try {
-        crs = CoordinateTransformer.decode(defaultCrs);
+        transformer = new CoordinateTransformer(defaultCrs);
       } catch (FactoryException e) {
         throw new RuntimeException(
           String.format("Default CRS %s could not be parsed: %s",
@@ -140,13 +138,9 @@ public abstract class BoundingBoxIndexerFactory implements IndexerFactory {
       }
     }
 
-    if (crs != null) {
+    if (transformer != null) {
       try {
-        CoordinateTransformer transformer = new CoordinateTransformer(crs);
         points = transformer.transform(points, -1);
-      } catch (FactoryException e) {
-        throw new RuntimeException(String.format("CRS %s could not be parsed: %s",
-          crsCode, e.getMessage()), e);
       } catch (TransformException e) {
         throw new RuntimeException(String.format("Coordinates %s could not be "
           + "transformed to %s: %s", co, crsCode, e.getMessage()), e);
@@ -6,6 +6,7 @@ import java.util.Map;
 import io.georocket.index.xml.MetaIndexer;
 import io.georocket.storage.ChunkMeta;
 import io.georocket.storage.IndexMeta;
+import io.georocket.storage.XMLChunkMeta;
 
 /**
  * Default implementation of {@link MetaIndexer} that extracts generic
@@ -24,7 +25,12 @@ public class DefaultMetaIndexer implements MetaIndexer {
   public void onIndexChunk(String path, ChunkMeta chunkMeta,
       IndexMeta indexMeta) {
     result.put("path", path);
-    result.put("chunkMeta", chunkMeta.toJsonObject());
+    if (chunkMeta instanceof XMLChunkMeta) {
+      // parents are stored separately. see ParentContextRegistry
+      result.put("chunkMeta", ((XMLChunkMeta)chunkMeta).toReferenceJsonObject());
+    } else {
+      result.put("chunkMeta", chunkMeta.toJsonObject());
+    }
     if (indexMeta.getTags() != null) {
       result.put("tags", indexMeta.getTags());
     }
@@ -0,0 +1,141 @@
+package io.georocket.input;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import io.vertx.core.buffer.Buffer;
+import rx.Observable;
+
+/**
+ * <p>Describes how a large file can be split in parallel. A plan is created
+ * by a fast pre-scan of the file and consists of a list of byte
+ * {@link Range}s. Each range contains one or more complete top-level items
+ * (e.g. XML elements directly below the root or GeoJSON features).</p>
+ * <p>A range cannot be parsed on its own. It has to be wrapped into the
+ * {@link #getPrefix() prefix} and {@link #getSuffix() suffix} of the plan
+ * (see {@link #wrap(byte[])}). The result is a small, valid document that
+ * can be split by the same splitter that would be used for the whole file
+ * and that yields the same chunks.</p>
+ * @author Michel Kraemer
+ */
+public class SplitPlan {
+  /**
+   * A range of bytes in the file to split
+   */
+  public static class Range {
+    private final long start;
+    private final long end;
+
+    /**
+     * Create a new range
+     * @param start the position of the range's first byte in the file
+     * @param end the position after the range's last byte in the file
+     */
+    public Range(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * @return the position of the range's first byte in the file
+     */
+    public long getStart() {
+      return start;
+    }
+
+    /**
+     * @return the position after the range's last byte in the file
+     */
+    public long getEnd() {
+      return end;
+    }
+
+    /**
+     * @return the number of bytes in this range
+     */
+    public int getLength() {
+      return (int)(end - start);
+    }
+  }
+
+  private final byte[] prefix;
+  private final byte[] suffix;
+  private final List<Range> ranges;
+  private final String crs;
+  private final long crsPos;
+
+  /**
+   * Create a new plan
+   * @param prefix the data to put in front of each range
+   * @param suffix the data to append to each range
+   * @param ranges the ranges to split
+   */
+  public SplitPlan(String prefix, String suffix, List<Range> ranges) {
+    this(prefix, suffix, ranges, null, -1);
+  }
+
+  /**
+   * Create a new plan
+   * @param prefix the data to put in front of each range
+   * @param suffix the data to append to each range
+   * @param ranges the ranges to split
+   * @param crs the first coordinate reference system found in the file
+   * (may be <code>null</code>)
+   * @param crsPos the position in the file where {@code crs} was found
+   */
+  public SplitPlan(String prefix, String suffix, List<Range> ranges,
+      String crs, long crsPos) {
+    this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+    this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+    this.ranges = Collections.unmodifiableList(ranges);
+    this.crs = crs;
+    this.crsPos = crsPos;
+  }
+
+  /**
+   * @return the data to put in front of each range
+   */
+  public byte[] getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * @return the data to append to each range
+   */
+  public byte[] getSuffix() {
+    return suffix;
+  }
+
+  /**
+   * @return the ranges to split
+   */
+  public List<Range> getRanges() {
+    return ranges;
+  }
+
+  /**
+   * Get the coordinate reference system that chunks in the given range
+   * inherit from the part of the file before the range. This is the first
+   * CRS found in the file if it was found before the range starts.
+   * @param range the range
+   * @return the inherited CRS or <code>null</code> if chunks in the range do
+   * not inherit a CRS
+   */
+  public String getInheritedCRS(Range range) {
+    if (crs != null && crsPos < range.getStart()) {
+      return crs;
+    }
+    return null;
+  }
+
+  /**
+   * Wrap the data of a range into the plan's prefix and suffix
+   * @param data the range's data
+   * @return an observable emitting buffers that make up a valid document
+   */
+  public Observable<Buffer> wrap(byte[] data) {
+    return Observable.just(Buffer.buffer(prefix), Buffer.buffer(data),
+        Buffer.buffer(suffix));
+  }
+}
@@ -1,7 +1,10 @@
 package io.georocket.input;
 
+import java.util.Map;
+
 import io.georocket.storage.ChunkMeta;
 import io.georocket.util.StreamEvent;
+import io.vertx.core.buffer.Buffer;
 import rx.Observable;
 
 /**
@@ -17,23 +20,37 @@ public interface Splitter<E extends StreamEvent, M extends ChunkMeta> {
    * @param <M> the type of the metadata
    */
   public static class Result<M extends ChunkMeta> {
-    private final String chunk;
+    private final Buffer chunk;
     private final M meta;
+    private final Map<String, Object> document;
     
     /**
      * Create a new result object
-     * @param chunk the chunk
+     * @param chunk the chunk (UTF-8 encoded)
      * @param meta the chunk's metadata
      */
-    public Result(String chunk, M meta) {
+    public Result(Buffer chunk, M meta) {
+      this(chunk, meta, null);
+    }
+    
+    /**
+     * Create a new result object
+     * @param chunk the chunk (UTF-8 encoded)
+     * @param meta the chunk's metadata
+     * @param document the Elasticsearch document created for the chunk
+     * while it was split (may be <code>null</code> if the chunk has not
+     * been indexed yet)
+     */
+    public Result(Buffer chunk, M meta, Map<String, Object> document) {
       this.chunk = chunk;
       this.meta = meta;
+      this.document = document;
     }
     
     /**
-     * @return the chunk
+     * @return the chunk (UTF-8 encoded)
      */
-    public String getChunk() {
+    public Buffer getChunk() {
       return chunk;
     }
     
@@ -43,6 +60,14 @@ public interface Splitter<E extends StreamEvent, M extends ChunkMeta> {
     public M getMeta() {
       return meta;
     }
+    
+    /**
+     * @return the Elasticsearch document created for the chunk while it
+     * was split or <code>null</code> if the chunk has not been indexed yet
+     */
+    public Map<String, Object> getDocument() {
+      return document;
+    }
   }
   
   /**
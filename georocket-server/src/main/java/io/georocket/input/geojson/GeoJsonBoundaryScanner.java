@@ -0,0 +1,209 @@
+package io.georocket.input.geojson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import io.georocket.input.SplitPlan;
+import io.georocket.input.SplitPlan.Range;
+
+/**
+ * <p>Quickly scans a GeoJSON file for the boundaries of the entries in its
+ * top-level <code>features</code> (or <code>geometries</code>) array and
+ * creates a {@link SplitPlan} that allows the file to be split by multiple
+ * {@link GeoJsonSplitter}s in parallel.</p>
+ * <p>The scanner does not parse the file completely. It only tracks strings
+ * and the nesting of objects and arrays, which is enough to find the
+ * boundaries of the entries.</p>
+ * @author Michel Kraemer
+ */
+public class GeoJsonBoundaryScanner {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The maximum number of bytes of a field name to keep. Longer names are
+   * not relevant to the scanner.
+   */
+  private static final int MAX_FIELD_NAME_LENGTH = 32;
+
+  /**
+   * The preferred number of bytes in a range
+   */
+  private final long rangeSize;
+
+  /**
+   * Create a new scanner
+   * @param rangeSize the preferred number of bytes in a range. Ranges always
+   * contain complete entries, so they may be larger.
+   */
+  public GeoJsonBoundaryScanner(long rangeSize) {
+    this.rangeSize = Math.max(1, rangeSize);
+  }
+
+  /**
+   * Scan a file
+   * @param channel the channel to read the file from
+   * @return the plan or <code>null</code> if the file cannot be split in
+   * parallel (e.g. because it is not a collection or because it would result
+   * in only one range)
+   * @throws IOException if the file could not be read
+   */
+  public SplitPlan scan(ReadableByteChannel channel) throws IOException {
+    byte[] bytes = new byte[BUFFER_SIZE];
+    ByteBuffer bb = ByteBuffer.wrap(bytes);
+
+    // true for objects, false for arrays
+    Deque<Boolean> containers = new ArrayDeque<>();
+    boolean inString = false;
+    boolean escaped = false;
+    boolean expectFieldName = false;
+    ByteArrayOutputStream fieldName = new ByteArrayOutputStream();
+    String lastFieldName = null;
+
+    String collectionFieldName = null;
+    boolean inCollection = false;
+    boolean started = false;
+    List<Range> ranges = new ArrayList<>();
+    long rangeStart = -1;
+    long lastEntryEnd = -1;
+
+    long pos = 0;
+    int n;
+    while ((n = channel.read(bb)) >= 0) {
+      for (int i = 0; i < n; ++i, ++pos) {
+        byte b = bytes[i];
+
+        if (inString) {
+          if (escaped) {
+            escaped = false;
+          } else if (b == '\\') {
+            escaped = true;
+          } else if (b == '"') {
+            inString = false;
+            if (expectFieldName && !inCollection) {
+              lastFieldName = fieldName.size() <= MAX_FIELD_NAME_LENGTH ?
+                  new String(fieldName.toByteArray(), StandardCharsets.UTF_8) : null;
+              expectFieldName = false;
+            }
+          } else if (expectFieldName && !inCollection &&
+              fieldName.size() <= MAX_FIELD_NAME_LENGTH) {
+            fieldName.write(b);
+          }
+          continue;
+        }
+
+        if (!started) {
+          if (b == '{') {
+            started = true;
+          } else if (b == ' ' || b == '\t' || b == '\r' || b == '\n' ||
+              (pos < 3 && (b & 0xFF) >= 0x80)) {
+            // skip whitespace and UTF-8 byte order mark
+            continue;
+          } else {
+            // the file is not an object
+            return null;
+          }
+        }
+
+        switch (b) {
+          case '"':
+            inString = true;
+            fieldName.reset();
+            break;
+
+          case '{':
+            if (inCollection && containers.size() == 2) {
+              // start of an entry
+              if (rangeStart < 0) {
+                rangeStart = pos;
+              } else if (pos - rangeStart >= rangeSize) {
+                if (!addRange(ranges, rangeStart, lastEntryEnd)) {
+                  return null;
+                }
+                rangeStart = pos;
+              }
+            }
+            containers.push(Boolean.TRUE);
+            expectFieldName = true;
+            break;
+
+          case '[':
+            if (!inCollection && containers.peek() == Boolean.TRUE &&
+                ("features".equals(lastFieldName) ||
+                    "geometries".equals(lastFieldName))) {
+              if (containers.size() != 1 || collectionFieldName != null) {
+                // the splitter would create chunks from another array too
+                return null;
+              }
+              collectionFieldName = lastFieldName;
+              inCollection = true;
+            }
+            containers.push(Boolean.FALSE);
+            expectFieldName = false;
+            break;
+
+          case '}':
+          case ']':
+            if (containers.isEmpty()) {
+              return null;
+            }
+            containers.pop();
+            expectFieldName = false;
+            if (inCollection) {
+              if (b == '}' && containers.size() == 2) {
+                lastEntryEnd = pos + 1;
+              } else if (b == ']' && containers.size() == 1) {
+                inCollection = false;
+                if (rangeStart >= 0) {
+                  if (!addRange(ranges, rangeStart, lastEntryEnd)) {
+                    return null;
+                  }
+                  rangeStart = -1;
+                }
+              }
+            }
+            break;
+
+          case ',':
+            expectFieldName = containers.peek() == Boolean.TRUE;
+            break;
+
+          default:
+            break;
+        }
+      }
+      bb.clear();
+    }
+
+    if (ranges.size() < 2) {
+      // the file is not worth being split in parallel
+      return null;
+    }
+
+    String type = "features".equals(collectionFieldName) ?
+        "FeatureCollection" : "GeometryCollection";
+    String prefix = "{\"type\":\"" + type + "\",\"" + collectionFieldName + "\":[";
+    return new SplitPlan(prefix, "]}", ranges);
+  }
+
+  /**
+   * Add a range to a list
+   * @param ranges the list
+   * @param start the start of the range
+   * @param end the end of the range
+   * @return false if the range was too large to be added
+   */
+  private static boolean addRange(List<Range> ranges, long start, long end) {
+    if (end - start > Integer.MAX_VALUE) {
+      return false;
+    }
+    ranges.add(new Range(start, end));
+    return true;
+  }
+}
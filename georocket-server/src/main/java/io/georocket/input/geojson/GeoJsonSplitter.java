@@ -1,6 +1,7 @@
 package io.georocket.input.geojson;
 
 import de.undercouch.actson.JsonEvent;
+import io.georocket.index.ChunkIndexer;
 import io.georocket.input.json.JsonSplitter;
 import io.georocket.storage.GeoJsonChunkMeta;
 import io.georocket.storage.JsonChunkMeta;
@@ -41,6 +42,17 @@ public class GeoJsonSplitter extends JsonSplitter {
     super(window);
   }
   
+  /**
+   * Create splitter
+   * @param window a buffer for incoming data
+   * @param chunkIndexer an indexer that should receive all events belonging
+   * to a chunk (may be <code>null</code>)
+   */
+  public GeoJsonSplitter(StringWindow window,
+      ChunkIndexer<JsonStreamEvent> chunkIndexer) {
+    super(window, chunkIndexer);
+  }
+  
   @Override
   public Result<JsonChunkMeta> onEvent(JsonStreamEvent event) {
     boolean prevResultsCreated = resultsCreated;
@@ -86,7 +98,7 @@ public class GeoJsonSplitter extends JsonSplitter {
     
     if (r != null) {
       r = new Result<JsonChunkMeta>(r.getChunk(),
-        new GeoJsonChunkMeta(lastType, r.getMeta()));
+        new GeoJsonChunkMeta(lastType, r.getMeta()), r.getDocument());
     }
     
     return r;
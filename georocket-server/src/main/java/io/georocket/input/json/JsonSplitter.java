@@ -2,13 +2,15 @@ package io.georocket.input.json;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.Map;
 
-import com.google.common.base.Utf8;
 import de.undercouch.actson.JsonEvent;
+import io.georocket.index.ChunkIndexer;
 import io.georocket.input.Splitter;
 import io.georocket.storage.JsonChunkMeta;
 import io.georocket.util.JsonStreamEvent;
 import io.georocket.util.StringWindow;
+import io.vertx.core.buffer.Buffer;
 
 /**
  * Split incoming JSON tokens whenever an object is encountered that is inside
@@ -56,23 +58,50 @@ public class JsonSplitter implements Splitter<JsonStreamEvent, JsonChunkMeta> {
    */
   protected boolean resultsCreated = false;
   
+  /**
+   * Indexes chunks while they are being split (may be <code>null</code>)
+   */
+  private final ChunkIndexer<JsonStreamEvent> chunkIndexer;
+  
   /**
    * Create splitter
    * @param window a buffer for incoming data
    */
   public JsonSplitter(StringWindow window) {
+    this(window, null);
+  }
+  
+  /**
+   * Create splitter
+   * @param window a buffer for incoming data
+   * @param chunkIndexer an indexer that should receive all events belonging
+   * to a chunk. The documents it creates will be attached to the results of
+   * this splitter. May be <code>null</code> if chunks should not be indexed
+   * while they are being split.
+   */
+  public JsonSplitter(StringWindow window, ChunkIndexer<JsonStreamEvent> chunkIndexer) {
     this.window = window;
+    this.chunkIndexer = chunkIndexer;
     inArray.push(Boolean.FALSE);
   }
   
   @Override
   public Result<JsonChunkMeta> onEvent(JsonStreamEvent event) {
+    if (chunkIndexer != null && mark != -1) {
+      // the event belongs to the current chunk
+      chunkIndexer.onEvent(event);
+    }
+    
     switch (event.getEvent()) {
     case JsonEvent.START_OBJECT:
       if (mark == -1 && inArray.peek() == Boolean.TRUE) {
         // object start was one character before the current event
         mark = event.getPos() - 1;
         markedLevel = inArray.size();
+        if (chunkIndexer != null) {
+          // the event starts a new chunk
+          chunkIndexer.onEvent(event);
+        }
       }
       if (mark == -1) {
         inArray.push(Boolean.FALSE);
@@ -108,6 +137,10 @@ public class JsonSplitter implements Splitter<JsonStreamEvent, JsonChunkMeta> {
         Result<JsonChunkMeta> r = makeResult(event.getPos());
         mark = -1;
         markedLevel = -1;
+        if (chunkIndexer != null) {
+          // discard the document if no result was created
+          chunkIndexer.reset();
+        }
         return r;
       }
       break;
@@ -145,9 +178,20 @@ public class JsonSplitter implements Splitter<JsonStreamEvent, JsonChunkMeta> {
    */
   protected Result<JsonChunkMeta> makeResult(int pos) {
     resultsCreated = true;
-    String chunk = window.getChars(mark, pos);
+    // the parser reports character positions, so the chunk has to be
+    // encoded here
+    Buffer chunk = Buffer.buffer(window.getChars(mark, pos));
     window.advanceTo(pos);
-    JsonChunkMeta meta = new JsonChunkMeta(lastFieldName, 0, Utf8.encodedLength(chunk));
-    return new Result<>(chunk, meta);
+    JsonChunkMeta meta = new JsonChunkMeta(lastFieldName, 0, chunk.length());
+    Map<String, Object> document = null;
+    if (chunkIndexer != null) {
+      if (chunkIndexer.isIndexing()) {
+        // the chunk ends here. let the indexers see the same EOF event
+        // they would get if they parsed the chunk on its own.
+        chunkIndexer.onEvent(new JsonStreamEvent(JsonEvent.EOF, pos));
+      }
+      document = chunkIndexer.finish();
+    }
+    return new Result<>(chunk, meta, document);
   }
 }
@@ -2,6 +2,7 @@ package io.georocket.input.xml;
 
 import javax.xml.stream.events.XMLEvent;
 
+import io.georocket.index.ChunkIndexer;
 import io.georocket.storage.XMLChunkMeta;
 import io.georocket.util.Window;
 import io.georocket.util.XMLStreamEvent;
@@ -22,6 +23,16 @@ public class FirstLevelSplitter extends XMLSplitter {
     super(window);
   }
   
+  /**
+   * Create splitter
+   * @param window a buffer for incoming data
+   * @param chunkIndexer an indexer that should receive all events belonging
+   * to a chunk (may be <code>null</code>)
+   */
+  public FirstLevelSplitter(Window window, ChunkIndexer<XMLStreamEvent> chunkIndexer) {
+    super(window, chunkIndexer);
+  }
+  
   @Override
   protected Result<XMLChunkMeta> onXMLEvent(XMLStreamEvent event) {
     Result<XMLChunkMeta> result = null;
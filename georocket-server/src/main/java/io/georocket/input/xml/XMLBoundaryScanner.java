@@ -0,0 +1,413 @@
+package io.georocket.input.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.text.StringEscapeUtils;
+
+import io.georocket.input.SplitPlan;
+import io.georocket.input.SplitPlan.Range;
+
+/**
+ * <p>Quickly scans an XML file for the boundaries of elements in the first
+ * level (i.e. children of the root element) and creates a {@link SplitPlan}
+ * that allows the file to be split by multiple {@link FirstLevelSplitter}s
+ * in parallel.</p>
+ * <p>The scanner does not parse the file. Similar to the
+ * {@link io.georocket.input.geojson.GeoJsonBoundaryScanner}, it only looks
+ * at the bytes of the file and tracks the nesting of start and end tags. It
+ * skips comments, CDATA sections, processing instructions, and quoted
+ * attribute values. It does not check if the file is well-formed. The
+ * splitters will report errors. The root element is put into the plan's
+ * prefix so the splitters will produce chunks with the same parent context
+ * as if they had processed the whole file.</p>
+ * <p>The first CRS found in the file (i.e. the first <code>srsName</code>
+ * attribute) is saved in the plan too (see
+ * {@link io.georocket.index.xml.XMLCRSIndexer}). Only ranges after this
+ * attribute inherit the CRS. Chunks before it do not have a CRS either if
+ * the file is split sequentially (they get the fallback CRS), and chunks
+ * in the range containing the attribute find it while their range is being
+ * split. If the root element has a <code>srsName</code>, its position is
+ * before all ranges, so every range inherits the root's CRS.</p>
+ * @author Michel Kraemer
+ */
+public class XMLBoundaryScanner {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The name of the attribute containing the CRS
+   */
+  private static final byte[] SRS_NAME =
+      "srsName".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Matches the encoding in the XML declaration
+   */
+  private static final Pattern ENCODING_PATTERN =
+      Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+
+  /**
+   * The states of the scanner
+   */
+  private enum State {
+    /**
+     * Character data between tags
+     */
+    TEXT,
+
+    /**
+     * Directly after a <code>&lt;</code>
+     */
+    MARKUP,
+
+    /**
+     * Directly after a <code>&lt;!</code>
+     */
+    DECLARATION,
+
+    /**
+     * Inside a start tag
+     */
+    START_TAG,
+
+    /**
+     * Inside an end tag
+     */
+    END_TAG,
+
+    /**
+     * Inside a comment
+     */
+    COMMENT,
+
+    /**
+     * Inside a CDATA section
+     */
+    CDATA,
+
+    /**
+     * Inside a processing instruction or the XML declaration
+     */
+    PI
+  }
+
+  /**
+   * The preferred number of bytes in a range
+   */
+  private final long rangeSize;
+
+  /**
+   * Create a new scanner
+   * @param rangeSize the preferred number of bytes in a range. Ranges always
+   * contain complete first-level elements, so they may be larger.
+   */
+  public XMLBoundaryScanner(long rangeSize) {
+    this.rangeSize = Math.max(1, rangeSize);
+  }
+
+  /**
+   * Scan a file
+   * @param channel the channel to read the file from
+   * @return the plan or <code>null</code> if the file cannot be split in
+   * parallel (e.g. because it contains a DTD, because it is not encoded in
+   * UTF-8, because it is malformed, or because it would result in only
+   * one range)
+   * @throws IOException if the file could not be read
+   */
+  public SplitPlan scan(ReadableByteChannel channel) throws IOException {
+    byte[] bytes = new byte[BUFFER_SIZE];
+    ByteBuffer bb = ByteBuffer.wrap(bytes);
+
+    State state = State.TEXT;
+    long markupStart = -1;
+    long firstPos = -1;
+    boolean rootClosed = false;
+    int depth = 0;
+
+    // the last two bytes (used to find the ends of comments, CDATA
+    // sections, processing instructions and empty-element tags)
+    byte prev1 = 0;
+    byte prev2 = 0;
+
+    // state inside start tags
+    byte quote = 0;
+    boolean inElementName = false;
+    boolean inAttributeName = false;
+    int attributeNameLength = 0;
+    boolean attributeIsSrsName = false;
+    ByteArrayOutputStream crsValue = null;
+
+    // the XML declaration, the root element, and its name
+    ByteArrayOutputStream declaration = null;
+    ByteArrayOutputStream rootTag = null;
+    ByteArrayOutputStream rootName = null;
+    boolean inRootTag = false;
+
+    List<Range> ranges = new ArrayList<>();
+    long rangeStart = -1;
+    String crs = null;
+    long crsPos = -1;
+
+    long pos = 0;
+    int n;
+    while ((n = channel.read(bb)) >= 0) {
+      for (int i = 0; i < n; ++i, ++pos) {
+        byte b = bytes[i];
+
+        if (firstPos < 0) {
+          if (pos < 3 && (b & 0xFF) >= 0x80) {
+            if (pos == 0 && (b & 0xFF) != 0xEF) {
+              // byte order mark of UTF-16 or UTF-32. chunks are always UTF-8.
+              return null;
+            }
+            // skip UTF-8 byte order mark
+            continue;
+          }
+          if (b == 0) {
+            // UTF-16 or UTF-32 without byte order mark
+            return null;
+          }
+          firstPos = pos;
+        }
+
+        if (inRootTag) {
+          rootTag.write(b);
+        }
+
+        switch (state) {
+          case TEXT:
+            if (b == '<') {
+              state = State.MARKUP;
+              markupStart = pos;
+            }
+            break;
+
+          case MARKUP:
+            if (b == '/') {
+              state = State.END_TAG;
+            } else if (b == '?') {
+              state = State.PI;
+              if (markupStart == firstPos) {
+                declaration = new ByteArrayOutputStream();
+              }
+            } else if (b == '!') {
+              state = State.DECLARATION;
+            } else {
+              // start of an element
+              if (depth == 0) {
+                if (rootClosed) {
+                  // more than one root element
+                  return null;
+                }
+                rootTag = new ByteArrayOutputStream();
+                rootTag.write('<');
+                rootTag.write(b);
+                inRootTag = true;
+                rootName = new ByteArrayOutputStream();
+                rootName.write(b);
+              } else if (depth == 1) {
+                if (rangeStart < 0) {
+                  rangeStart = markupStart;
+                } else if (markupStart - rangeStart >= rangeSize) {
+                  if (!addRange(ranges, rangeStart, markupStart)) {
+                    return null;
+                  }
+                  rangeStart = markupStart;
+                }
+              }
+              state = State.START_TAG;
+              inElementName = true;
+              inAttributeName = false;
+              quote = 0;
+            }
+            break;
+
+          case DECLARATION:
+            if (b == '-') {
+              state = State.COMMENT;
+            } else if (b == '[' && depth > 0) {
+              state = State.CDATA;
+            } else {
+              // DTD (entities declared in it would not be available to
+              // the splitters) or something unexpected
+              return null;
+            }
+            break;
+
+          case COMMENT:
+            if (b == '>' && prev1 == '-' && prev2 == '-') {
+              state = State.TEXT;
+            }
+            break;
+
+          case CDATA:
+            if (b == '>' && prev1 == ']' && prev2 == ']') {
+              state = State.TEXT;
+            }
+            break;
+
+          case PI:
+            if (b == '>' && prev1 == '?') {
+              state = State.TEXT;
+              if (declaration != null) {
+                String encoding = getEncoding(declaration);
+                if (encoding != null && !encoding.equalsIgnoreCase("UTF-8") &&
+                    !encoding.equalsIgnoreCase("US-ASCII")) {
+                  // chunks are always UTF-8
+                  return null;
+                }
+                declaration = null;
+              }
+            } else if (declaration != null) {
+              declaration.write(b);
+            }
+            break;
+
+          case END_TAG:
+            if (b == '>') {
+              state = State.TEXT;
+              --depth;
+              if (depth < 0) {
+                return null;
+              }
+              if (depth == 0) {
+                rootClosed = true;
+                if (rangeStart >= 0) {
+                  if (!addRange(ranges, rangeStart, markupStart)) {
+                    return null;
+                  }
+                  rangeStart = -1;
+                }
+              }
+            }
+            break;
+
+          case START_TAG:
+            if (quote != 0) {
+              if (b == quote) {
+                quote = 0;
+                if (crsValue != null) {
+                  crs = StringEscapeUtils.unescapeXml(new String(
+                      crsValue.toByteArray(), StandardCharsets.UTF_8));
+                  crsPos = markupStart;
+                  crsValue = null;
+                }
+              } else if (crsValue != null) {
+                crsValue.write(b);
+              }
+              break;
+            }
+
+            boolean nameChar = b != ' ' && b != '\t' && b != '\r' &&
+                b != '\n' && b != '=' && b != '/' && b != '>' &&
+                b != '"' && b != '\'';
+            if (inElementName) {
+              if (nameChar) {
+                if (depth == 0) {
+                  rootName.write(b);
+                }
+                break;
+              }
+              inElementName = false;
+            }
+
+            if (nameChar) {
+              if (!inAttributeName) {
+                inAttributeName = true;
+                attributeNameLength = 0;
+                attributeIsSrsName = true;
+              }
+              attributeIsSrsName = attributeIsSrsName &&
+                  attributeNameLength < SRS_NAME.length &&
+                  SRS_NAME[attributeNameLength] == b;
+              ++attributeNameLength;
+              break;
+            }
+
+            if (inAttributeName) {
+              inAttributeName = false;
+              attributeIsSrsName = attributeIsSrsName &&
+                  attributeNameLength == SRS_NAME.length;
+            }
+
+            if (b == '"' || b == '\'') {
+              quote = b;
+              if (attributeIsSrsName && crs == null) {
+                crsValue = new ByteArrayOutputStream();
+              }
+              attributeIsSrsName = false;
+            } else if (b == '>') {
+              state = State.TEXT;
+              inRootTag = false;
+              if (prev1 != '/') {
+                ++depth;
+              } else if (depth == 0) {
+                // empty root element
+                rootClosed = true;
+              }
+            }
+            break;
+
+          default:
+            break;
+        }
+
+        prev2 = prev1;
+        prev1 = b;
+      }
+      bb.clear();
+    }
+
+    if (ranges.size() < 2 || rangeStart >= 0 || depth != 0) {
+      // the file is not worth being split in parallel or it is incomplete
+      return null;
+    }
+
+    String prefix = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        new String(rootTag.toByteArray(), StandardCharsets.UTF_8);
+    String suffix = "\n</" + new String(rootName.toByteArray(),
+        StandardCharsets.UTF_8) + ">";
+    return new SplitPlan(prefix, suffix, ranges, crs, crsPos);
+  }
+
+  /**
+   * Add a range to a list
+   * @param ranges the list
+   * @param start the start of the range
+   * @param end the end of the range
+   * @return false if the range was too large to be added
+   */
+  private static boolean addRange(List<Range> ranges, long start, long end) {
+    if (end - start > Integer.MAX_VALUE) {
+      return false;
+    }
+    ranges.add(new Range(start, end));
+    return true;
+  }
+
+  /**
+   * Get the encoding from the XML declaration
+   * @param declaration the contents of the XML declaration
+   * @return the encoding or <code>null</code> if the declaration does not
+   * specify one
+   */
+  private static String getEncoding(ByteArrayOutputStream declaration) {
+    String d = new String(declaration.toByteArray(), StandardCharsets.US_ASCII);
+    if (!d.startsWith("xml")) {
+      // not an XML declaration but another processing instruction
+      return null;
+    }
+    Matcher m = ENCODING_PATTERN.matcher(d);
+    if (m.find()) {
+      return m.group(1);
+    }
+    return null;
+  }
+}
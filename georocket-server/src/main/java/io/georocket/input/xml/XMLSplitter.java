@@ -5,16 +5,25 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.XMLEvent;
 
-import com.google.common.base.Utf8;
+import com.fasterxml.aalto.AsyncByteArrayFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+
+import io.georocket.index.ChunkIndexer;
 import io.georocket.input.Splitter;
 import io.georocket.storage.XMLChunkMeta;
 import io.georocket.util.Window;
 import io.georocket.util.XMLStartElement;
 import io.georocket.util.XMLStreamEvent;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
 
 /**
  * Abstract base class for splitters that split XML streams
@@ -36,17 +45,69 @@ public abstract class XMLSplitter implements Splitter<XMLStreamEvent, XMLChunkMe
    */
   private final Deque<XMLStartElement> startElements = new ArrayDeque<>();
   
+  /**
+   * Indexes chunks while they are being split (may be <code>null</code>)
+   */
+  private final ChunkIndexer<XMLStreamEvent> chunkIndexer;
+  
+  /**
+   * Creates {@link #parentsReader}s (<code>null</code> if
+   * {@link #chunkIndexer} is <code>null</code>)
+   */
+  private final AsyncXMLInputFactory xmlInputFactory;
+  
+  /**
+   * Parses the header and the footer of the current chunk, so
+   * {@link #chunkIndexer} receives the same events as if it parsed the
+   * complete chunk. <code>null</code> if there is no current chunk.
+   */
+  private AsyncXMLStreamReader<AsyncByteArrayFeeder> parentsReader;
+  
+  /**
+   * The parents of the last chunk created. Consecutive chunks typically
+   * have the same parents, so they can share the same list.
+   */
+  private List<XMLStartElement> lastParents;
+  
+  /**
+   * The ID of {@link #lastParents}
+   */
+  private String lastParentsId;
+  
   /**
    * Create splitter
    * @param window a buffer for incoming data
    */
   public XMLSplitter(Window window) {
+    this(window, null);
+  }
+  
+  /**
+   * Create splitter
+   * @param window a buffer for incoming data
+   * @param chunkIndexer an indexer that should receive all events belonging
+   * to a chunk. The documents it creates will be attached to the results of
+   * this splitter. May be <code>null</code> if chunks should not be indexed
+   * while they are being split.
+   */
+  public XMLSplitter(Window window, ChunkIndexer<XMLStreamEvent> chunkIndexer) {
     this.window = window;
+    this.chunkIndexer = chunkIndexer;
+    this.xmlInputFactory = chunkIndexer != null ? new InputFactoryImpl() : null;
   }
   
   @Override
   public Result<XMLChunkMeta> onEvent(XMLStreamEvent event) {
     Result<XMLChunkMeta> chunk = onXMLEvent(event);
+    if (chunkIndexer != null && isMarked()) {
+      if (parentsReader == null) {
+        // the event starts a new chunk. forward the parents first.
+        parentsReader = xmlInputFactory.createAsyncForByteArray();
+        forwardParents(makeHeader().getBytes(StandardCharsets.UTF_8), false);
+      }
+      // the event belongs to the current chunk
+      chunkIndexer.onEvent(event);
+    }
     if (!isMarked()) {
       if (event.getEvent() == XMLEvent.START_ELEMENT) {
         startElements.push(makeXMLStartElement(event.getXMLReader()));
@@ -98,6 +159,54 @@ public abstract class XMLSplitter implements Splitter<XMLStreamEvent, XMLChunkMe
         attributePrefixes, attributeLocalNames, attributeValues);
   }
   
+  /**
+   * Feed the header or the footer of the current chunk into the
+   * {@link #parentsReader} and forward all resulting events to the
+   * {@link #chunkIndexer}
+   * @param bytes the header or footer
+   * @param end true if <code>bytes</code> is the footer and no more
+   * input will follow
+   */
+  private void forwardParents(byte[] bytes, boolean end) {
+    try {
+      parentsReader.getInputFeeder().feedInput(bytes, 0, bytes.length);
+      if (end) {
+        parentsReader.getInputFeeder().endOfInput();
+      }
+      int event = parentsReader.next();
+      while (event != AsyncXMLStreamReader.EVENT_INCOMPLETE &&
+          event != AsyncXMLStreamReader.END_DOCUMENT) {
+        int pos = parentsReader.getLocation().getCharacterOffset();
+        chunkIndexer.onEvent(new XMLStreamEvent(event, pos, parentsReader));
+        event = parentsReader.next();
+      }
+      if (end) {
+        parentsReader.close();
+        parentsReader = null;
+      }
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("Could not parse parents of chunk", e);
+    }
+  }
+  
+  /**
+   * Create the header of a chunk consisting of the XML declaration and
+   * the full stack of start elements
+   * @return the header
+   */
+  private String makeHeader() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    
+    // append the full stack of start elements (backwards)
+    startElements.descendingIterator().forEachRemaining(e -> {
+      sb.append(e);
+      sb.append("\n");
+    });
+    
+    return sb.toString();
+  }
+  
   /**
    * Mark a position
    * @param pos the position to mark
@@ -117,40 +226,53 @@ public abstract class XMLSplitter implements Splitter<XMLStreamEvent, XMLChunkMe
    * Create a new chunk starting from the marked position and ending on the
    * given position. Reset the mark afterwards and advance the window to the
    * end position. Return a {@link io.georocket.input.Splitter.Result} object
-   * with the new chunk and its metadata.
+   * with the new chunk and its metadata. The chunk is a composite buffer
+   * consisting of a header with the parent elements, the element's bytes
+   * from the window, and a footer. The element is never decoded.
    * @param pos the end position
    * @return the {@link io.georocket.input.Splitter.Result} object
    */
   protected Result<XMLChunkMeta> makeResult(int pos) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
-    
-    // append the full stack of start elements (backwards)
-    List<XMLStartElement> chunkParents = new ArrayList<>();
-    startElements.descendingIterator().forEachRemaining(e -> {
-      chunkParents.add(e);
-      sb.append(e);
-      sb.append("\n");
-    });
+    List<XMLStartElement> chunkParents = new ArrayList<>(startElements.size());
+    startElements.descendingIterator().forEachRemaining(chunkParents::add);
     
     // get chunk start in bytes
-    int chunkStart = Utf8.encodedLength(sb);
+    byte[] header = makeHeader().getBytes(StandardCharsets.UTF_8);
+    int chunkStart = header.length;
     
-    // append current element
+    // get current element
     byte[] bytes = window.getBytes(mark, pos);
-    sb.append(new String(bytes, StandardCharsets.UTF_8));
     window.advanceTo(pos);
     mark = -1;
     
     // get chunk end in bytes
     int chunkEnd = chunkStart + bytes.length;
     
-    // append the full stack of end elements
+    // make the full stack of end elements
+    StringBuilder footer = new StringBuilder();
     startElements.iterator().forEachRemaining(e ->
-      sb.append("\n</").append(e.getName()).append(">"));
+      footer.append("\n</").append(e.getName()).append(">"));
     
-    XMLChunkMeta meta = new XMLChunkMeta(chunkParents, chunkStart, chunkEnd);
-    return new Result<>(sb.toString(), meta);
+    byte[] footerBytes = footer.toString().getBytes(StandardCharsets.UTF_8);
+    Buffer chunk = Buffer.buffer(Unpooled.wrappedBuffer(header, bytes,
+        footerBytes));
+    // reuse the parents of the last chunk if possible, so we do not have
+    // to calculate their ID again
+    if (!chunkParents.equals(lastParents)) {
+      lastParents = chunkParents;
+      lastParentsId = XMLChunkMeta.makeParentsId(chunkParents);
+    }
+    XMLChunkMeta meta = new XMLChunkMeta(lastParents, lastParentsId,
+        chunkStart, chunkEnd);
+    Map<String, Object> document = null;
+    if (chunkIndexer != null) {
+      if (parentsReader != null) {
+        // let the indexers see the end elements of the parents too
+        forwardParents(footerBytes, true);
+      }
+      document = chunkIndexer.finish();
+    }
+    return new Result<>(chunk, meta, document);
   }
   
   /**
@@ -0,0 +1,251 @@
+package io.georocket.output;
+
+import static io.georocket.util.MimeTypeUtils.belongsTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.bson.types.ObjectId;
+
+import io.georocket.storage.ChunkMeta;
+import io.georocket.storage.GeoJsonChunkMeta;
+import io.georocket.storage.JsonChunkMeta;
+import io.georocket.storage.XMLChunkMeta;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.rx.java.ObservableFuture;
+import io.vertx.rx.java.RxHelper;
+import rx.Completable;
+import rx.Observable;
+import rx.Single;
+
+/**
+ * <p>Temporarily saves chunk metadata and chunk paths so they can be
+ * replayed later.</p>
+ * <p>Mergers need to see the metadata of all chunks before the first chunk
+ * can be merged. Instead of performing the same search twice (once to
+ * initialize the merger and once to merge the chunks), the results of the
+ * first search can be written to a spool and then be replayed from there.
+ * This does not only halve the load on the index but also makes sure the
+ * merger receives exactly the same chunks in both phases.</p>
+ * <p>The spool keeps the metadata in memory as long as its serialized size
+ * does not exceed a given threshold. Only larger results are spilled to a
+ * temporary file in a given directory.</p>
+ * @author Michel Kraemer
+ */
+public class ChunkMetaSpool {
+  private final Vertx vertx;
+  private final String directory;
+  private final long maxMemorySize;
+
+  /**
+   * Items kept in memory as long as the spool has not been spilled to a file
+   */
+  private List<Pair<ChunkMeta, String>> items = new ArrayList<>();
+
+  /**
+   * The serialized size of all items kept in memory
+   */
+  private long memorySize;
+
+  /**
+   * The name of the spool file (<code>null</code> if the spool has not been
+   * spilled to a file yet)
+   */
+  private String filename;
+  private AsyncFile file;
+
+  /**
+   * Create a new spool
+   * @param vertx the Vert.x instance
+   * @param directory the directory where the spool file should be created
+   * if the spool exceeds the given maximum memory size
+   * @param maxMemorySize the maximum serialized size of all chunk metadata
+   * kept in memory
+   */
+  private ChunkMetaSpool(Vertx vertx, String directory, long maxMemorySize) {
+    this.vertx = vertx;
+    this.directory = directory;
+    this.maxMemorySize = maxMemorySize;
+  }
+
+  /**
+   * Create a new spool
+   * @param vertx the Vert.x instance
+   * @param directory the directory where the spool file should be created
+   * if the spool exceeds the given maximum memory size
+   * @param maxMemorySize the maximum serialized size of all chunk metadata
+   * kept in memory
+   * @return a single emitting the new spool
+   */
+  public static Single<ChunkMetaSpool> create(Vertx vertx, String directory,
+      long maxMemorySize) {
+    return Single.just(new ChunkMetaSpool(vertx, directory, maxMemorySize));
+  }
+
+  /**
+   * Check if the spool has been spilled to a file
+   * @return true if the spool is backed by a file
+   */
+  boolean isSpilled() {
+    return filename != null;
+  }
+
+  /**
+   * Serialize chunk metadata and the chunk's path to a line that can be
+   * written to the spool file
+   * @param meta the chunk metadata
+   * @param path the chunk's path
+   * @return the line
+   */
+  private static Buffer toLine(ChunkMeta meta, String path) {
+    JsonObject o = new JsonObject()
+      .put("path", path)
+      .put("meta", meta.toJsonObject());
+    return Buffer.buffer(o.encode()).appendString("\n");
+  }
+
+  /**
+   * Append chunk metadata and the chunk's path to the spool
+   * @param meta the chunk metadata
+   * @param path the chunk's path
+   * @return a Completable that will complete when the spool is ready to
+   * accept more data
+   */
+  public Completable write(ChunkMeta meta, String path) {
+    Buffer line = toLine(meta, path);
+    if (file != null) {
+      return write(line);
+    }
+
+    if (memorySize + line.length() <= maxMemorySize) {
+      items.add(Pair.of(meta, path));
+      memorySize += line.length();
+      return Completable.complete();
+    }
+
+    // the spool is too large to be kept in memory
+    return spill().andThen(Completable.defer(() -> write(line)));
+  }
+
+  /**
+   * Write a line to the spool file
+   * @param line the line
+   * @return a Completable that will complete when the spool is ready to
+   * accept more data
+   */
+  private Completable write(Buffer line) {
+    file.write(line);
+    if (!file.writeQueueFull()) {
+      return Completable.complete();
+    }
+    return Completable.fromEmitter(emitter ->
+      file.drainHandler(v -> {
+        file.drainHandler(null);
+        emitter.onCompleted();
+      }));
+  }
+
+  /**
+   * Create the spool file and write all items kept in memory to it
+   * @return a Completable that will complete when the items have been
+   * written to the file
+   */
+  private Completable spill() {
+    String name = directory + "/georocket-merge-" + new ObjectId() + ".jsonl";
+    ObservableFuture<Void> mkdirsObservable = RxHelper.observableFuture();
+    vertx.fileSystem().mkdirs(directory, mkdirsObservable.toHandler());
+    return mkdirsObservable.flatMap(v -> {
+      ObservableFuture<AsyncFile> openObservable = RxHelper.observableFuture();
+      vertx.fileSystem().open(name, new OpenOptions()
+          .setWrite(true).setCreateNew(true), openObservable.toHandler());
+      return openObservable;
+    }).toSingle().flatMapCompletable(f -> {
+      filename = name;
+      file = f;
+      List<Pair<ChunkMeta, String>> l = items;
+      items = null;
+      memorySize = 0;
+      return Observable.from(l)
+        .concatMap(p -> write(toLine(p.getLeft(), p.getRight())).toObservable())
+        .toCompletable();
+    });
+  }
+
+  /**
+   * Close the spool for writing and replay all saved items in the order
+   * they were written
+   * @return an observable emitting the saved chunk metadata and paths
+   */
+  public Observable<Pair<ChunkMeta, String>> replay() {
+    if (file == null) {
+      return Observable.from(items);
+    }
+
+    ObservableFuture<Void> closeObservable = RxHelper.observableFuture();
+    file.close(closeObservable.toHandler());
+    return closeObservable.flatMap(v -> {
+      ObservableFuture<AsyncFile> openObservable = RxHelper.observableFuture();
+      vertx.fileSystem().open(filename, new OpenOptions()
+          .setRead(true).setWrite(false).setCreate(false),
+          openObservable.toHandler());
+      return openObservable;
+    }).flatMap(f -> {
+      file = f;
+      RecordParser parser = RecordParser.newDelimited("\n", f);
+      return RxHelper.toObservable(parser);
+    }).filter(line -> line.length() > 0).map(line -> {
+      JsonObject o = line.toJsonObject();
+      return Pair.of(createChunkMeta(o.getJsonObject("meta")),
+        o.getString("path"));
+    });
+  }
+
+  /**
+   * Release the items kept in memory, and close and delete the spool file
+   * if there is one. Errors will be ignored.
+   * @return a Completable that will complete when the file has been deleted
+   */
+  public Completable delete() {
+    if (file == null) {
+      items = new ArrayList<>();
+      memorySize = 0;
+      return Completable.complete();
+    }
+
+    ObservableFuture<Void> closeObservable = RxHelper.observableFuture();
+    file.close(closeObservable.toHandler());
+    return closeObservable
+      .onErrorResumeNext(t -> Observable.just(null))
+      .flatMap(v -> {
+        ObservableFuture<Void> deleteObservable = RxHelper.observableFuture();
+        vertx.fileSystem().delete(filename, deleteObservable.toHandler());
+        return deleteObservable;
+      })
+      .onErrorResumeNext(t -> Observable.just(null))
+      .toCompletable();
+  }
+
+  /**
+   * Create a {@link ChunkMeta} object from its JSON representation
+   * @param json the JSON object
+   * @return the chunk metadata
+   */
+  private static ChunkMeta createChunkMeta(JsonObject json) {
+    String mimeType = json.getString("mimeType", XMLChunkMeta.MIME_TYPE);
+    if (belongsTo(mimeType, "application", "xml") ||
+      belongsTo(mimeType, "text", "xml")) {
+      return new XMLChunkMeta(json);
+    } else if (belongsTo(mimeType, "application", "geo+json")) {
+      return new GeoJsonChunkMeta(json);
+    } else if (belongsTo(mimeType, "application", "json")) {
+      return new JsonChunkMeta(json);
+    }
+    return new ChunkMeta(json);
+  }
+}
@@ -46,6 +46,37 @@ public interface Merger<T extends ChunkMeta> {
    * @param out the stream to write the merged result to
    */
   void finish(WriteStream<Buffer> out);
+
+  /**
+   * Write the beginning of the merged document (e.g. the XML declaration
+   * and the parent elements) if it has not been written yet.
+   * {@link #merge(ChunkReadStream, ChunkMeta, WriteStream)} calls this
+   * method before the first chunk is written, so it only has to be called
+   * explicitly to create a document that does not contain any chunks.
+   * This method must not be called before the merger has been initialized.
+   * @param out the stream to write the header to
+   */
+  void writeHeader(WriteStream<Buffer> out);
+
+  /**
+   * <p>Do not write the beginning of the merged document. Only the chunks
+   * (and, if {@link #finish(WriteStream)} is called, the end of the
+   * document) will be written.</p>
+   * <p>This is useful if a search result is merged in several slices. The
+   * merger of each slice only writes the chunks of its slice. Another
+   * merger that has been initialized with all chunks writes the header and
+   * the end of the document. The slices must be concatenated with
+   * {@link #getSeparator()} in between.</p>
+   */
+  void skipHeader();
+
+  /**
+   * Get the string that separates two merged chunks in the output
+   * document (e.g. a comma in a GeoJSON feature collection). This method
+   * must not be called before the merger has been initialized.
+   * @return the separator (may be empty but never <code>null</code>)
+   */
+  String getSeparator();
   
   /**
    * Write a chunk unchanged to an output stream without doing further checks
@@ -64,6 +95,14 @@ public interface Merger<T extends ChunkMeta> {
       int e = Math.max(Math.min(end[0], buf.length()), 0);
       if (s != e) {
         out.write(buf.getBuffer(s, e));
+        if (out.writeQueueFull()) {
+          // wait until the output stream is ready to accept more data
+          chunk.pause();
+          out.drainHandler(v -> {
+            out.drainHandler(null);
+            chunk.resume();
+          });
+        }
       }
       start[0] -= buf.length();
       end[0] -= buf.length();
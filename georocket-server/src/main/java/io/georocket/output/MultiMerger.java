@@ -84,6 +84,37 @@ public class MultiMerger implements Merger<ChunkMeta> {
       }));
   }
 
+  @Override
+  public void writeHeader(WriteStream<Buffer> out) {
+    if (xmlMerger != null) {
+      xmlMerger.writeHeader(out);
+    }
+    if (geoJsonMerger != null) {
+      geoJsonMerger.writeHeader(out);
+    }
+  }
+
+  @Override
+  public void skipHeader() {
+    if (xmlMerger != null) {
+      xmlMerger.skipHeader();
+    }
+    if (geoJsonMerger != null) {
+      geoJsonMerger.skipHeader();
+    }
+  }
+
+  @Override
+  public String getSeparator() {
+    if (geoJsonMerger != null) {
+      return geoJsonMerger.getSeparator();
+    }
+    if (xmlMerger != null) {
+      return xmlMerger.getSeparator();
+    }
+    return "";
+  }
+
   @Override
   public void finish(WriteStream<Buffer> out) {
     if (xmlMerger != null) {
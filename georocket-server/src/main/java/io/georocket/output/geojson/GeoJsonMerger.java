@@ -40,6 +40,12 @@ public class GeoJsonMerger implements Merger<GeoJsonChunkMeta> {
    * {@link #merge(ChunkReadStream, GeoJsonChunkMeta, WriteStream)}
    */
   private boolean headerWritten = false;
+
+  /**
+   * True if at least one chunk has already been written in
+   * {@link #merge(ChunkReadStream, GeoJsonChunkMeta, WriteStream)}
+   */
+  private boolean chunkWritten = false;
   
   /**
    * The GeoJSON object type the merged result should have
@@ -62,7 +68,12 @@ public class GeoJsonMerger implements Merger<GeoJsonChunkMeta> {
    * Write the header
    * @param out the output stream to write to
    */
-  private void writeHeader(WriteStream<Buffer> out) {
+  @Override
+  public void writeHeader(WriteStream<Buffer> out) {
+    if (headerWritten) {
+      return;
+    }
+    headerWritten = true;
     if (mergedType == FEATURE_COLLECTION) {
       out.write(Buffer.buffer("{\"type\":\"FeatureCollection\",\"features\":["));
     } else if (mergedType == GEOMETRY_COLLECTION) {
@@ -98,18 +109,17 @@ public class GeoJsonMerger implements Merger<GeoJsonChunkMeta> {
       WriteStream<Buffer> out) {
     mergeStarted = true;
     
-    if (!headerWritten) {
-      writeHeader(out);
-      headerWritten = true;
-    } else {
+    writeHeader(out);
+    if (chunkWritten) {
       if (mergedType == FEATURE_COLLECTION || mergedType == GEOMETRY_COLLECTION) {
-        out.write(Buffer.buffer(","));
+        out.write(Buffer.buffer(getSeparator()));
       } else {
         return Completable.error(new IllegalStateException(
           "Trying to merge two or more chunks but the merger has only been "
           + "initialized with one chunk."));
       }
     }
+    chunkWritten = true;
     
     // check if we have to wrap a geometry into a feature
     boolean wrap = mergedType == FEATURE_COLLECTION && !"Feature".equals(meta.getType());
@@ -125,6 +135,19 @@ public class GeoJsonMerger implements Merger<GeoJsonChunkMeta> {
       });
   }
 
+  @Override
+  public void skipHeader() {
+    headerWritten = true;
+  }
+
+  @Override
+  public String getSeparator() {
+    if (mergedType == FEATURE_COLLECTION || mergedType == GEOMETRY_COLLECTION) {
+      return ",";
+    }
+    return "";
+  }
+
   @Override
   public void finish(WriteStream<Buffer> out) {
     if (mergedType == FEATURE_COLLECTION || mergedType == GEOMETRY_COLLECTION) {
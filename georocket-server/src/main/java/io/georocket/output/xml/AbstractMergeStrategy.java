@@ -71,9 +71,24 @@ public abstract class AbstractMergeStrategy implements MergeStrategy {
    * Write the XML header and the parent elements
    * @param out the output stream to write to
    */
-  private void writeHeader(WriteStream<Buffer> out) {
+  @Override
+  public void writeHeader(WriteStream<Buffer> out) {
+    if (headerWritten) {
+      return;
+    }
     out.write(Buffer.buffer(XMLHEADER));
     parents.forEach(e -> out.write(Buffer.buffer(e.toString())));
+    headerWritten = true;
+  }
+
+  @Override
+  public void skipHeader() {
+    headerWritten = true;
+  }
+
+  @Override
+  public String getSeparator() {
+    return "";
   }
   
   @Override
@@ -85,10 +100,7 @@ public abstract class AbstractMergeStrategy implements MergeStrategy {
           return Completable.error(new IllegalStateException(
               "Chunk cannot be merged with this strategy"));
         }
-        if (!headerWritten) {
-          writeHeader(out);
-          headerWritten = true;
-        }
+        writeHeader(out);
         return writeChunk(chunk, meta, out);
       });
   }
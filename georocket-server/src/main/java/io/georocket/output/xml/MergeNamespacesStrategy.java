@@ -2,9 +2,11 @@ package io.georocket.output.xml;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -31,8 +33,16 @@ public class MergeNamespacesStrategy extends AbstractMergeStrategy {
    */
   private List<Map<Pair<String, String>, String>> currentAttributes;
   
+  /**
+   * The IDs of parents that have already been merged into the current
+   * XML root elements. Chunks with these parents can be merged without
+   * further checks.
+   */
+  private final Set<String> mergedParentsIds = new HashSet<>();
+  
   @Override
   public void setParents(List<XMLStartElement> parents) {
+    mergedParentsIds.clear();
     currentNamespaces = new ArrayList<>();
     currentAttributes = new ArrayList<>();
     for (XMLStartElement e : parents) {
@@ -204,7 +214,8 @@ public class MergeNamespacesStrategy extends AbstractMergeStrategy {
   @Override
   public Single<Boolean> canMerge(XMLChunkMeta meta) {
     return Single.defer(() -> {
-      if (getParents() == null || canMerge(getParents(), meta.getParents(),
+      if (getParents() == null || isMerged(meta) ||
+          canMerge(getParents(), meta.getParents(),
         !isHeaderWritten())) {
         return Single.just(true);
       } else {
@@ -213,11 +224,29 @@ public class MergeNamespacesStrategy extends AbstractMergeStrategy {
     });
   }
   
+  /**
+   * Check if the parents of the given chunk have already been merged
+   * @param meta the chunk's metadata
+   * @return true if the parents have already been merged
+   */
+  private boolean isMerged(XMLChunkMeta meta) {
+    return meta.getParentsId() != null &&
+        mergedParentsIds.contains(meta.getParentsId());
+  }
+  
   @Override
   protected Completable mergeParents(XMLChunkMeta meta) {
+    if (isMerged(meta)) {
+      // nothing to do
+      return Completable.complete();
+    }
+    
     if (getParents() == null) {
       // no merge necessary yet, just save the chunk's parents
       setParents(meta.getParents());
+      if (meta.getParentsId() != null) {
+        mergedParentsIds.add(meta.getParentsId());
+      }
       return Completable.complete();
     }
     
@@ -239,6 +268,9 @@ public class MergeNamespacesStrategy extends AbstractMergeStrategy {
     if (changed) {
       super.setParents(newParents);
     }
+    if (meta.getParentsId() != null) {
+      mergedParentsIds.add(meta.getParentsId());
+    }
     
     return Completable.complete();
   }
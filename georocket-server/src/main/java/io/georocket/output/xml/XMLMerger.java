@@ -102,4 +102,20 @@ public class XMLMerger implements Merger<XMLChunkMeta> {
   public void finish(WriteStream<Buffer> out) {
     strategy.finish(out);
   }
+
+  @Override
+  public void writeHeader(WriteStream<Buffer> out) {
+    strategy.writeHeader(out);
+  }
+
+  @Override
+  public void skipHeader() {
+    strategy.skipHeader();
+  }
+
+  @Override
+  public String getSeparator() {
+    // XML chunks are simply written one after the other
+    return "";
+  }
 }
@@ -0,0 +1,236 @@
+package io.georocket.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import io.georocket.util.io.DelegateChunkReadStream;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.rx.java.RxHelper;
+import rx.Completable;
+import rx.CompletableSubscriber;
+import rx.Observable;
+import rx.Single;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * <p>Fetches chunks from a store ahead of time. Groups up to a given number
+ * of chunks into a batch, fetches each batch with a single
+ * {@link Store#getMany(List, Handler)} request, and emits the retrieved
+ * chunks strictly in the order of the given paths.</p>
+ * <p>This is useful for back-ends with a high latency per request (e.g.
+ * remote object stores). Chunks fetched ahead of time are read into memory
+ * completely, so the number of chunks as well as the number of bytes held
+ * in memory are bounded. Every emitted {@link ChunkReadStream} must be
+ * closed after use so the next chunks can be fetched.</p>
+ * <p>Instances of this class must only be used on the Vert.x event loop and
+ * for one sequence of chunks at a time.</p>
+ * @author Michel Kraemer
+ */
+public class ChunkReadAhead {
+  /**
+   * The store to fetch the chunks from
+   */
+  private final RxStore store;
+
+  /**
+   * The maximum number of chunks to fetch with one request
+   */
+  private final int maxChunks;
+
+  /**
+   * The maximum number of bytes to keep in memory
+   */
+  private final long maxBytes;
+
+  /**
+   * The estimated number of bytes currently fetched or held in memory
+   */
+  private long bytesInFlight;
+
+  /**
+   * Requests waiting for {@link #bytesInFlight} to drop. Each entry consists
+   * of the number of bytes requested and the subscriber to notify.
+   */
+  private final Deque<Pair<Long, CompletableSubscriber>> waiting =
+      new ArrayDeque<>();
+
+  /**
+   * Create a new read-ahead stage
+   * @param store the store to fetch the chunks from
+   * @param maxChunks the maximum number of chunks to fetch with one request
+   * @param maxBytes the maximum number of bytes to keep in memory
+   */
+  public ChunkReadAhead(RxStore store, int maxChunks, long maxBytes) {
+    this.store = store;
+    this.maxChunks = Math.max(1, maxChunks);
+    this.maxBytes = Math.max(1, maxBytes);
+  }
+
+  /**
+   * Fetch the chunks with the given paths
+   * @param data chunk metadata and paths of the chunks to fetch
+   * @return an observable emitting the chunk metadata and the fetched chunks
+   * in the same order as the given paths
+   */
+  public Observable<Pair<ChunkMeta, ChunkReadStream>> fetch(
+      Observable<Pair<ChunkMeta, String>> data) {
+    // fetch one batch at a time. the next batch is fetched while the
+    // chunks of the current one are being consumed.
+    return batch(data).concatMapEager(this::fetchBatch, maxChunks, 1);
+  }
+
+  /**
+   * Group chunks into batches of at most {@link #maxChunks} chunks and
+   * {@link #maxBytes} bytes. Each batch contains at least one chunk.
+   * @param data chunk metadata and paths of the chunks to group
+   * @return an observable emitting the batches
+   */
+  private Observable<List<Pair<ChunkMeta, String>>> batch(
+      Observable<Pair<ChunkMeta, String>> data) {
+    return Observable.defer(() -> {
+      List<List<Pair<ChunkMeta, String>>> current = new ArrayList<>();
+      current.add(new ArrayList<>());
+      long[] currentBytes = new long[] { 0 };
+      return data.concatMap(p -> {
+        List<Pair<ChunkMeta, String>> b = current.get(0);
+        long size = estimateSize(p.getLeft());
+        Observable<List<Pair<ChunkMeta, String>>> r = Observable.empty();
+        if (!b.isEmpty() && (b.size() >= maxChunks ||
+            currentBytes[0] + size > maxBytes)) {
+          r = Observable.just(b);
+          b = new ArrayList<>();
+          current.set(0, b);
+          currentBytes[0] = 0;
+        }
+        b.add(p);
+        currentBytes[0] += size;
+        return r;
+      }).concatWith(Observable.defer(() -> {
+        if (current.get(0).isEmpty()) {
+          return Observable.empty();
+        }
+        return Observable.just(current.get(0));
+      }));
+    });
+  }
+
+  /**
+   * Estimate the size of a chunk. The size of a chunk is unknown until it
+   * has been retrieved, but the chunk's end offset is a good estimate.
+   * @param meta the chunk's metadata
+   * @return the estimated size in bytes
+   */
+  private static long estimateSize(ChunkMeta meta) {
+    return Math.max(0, meta.getEnd());
+  }
+
+  /**
+   * Fetch a batch of chunks with a single
+   * {@link Store#getMany(List, Handler)} request and read them into memory
+   * @param batch chunk metadata and paths of the chunks to fetch
+   * @return an observable emitting the chunk metadata and the fetched chunks
+   */
+  private Observable<Pair<ChunkMeta, ChunkReadStream>> fetchBatch(
+      List<Pair<ChunkMeta, String>> batch) {
+    long totalSize = 0;
+    List<String> paths = new ArrayList<>(batch.size());
+    for (Pair<ChunkMeta, String> p : batch) {
+      totalSize += estimateSize(p.getLeft());
+      paths.add(p.getRight());
+    }
+    long estimatedSize = totalSize;
+
+    return acquire(estimatedSize)
+      .andThen(Single.defer(() -> store.rxGetMany(paths)))
+      .flatMap(streams -> Observable.from(streams)
+        .concatMap(crs -> RxHelper.toObservable(crs)
+          .collect(Buffer::buffer, Buffer::appendBuffer))
+        .toList()
+        .toSingle()
+        .doAfterTerminate(() -> streams.forEach(ChunkReadStream::close)))
+      .doOnError(t -> release(estimatedSize))
+      .flatMapObservable(buffers -> {
+        List<Pair<ChunkMeta, ChunkReadStream>> result =
+            new ArrayList<>(buffers.size());
+        for (int i = 0; i < buffers.size(); ++i) {
+          ChunkMeta meta = batch.get(i).getLeft();
+          result.add(Pair.of(meta, makeStream(buffers.get(i),
+              estimateSize(meta))));
+        }
+        return Observable.from(result);
+      });
+  }
+
+  /**
+   * Wrap a chunk that has been read into memory. Release the bytes it
+   * occupies as soon as the returned stream is closed.
+   * @param chunk the chunk
+   * @param estimatedSize the number of bytes reserved for the chunk
+   * @return the stream
+   */
+  private ChunkReadStream makeStream(Buffer chunk, long estimatedSize) {
+    return new DelegateChunkReadStream(chunk) {
+      private boolean closed;
+
+      @Override
+      public void close(Handler<AsyncResult<Void>> handler) {
+        if (!closed) {
+          closed = true;
+          release(estimatedSize);
+        }
+        if (handler != null) {
+          handler.handle(Future.succeededFuture());
+        }
+      }
+    };
+  }
+
+  /**
+   * Reserve the given number of bytes. Wait until enough bytes are
+   * available. Reservations are granted in the order in which they were
+   * made. A reservation is always granted if no other bytes are currently
+   * reserved, so single chunks larger than the maximum never block forever.
+   * @param bytes the number of bytes to reserve
+   * @return a Completable that will complete when the bytes have been reserved
+   */
+  private Completable acquire(long bytes) {
+    return Completable.create(subscriber -> {
+      subscriber.onSubscribe(Subscriptions.empty());
+      if (waiting.isEmpty() && canAcquire(bytes)) {
+        bytesInFlight += bytes;
+        subscriber.onCompleted();
+      } else {
+        waiting.add(Pair.of(bytes, subscriber));
+      }
+    });
+  }
+
+  /**
+   * Release the given number of bytes and grant waiting reservations
+   * @param bytes the number of bytes to release
+   */
+  private void release(long bytes) {
+    bytesInFlight -= bytes;
+    while (!waiting.isEmpty() && canAcquire(waiting.peek().getLeft())) {
+      Pair<Long, CompletableSubscriber> w = waiting.poll();
+      bytesInFlight += w.getLeft();
+      w.getRight().onCompleted();
+    }
+  }
+
+  /**
+   * Check if the given number of bytes can be reserved
+   * @param bytes the number of bytes
+   * @return true if the bytes can be reserved
+   */
+  private boolean canAcquire(long bytes) {
+    return bytesInFlight <= 0 || bytesInFlight + bytes <= maxBytes;
+  }
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.rx.java.ObservableFuture;
 import io.vertx.rx.java.RxHelper;
 import io.vertx.rx.java.SingleOnSubscribeAdapter;
@@ -33,12 +34,23 @@ public class RxStore implements Store {
     return delegate;
   }
   
+  @Override
+  public boolean isShared() {
+    return delegate.isShared();
+  }
+
   @Override
   public void add(String chunk, ChunkMeta chunkMeta, String path,
       IndexMeta indexMeta, Handler<AsyncResult<Void>> handler) {
     delegate.add(chunk, chunkMeta, path, indexMeta, handler);
   }
   
+  @Override
+  public void add(Buffer chunk, ChunkMeta chunkMeta, String path,
+      IndexMeta indexMeta, Handler<AsyncResult<Void>> handler) {
+    delegate.add(chunk, chunkMeta, path, indexMeta, handler);
+  }
+
   /**
    * Rx version of {@link #add(String, ChunkMeta, String, IndexMeta, Handler)}
    * @param chunk the chunk to add
@@ -53,6 +65,20 @@ public class RxStore implements Store {
         add(chunk, chunkMeta, path, indexMeta, f))).toCompletable();
   }
 
+  /**
+   * Rx version of {@link #add(Buffer, ChunkMeta, String, IndexMeta, Handler)}
+   * @param chunk the chunk to add
+   * @param chunkMeta the chunk's metadata
+   * @param path the path where the chunk should be stored (may be null)
+   * @param indexMeta metadata affecting the way the chunk will be indexed
+   * @return a Completable that completes when the operation has finished
+   */
+  public Completable rxAdd(Buffer chunk, ChunkMeta chunkMeta,
+      String path, IndexMeta indexMeta) {
+    return Single.create(new SingleOnSubscribeAdapter<Void>(f ->
+        add(chunk, chunkMeta, path, indexMeta, f))).toCompletable();
+  }
+
   @Override
   public void getOne(String path, Handler<AsyncResult<ChunkReadStream>> handler) {
     delegate.getOne(path, handler);
@@ -70,6 +96,24 @@ public class RxStore implements Store {
     return o.toSingle();
   }
 
+  @Override
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    delegate.getMany(paths, handler);
+  }
+
+  /**
+   * Rx version of {@link #getMany(List, Handler)}
+   * @param paths the absolute paths to the chunks
+   * @return a Single that will emit read streams that can be used to get
+   * the chunks' contents (in the same order as the given paths)
+   */
+  public Single<List<ChunkReadStream>> rxGetMany(List<String> paths) {
+    ObservableFuture<List<ChunkReadStream>> o = RxHelper.observableFuture();
+    getMany(paths, o.toHandler());
+    return o.toSingle();
+  }
+
   @Override
   public void delete(String search, String path, Handler<AsyncResult<Void>> handler) {
     delegate.delete(search, path, handler);
@@ -128,6 +172,28 @@ public class RxStore implements Store {
     return o.toSingle();
   }
 
+  @Override
+  public void get(String search, String path, int slice, int slices,
+      Handler<AsyncResult<StoreCursor>> handler) {
+    delegate.get(search, path, slice, slices, handler);
+  }
+
+  /**
+   * Rx version of {@link #get(String, String, int, int, Handler)}
+   * @param search the search query
+   * @param path the path where to search for the chunks (may be null)
+   * @param slice the number of the slice to get (starting at 0)
+   * @param slices the total number of slices
+   * @return a Single that emits a cursor that can be used to iterate
+   * over all chunks in the slice
+   */
+  public Single<StoreCursor> rxGet(String search, String path, int slice,
+      int slices) {
+    ObservableFuture<StoreCursor> o = RxHelper.observableFuture();
+    get(search, path, slice, slices, o.toHandler());
+    return o.toSingle();
+  }
+
   @Override
   public void scroll(String search, String path, int size, Handler<AsyncResult<StoreCursor>> handler) {
     delegate.scroll(search, path, size, handler);
@@ -204,6 +270,46 @@ public class RxStore implements Store {
     return o.toSingle();
   }
 
+  @Override
+  public void getDistinctAttributeValues(String search, String path,
+      String attribute, Handler<AsyncResult<AsyncCursor<ValueCount>>> handler) {
+    delegate.getDistinctAttributeValues(search, path, attribute, handler);
+  }
+
+  /**
+   * Rx version of {@link #getDistinctAttributeValues(String, String, String, Handler)}
+   * @param search the search query
+   * @param path the path where to search for the values (may be null)
+   * @param attribute the name of the attribute
+   * @return emits when the values have been retrieved from the store
+   */
+  public Single<AsyncCursor<ValueCount>> rxGetDistinctAttributeValues(
+      String search, String path, String attribute) {
+    ObservableFuture<AsyncCursor<ValueCount>> o = RxHelper.observableFuture();
+    getDistinctAttributeValues(search, path, attribute, o.toHandler());
+    return o.toSingle();
+  }
+
+  @Override
+  public void getDistinctPropertyValues(String search, String path,
+      String property, Handler<AsyncResult<AsyncCursor<ValueCount>>> handler) {
+    delegate.getDistinctPropertyValues(search, path, property, handler);
+  }
+
+  /**
+   * Rx version of {@link #getDistinctPropertyValues(String, String, String, Handler)}
+   * @param search the search query
+   * @param path the path where to search for the values (may be null)
+   * @param property the name of the property
+   * @return emits when the values have been retrieved from the store
+   */
+  public Single<AsyncCursor<ValueCount>> rxGetDistinctPropertyValues(
+      String search, String path, String property) {
+    ObservableFuture<AsyncCursor<ValueCount>> o = RxHelper.observableFuture();
+    getDistinctPropertyValues(search, path, property, o.toHandler());
+    return o.toSingle();
+  }
+
   @Override
   public void setProperties(String search, String path,
       Map<String, String> properties, Handler<AsyncResult<Void>> handler) {
@@ -2,6 +2,9 @@ package io.georocket.storage;
 
 import io.georocket.constants.ConfigConstants;
 import io.georocket.storage.file.FileStore;
+import io.georocket.storage.hdfs.HDFSStore;
+import io.georocket.storage.mongodb.MongoDBStore;
+import io.georocket.storage.s3.S3Store;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 
@@ -16,13 +19,40 @@ public class StoreFactory {
    * @return the store
    */
   public static Store createStore(Vertx vertx) {
-    JsonObject config = vertx.getOrCreateContext().config();
-    String cls = config.getString(ConfigConstants.STORAGE_CLASS,
-        FileStore.class.getName());
+    String cls = getStoreClassName(vertx);
     try {
       return (Store)Class.forName(cls).getConstructor(Vertx.class).newInstance(vertx);
     } catch (ReflectiveOperationException e) {
       throw new RuntimeException("Could not create chunk store", e);
     }
   }
+
+  /**
+   * Get the name of the configured chunk store class
+   * @param vertx the Vert.x instance
+   * @return the class name
+   */
+  private static String getStoreClassName(Vertx vertx) {
+    JsonObject config = vertx.getOrCreateContext().config();
+    return config.getString(ConfigConstants.STORAGE_CLASS,
+        FileStore.class.getName());
+  }
+
+  /**
+   * Get the default number of chunks that should be fetched ahead of time
+   * from the configured chunk store while merging. Back-ends with a high
+   * latency per request benefit from fetching multiple chunks concurrently,
+   * while local back-ends should read one chunk after the other.
+   * @param vertx the Vert.x instance
+   * @return the default number of chunks to read ahead
+   */
+  public static int getDefaultReadAheadMaxChunks(Vertx vertx) {
+    String cls = getStoreClassName(vertx);
+    if (cls.equals(S3Store.class.getName()) ||
+        cls.equals(MongoDBStore.class.getName()) ||
+        cls.equals(HDFSStore.class.getName())) {
+      return ConfigConstants.DEFAULT_STORAGE_READ_AHEAD_MAX_CHUNKS_REMOTE;
+    }
+    return ConfigConstants.DEFAULT_STORAGE_READ_AHEAD_MAX_CHUNKS;
+  }
 }
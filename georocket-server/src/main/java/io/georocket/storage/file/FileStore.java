@@ -1,7 +1,13 @@
 package io.georocket.storage.file;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 
 import com.google.common.base.Preconditions;
@@ -10,6 +16,7 @@ import io.georocket.constants.ConfigConstants;
 import io.georocket.storage.ChunkReadStream;
 import io.georocket.storage.indexed.IndexedStore;
 import io.georocket.util.PathUtils;
+import io.georocket.util.io.DelegateChunkReadStream;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -55,7 +62,7 @@ public class FileStore extends IndexedStore {
   }
 
   @Override
-  protected void doAddChunk(String chunk, String path,
+  protected void doAddChunk(Buffer chunk, String path,
       String correlationId, Handler<AsyncResult<String>> handler) {
     if (path == null || path.isEmpty()) {
       path = "/";
@@ -83,8 +90,7 @@ public class FileStore extends IndexedStore {
 
         // write contents to file
         AsyncFile f = openar.result();
-        Buffer buf = Buffer.buffer(chunk);
-        f.write(buf, 0, writear -> {
+        f.write(chunk, 0, writear -> {
           f.close();
           if (writear.failed()) {
             handler.handle(Future.failedFuture(writear.cause()));
@@ -134,6 +140,31 @@ public class FileStore extends IndexedStore {
       });
   }
 
+  @Override
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    // read all chunks on one worker thread instead of opening an
+    // asynchronous file for each of them
+    vertx.<List<ChunkReadStream>>executeBlocking(f -> {
+      List<ChunkReadStream> result = new ArrayList<>(paths.size());
+      for (String path : paths) {
+        Path p = Paths.get(root, path);
+        byte[] chunk;
+        try {
+          chunk = Files.readAllBytes(p);
+        } catch (NoSuchFileException e) {
+          f.fail(new FileNotFoundException("Could not find chunk: " + path));
+          return;
+        } catch (IOException e) {
+          f.fail(e);
+          return;
+        }
+        result.add(new DelegateChunkReadStream(Buffer.buffer(chunk)));
+      }
+      f.complete(result);
+    }, false, handler);
+  }
+
   @Override
   protected void doDeleteChunks(Queue<String> paths, Handler<AsyncResult<Void>> handler) {
     if (paths.isEmpty()) {
@@ -0,0 +1,223 @@
+package io.georocket.storage.file;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import com.google.common.base.Preconditions;
+
+import io.georocket.constants.ConfigConstants;
+import io.georocket.storage.ChunkReadStream;
+import io.georocket.storage.indexed.IndexedStore;
+import io.georocket.util.PathUtils;
+import io.georocket.util.io.DelegateChunkReadStream;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Stores chunks on the file system by appending them to large segment files
+ * (see {@link SegmentLog}). In contrast to {@link FileStore}, this store does
+ * not create a new file for each chunk. The path of each chunk encodes its
+ * location in the segment files.
+ * @author Michel Kraemer
+ */
+public class SegmentFileStore extends IndexedStore {
+  private static Logger log = LoggerFactory.getLogger(SegmentFileStore.class);
+
+  /**
+   * True if a compaction is currently running
+   */
+  private static final AtomicBoolean compacting = new AtomicBoolean(false);
+
+  /**
+   * The Vert.x instance
+   */
+  private final Vertx vertx;
+
+  /**
+   * The folder where the segment files should be saved
+   */
+  private final String root;
+
+  /**
+   * The maximum size of a segment file in bytes
+   */
+  private final long maxSegmentSize;
+
+  /**
+   * The ratio between deleted and total bytes above which a segment file
+   * should be compacted
+   */
+  private final double compactionThreshold;
+
+  /**
+   * The underlying log. Use {@link #getLog()} to retrieve this field's value.
+   */
+  private SegmentLog segmentLog;
+
+  /**
+   * Constructs a new store
+   * @param vertx the Vert.x instance
+   */
+  public SegmentFileStore(Vertx vertx) {
+    super(vertx);
+    this.vertx = vertx;
+
+    JsonObject config = vertx.getOrCreateContext().config();
+
+    root = config.getString(ConfigConstants.STORAGE_SEGMENT_PATH);
+    Preconditions.checkNotNull(root, "Missing configuration item \"" +
+        ConfigConstants.STORAGE_SEGMENT_PATH + "\"");
+
+    maxSegmentSize = config.getLong(ConfigConstants.STORAGE_SEGMENT_MAX_SIZE,
+        ConfigConstants.DEFAULT_STORAGE_SEGMENT_MAX_SIZE);
+    compactionThreshold = config.getDouble(
+        ConfigConstants.STORAGE_SEGMENT_COMPACTION_THRESHOLD,
+        ConfigConstants.DEFAULT_STORAGE_SEGMENT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * Release all resources and close this store
+   */
+  public void close() {
+    if (segmentLog != null) {
+      try {
+        segmentLog.close();
+      } catch (IOException e) {
+        log.error("Could not close segment log", e);
+      }
+      segmentLog = null;
+    }
+  }
+
+  /**
+   * Get or open the underlying log. Must be called from a worker thread.
+   * @return the log
+   * @throws IOException if the log could not be opened
+   */
+  protected synchronized SegmentLog getLog() throws IOException {
+    if (segmentLog == null) {
+      segmentLog = SegmentLog.open(root, maxSegmentSize, compactionThreshold);
+    }
+    return segmentLog;
+  }
+
+  @Override
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
+      Handler<AsyncResult<String>> handler) {
+    if (path == null || path.isEmpty()) {
+      path = "/";
+    }
+    // the log appends the location of the chunk to this prefix
+    String prefix = PathUtils.join(path, generateChunkId(correlationId));
+
+    vertx.<String>executeBlocking(f -> {
+      try {
+        f.complete(getLog().put(prefix, chunk.getBytes()));
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, false, handler);
+  }
+
+  @Override
+  public void getOne(String path, Handler<AsyncResult<ChunkReadStream>> handler) {
+    String finalPath = PathUtils.normalize(path);
+    vertx.<ChunkReadStream>executeBlocking(f -> {
+      byte[] chunk;
+      try {
+        chunk = getLog().get(finalPath);
+      } catch (IOException e) {
+        f.fail(e);
+        return;
+      }
+      if (chunk == null) {
+        f.fail(new FileNotFoundException("Could not find chunk: " + finalPath));
+        return;
+      }
+      f.complete(new DelegateChunkReadStream(Buffer.buffer(chunk)));
+    }, false, handler);
+  }
+
+  @Override
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    List<String> finalPaths = paths.stream()
+      .map(PathUtils::normalize)
+      .collect(Collectors.toList());
+    vertx.<List<ChunkReadStream>>executeBlocking(f -> {
+      List<byte[]> chunks;
+      try {
+        chunks = getLog().getMany(finalPaths);
+      } catch (IOException e) {
+        f.fail(e);
+        return;
+      }
+      List<ChunkReadStream> result = new ArrayList<>(chunks.size());
+      for (int i = 0; i < chunks.size(); ++i) {
+        if (chunks.get(i) == null) {
+          f.fail(new FileNotFoundException("Could not find chunk: " +
+              finalPaths.get(i)));
+          return;
+        }
+        result.add(new DelegateChunkReadStream(Buffer.buffer(chunks.get(i))));
+      }
+      f.complete(result);
+    }, false, handler);
+  }
+
+  @Override
+  protected void doDeleteChunks(Queue<String> paths,
+      Handler<AsyncResult<Void>> handler) {
+    vertx.<Void>executeBlocking(f -> {
+      try {
+        SegmentLog l = getLog();
+        while (!paths.isEmpty()) {
+          l.delete(PathUtils.normalize(paths.poll()));
+        }
+        f.complete();
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, false, ar -> {
+      if (ar.succeeded()) {
+        compactInBackground();
+      }
+      handler.handle(ar);
+    });
+  }
+
+  /**
+   * Compact segments that contain a lot of deleted chunks. Do nothing if
+   * a compaction is already running.
+   */
+  private void compactInBackground() {
+    if (!compacting.compareAndSet(false, true)) {
+      return;
+    }
+    vertx.<Integer>executeBlocking(f -> {
+      try {
+        f.complete(getLog().compact());
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, false, ar -> {
+      compacting.set(false);
+      if (ar.failed()) {
+        log.error("Could not compact segments", ar.cause());
+      } else if (ar.result() > 0) {
+        log.info("Compacted " + ar.result() + " segment(s)");
+      }
+    });
+  }
+}
@@ -0,0 +1,1198 @@
+package io.georocket.storage.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * <p>An append-only log of chunks stored in a number of large segment
+ * files. Chunks are appended to the active segment. As soon as the active
+ * segment exceeds a configurable size, a new one is started.</p>
+ * <p>The path of a chunk encodes the segment, the offset and the length of
+ * its record (see {@link #put(String, byte[])}). The log therefore does not
+ * need an index to find a chunk and can read it with a single positional
+ * read.</p>
+ * <p>Deleting a chunk overwrites the type of its record with a tombstone.
+ * Each segment keeps the number of bytes occupied by deleted records in a
+ * small header. The space occupied by deleted chunks is reclaimed by
+ * {@link #compact()}, which copies all live chunks of a sealed segment to
+ * the active one, writes a forwarding file that maps the old offsets of the
+ * chunks to their new locations, and then removes the sealed segment.
+ * Forwarding files are memory-mapped and never loaded into the heap.</p>
+ * <p>Chunks keep their original path when they are moved. A forwarding
+ * file is therefore only needed for chunks that have originally been put
+ * into the compacted segment. Compaction rewrites the forwarding files of
+ * segments compacted earlier so they point directly to the new locations
+ * of the moved chunks and drops entries of chunks that have been deleted
+ * in the meantime. Forwarding files without entries are deleted. The
+ * number of forwarding files is therefore bounded by the number of
+ * compacted segments that still have live chunks, and a chunk can always
+ * be found with at most one lookup.</p>
+ * <p>All methods of this class perform blocking I/O and may be called
+ * concurrently. Reads do not acquire any lock. Instances are shared by all
+ * stores in the same process that use the same directory (see
+ * {@link #open(String, long, double)}).</p>
+ * @author Michel Kraemer
+ */
+public class SegmentLog {
+  /**
+   * Record type of a chunk
+   */
+  private static final byte TYPE_CHUNK = 1;
+
+  /**
+   * Record type of a deleted chunk
+   */
+  private static final byte TYPE_TOMBSTONE = 2;
+
+  /**
+   * The file extension of segment files
+   */
+  private static final String EXTENSION = ".seg";
+
+  /**
+   * The file extension of forwarding files
+   */
+  private static final String FORWARD_EXTENSION = ".fwd";
+
+  /**
+   * The file extension of forwarding files that are currently being written
+   */
+  private static final String TMP_EXTENSION = ".tmp";
+
+  /**
+   * The size of a segment's header (the number of deleted bytes)
+   */
+  private static final int SEGMENT_HEADER_SIZE = 8;
+
+  /**
+   * The size of an entry in a forwarding file (old offset, new segment,
+   * and new offset)
+   */
+  private static final int FORWARD_ENTRY_SIZE = 8 + 4 + 8;
+
+  /**
+   * The character separating the segment, the offset, and the length of
+   * a record in a chunk's path
+   */
+  private static final char SEPARATOR = '_';
+
+  /**
+   * The maximum number of bytes between two chunks that are read with a
+   * single positional read by {@link #getMany(List)}
+   */
+  private static final long MAX_READ_GAP = 4096;
+
+  /**
+   * All open logs (key: absolute directory path)
+   */
+  private static final Map<String, SegmentLog> instances = new HashMap<>();
+
+  /**
+   * Information about a segment file
+   */
+  private static class Segment {
+    final int id;
+    final Path file;
+    final FileChannel channel;
+    volatile long size;
+
+    /**
+     * The number of bytes occupied by deleted records. Guarded by the
+     * segment's monitor.
+     */
+    long garbage;
+
+    /**
+     * True if the segment has been compacted and removed
+     */
+    volatile boolean closed;
+
+    Segment(int id, Path file, FileChannel channel, long size, long garbage) {
+      this.id = id;
+      this.file = file;
+      this.channel = channel;
+      this.size = size;
+      this.garbage = garbage;
+    }
+  }
+
+  /**
+   * The location of a chunk's record
+   */
+  private static class Location {
+    final int segment;
+    final long offset;
+    final int length;
+
+    Location(int segment, long offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * A memory-mapped forwarding file of a compacted segment. Maps the
+   * offsets of the records that have been moved to their new locations.
+   * Entries are sorted by their old offset.
+   */
+  private static class Forward {
+    final ByteBuffer entries;
+    final int count;
+
+    Forward(ByteBuffer entries) {
+      this.entries = entries;
+      this.count = entries.capacity() / FORWARD_ENTRY_SIZE;
+    }
+
+    /**
+     * Find the new location of a record
+     * @param offset the record's offset in the compacted segment
+     * @param length the length of the chunk
+     * @return the new location or <code>null</code> if the record has not
+     * been moved (because it was deleted)
+     */
+    Location lookup(long offset, int length) {
+      int lo = 0;
+      int hi = count - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int pos = mid * FORWARD_ENTRY_SIZE;
+        long o = entries.getLong(pos);
+        if (o < offset) {
+          lo = mid + 1;
+        } else if (o > offset) {
+          hi = mid - 1;
+        } else {
+          return new Location(entries.getInt(pos + 8),
+              entries.getLong(pos + 12), length);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * A record read while scanning a segment
+   */
+  private static class Record {
+    byte type;
+    String path;
+    long offset;
+    long dataOffset;
+    int length;
+    int size;
+  }
+
+  private final Path dir;
+  private final long maxSegmentSize;
+  private final double compactionThreshold;
+  private final ConcurrentSkipListMap<Integer, Segment> segments =
+      new ConcurrentSkipListMap<>();
+  private final Map<Integer, Forward> forwards = new ConcurrentHashMap<>();
+  private final Object compactionLock = new Object();
+
+  /**
+   * Incremented whenever a forwarding file is replaced or removed, so
+   * readers can detect that they may have used an outdated one
+   */
+  private volatile long forwardsVersion;
+
+  /**
+   * The segment new records are appended to. Guarded by this object's
+   * monitor.
+   */
+  private Segment active;
+  private int refCount;
+
+  /**
+   * Create a new log. Use {@link #open(String, long, double)} instead.
+   * @param dir the directory containing the segment files
+   * @param maxSegmentSize the maximum size of a segment in bytes
+   * @param compactionThreshold the ratio between deleted and total bytes
+   * above which a segment should be compacted
+   */
+  private SegmentLog(Path dir, long maxSegmentSize, double compactionThreshold) {
+    this.dir = dir;
+    this.maxSegmentSize = maxSegmentSize;
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  /**
+   * Open a log or return an instance that has already been opened for the
+   * given directory. The directory will be created if necessary.
+   * @param dir the directory containing the segment files
+   * @param maxSegmentSize the maximum size of a segment in bytes
+   * @param compactionThreshold the ratio between deleted and total bytes
+   * above which a segment should be compacted
+   * @return the log
+   * @throws IOException if the log could not be opened
+   */
+  public static SegmentLog open(String dir, long maxSegmentSize,
+      double compactionThreshold) throws IOException {
+    Path p = Paths.get(dir).toAbsolutePath().normalize();
+    synchronized (instances) {
+      SegmentLog log = instances.get(p.toString());
+      if (log == null) {
+        log = new SegmentLog(p, maxSegmentSize, compactionThreshold);
+        log.load();
+        instances.put(p.toString(), log);
+      }
+      log.refCount++;
+      return log;
+    }
+  }
+
+  /**
+   * Release this log. Close all segment files if the log is not used
+   * anymore.
+   * @throws IOException if a segment file could not be closed
+   */
+  public void close() throws IOException {
+    synchronized (instances) {
+      refCount--;
+      if (refCount > 0) {
+        return;
+      }
+      instances.remove(dir.toString());
+    }
+    synchronized (this) {
+      List<Segment> ss = new ArrayList<>(segments.values());
+      segments.clear();
+      forwards.clear();
+      active = null;
+      for (Segment s : ss) {
+        s.channel.close();
+      }
+    }
+  }
+
+  /**
+   * Parse the ID of a segment or forwarding file from its name
+   * @param name the file name
+   * @param extension the expected file extension
+   * @return the ID or <code>null</code> if the name does not belong to a
+   * file with the given extension
+   */
+  private static Integer parseFileId(String name, String extension) {
+    if (!name.endsWith(extension)) {
+      return null;
+    }
+    try {
+      return Integer.parseInt(name.substring(0,
+          name.length() - extension.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Open all segments and forwarding files. Only the active segment is
+   * scanned to cut off an incomplete record.
+   * @throws IOException if a segment could not be read
+   */
+  private synchronized void load() throws IOException {
+    Files.createDirectories(dir);
+
+    List<Integer> ids = new ArrayList<>();
+    List<Integer> forwardIds = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+      for (Path f : ds) {
+        String name = f.getFileName().toString();
+        Integer id = parseFileId(name, EXTENSION);
+        if (id != null) {
+          ids.add(id);
+          continue;
+        }
+        id = parseFileId(name, FORWARD_EXTENSION);
+        if (id != null) {
+          forwardIds.add(id);
+        } else if (name.endsWith(FORWARD_EXTENSION + TMP_EXTENSION)) {
+          // a compaction has been interrupted. the segment or the
+          // forwarding file that was being rewritten is still there.
+          Files.delete(f);
+        }
+      }
+    }
+
+    int maxId = -1;
+    for (int id : forwardIds) {
+      forwards.put(id, openForward(id));
+      if (ids.remove((Integer)id)) {
+        // the segment has been compacted but it has not been deleted
+        Files.deleteIfExists(segmentFile(id));
+      }
+      maxId = Math.max(maxId, id);
+    }
+
+    ids.sort(Integer::compare);
+    for (int id : ids) {
+      segments.put(id, openSegment(id));
+    }
+
+    if (segments.isEmpty()) {
+      active = openSegment(maxId + 1);
+      segments.put(active.id, active);
+    } else {
+      active = segments.lastEntry().getValue();
+      long end = scan(active, r -> {});
+      if (end < active.size) {
+        // the last record is incomplete (e.g. because of a crash). cut it off.
+        active.channel.truncate(end);
+        active.size = end;
+      }
+    }
+  }
+
+  /**
+   * Get the file of a segment
+   * @param id the segment's ID
+   * @return the file
+   */
+  private Path segmentFile(int id) {
+    return dir.resolve(id + EXTENSION);
+  }
+
+  /**
+   * Get the forwarding file of a compacted segment
+   * @param id the segment's ID
+   * @return the file
+   */
+  private Path forwardFile(int id) {
+    return dir.resolve(id + FORWARD_EXTENSION);
+  }
+
+  /**
+   * Open a segment file and create it if necessary
+   * @param id the segment's ID
+   * @return the segment
+   * @throws IOException if the file could not be opened
+   */
+  private Segment openSegment(int id) throws IOException {
+    Path file = segmentFile(id);
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+      StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+    if (size < SEGMENT_HEADER_SIZE) {
+      // new segment
+      writeFully(channel, header, 0);
+      size = SEGMENT_HEADER_SIZE;
+    } else {
+      readFully(channel, header, 0);
+    }
+    return new Segment(id, file, channel, size, header.getLong(0));
+  }
+
+  /**
+   * Map the forwarding file of a compacted segment into memory
+   * @param id the segment's ID
+   * @return the forwarding file
+   * @throws IOException if the file could not be opened
+   */
+  private Forward openForward(int id) throws IOException {
+    try (FileChannel channel = FileChannel.open(forwardFile(id),
+        StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) {
+        // all chunks of the segment had been deleted
+        return new Forward(ByteBuffer.allocate(0));
+      }
+      MappedByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY,
+          0, size);
+      return new Forward(entries);
+    }
+  }
+
+  /**
+   * Read from a channel until the buffer is full
+   * @param channel the channel
+   * @param buf the buffer
+   * @param pos the position to read from
+   * @throws IOException if the data could not be read
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buf,
+      long pos) throws IOException {
+    while (buf.hasRemaining()) {
+      int n = channel.read(buf, pos);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of segment");
+      }
+      pos += n;
+    }
+  }
+
+  /**
+   * Write the whole contents of a buffer to a channel
+   * @param channel the channel
+   * @param buf the buffer
+   * @param pos the position to write to
+   * @return the position after the written data
+   * @throws IOException if the data could not be written
+   */
+  private static long writeFully(FileChannel channel, ByteBuffer buf,
+      long pos) throws IOException {
+    while (buf.hasRemaining()) {
+      pos += channel.write(buf, pos);
+    }
+    return pos;
+  }
+
+  /**
+   * Create an input stream that reads a channel with positional reads, so
+   * it does not interfere with other readers of the same channel
+   * @param channel the channel
+   * @param start the position to start reading from
+   * @return the input stream
+   */
+  private static InputStream newInputStream(FileChannel channel, long start) {
+    return new InputStream() {
+      private long pos = start;
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : (b[0] & 0xFF);
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int n = channel.read(ByteBuffer.wrap(b, off, len), pos);
+        if (n > 0) {
+          pos += n;
+        }
+        return n;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, channel.size() - pos));
+        pos += skipped;
+        return skipped;
+      }
+    };
+  }
+
+  /**
+   * A callback for {@link #scan(Segment, RecordHandler)}
+   */
+  private interface RecordHandler {
+    void handle(Record r) throws IOException;
+  }
+
+  /**
+   * Read all records of a segment
+   * @param s the segment
+   * @param handler will be called for each complete record
+   * @return the offset of the end of the last complete record
+   * @throws IOException if the segment could not be read
+   */
+  private static long scan(Segment s, RecordHandler handler) throws IOException {
+    long pos = SEGMENT_HEADER_SIZE;
+    long size = s.size;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        newInputStream(s.channel, pos), 64 * 1024));
+    while (pos < size) {
+      Record r = new Record();
+      try {
+        r.type = in.readByte();
+        byte[] path = new byte[in.readInt()];
+        in.readFully(path);
+        r.path = new String(path, StandardCharsets.UTF_8);
+        r.length = in.readInt();
+        r.offset = pos;
+        r.dataOffset = pos + 1 + 4 + path.length + 4;
+        r.size = (int)(r.dataOffset - pos) + r.length;
+        if (r.dataOffset + r.length > size) {
+          break;
+        }
+        long skipped = 0;
+        while (skipped < r.length) {
+          long n = in.skip(r.length - skipped);
+          if (n <= 0) {
+            throw new EOFException();
+          }
+          skipped += n;
+        }
+      } catch (EOFException | NegativeArraySizeException e) {
+        break;
+      }
+      handler.handle(r);
+      pos += r.size;
+    }
+    return pos;
+  }
+
+  /**
+   * Create the path of a chunk
+   * @param prefix a unique prefix for the path
+   * @param segment the segment containing the chunk's record
+   * @param offset the record's offset
+   * @param length the chunk's length
+   * @return the path
+   */
+  private static String makePath(String prefix, int segment, long offset,
+      int length) {
+    return prefix + SEPARATOR + Integer.toHexString(segment) + SEPARATOR +
+        Long.toHexString(offset) + SEPARATOR + Integer.toHexString(length);
+  }
+
+  /**
+   * Get the location of a chunk from its path
+   * @param path the path
+   * @return the location or <code>null</code> if the path does not belong
+   * to a chunk in a segment log
+   */
+  private static Location parsePath(String path) {
+    int i3 = path.lastIndexOf(SEPARATOR);
+    int i2 = i3 > 0 ? path.lastIndexOf(SEPARATOR, i3 - 1) : -1;
+    int i1 = i2 > 0 ? path.lastIndexOf(SEPARATOR, i2 - 1) : -1;
+    if (i1 < 0) {
+      return null;
+    }
+    try {
+      int segment = Integer.parseInt(path.substring(i1 + 1, i2), 16);
+      long offset = Long.parseLong(path.substring(i2 + 1, i3), 16);
+      int length = Integer.parseInt(path.substring(i3 + 1), 16);
+      if (segment < 0 || offset < SEGMENT_HEADER_SIZE || length < 0) {
+        return null;
+      }
+      return new Location(segment, offset, length);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Get the size of a record's header
+   * @param pathBytes the UTF-8 encoded path of the chunk
+   * @return the size
+   */
+  private static int headerSize(byte[] pathBytes) {
+    return 1 + 4 + pathBytes.length + 4;
+  }
+
+  /**
+   * Follow the forwarding files of compacted segments until the segment
+   * containing a chunk has been found
+   * @param l the location encoded in the chunk's path
+   * @return the current location of the chunk or <code>null</code> if the
+   * chunk has been deleted
+   */
+  private Location resolve(Location l) {
+    while (true) {
+      long version = forwardsVersion;
+      Location r = l;
+      // forwarding files are added before segments are removed
+      while (r != null && !segments.containsKey(r.segment)) {
+        Forward f = forwards.get(r.segment);
+        if (f == null) {
+          r = null;
+          break;
+        }
+        r = f.lookup(r.offset, r.length);
+      }
+      if (r != null || version == forwardsVersion) {
+        return r;
+      }
+      // a forwarding file has been rewritten in the meantime. try again.
+    }
+  }
+
+  /**
+   * Check if a buffer contains the header of a chunk's record
+   * @param buf the buffer
+   * @param pos the position of the header in the buffer
+   * @param pathBytes the chunk's UTF-8 encoded path
+   * @param length the chunk's length
+   * @return true if the header belongs to the chunk and the chunk has not
+   * been deleted
+   */
+  private static boolean isChunkHeader(ByteBuffer buf, int pos,
+      byte[] pathBytes, int length) {
+    if (pos < 0 || pos + headerSize(pathBytes) > buf.limit()) {
+      return false;
+    }
+    if (buf.get(pos) != TYPE_CHUNK || buf.getInt(pos + 1) != pathBytes.length ||
+        buf.getInt(pos + 5 + pathBytes.length) != length) {
+      return false;
+    }
+    for (int i = 0; i < pathBytes.length; ++i) {
+      if (buf.get(pos + 5 + i) != pathBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get a chunk from a buffer containing its record
+   * @param buf the buffer
+   * @param pos the position of the record in the buffer
+   * @param pathBytes the chunk's UTF-8 encoded path
+   * @param length the chunk's length
+   * @return the chunk or <code>null</code> if the buffer does not contain
+   * the chunk's record or if the chunk has been deleted
+   */
+  private static byte[] extract(ByteBuffer buf, int pos, byte[] pathBytes,
+      int length) {
+    int start = pos + headerSize(pathBytes);
+    if (start + length > buf.limit() ||
+        !isChunkHeader(buf, pos, pathBytes, length)) {
+      return null;
+    }
+    return Arrays.copyOfRange(buf.array(), start, start + length);
+  }
+
+  /**
+   * Read data from a segment
+   * @param s the segment
+   * @param offset the offset to read from
+   * @param length the maximum number of bytes to read
+   * @return the data (may be shorter than the given length if the segment
+   * ends before)
+   * @throws IOException if the data could not be read
+   */
+  private static ByteBuffer read(Segment s, long offset, int length)
+      throws IOException {
+    int n = (int)Math.max(0, Math.min(length, s.size - offset));
+    ByteBuffer buf = ByteBuffer.allocate(n);
+    readFully(s.channel, buf, offset);
+    return buf;
+  }
+
+  /**
+   * Check if an exception was caused by a concurrent compaction of the
+   * given segment. Rethrow it otherwise.
+   * @param s the segment
+   * @param e the exception
+   * @throws ClosedChannelException if the exception was not caused by
+   * a compaction
+   */
+  private static void checkCompacted(Segment s, ClosedChannelException e)
+      throws ClosedChannelException {
+    if (!s.closed) {
+      throw e;
+    }
+  }
+
+  /**
+   * Append a chunk's record to the active segment. Must be called while
+   * holding this object's monitor.
+   * @param s the active segment
+   * @param path the chunk's path
+   * @param data the chunk
+   * @throws IOException if the record could not be written
+   */
+  private void write(Segment s, String path, byte[] data) throws IOException {
+    byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buf = ByteBuffer.allocate(headerSize(pathBytes) + data.length);
+    buf.put(TYPE_CHUNK);
+    buf.putInt(pathBytes.length);
+    buf.put(pathBytes);
+    buf.putInt(data.length);
+    buf.put(data);
+    buf.flip();
+    s.size = writeFully(s.channel, buf, s.size);
+  }
+
+  /**
+   * Get the active segment. Start a new segment if the active one is full.
+   * Must be called while holding this object's monitor.
+   * @return the active segment
+   * @throws IOException if a new segment could not be created
+   */
+  private Segment getActiveSegment() throws IOException {
+    if (active == null) {
+      throw new ClosedChannelException();
+    }
+    if (active.size >= maxSegmentSize) {
+      active = openSegment(active.id + 1);
+      segments.put(active.id, active);
+    }
+    return active;
+  }
+
+  /**
+   * Add a chunk to the log
+   * @param prefix a unique prefix for the chunk's path (typically the layer
+   * and an ID)
+   * @param chunk the chunk
+   * @return the chunk's path. It consists of the given prefix followed by
+   * the location of the chunk's record.
+   * @throws IOException if the chunk could not be written
+   */
+  public synchronized String put(String prefix, byte[] chunk) throws IOException {
+    Segment s = getActiveSegment();
+    String path = makePath(prefix, s.id, s.size, chunk.length);
+    write(s, path, chunk);
+    return path;
+  }
+
+  /**
+   * Append a copy of a chunk during compaction
+   * @param path the chunk's path
+   * @param chunk the chunk
+   * @return the location of the copy
+   * @throws IOException if the chunk could not be written
+   */
+  private synchronized Location copy(String path, byte[] chunk) throws IOException {
+    Segment s = getActiveSegment();
+    Location l = new Location(s.id, s.size, chunk.length);
+    write(s, path, chunk);
+    return l;
+  }
+
+  /**
+   * Get a chunk from the log
+   * @param path the chunk's path
+   * @return the chunk or <code>null</code> if there is no such chunk
+   * @throws IOException if the chunk could not be read
+   */
+  public byte[] get(String path) throws IOException {
+    Location l = parsePath(path);
+    if (l == null) {
+      return null;
+    }
+    byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+    while (true) {
+      Location r = resolve(l);
+      if (r == null) {
+        return null;
+      }
+      Segment s = segments.get(r.segment);
+      if (s == null) {
+        // the segment has just been compacted
+        continue;
+      }
+      try {
+        ByteBuffer buf = read(s, r.offset, headerSize(pathBytes) + r.length);
+        return extract(buf, 0, pathBytes, r.length);
+      } catch (ClosedChannelException e) {
+        checkCompacted(s, e);
+      }
+    }
+  }
+
+  /**
+   * Get multiple chunks from the log. The chunks are read in the order of
+   * their position in the segment files. Chunks that are close to each
+   * other (e.g. because they have been imported from the same file) are
+   * read with a single positional read.
+   * @param paths the chunks' paths
+   * @return the chunks in the same order as the given paths. An item is
+   * <code>null</code> if there is no chunk with the respective path.
+   * @throws IOException if the chunks could not be read
+   */
+  public List<byte[]> getMany(List<String> paths) throws IOException {
+    List<byte[]> result = new ArrayList<>(paths.size());
+    List<Integer> order = new ArrayList<>(paths.size());
+    Location[] locations = new Location[paths.size()];
+    byte[][] pathBytes = new byte[paths.size()][];
+    for (int i = 0; i < paths.size(); ++i) {
+      result.add(null);
+      Location l = parsePath(paths.get(i));
+      if (l != null) {
+        locations[i] = resolve(l);
+      }
+      if (locations[i] != null) {
+        pathBytes[i] = paths.get(i).getBytes(StandardCharsets.UTF_8);
+        order.add(i);
+      }
+    }
+
+    order.sort((a, b) -> {
+      Location la = locations[a];
+      Location lb = locations[b];
+      if (la.segment != lb.segment) {
+        return Integer.compare(la.segment, lb.segment);
+      }
+      return Long.compare(la.offset, lb.offset);
+    });
+
+    int i = 0;
+    while (i < order.size()) {
+      // find a run of chunks that can be read at once
+      Location first = locations[order.get(i)];
+      long end = first.offset + headerSize(pathBytes[order.get(i)]) +
+          first.length;
+      int j = i + 1;
+      while (j < order.size()) {
+        Location l = locations[order.get(j)];
+        long lend = l.offset + headerSize(pathBytes[order.get(j)]) + l.length;
+        if (l.segment != first.segment || l.offset - end > MAX_READ_GAP ||
+            lend - first.offset > Integer.MAX_VALUE) {
+          break;
+        }
+        end = Math.max(end, lend);
+        ++j;
+      }
+
+      Segment s = segments.get(first.segment);
+      ByteBuffer data = null;
+      if (s != null) {
+        try {
+          data = read(s, first.offset, (int)(end - first.offset));
+        } catch (ClosedChannelException e) {
+          checkCompacted(s, e);
+        }
+      }
+
+      for (int k = i; k < j; ++k) {
+        int index = order.get(k);
+        if (data == null) {
+          // the segment has just been compacted
+          result.set(index, get(paths.get(index)));
+        } else {
+          Location l = locations[index];
+          result.set(index, extract(data, (int)(l.offset - first.offset),
+              pathBytes[index], l.length));
+        }
+      }
+      i = j;
+    }
+
+    return result;
+  }
+
+  /**
+   * Delete a chunk from the log. Do nothing if there is no such chunk.
+   * @param path the chunk's path
+   * @throws IOException if the tombstone could not be written
+   */
+  public void delete(String path) throws IOException {
+    Location l = parsePath(path);
+    if (l == null) {
+      return;
+    }
+    byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+    int headerSize = headerSize(pathBytes);
+    while (true) {
+      Location r = resolve(l);
+      if (r == null) {
+        return;
+      }
+      Segment s = segments.get(r.segment);
+      if (s == null) {
+        continue;
+      }
+      // compaction holds the segment's lock, so the record cannot be
+      // deleted while it is being copied
+      synchronized (s) {
+        if (s.closed) {
+          continue;
+        }
+        ByteBuffer header = read(s, r.offset, headerSize);
+        if (!isChunkHeader(header, 0, pathBytes, r.length)) {
+          return;
+        }
+        writeFully(s.channel, ByteBuffer.wrap(new byte[] { TYPE_TOMBSTONE }),
+            r.offset);
+        s.garbage += headerSize + r.length;
+        ByteBuffer garbage = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        garbage.putLong(0, s.garbage);
+        writeFully(s.channel, garbage, 0);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Count the chunks in the log. This method scans all segments and
+   * should only be used for tests and diagnostics.
+   * @return the number of chunks in the log
+   * @throws IOException if a segment could not be read
+   */
+  public int size() throws IOException {
+    int[] result = new int[1];
+    for (Segment s : segments.values()) {
+      try {
+        scan(s, r -> {
+          if (r.type == TYPE_CHUNK) {
+            result[0]++;
+          }
+        });
+      } catch (ClosedChannelException e) {
+        checkCompacted(s, e);
+      }
+    }
+    return result[0];
+  }
+
+  /**
+   * @return the number of segment files
+   */
+  public int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * @return the number of forwarding files
+   */
+  public int getForwardCount() {
+    return forwards.size();
+  }
+
+  /**
+   * Get the IDs of all sealed segments whose ratio between deleted and total
+   * bytes exceeds the compaction threshold
+   * @return the segment IDs
+   */
+  private List<Integer> getCompactionCandidates() {
+    Segment a;
+    synchronized (this) {
+      a = active;
+    }
+    List<Integer> result = new ArrayList<>();
+    for (Segment s : segments.values()) {
+      if (s == a) {
+        continue;
+      }
+      long garbage;
+      synchronized (s) {
+        garbage = s.garbage;
+      }
+      long payload = s.size - SEGMENT_HEADER_SIZE;
+      if (payload > 0 && (double)garbage / payload >= compactionThreshold) {
+        result.add(s.id);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compact all sealed segments whose ratio between deleted and total bytes
+   * exceeds the compaction threshold. Copy their live chunks to the active
+   * segment and then delete them. Other operations may be performed
+   * concurrently.
+   * @return the number of segments that have been removed
+   * @throws IOException if a segment could not be compacted
+   */
+  public int compact() throws IOException {
+    synchronized (compactionLock) {
+      int result = 0;
+      for (int id : getCompactionCandidates()) {
+        Segment s = segments.get(id);
+        if (s != null) {
+          compact(s);
+          result++;
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Compact a sealed segment. Copy its live chunks to the active segment,
+   * write a forwarding file, and then delete the segment. Collapse the
+   * forwarding files of chunks that have been moved to the segment before,
+   * so they point to the new locations, and remove entries of chunks that
+   * have originally been put into other segments from the new forwarding
+   * file.
+   * @param s the segment
+   * @throws IOException if the segment could not be compacted
+   */
+  private void compact(Segment s) throws IOException {
+    Path forwardFile = forwardFile(s.id);
+    Path tmpFile = dir.resolve(forwardFile.getFileName() + TMP_EXTENSION);
+    Path ownTmpFile = dir.resolve(s.id + ".own" + FORWARD_EXTENSION +
+        TMP_EXTENSION);
+    Set<Segment> targets = new LinkedHashSet<>();
+    Set<Integer> origins = new TreeSet<>();
+    int[] ownCount = new int[1];
+
+    // deletes wait until the segment has been removed and are then
+    // applied to the copies
+    synchronized (s) {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          Files.newOutputStream(tmpFile), 64 * 1024));
+          DataOutputStream ownOut = new DataOutputStream(new BufferedOutputStream(
+              Files.newOutputStream(ownTmpFile), 64 * 1024))) {
+        // records are scanned in the order of their offsets, so the
+        // forwarding file will be sorted
+        scan(s, r -> {
+          // tombstones keep the path of the deleted chunk. if the chunk
+          // has been moved here from another segment, the forwarding file
+          // of that segment has to be collapsed too.
+          Location origin = parsePath(r.path);
+          boolean moved = origin != null && origin.segment != s.id;
+          if (moved) {
+            origins.add(origin.segment);
+          }
+
+          if (r.type == TYPE_CHUNK) {
+            ByteBuffer data = read(s, r.dataOffset, r.length);
+            Location l = copy(r.path, data.array());
+            targets.add(segments.get(l.segment));
+            out.writeLong(r.offset);
+            out.writeInt(l.segment);
+            out.writeLong(l.offset);
+            if (!moved) {
+              ownOut.writeLong(r.offset);
+              ownOut.writeInt(l.segment);
+              ownOut.writeLong(l.offset);
+              ownCount[0]++;
+            }
+          }
+        });
+      }
+
+      // make sure the copies and the forwarding file are on disk before
+      // the segment is removed
+      for (Segment t : targets) {
+        if (t != null) {
+          t.channel.force(false);
+        }
+      }
+      force(tmpFile);
+      Files.move(tmpFile, forwardFile, StandardCopyOption.ATOMIC_MOVE);
+      Forward forward = openForward(s.id);
+      forwards.put(s.id, forward);
+
+      // let the forwarding files of chunks moved here before point to the
+      // new locations, so they do not reference this segment anymore
+      for (int origin : origins) {
+        collapseForward(origin, s.id, forward);
+      }
+
+      segments.remove(s.id);
+      s.closed = true;
+      s.channel.close();
+      Files.deleteIfExists(s.file);
+
+      // the forwarding file of this segment now only has to contain the
+      // chunks that have originally been put into it
+      if (origins.isEmpty()) {
+        Files.delete(ownTmpFile);
+      } else {
+        replaceForward(s.id, ownTmpFile, ownCount[0]);
+      }
+      if (ownCount[0] == 0) {
+        removeForward(s.id);
+      }
+    }
+  }
+
+  /**
+   * Rewrite the forwarding file of a segment compacted earlier. Replace
+   * all entries pointing to a segment that has just been compacted by the
+   * locations the records have been moved to. Remove entries of records
+   * that have been deleted. Remove the forwarding file if no entries are
+   * left.
+   * @param id the ID of the segment whose forwarding file should be
+   * rewritten
+   * @param compacted the ID of the segment that has just been compacted
+   * @param via the forwarding file of the segment that has just been
+   * compacted
+   * @throws IOException if the forwarding file could not be rewritten
+   */
+  private void collapseForward(int id, int compacted, Forward via)
+      throws IOException {
+    Forward f = forwards.get(id);
+    if (f == null) {
+      return;
+    }
+
+    Path tmpFile = dir.resolve(forwardFile(id).getFileName() + TMP_EXTENSION);
+    int count = 0;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(tmpFile), 64 * 1024))) {
+      for (int i = 0; i < f.count; ++i) {
+        int pos = i * FORWARD_ENTRY_SIZE;
+        long oldOffset = f.entries.getLong(pos);
+        int segment = f.entries.getInt(pos + 8);
+        long offset = f.entries.getLong(pos + 12);
+        if (segment == compacted) {
+          Location l = via.lookup(offset, 0);
+          if (l == null) {
+            // the record has been deleted
+            continue;
+          }
+          segment = l.segment;
+          offset = l.offset;
+        }
+        out.writeLong(oldOffset);
+        out.writeInt(segment);
+        out.writeLong(offset);
+        count++;
+      }
+    }
+
+    if (count == 0) {
+      Files.delete(tmpFile);
+      removeForward(id);
+    } else {
+      replaceForward(id, tmpFile, count);
+    }
+  }
+
+  /**
+   * Atomically replace a forwarding file by a new one
+   * @param id the ID of the segment the forwarding file belongs to
+   * @param tmpFile the new forwarding file
+   * @param count the number of entries in the new forwarding file
+   * @throws IOException if the file could not be replaced
+   */
+  private void replaceForward(int id, Path tmpFile, int count)
+      throws IOException {
+    if (count == 0) {
+      Files.delete(tmpFile);
+      return;
+    }
+    force(tmpFile);
+    Files.move(tmpFile, forwardFile(id), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    forwards.put(id, openForward(id));
+    forwardsVersion++;
+  }
+
+  /**
+   * Remove a forwarding file that does not contain any entries anymore
+   * @param id the ID of the segment the forwarding file belongs to
+   * @throws IOException if the file could not be deleted
+   */
+  private void removeForward(int id) throws IOException {
+    forwards.remove(id);
+    forwardsVersion++;
+    Files.deleteIfExists(forwardFile(id));
+  }
+
+  /**
+   * Make sure a file is on disk
+   * @param file the file
+   * @throws IOException if the file could not be written to disk
+   */
+  private static void force(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package io.georocket.storage.h2;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicReference;
@@ -131,14 +133,35 @@ public class H2Store extends IndexedStore {
   }
 
   @Override
-  protected void doAddChunk(String chunk, String path, String correlationId,
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    // look up all chunks at once without going through the event loop
+    // for each of them
+    Map<String, String> m = getMap();
+    List<ChunkReadStream> result = new ArrayList<>(paths.size());
+    for (String path : paths) {
+      String finalPath = PathUtils.normalize(path);
+      String chunkStr = m.get(finalPath);
+      if (chunkStr == null) {
+        handler.handle(Future.failedFuture(new FileNotFoundException(
+          "Could not find chunk: " + finalPath)));
+        return;
+      }
+      result.add(new DelegateChunkReadStream(Buffer.buffer(chunkStr)));
+    }
+    handler.handle(Future.succeededFuture(result));
+  }
+
+  @Override
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
       Handler<AsyncResult<String>> handler) {
     if (path == null || path.isEmpty()) {
       path = "/";
     }
 
     String filename = PathUtils.join(path, generateChunkId(correlationId));
-    getMap().put(filename, chunk);
+    // the map contains strings for compatibility with existing databases
+    getMap().put(filename, chunk.toString());
     handler.handle(Future.succeededFuture(filename));
   }
 
@@ -2,8 +2,8 @@ package io.georocket.storage.hdfs;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -20,10 +20,12 @@ import io.georocket.constants.ConfigConstants;
 import io.georocket.storage.ChunkReadStream;
 import io.georocket.storage.indexed.IndexedStore;
 import io.georocket.util.PathUtils;
+import io.georocket.util.io.DelegateChunkReadStream;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -72,6 +74,11 @@ public class HDFSStore extends IndexedStore {
     return fs;
   }
 
+  @Override
+  public boolean isShared() {
+    return true;
+  }
+
   @Override
   public void getOne(String path, Handler<AsyncResult<ChunkReadStream>> handler) {
     vertx.<Pair<Long, InputStream>>executeBlocking(f -> {
@@ -100,6 +107,34 @@ public class HDFSStore extends IndexedStore {
     });
   }
 
+  @Override
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    // read all chunks on one worker thread with positional reads
+    vertx.<List<ChunkReadStream>>executeBlocking(f -> {
+      List<ChunkReadStream> result = new ArrayList<>(paths.size());
+      try {
+        for (String path : paths) {
+          Path p = new Path(PathUtils.join(root, path));
+          byte[] chunk;
+          synchronized (HDFSStore.this) {
+            FileSystem fs = getFS();
+            FileStatus status = fs.getFileStatus(p);
+            chunk = new byte[(int)status.getLen()];
+            try (FSDataInputStream is = fs.open(p)) {
+              is.readFully(0, chunk);
+            }
+          }
+          result.add(new DelegateChunkReadStream(Buffer.buffer(chunk)));
+        }
+      } catch (IOException e) {
+        f.fail(e);
+        return;
+      }
+      f.complete(result);
+    }, false, handler);
+  }
+
   /**
    * Create a new file on HDFS
    * @param filename the file name
@@ -111,7 +146,7 @@ public class HDFSStore extends IndexedStore {
   }
 
   @Override
-  protected void doAddChunk(String chunk, String path, String correlationId,
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
       Handler<AsyncResult<String>> handler) {
     if (path == null || path.isEmpty()) {
       path = "/";
@@ -123,9 +158,8 @@ public class HDFSStore extends IndexedStore {
 
     vertx.executeBlocking(f -> {
       try {
-        try (FSDataOutputStream os = createFile(filename);
-            OutputStreamWriter writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-          writer.write(chunk);
+        try (FSDataOutputStream os = createFile(filename)) {
+          chunk.getByteBuf().getBytes(0, os, chunk.length());
         }
       } catch (IOException e) {
         f.fail(e);
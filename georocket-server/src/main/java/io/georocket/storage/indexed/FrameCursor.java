@@ -2,6 +2,12 @@ package io.georocket.storage.indexed;
 
 import static io.georocket.util.MimeTypeUtils.belongsTo;
 
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.georocket.constants.AddressConstants;
 import io.georocket.storage.ChunkMeta;
 import io.georocket.storage.CursorInfo;
@@ -9,6 +15,7 @@ import io.georocket.storage.GeoJsonChunkMeta;
 import io.georocket.storage.JsonChunkMeta;
 import io.georocket.storage.StoreCursor;
 import io.georocket.storage.XMLChunkMeta;
+import io.georocket.util.XMLStartElement;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -21,6 +28,23 @@ import io.vertx.core.json.JsonObject;
  * @author Andrej Sajenko
  */
 public class FrameCursor implements StoreCursor {
+  /**
+   * The maximum number of lists of XML parents to keep in {@link #parentsCache}
+   */
+  private static final int MAX_PARENTS_CACHE_SIZE = 1000;
+
+  /**
+   * A cache for lists of XML parents referenced by their ID. Parents IDs
+   * are calculated from the parents' contents, so cached lists never
+   * become invalid. The cache is shared between all cursors so consecutive
+   * frames (and queries) get the same list instance, which makes it
+   * cheaper to merge chunks.
+   */
+  private static final Cache<String, List<XMLStartElement>> parentsCache =
+      CacheBuilder.newBuilder()
+        .maximumSize(MAX_PARENTS_CACHE_SIZE)
+        .build();
+
   /**
    * The Vert.x instance
    */
@@ -47,6 +71,16 @@ public class FrameCursor implements StoreCursor {
    */
   private String path;
 
+  /**
+   * The number of the slice to retrieve
+   */
+  private int slice;
+
+  /**
+   * The total number of slices (1 if the result should not be sliced)
+   */
+  private int slices = 1;
+
   /**
    * The size of elements to load in the frame.
    * <p>INV: <code>size == metas.length</code></p>
@@ -72,6 +106,12 @@ public class FrameCursor implements StoreCursor {
    */
   private ChunkMeta metas[];
 
+  /**
+   * Lists of XML parents referenced by the chunks retrieved in the last
+   * batch (may be <code>null</code>)
+   */
+  private JsonObject parents;
+
   /**
    * Load the first frame of chunks.
    * @param vertx vertx instance
@@ -80,9 +120,26 @@ public class FrameCursor implements StoreCursor {
    * @param size The number of elements to load in this frame
    */
   public FrameCursor(Vertx vertx, String search, String path, int size) {
+    this(vertx, search, path, 0, 1, size);
+  }
+
+  /**
+   * Load the first frame of chunks from one of several disjoint slices of
+   * the search result
+   * @param vertx vertx instance
+   * @param search The search query
+   * @param path The search path
+   * @param slice The number of the slice to retrieve (starting at 0)
+   * @param slices The total number of slices
+   * @param size The number of elements to load in this frame
+   */
+  public FrameCursor(Vertx vertx, String search, String path, int slice,
+      int slices, int size) {
     this(vertx, null);
     this.search = search;
     this.path = path;
+    this.slice = slice;
+    this.slices = slices;
     this.size = size;
   }
 
@@ -113,13 +170,23 @@ public class FrameCursor implements StoreCursor {
       if (path != null) {
         queryMsg.put("path", path);
       }
+      if (slices > 1) {
+        queryMsg
+          .put("slice", slice)
+          .put("slices", slices);
+      }
     }
     
     vertx.eventBus().<JsonObject>send(AddressConstants.INDEXER_QUERY, queryMsg, ar -> {
       if (ar.failed()) {
         handler.handle(Future.failedFuture(ar.cause()));
       } else {
-        handleResponse(ar.result().body());
+        try {
+          handleResponse(ar.result().body());
+        } catch (Exception e) {
+          handler.handle(Future.failedFuture(e));
+          return;
+        }
         handler.handle(Future.succeededFuture(this));
       }
     });
@@ -163,6 +230,7 @@ public class FrameCursor implements StoreCursor {
     totalHits = body.getLong("totalHits");
     scrollId = body.getString("scrollId");
     JsonArray hits = body.getJsonArray("hits");
+    parents = body.getJsonObject("parents");
     int count = hits.size();
     ids = new String[count];
     metas = new ChunkMeta[count];
@@ -183,7 +251,7 @@ public class FrameCursor implements StoreCursor {
     String mimeType = hit.getString("mimeType", XMLChunkMeta.MIME_TYPE);
     if (belongsTo(mimeType, "application", "xml") ||
       belongsTo(mimeType, "text", "xml")) {
-      return new XMLChunkMeta(hit);
+      return new XMLChunkMeta(hit, getParents(hit));
     } else if (belongsTo(mimeType, "application", "geo+json")) {
       return new GeoJsonChunkMeta(hit);
     } else if (belongsTo(mimeType, "application", "json")) {
@@ -191,4 +259,37 @@ public class FrameCursor implements StoreCursor {
     }
     return new ChunkMeta(hit);
   }
+
+  /**
+   * Get the parents of an XML chunk. Resolve them through the cache if
+   * the chunk only references them by ID.
+   * @param hit the chunk's metadata
+   * @return the parents
+   * @throws IllegalStateException if the parents could not be resolved
+   */
+  private List<XMLStartElement> getParents(JsonObject hit) {
+    JsonArray jsonParents = hit.getJsonArray("parents");
+    if (jsonParents != null) {
+      return XMLChunkMeta.parentsFromJson(jsonParents);
+    }
+
+    String parentsId = hit.getString("parentsId");
+    if (parentsId == null) {
+      return null;
+    }
+    List<XMLStartElement> result = parentsCache.getIfPresent(parentsId);
+    if (result == null) {
+      if (parents != null) {
+        jsonParents = parents.getJsonArray(parentsId);
+      }
+      if (jsonParents == null) {
+        throw new IllegalStateException("Could not resolve parents of chunk " +
+            hit.getString("id"));
+      }
+      result = Collections.unmodifiableList(
+          XMLChunkMeta.parentsFromJson(jsonParents));
+      parentsCache.put(parentsId, result);
+    }
+    return result;
+  }
 }
@@ -49,10 +49,31 @@ public class IndexedAsyncCursor<T> implements AsyncCursor<T> {
   private final int pageSize;
 
   /**
-   * The number of items retrieved from the store
+   * The number of batches to retrieve ahead of time
+   */
+  private final int prefetchPages;
+
+  /**
+   * Fetches the next batches while the current one is being consumed
+   */
+  private PagePrefetcher<List<T>> prefetcher;
+
+  /**
+   * The number of items handed out by this cursor
    */
   private long count;
 
+  /**
+   * The number of items retrieved from the store so far (including
+   * batches fetched ahead of time)
+   */
+  private long fetched;
+
+  /**
+   * True if the last batch retrieved from the store was empty
+   */
+  private boolean lastBatchEmpty;
+
   /**
    * The current read position in {@link #items}
    */
@@ -64,7 +85,8 @@ public class IndexedAsyncCursor<T> implements AsyncCursor<T> {
   private long size;
 
   /**
-   * A scroll ID used by Elasticsearch for pagination
+   * A scroll ID used by Elasticsearch for pagination (returned with the
+   * last batch)
    */
   private String scrollId;
 
@@ -95,11 +117,27 @@ public class IndexedAsyncCursor<T> implements AsyncCursor<T> {
    */
   public IndexedAsyncCursor(Function<Object, T> itemDecoder, String address,
     Vertx vertx, JsonObject template, int pageSize) {
+    this(itemDecoder, address, vertx, template, pageSize, 0);
+  }
+
+  /**
+   * Create a cursor
+   * @param itemDecoder a function which knows how to decode the items
+   * @param address The eventbus address of the item type
+   * @param vertx the Vert.x instance
+   * @param template a template of the message which should be used to query items
+   * @param pageSize the number of items retrieved in one batch
+   * @param prefetchPages the number of batches to retrieve ahead of time
+   * while the current one is being consumed (0 disables prefetching)
+   */
+  public IndexedAsyncCursor(Function<Object, T> itemDecoder, String address,
+    Vertx vertx, JsonObject template, int pageSize, int prefetchPages) {
     this.itemDecoder = itemDecoder;
     this.address = address;
     this.vertx = vertx;
     this.template = template;
     this.pageSize = pageSize;
+    this.prefetchPages = prefetchPages;
   }
 
   /**
@@ -113,21 +151,45 @@ public class IndexedAsyncCursor<T> implements AsyncCursor<T> {
       if (ar.failed()) {
         handler.handle(Future.failedFuture(ar.cause()));
       } else {
-        handleResponse(ar.result().body());
+        items = handleResponse(ar.result().body());
+        prefetcher = new PagePrefetcher<>(prefetchPages, this::fetchNextBatch,
+            () -> !lastBatchEmpty && fetched < size);
+        prefetcher.prefetch();
         handler.handle(Future.succeededFuture(this));
       }
     });
   }
 
   /**
-   * Handle the response from the verticle and set the items list
+   * Retrieve the batch following the last one retrieved
+   * @param handler will be called with the retrieved items
+   */
+  private void fetchNextBatch(Handler<AsyncResult<List<T>>> handler) {
+    JsonObject queryMsg = template.copy()
+      .put("pageSize", pageSize)
+      .put("scrollId", scrollId);
+    vertx.eventBus().<JsonObject>send(address, queryMsg, ar -> {
+      if (ar.failed()) {
+        handler.handle(Future.failedFuture(ar.cause()));
+      } else {
+        handler.handle(Future.succeededFuture(
+            handleResponse(ar.result().body())));
+      }
+    });
+  }
+
+  /**
+   * Handle the response from the verticle and decode the items
    * @param body the response from the indexer
+   * @return the decoded items
    */
-  private void handleResponse(JsonObject body) {
+  private List<T> handleResponse(JsonObject body) {
     size = body.getLong("totalHits");
     scrollId = body.getString("scrollId");
     JsonArray hits = body.getJsonArray("hits");
-    items = hits.stream()
+    fetched += hits.size();
+    lastBatchEmpty = hits.isEmpty();
+    return hits.stream()
       .map(itemDecoder)
       .collect(Collectors.toList());
   }
@@ -142,16 +204,18 @@ public class IndexedAsyncCursor<T> implements AsyncCursor<T> {
     ++count;
     ++pos;
     if (pos >= items.size()) {
-      JsonObject queryMsg = template.copy()
-        .put("pageSize", pageSize)
-        .put("scrollId", scrollId);
-      vertx.eventBus().<JsonObject>send(address, queryMsg, ar -> {
+      prefetcher.next(ar -> {
         if (ar.failed()) {
           handler.handle(Future.failedFuture(ar.cause()));
         } else {
-          handleResponse(ar.result().body());
+          items = ar.result();
           pos = 0;
-          handler.handle(Future.succeededFuture(items.get(pos)));
+          if (items.isEmpty()) {
+            handler.handle(Future.failedFuture(new IndexOutOfBoundsException(
+                "Cursor is beyond a valid position.")));
+          } else {
+            handler.handle(Future.succeededFuture(items.get(pos)));
+          }
         }
       });
     } else {
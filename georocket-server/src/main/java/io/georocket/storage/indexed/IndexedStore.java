@@ -1,6 +1,8 @@
 package io.georocket.storage.indexed;
 
 import io.georocket.constants.AddressConstants;
+import io.georocket.constants.ConfigConstants;
+import io.georocket.index.CreditClient;
 import io.georocket.index.IndexableChunkCache;
 import io.georocket.storage.AsyncCursor;
 import io.georocket.storage.ChunkMeta;
@@ -8,8 +10,10 @@ import io.georocket.storage.DeleteMeta;
 import io.georocket.storage.IndexMeta;
 import io.georocket.storage.Store;
 import io.georocket.storage.StoreCursor;
+import io.georocket.storage.ValueCount;
 import io.georocket.tasks.PurgingTask;
 import io.georocket.tasks.TaskError;
+import io.georocket.tasks.TaskVerticle;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -40,6 +44,22 @@ public abstract class IndexedStore implements Store {
     new AtomicInteger(new SecureRandom().nextInt());
 
   private final Vertx vertx;
+
+  /**
+   * The number of items cursors retrieve from the index in one batch
+   */
+  private final int cursorPageSize;
+
+  /**
+   * The number of batches cursors retrieve ahead of time
+   */
+  private final int cursorPrefetchPages;
+
+  /**
+   * Requests credits from the indexer before chunks are sent to it
+   * (created lazily because it depends on {@link #isShared()})
+   */
+  private CreditClient creditClient;
   
   /**
    * Constructs the chunk store
@@ -47,19 +67,67 @@ public abstract class IndexedStore implements Store {
    */
   public IndexedStore(Vertx vertx) {
     this.vertx = vertx;
+
+    JsonObject config = vertx.getOrCreateContext().config();
+    cursorPageSize = config.getInteger(ConfigConstants.STORAGE_CURSOR_PAGE_SIZE,
+        ConfigConstants.DEFAULT_STORAGE_CURSOR_PAGE_SIZE);
+    cursorPrefetchPages = config.getInteger(
+        ConfigConstants.STORAGE_CURSOR_PREFETCH_PAGES,
+        ConfigConstants.DEFAULT_STORAGE_CURSOR_PREFETCH_PAGES);
+  }
+
+  /**
+   * @return the client that requests credits from the indexer. Chunks may
+   * be sent to indexers on other cluster nodes if the store is shared.
+   */
+  private CreditClient getCreditClient() {
+    if (creditClient == null) {
+      creditClient = new CreditClient(vertx, isShared());
+    }
+    return creditClient;
   }
   
   @Override
   public void add(String chunk, ChunkMeta chunkMeta, String path,
       IndexMeta indexMeta, Handler<AsyncResult<Void>> handler) {
+    add(Buffer.buffer(chunk), chunkMeta, path, indexMeta, handler);
+  }
+
+  @Override
+  public void add(Buffer chunk, ChunkMeta chunkMeta, String path,
+      IndexMeta indexMeta, Handler<AsyncResult<Void>> handler) {
+    // wait until the indexer is able to accept the chunk
+    String correlationId = indexMeta.getCorrelationId();
+    long size = chunk.length();
+    getCreditClient().acquire(correlationId, size, address ->
+        addWithCredit(chunk, chunkMeta, path, indexMeta, address, handler));
+  }
+
+  /**
+   * Add a chunk to the store after credits have been acquired from the
+   * indexer
+   * @param chunk the chunk to add
+   * @param chunkMeta the chunk's metadata
+   * @param path the path where the chunk should be stored (may be null)
+   * @param indexMeta metadata affecting the way the chunk will be indexed
+   * @param address the address of the indexer the chunk should be sent to
+   * @param handler will be called when the chunk has been added to the store
+   */
+  private void addWithCredit(Buffer chunk, ChunkMeta chunkMeta, String path,
+      IndexMeta indexMeta, String address, Handler<AsyncResult<Void>> handler) {
     doAddChunk(chunk, path, indexMeta.getCorrelationId(), ar -> {
       if (ar.failed()) {
+        getCreditClient().refund(indexMeta.getCorrelationId(), address,
+            chunk.length());
         handler.handle(Future.failedFuture(ar.cause()));
       } else {
         // start indexing
         JsonObject indexMsg = new JsonObject()
             .put("path", ar.result())
             .put("meta", chunkMeta.toJsonObject());
+        if (!AddressConstants.INDEXER_ADD.equals(address)) {
+          indexMsg.put("credit", (long)chunk.length());
+        }
 
         if (indexMeta.getCorrelationId() != null) {
           indexMsg.put("correlationId", indexMeta.getCorrelationId());
@@ -78,16 +146,41 @@ public abstract class IndexedStore implements Store {
           indexMsg.put("properties", new JsonObject(indexMeta.getProperties()));
         }
 
-        // save chunk to cache and then let indexer know about it
-        IndexableChunkCache.getInstance().put(ar.result(), Buffer.buffer(chunk));
-        vertx.eventBus().send(AddressConstants.INDEXER_ADD, indexMsg);
-        
-        // tell sender that writing was successful
-        handler.handle(Future.succeededFuture());
+        if (indexMeta.getDocument() != null) {
+          // the chunk has already been indexed while it was imported. there
+          // is no need to put it into the cache.
+          indexMsg.put("doc", JsonObject.mapFrom(indexMeta.getDocument()));
+        } else if (getCreditClient().isLocal(address)) {
+          // save chunk to cache. wait until there is enough space so the
+          // indexer does not have to read the chunk back from the store.
+          // chunks bound by credits must not expire before they are indexed.
+          boolean pinned = !AddressConstants.INDEXER_ADD.equals(address);
+          IndexableChunkCache.getInstance().put(ar.result(), chunk, pinned,
+              added -> sendToIndexer(address, indexMsg, handler));
+          return;
+        }
+
+        // indexers on other cluster nodes cannot access our cache. they
+        // will read the chunk from the store.
+        sendToIndexer(address, indexMsg, handler);
       }
     });
   }
 
+  /**
+   * Let the indexer know about a chunk that has been added to the store
+   * @param address the indexer's address
+   * @param indexMsg the message to send to the indexer
+   * @param handler will be called when the message has been sent
+   */
+  private void sendToIndexer(String address, JsonObject indexMsg,
+      Handler<AsyncResult<Void>> handler) {
+    vertx.eventBus().send(address, indexMsg);
+
+    // tell sender that writing was successful
+    handler.handle(Future.succeededFuture());
+  }
+
   @Override
   public void delete(String search, String path, Handler<AsyncResult<Void>> handler) {
     delete(search, path, null, handler);
@@ -103,8 +196,7 @@ public abstract class IndexedStore implements Store {
     PurgingTask purgingTask = new PurgingTask(correlationId);
     purgingTask.setStartTime(Instant.now());
     purgingTask.setTotalChunks(totalChunks);
-    vertx.eventBus().publish(AddressConstants.TASK_INC,
-        JsonObject.mapFrom(purgingTask));
+    TaskVerticle.publishInc(vertx, purgingTask);
   }
 
   /**
@@ -120,8 +212,7 @@ public abstract class IndexedStore implements Store {
     if (error != null) {
       purgingTask.addError(error);
     }
-    vertx.eventBus().publish(AddressConstants.TASK_INC,
-        JsonObject.mapFrom(purgingTask));
+    TaskVerticle.publishInc(vertx, purgingTask);
   }
 
   /**
@@ -132,8 +223,7 @@ public abstract class IndexedStore implements Store {
   private void updatePurgingTask(String correlationId, int purgedChunks) {
     PurgingTask purgingTask = new PurgingTask(correlationId);
     purgingTask.setPurgedChunks(purgedChunks);
-    vertx.eventBus().publish(AddressConstants.TASK_INC,
-        JsonObject.mapFrom(purgingTask));
+    TaskVerticle.publishInc(vertx, purgingTask);
   }
 
   @Override
@@ -181,7 +271,15 @@ public abstract class IndexedStore implements Store {
 
   @Override
   public void get(String search, String path, Handler<AsyncResult<StoreCursor>> handler) {
-    new IndexedStoreCursor(vertx, search, path).start(handler);
+    new IndexedStoreCursor(vertx, search, path, cursorPageSize,
+        cursorPrefetchPages).start(handler);
+  }
+
+  @Override
+  public void get(String search, String path, int slice, int slices,
+      Handler<AsyncResult<StoreCursor>> handler) {
+    new IndexedStoreCursor(vertx, search, path, slice, slices,
+        cursorPageSize, cursorPrefetchPages).start(handler);
   }
 
   @Override
@@ -293,8 +391,8 @@ public abstract class IndexedStore implements Store {
       template.put("path", path);
     }
     new IndexedAsyncCursor<>(Objects::toString,
-      AddressConstants.METADATA_GET_ATTRIBUTE_VALUES, vertx, template)
-      .start(handler);
+      AddressConstants.METADATA_GET_ATTRIBUTE_VALUES, vertx, template,
+      cursorPageSize, cursorPrefetchPages).start(handler);
   }
 
   @Override
@@ -307,8 +405,38 @@ public abstract class IndexedStore implements Store {
       template.put("path", path);
     }
     new IndexedAsyncCursor<>(Objects::toString,
-      AddressConstants.METADATA_GET_PROPERTY_VALUES, vertx, template)
-      .start(handler);
+      AddressConstants.METADATA_GET_PROPERTY_VALUES, vertx, template,
+      cursorPageSize, cursorPrefetchPages).start(handler);
+  }
+
+  @Override
+  public void getDistinctAttributeValues(String search, String path,
+      String attribute, Handler<AsyncResult<AsyncCursor<ValueCount>>> handler) {
+    JsonObject template = new JsonObject()
+      .put("search", search)
+      .put("attribute", attribute)
+      .put("distinct", true);
+    if (path != null) {
+      template.put("path", path);
+    }
+    new IndexedAsyncCursor<>(o -> new ValueCount((JsonObject)o),
+      AddressConstants.METADATA_GET_ATTRIBUTE_VALUES, vertx, template,
+      cursorPageSize, cursorPrefetchPages).start(handler);
+  }
+
+  @Override
+  public void getDistinctPropertyValues(String search, String path,
+      String property, Handler<AsyncResult<AsyncCursor<ValueCount>>> handler) {
+    JsonObject template = new JsonObject()
+      .put("search", search)
+      .put("property", property)
+      .put("distinct", true);
+    if (path != null) {
+      template.put("path", path);
+    }
+    new IndexedAsyncCursor<>(o -> new ValueCount((JsonObject)o),
+      AddressConstants.METADATA_GET_PROPERTY_VALUES, vertx, template,
+      cursorPageSize, cursorPrefetchPages).start(handler);
   }
 
   @Override
@@ -393,11 +521,12 @@ public abstract class IndexedStore implements Store {
   
   /**
    * Add a chunk to the store
-   * @param chunk the chunk to add
+   * @param chunk the chunk to add (UTF-8 encoded)
    * @param path the chunk's destination path
+   * @param correlationId the correlation ID of the current import process
    * @param handler will be called when the operation has finished
    */
-  protected abstract void doAddChunk(String chunk, String path,
+  protected abstract void doAddChunk(Buffer chunk, String path,
     String correlationId, Handler<AsyncResult<String>> handler);
   
   /**
@@ -14,7 +14,7 @@ import io.vertx.core.Vertx;
  */
 public class IndexedStoreCursor implements StoreCursor {
   /**
-   * The number of items retrieved in one batch
+   * The default number of items retrieved in one batch
    */
   private static final int SIZE = 100;
 
@@ -33,11 +33,36 @@ public class IndexedStoreCursor implements StoreCursor {
    */
   private final String path;
 
+  /**
+   * The number of the slice to retrieve
+   */
+  private final int slice;
+
+  /**
+   * The total number of slices (1 if the result should not be sliced)
+   */
+  private final int slices;
+
+  /**
+   * The number of items retrieved in one batch
+   */
+  private final int pageSize;
+
+  /**
+   * The number of batches to retrieve ahead of time
+   */
+  private final int prefetchPages;
+
   /**
    * This cursor use FrameCursor to load the full datastore frame by frame.
    */
   private StoreCursor currentFrameCursor; 
 
+  /**
+   * Fetches the next frames while the current one is being consumed
+   */
+  private PagePrefetcher<StoreCursor> prefetcher;
+
   /**
    * The current read position
    */
@@ -49,7 +74,18 @@ public class IndexedStoreCursor implements StoreCursor {
   private Long totalHits = 0L;
 
   /**
-   * The scrollId for elasticsearch
+   * The number of items retrieved from the store so far (including
+   * frames fetched ahead of time)
+   */
+  private long fetchedHits = 0L;
+
+  /**
+   * True if the last frame retrieved from the store was empty
+   */
+  private boolean lastFrameEmpty;
+
+  /**
+   * The scrollId for elasticsearch returned with the last frame
    */
   private String scrollId;
 
@@ -61,9 +97,46 @@ public class IndexedStoreCursor implements StoreCursor {
    * whole store should be searched)
    */
   public IndexedStoreCursor(Vertx vertx, String search, String path) {
+    this(vertx, search, path, SIZE, 0);
+  }
+
+  /**
+   * Create a cursor
+   * @param vertx the Vert.x instance
+   * @param search the search query
+   * @param path the path where to perform the search (may be null if the
+   * whole store should be searched)
+   * @param pageSize the number of items retrieved in one batch
+   * @param prefetchPages the number of batches to retrieve ahead of time
+   * while the current one is being consumed (0 disables prefetching)
+   */
+  public IndexedStoreCursor(Vertx vertx, String search, String path,
+      int pageSize, int prefetchPages) {
+    this(vertx, search, path, 0, 1, pageSize, prefetchPages);
+  }
+
+  /**
+   * Create a cursor that only iterates over one of several disjoint slices
+   * of the search result
+   * @param vertx the Vert.x instance
+   * @param search the search query
+   * @param path the path where to perform the search (may be null if the
+   * whole store should be searched)
+   * @param slice the number of the slice to retrieve (starting at 0)
+   * @param slices the total number of slices
+   * @param pageSize the number of items retrieved in one batch
+   * @param prefetchPages the number of batches to retrieve ahead of time
+   * while the current one is being consumed (0 disables prefetching)
+   */
+  public IndexedStoreCursor(Vertx vertx, String search, String path,
+      int slice, int slices, int pageSize, int prefetchPages) {
     this.vertx = vertx;
     this.search = search;
     this.path = path;
+    this.slice = slice;
+    this.slices = slices;
+    this.pageSize = pageSize;
+    this.prefetchPages = prefetchPages;
   }
 
   /**
@@ -71,21 +144,39 @@ public class IndexedStoreCursor implements StoreCursor {
    * @param handler will be called when the cursor has retrieved its first batch
    */
   public void start(Handler<AsyncResult<StoreCursor>> handler) {
-    new FrameCursor(vertx, search, path, SIZE).start(h -> {
+    new FrameCursor(vertx, search, path, slice, slices, pageSize).start(h -> {
       if (h.succeeded()) {
         handleFrameCursor(h.result());
+        currentFrameCursor = h.result();
+        this.totalHits = currentFrameCursor.getInfo().getTotalHits();
+        prefetcher = new PagePrefetcher<>(prefetchPages, this::fetchNextFrame,
+            () -> !lastFrameEmpty && fetchedHits < totalHits);
+        prefetcher.prefetch();
         handler.handle(Future.succeededFuture(this));
       } else {
         handler.handle(Future.failedFuture(h.cause()));
       }
     });
   }
+
+  /**
+   * Retrieve the frame following the last one retrieved
+   * @param handler will be called with the retrieved frame
+   */
+  private void fetchNextFrame(Handler<AsyncResult<StoreCursor>> handler) {
+    new FrameCursor(vertx, scrollId).start(h -> {
+      if (h.succeeded()) {
+        handleFrameCursor(h.result());
+      }
+      handler.handle(h);
+    });
+  }
   
   private void handleFrameCursor(StoreCursor framedCursor) {
-    currentFrameCursor = framedCursor;
     CursorInfo info = framedCursor.getInfo();
-    this.totalHits = info.getTotalHits();
     this.scrollId = info.getScrollId();
+    this.fetchedHits += info.getCurrentHits();
+    this.lastFrameEmpty = info.getCurrentHits() == 0;
   }
 
   @Override
@@ -102,11 +193,11 @@ public class IndexedStoreCursor implements StoreCursor {
     } else if (this.currentFrameCursor.hasNext()) {
       this.currentFrameCursor.next(handler);
     } else {
-      new FrameCursor(vertx, scrollId).start(h -> {
+      prefetcher.next(h -> {
         if (h.failed()) {
           handler.handle(Future.failedFuture(h.cause()));
         } else {
-          handleFrameCursor(h.result());
+          this.currentFrameCursor = h.result();
           this.currentFrameCursor.next(handler);
         }
       });
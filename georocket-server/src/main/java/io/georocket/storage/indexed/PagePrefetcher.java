@@ -0,0 +1,121 @@
+package io.georocket.storage.indexed;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+/**
+ * <p>Fetches pages of a paginated result (e.g. an Elasticsearch scroll)
+ * ahead of time. As soon as a page has been handed out, the next one is
+ * requested, so consumers do not have to wait for a full round trip to the
+ * indexer every time they reach the end of a page.</p>
+ * <p>Pages are always requested one after the other because each request
+ * depends on the state returned by the previous one (e.g. the scroll ID).
+ * The number of pages held in memory is limited by the prefetch depth.</p>
+ * @author Michel Kraemer
+ * @param <P> the page type
+ */
+class PagePrefetcher<P> {
+  /**
+   * The maximum number of pages to fetch ahead of time
+   */
+  private final int depth;
+
+  /**
+   * A function that fetches the next page
+   */
+  private final Consumer<Handler<AsyncResult<P>>> fetcher;
+
+  /**
+   * A function that checks if there are more pages to fetch
+   */
+  private final BooleanSupplier hasMore;
+
+  /**
+   * Pages that have been fetched but not handed out yet
+   */
+  private final Deque<P> pages = new ArrayDeque<>();
+
+  /**
+   * True if a page is currently being fetched
+   */
+  private boolean fetching;
+
+  /**
+   * An error that occurred while a page was fetched ahead of time
+   */
+  private Throwable error;
+
+  /**
+   * A consumer waiting for the next page
+   */
+  private Handler<AsyncResult<P>> waiting;
+
+  /**
+   * Create a new prefetcher
+   * @param depth the maximum number of pages to fetch ahead of time (0
+   * disables prefetching and fetches pages on demand only)
+   * @param fetcher a function that fetches the next page
+   * @param hasMore a function that checks if there are more pages to fetch
+   */
+  PagePrefetcher(int depth, Consumer<Handler<AsyncResult<P>>> fetcher,
+      BooleanSupplier hasMore) {
+    this.depth = Math.max(0, depth);
+    this.fetcher = fetcher;
+    this.hasMore = hasMore;
+  }
+
+  /**
+   * Fetch the next page if the prefetch depth allows it
+   */
+  void prefetch() {
+    int limit = waiting != null ? 1 : depth;
+    if (fetching || error != null || pages.size() >= limit ||
+        !hasMore.getAsBoolean()) {
+      return;
+    }
+
+    fetching = true;
+    fetcher.accept(ar -> {
+      fetching = false;
+      if (ar.failed()) {
+        error = ar.cause();
+      } else {
+        pages.add(ar.result());
+      }
+
+      if (waiting != null) {
+        Handler<AsyncResult<P>> h = waiting;
+        waiting = null;
+        next(h);
+      } else {
+        prefetch();
+      }
+    });
+  }
+
+  /**
+   * Get the next page
+   * @param handler will be called with the next page
+   */
+  void next(Handler<AsyncResult<P>> handler) {
+    if (!pages.isEmpty()) {
+      P page = pages.poll();
+      prefetch();
+      handler.handle(Future.succeededFuture(page));
+    } else if (error != null) {
+      handler.handle(Future.failedFuture(error));
+    } else if (!fetching && !hasMore.getAsBoolean()) {
+      handler.handle(Future.failedFuture(new IndexOutOfBoundsException(
+          "There are no more pages.")));
+    } else {
+      waiting = handler;
+      prefetch();
+    }
+  }
+}
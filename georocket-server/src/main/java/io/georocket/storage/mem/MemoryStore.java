@@ -50,7 +50,7 @@ public class MemoryStore extends IndexedStore implements Store {
   }
   
   @Override
-  protected void doAddChunk(String chunk, String path, String correlationId,
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
       Handler<AsyncResult<String>> handler) {
     if (path == null || path.isEmpty()) {
       path = "/";
@@ -61,7 +61,7 @@ public class MemoryStore extends IndexedStore implements Store {
       if (ar.failed()) {
         handler.handle(Future.failedFuture(ar.cause()));
       } else {
-        ar.result().put(filename, Buffer.buffer(chunk), par -> {
+        ar.result().put(filename, chunk, par -> {
           if (par.failed()) {
             handler.handle(Future.failedFuture(par.cause()));
           } else {
@@ -1,13 +1,23 @@
 package io.georocket.storage.mongodb;
 
-import java.nio.charset.StandardCharsets;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.stream.Collectors;
 
 import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
 
 import com.google.common.base.Preconditions;
 import com.mongodb.async.client.MongoClient;
 import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
 import com.mongodb.async.client.MongoDatabase;
 import com.mongodb.async.client.gridfs.AsyncInputStream;
 import com.mongodb.async.client.gridfs.GridFSBucket;
@@ -15,16 +25,21 @@ import com.mongodb.async.client.gridfs.GridFSBuckets;
 import com.mongodb.async.client.gridfs.GridFSDownloadStream;
 import com.mongodb.async.client.gridfs.GridFSFindIterable;
 import com.mongodb.async.client.gridfs.helpers.AsyncStreamHelper;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
 
 import io.georocket.constants.ConfigConstants;
 import io.georocket.storage.ChunkReadStream;
 import io.georocket.storage.indexed.IndexedStore;
 import io.georocket.util.PathUtils;
+import io.georocket.util.io.DelegateChunkReadStream;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -92,6 +107,11 @@ public class MongoDBStore extends IndexedStore {
     return gridfs;
   }
   
+  @Override
+  public boolean isShared() {
+    return true;
+  }
+
   @Override
   public void getOne(String path, Handler<AsyncResult<ChunkReadStream>> handler) {
     GridFSDownloadStream downloadStream =
@@ -109,7 +129,87 @@ public class MongoDBStore extends IndexedStore {
   }
 
   @Override
-  protected void doAddChunk(String chunk, String path, String correlationId,
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    if (paths.isEmpty()) {
+      handler.handle(Future.succeededFuture(new ArrayList<>()));
+      return;
+    }
+
+    // find all files with a single query
+    List<String> normalizedPaths = paths.stream()
+      .map(PathUtils::normalize)
+      .collect(Collectors.toList());
+    List<GridFSFile> files = new ArrayList<>();
+    getGridFS().find(Filters.in("filename", new HashSet<>(normalizedPaths)))
+      .sort(Sorts.ascending("uploadDate"))
+      .into(files, (r, t) -> {
+        if (t != null) {
+          context.runOnContext(v -> handler.handle(Future.failedFuture(t)));
+          return;
+        }
+
+        // use the latest revision of each file
+        Map<String, GridFSFile> filesByName = new HashMap<>();
+        for (GridFSFile file : files) {
+          filesByName.put(file.getFilename(), file);
+        }
+        for (String path : normalizedPaths) {
+          if (!filesByName.containsKey(path)) {
+            context.runOnContext(v -> handler.handle(Future.failedFuture(
+                new FileNotFoundException("Could not find chunk: " + path))));
+            return;
+          }
+        }
+
+        getFileContents(filesByName.values(), ar -> {
+          if (ar.failed()) {
+            handler.handle(Future.failedFuture(ar.cause()));
+            return;
+          }
+          List<ChunkReadStream> result = new ArrayList<>(paths.size());
+          for (String path : normalizedPaths) {
+            ObjectId id = filesByName.get(path).getObjectId();
+            result.add(new DelegateChunkReadStream(ar.result().get(id)));
+          }
+          handler.handle(Future.succeededFuture(result));
+        });
+      });
+  }
+
+  /**
+   * Read the contents of the given GridFS files with a single query
+   * @param files the files to read
+   * @param handler will be called on the store's context with the files'
+   * contents
+   */
+  private void getFileContents(Collection<GridFSFile> files,
+      Handler<AsyncResult<Map<ObjectId, Buffer>>> handler) {
+    Map<ObjectId, Buffer> contents = new HashMap<>();
+    List<ObjectId> ids = new ArrayList<>();
+    for (GridFSFile file : files) {
+      contents.put(file.getObjectId(), Buffer.buffer((int)file.getLength()));
+      ids.add(file.getObjectId());
+    }
+
+    MongoCollection<Document> chunks = getDB().getCollection(
+        getGridFS().getBucketName() + ".chunks");
+    chunks.find(Filters.in("files_id", ids))
+      .sort(Sorts.ascending("files_id", "n"))
+      .forEach(doc -> {
+        Binary data = (Binary)doc.get("data");
+        contents.get(doc.getObjectId("files_id")).appendBytes(data.getData());
+      }, (r, t) -> context.runOnContext(v -> {
+        if (t != null) {
+          handler.handle(Future.failedFuture(t));
+        } else {
+          handler.handle(Future.succeededFuture(contents));
+        }
+      }));
+  }
+
+  @Override
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
       Handler<AsyncResult<String>> handler) {
     if (path == null || path.isEmpty()) {
       path = "/";
@@ -119,7 +219,7 @@ public class MongoDBStore extends IndexedStore {
     String id = generateChunkId(correlationId);
     String filename = PathUtils.join(path, id);
     
-    byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = chunk.getBytes();
     AsyncInputStream is = AsyncStreamHelper.toAsyncInputStream(bytes);
     getGridFS().uploadFromStream(filename, is, (oid, t) -> context.runOnContext(v -> {
       if (t != null) {
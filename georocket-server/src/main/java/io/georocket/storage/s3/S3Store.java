@@ -1,7 +1,9 @@
 package io.georocket.storage.s3;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Queue;
 
 import com.amazonaws.ClientConfiguration;
@@ -142,7 +144,12 @@ public class S3Store extends IndexedStore {
   }
 
   @Override
-  protected void doAddChunk(String chunk, String path, String correlationId,
+  public boolean isShared() {
+    return true;
+  }
+
+  @Override
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
       Handler<AsyncResult<String>> handler) {
     if (path == null || path.isEmpty()) {
       path = "/";
@@ -164,11 +171,10 @@ public class S3Store extends IndexedStore {
       URL u = ar.result();
       log.debug("PUT " + u);
 
-      Buffer chunkBuf = Buffer.buffer(chunk);
       HttpClientRequest request = client.put(u.getFile());
 
       request.putHeader("Host", u.getHost());
-      request.putHeader("Content-Length", String.valueOf(chunkBuf.length()));
+      request.putHeader("Content-Length", String.valueOf(chunk.length()));
 
       request.exceptionHandler(t -> {
         handler.handle(Future.failedFuture(t));
@@ -189,7 +195,7 @@ public class S3Store extends IndexedStore {
         });
       });
 
-      request.end(chunkBuf);
+      request.end(chunk);
     });
   }
 
@@ -233,6 +239,91 @@ public class S3Store extends IndexedStore {
     });
   }
 
+  @Override
+  public void getMany(List<String> paths,
+      Handler<AsyncResult<List<ChunkReadStream>>> handler) {
+    if (paths.isEmpty()) {
+      handler.handle(Future.succeededFuture(new ArrayList<>()));
+      return;
+    }
+
+    // sign all requests at once to avoid a trip to a worker thread for
+    // each chunk. then send all requests at the same time. they will be
+    // distributed over the client's keep-alive connections.
+    vertx.<List<URL>>executeBlocking(f -> {
+      List<URL> urls = new ArrayList<>(paths.size());
+      for (String path : paths) {
+        String key = PathUtils.removeLeadingSlash(PathUtils.normalize(path));
+        urls.add(generatePresignedUrl(key, HttpMethod.GET));
+      }
+      f.complete(urls);
+    }, ar -> {
+      if (ar.failed()) {
+        handler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+
+      List<URL> urls = ar.result();
+      Buffer[] bodies = new Buffer[urls.size()];
+      int[] remaining = new int[] { urls.size() };
+      boolean[] failed = new boolean[] { false };
+      for (int i = 0; i < urls.size(); ++i) {
+        int index = i;
+        getObject(urls.get(i), gar -> {
+          if (failed[0]) {
+            return;
+          }
+          if (gar.failed()) {
+            failed[0] = true;
+            handler.handle(Future.failedFuture(gar.cause()));
+            return;
+          }
+          bodies[index] = gar.result();
+          remaining[0]--;
+          if (remaining[0] == 0) {
+            List<ChunkReadStream> result = new ArrayList<>(bodies.length);
+            for (Buffer b : bodies) {
+              result.add(new DelegateChunkReadStream(b));
+            }
+            handler.handle(Future.succeededFuture(result));
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Download an object completely
+   * @param u the pre-signed URL of the object
+   * @param handler will be called with the object's contents
+   */
+  private void getObject(URL u, Handler<AsyncResult<Buffer>> handler) {
+    log.debug("GET " + u);
+
+    HttpClientRequest request = client.get(u.getFile());
+    request.putHeader("Host", u.getHost());
+
+    request.exceptionHandler(t -> {
+      handler.handle(Future.failedFuture(t));
+    });
+
+    request.handler(response -> {
+      Buffer body = Buffer.buffer();
+      response.handler(body::appendBuffer);
+      response.exceptionHandler(t -> handler.handle(Future.failedFuture(t)));
+      response.endHandler(v -> {
+        if (response.statusCode() == 200) {
+          handler.handle(Future.succeededFuture(body));
+        } else {
+          log.error(body);
+          handler.handle(Future.failedFuture(response.statusMessage()));
+        }
+      });
+    });
+
+    request.end();
+  }
+
   @Override
   protected void doDeleteChunks(Queue<String> paths, Handler<AsyncResult<Void>> handler) {
     if (paths.isEmpty()) {
@@ -3,47 +3,179 @@ package io.georocket.tasks;
 import io.georocket.constants.AddressConstants;
 import io.georocket.constants.ConfigConstants;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.UUID;
 
 /**
- * A verticle that tracks information about currently running tasks
+ * <p>A verticle that tracks information about currently running tasks. In a
+ * cluster, every node keeps track of the tasks of all nodes.</p>
+ * <p>Task increments should be published with
+ * {@link #publishInc(Vertx, Task)}. Every increment is tagged with the ID of
+ * the sending Vert.x context and a sequence number. A node that joins the
+ * cluster fetches the tasks from another node together with the last
+ * sequence number this node has applied per sender. Increments received in
+ * the meantime are only merged if their sequence number is higher, so they
+ * are not counted twice.</p>
  * @author Michel Kraemer
  */
 public class TaskVerticle extends AbstractVerticle {
+  private static Logger log = LoggerFactory.getLogger(TaskVerticle.class);
+
+  /**
+   * The header of a task increment containing the ID of its sender
+   */
+  private static final String HEADER_SENDER = "sender";
+
+  /**
+   * The header of a task increment containing its sequence number
+   */
+  private static final String HEADER_SEQUENCE = "sequence";
+
+  /**
+   * The key under which a Vert.x context stores its {@link IncSequence}
+   */
+  private static final String CONTEXT_KEY_SEQUENCE =
+      TaskVerticle.class.getName() + ".incSequence";
+
   private long retainSeconds;
   private Map<String, Map<Class<? extends Task>, Task>> tasks = new LinkedHashMap<>();
   private TreeSet<Task> finishedTasks = new TreeSet<>(Comparator.comparing(Task::getEndTime)
     .thenComparingInt(System::identityHashCode));
 
+  /**
+   * Task increments received while the tasks of the other cluster nodes are
+   * being fetched (<code>null</code> if the tasks have been fetched)
+   */
+  private List<Message<JsonObject>> bufferedIncs;
+
+  /**
+   * The sequence number of the last increment merged per sender
+   */
+  private Map<String, Long> lastSequences = new HashMap<>();
+
+  /**
+   * Publish a task increment to the task verticles of all cluster nodes.
+   * Tag it with the ID of the current Vert.x context and the next sequence
+   * number of this context.
+   * @param vertx the Vert.x instance
+   * @param task the task increment to publish
+   */
+  public static void publishInc(Vertx vertx, Task task) {
+    Context context = vertx.getOrCreateContext();
+    IncSequence sequence = context.get(CONTEXT_KEY_SEQUENCE);
+    if (sequence == null) {
+      sequence = new IncSequence();
+      context.put(CONTEXT_KEY_SEQUENCE, sequence);
+    }
+    DeliveryOptions options = new DeliveryOptions()
+      .addHeader(HEADER_SENDER, sequence.sender)
+      .addHeader(HEADER_SEQUENCE, String.valueOf(++sequence.last));
+    vertx.eventBus().publish(AddressConstants.TASK_INC,
+        JsonObject.mapFrom(task), options);
+  }
+
   @Override
-  public void start() {
+  public void start(Future<Void> startFuture) {
     retainSeconds = config().getLong(ConfigConstants.TASKS_RETAIN_SECONDS,
         ConfigConstants.DEFAULT_TASKS_RETAIN_SECONDS);
 
+    if (!vertx.isClustered()) {
+      vertx.eventBus().consumer(AddressConstants.TASK_INC, this::onInc);
+      registerConsumers();
+      startFuture.complete();
+      return;
+    }
+
+    // Task increments are published to all nodes in the cluster, so every
+    // task verticle has the same cluster-wide view. Listen to increments
+    // and buffer them while the tasks that were started before this node
+    // joined the cluster are fetched. Otherwise, increments published in
+    // the meantime would be lost.
+    bufferedIncs = new ArrayList<>();
+    vertx.eventBus().consumer(AddressConstants.TASK_INC, this::onInc)
+      .completionHandler(v -> fetchTasks(startFuture));
+  }
+
+  /**
+   * Fetch the tasks from the other nodes in the cluster, merge them and then
+   * merge all increments received in the meantime
+   * @param startFuture will be completed when the tasks have been fetched
+   */
+  private void fetchTasks(Future<Void> startFuture) {
+    JsonObject request = new JsonObject().put("withSequences", true);
+    vertx.eventBus().<JsonObject>send(AddressConstants.TASK_GET_ALL, request, ar -> {
+      if (ar.succeeded()) {
+        JsonObject body = ar.result().body();
+        body.getJsonObject("tasks").forEach(e -> {
+          for (Object o : (JsonArray)e.getValue()) {
+            JsonObject t = ((JsonObject)o).copy()
+              .put("correlationId", e.getKey());
+            merge(t.mapTo(Task.class));
+          }
+        });
+        body.getJsonObject("sequences", new JsonObject()).forEach(e ->
+            lastSequences.put(e.getKey(), ((Number)e.getValue()).longValue()));
+      } else if (!(ar.cause() instanceof ReplyException) ||
+          ((ReplyException)ar.cause()).failureType() != ReplyFailure.NO_HANDLERS) {
+        log.warn("Could not fetch tasks from other cluster nodes", ar.cause());
+      }
+      List<Message<JsonObject>> incs = bufferedIncs;
+      bufferedIncs = null;
+      incs.forEach(this::mergeInc);
+      registerConsumers();
+      startFuture.complete();
+    });
+  }
+
+  /**
+   * Register the message consumers that answer requests for tasks
+   */
+  private void registerConsumers() {
     vertx.eventBus().consumer(AddressConstants.TASK_GET_ALL, this::onGetAll);
     vertx.eventBus().consumer(AddressConstants.TASK_GET_BY_CORRELATION_ID,
         this::onGetByCorrelationId);
-    vertx.eventBus().consumer(AddressConstants.TASK_INC, this::onInc);
   }
 
   /**
-   * Handle a request to get all tasks
+   * Handle a request to get all tasks. If the request asks for it, the reply
+   * also contains the sequence number of the last increment merged per
+   * sender (see {@link #publishInc(Vertx, Task)}).
    * @param msg the request
    */
-  private void onGetAll(Message<Void> msg) {
+  private void onGetAll(Message<JsonObject> msg) {
     cleanUp();
     JsonObject result = new JsonObject();
     tasks.forEach((c, m) -> result.put(c, makeResponse(m)));
-    msg.reply(result);
+    JsonObject body = msg.body();
+    if (body != null && body.getBoolean("withSequences", false)) {
+      JsonObject sequences = new JsonObject();
+      lastSequences.forEach(sequences::put);
+      msg.reply(new JsonObject()
+        .put("tasks", result)
+        .put("sequences", sequences));
+    } else {
+      msg.reply(result);
+    }
   }
 
   /**
@@ -95,8 +227,39 @@ public class TaskVerticle extends AbstractVerticle {
       return;
     }
 
-    Task t = body.mapTo(Task.class);
+    if (bufferedIncs != null) {
+      bufferedIncs.add(msg);
+      return;
+    }
 
+    mergeInc(msg);
+  }
+
+  /**
+   * Merge a task increment unless it has already been merged (i.e. if its
+   * sequence number is not higher than the last one merged for its sender)
+   * @param msg the message containing the increment
+   */
+  private void mergeInc(Message<JsonObject> msg) {
+    String sender = msg.headers().get(HEADER_SENDER);
+    String sequence = msg.headers().get(HEADER_SEQUENCE);
+    if (sender != null && sequence != null) {
+      long seq = Long.parseLong(sequence);
+      Long last = lastSequences.get(sender);
+      if (last != null && seq <= last) {
+        // the increment is already contained in the fetched tasks
+        return;
+      }
+      lastSequences.put(sender, seq);
+    }
+    merge(msg.body().mapTo(Task.class));
+  }
+
+  /**
+   * Merge a task into the existing tasks by incrementing their values
+   * @param t the task to merge
+   */
+  private void merge(Task t) {
     Map<Class<? extends Task>, Task> m = tasks.computeIfAbsent(
         t.getCorrelationId(), k -> new LinkedHashMap<>());
 
@@ -160,4 +323,13 @@ public class TaskVerticle extends AbstractVerticle {
       }
     }
   }
+
+  /**
+   * The sender ID and the sequence number of the last task increment
+   * published by a Vert.x context
+   */
+  private static class IncSequence {
+    final String sender = UUID.randomUUID().toString();
+    long last;
+  }
 }
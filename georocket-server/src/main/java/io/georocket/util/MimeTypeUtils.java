@@ -1,6 +1,7 @@
 package io.georocket.util;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -93,9 +94,39 @@ public class MimeTypeUtils {
     if (!f.exists()) {
       return null;
     }
-    InputStream is = null;
+    return detect(new FileInputStream(f), gzip);
+  }
+
+  /**
+   * Try to determine the file format from the first bytes of a file that
+   * have been read into memory. Look at up to 100 KB before giving up.
+   * @param data the first bytes of the file
+   * @param gzip true if the file is compressed with GZIP
+   * @return the file format (or <code>null</code> if the format could not
+   * be determined, either because the data is not recognized or because it
+   * is incomplete)
+   */
+  public static String detect(byte[] data, boolean gzip) {
+    try {
+      return detect(new ByteArrayInputStream(data), gzip);
+    } catch (IOException e) {
+      // the data is incomplete (e.g. truncated GZIP stream)
+      return null;
+    }
+  }
+
+  /**
+   * Read the first bytes of the given input stream and try to determine the
+   * file format. Close the input stream afterwards.
+   * @param is the input stream to read
+   * @param gzip true if the stream is compressed with GZIP
+   * @return the file format (or <code>null</code> if the format
+   * could not be determined)
+   * @throws IOException if the input stream could not be read
+   */
+  private static String detect(InputStream is, boolean gzip)
+      throws IOException {
     try {
-      is = new FileInputStream(f);
       if (gzip) {
         is = new GZIPInputStream(is);
       }
@@ -103,9 +134,7 @@ public class MimeTypeUtils {
         return determineFileFormat(bis);
       }
     } finally {
-      if (is != null) {
-        is.close();
-      }
+      is.close();
     }
   }
 
@@ -0,0 +1,172 @@
+package io.georocket.util.io;
+
+import static io.georocket.util.ThrowableHelper.throwableToCode;
+import static io.georocket.util.ThrowableHelper.throwableToMessage;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * <p>A {@link ReadStream} that receives buffers from an
+ * {@link EventBusWriteStream} over the local event bus.</p>
+ * <p>The stream grants the write stream a fixed number of buffers (the
+ * window) when it is created. It grants more as soon as its handler has
+ * consumed half of them. While the stream is paused, no credits are
+ * granted, so the write stream stops sending and pauses its source.</p>
+ * <p>Instances of this class must only be used on the context that created
+ * them.</p>
+ * @author Michel Kraemer
+ */
+public class EventBusReadStream implements ReadStream<Buffer> {
+  private final Vertx vertx;
+  private final String creditAddress;
+  private final int window;
+  private final MessageConsumer<Buffer> consumer;
+  private final Deque<Message<Buffer>> queue = new ArrayDeque<>();
+  private int consumed;
+  private boolean paused;
+  private boolean draining;
+  private boolean closed;
+  private Handler<Buffer> handler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+
+  /**
+   * Create a new read stream and grant credits to the write stream
+   * @param vertx the Vert.x instance
+   * @param address the address to receive buffers on
+   * @param window the maximum number of buffers the write stream may send
+   * before the read stream has consumed them
+   */
+  public EventBusReadStream(Vertx vertx, String address, int window) {
+    this.vertx = vertx;
+    this.creditAddress = EventBusWriteStream.getCreditAddress(address);
+    this.window = Math.max(2, window);
+    consumer = vertx.eventBus().localConsumer(address, this::onMessage);
+    grant(this.window);
+  }
+
+  /**
+   * Handle a message from the write stream
+   * @param msg the message
+   */
+  private void onMessage(Message<Buffer> msg) {
+    if (closed) {
+      return;
+    }
+    queue.add(msg);
+    drain();
+  }
+
+  /**
+   * Pass queued buffers to the handler as long as the stream is not paused
+   */
+  private void drain() {
+    if (draining) {
+      return;
+    }
+    draining = true;
+    try {
+      while (!paused && !closed && handler != null && !queue.isEmpty()) {
+        Message<Buffer> msg = queue.poll();
+        String action = msg.headers().get(EventBusWriteStream.HEADER_ACTION);
+        if (EventBusWriteStream.ACTION_END.equals(action)) {
+          close();
+          vertx.eventBus().send(creditAddress, new JsonObject()
+            .put("ended", true));
+          if (endHandler != null) {
+            endHandler.handle(null);
+          }
+        } else if (EventBusWriteStream.ACTION_ERROR.equals(action)) {
+          close();
+          if (exceptionHandler != null) {
+            exceptionHandler.handle(new IOException(msg.body().toString()));
+          }
+        } else {
+          handler.handle(msg.body());
+          consumed++;
+          if (consumed >= window / 2) {
+            grant(consumed);
+            consumed = 0;
+          }
+        }
+      }
+    } finally {
+      draining = false;
+    }
+  }
+
+  /**
+   * Allow the write stream to send more buffers
+   * @param credits the number of buffers
+   */
+  private void grant(int credits) {
+    vertx.eventBus().send(creditAddress, new JsonObject()
+      .put("credits", credits));
+  }
+
+  /**
+   * Stop receiving buffers
+   */
+  private void close() {
+    closed = true;
+    queue.clear();
+    consumer.unregister();
+  }
+
+  /**
+   * Tell the write stream that the data could not be processed and close
+   * this stream. Do nothing if the stream has already ended.
+   * @param t the cause of the failure
+   */
+  public void fail(Throwable t) {
+    if (closed) {
+      return;
+    }
+    close();
+    vertx.eventBus().send(creditAddress, new JsonObject()
+      .put("error", throwableToMessage(t, "Could not process data"))
+      .put("code", throwableToCode(t)));
+  }
+
+  @Override
+  public EventBusReadStream exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public EventBusReadStream handler(Handler<Buffer> handler) {
+    this.handler = handler;
+    drain();
+    return this;
+  }
+
+  @Override
+  public EventBusReadStream pause() {
+    paused = true;
+    return this;
+  }
+
+  @Override
+  public EventBusReadStream resume() {
+    paused = false;
+    drain();
+    return this;
+  }
+
+  @Override
+  public EventBusReadStream endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+}
@@ -0,0 +1,243 @@
+package io.georocket.util.io;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.WriteStream;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * <p>A {@link WriteStream} that sends buffers over the local event bus to
+ * an {@link EventBusReadStream} registered at the same address.</p>
+ * <p>The stream implements credit-based flow control. It only accepts as
+ * many buffers as the read stream has granted. The write queue is full as
+ * soon as all credits have been used up, so a
+ * {@link io.vertx.core.streams.Pump} stops reading from its source until
+ * the read stream has consumed enough buffers.</p>
+ * <p>The read stream does not have to exist when the write stream is
+ * created. Buffers written, and a call to {@link #end(Handler)} or
+ * {@link #fail(Throwable)} made, before the read stream has granted its
+ * first credits are held back and sent in order as soon as it has
+ * registered. Otherwise, they would be dropped by the event bus.</p>
+ * <p>Instances of this class must only be used on the context that created
+ * them.</p>
+ * @author Michel Kraemer
+ */
+public class EventBusWriteStream implements WriteStream<Buffer> {
+  /**
+   * The name of the message header telling the read stream what to do
+   */
+  static final String HEADER_ACTION = "action";
+
+  /**
+   * The action denoting that the stream has ended
+   */
+  static final String ACTION_END = "end";
+
+  /**
+   * The action denoting that the stream has failed
+   */
+  static final String ACTION_ERROR = "error";
+
+  private final Vertx vertx;
+  private final String address;
+  private final MessageConsumer<JsonObject> creditConsumer;
+  private long credits;
+  private boolean closed;
+  private boolean connected;
+  private final Deque<Pair<Buffer, DeliveryOptions>> pending = new ArrayDeque<>();
+  private Handler<Throwable> exceptionHandler;
+  private Handler<Void> drainHandler;
+  private Handler<AsyncResult<Void>> endHandler;
+
+  /**
+   * Create a new write stream
+   * @param vertx the Vert.x instance
+   * @param address the address of the read stream
+   */
+  public EventBusWriteStream(Vertx vertx, String address) {
+    this.vertx = vertx;
+    this.address = address;
+    creditConsumer = vertx.eventBus().localConsumer(
+        getCreditAddress(address), this::onCredits);
+  }
+
+  /**
+   * Get the address where the read stream sends credits to
+   * @param address the address of the read stream
+   * @return the address for credits
+   */
+  static String getCreditAddress(String address) {
+    return address + ".credits";
+  }
+
+  /**
+   * Handle a message from the read stream. The message either grants
+   * credits, tells that the stream has been consumed completely, or that
+   * the read stream has failed.
+   * @param msg the message
+   */
+  private void onCredits(Message<JsonObject> msg) {
+    if (!connected) {
+      connected = true;
+      flush();
+    }
+    if (closed) {
+      return;
+    }
+    JsonObject body = msg.body();
+
+    String error = body.getString("error");
+    if (error != null) {
+      close();
+      ReplyException e = new ReplyException(ReplyFailure.RECIPIENT_FAILURE,
+          body.getInteger("code", 500), error);
+      if (endHandler != null) {
+        endHandler.handle(Future.failedFuture(e));
+      } else if (exceptionHandler != null) {
+        exceptionHandler.handle(e);
+      }
+      return;
+    }
+
+    if (body.getBoolean("ended", false)) {
+      close();
+      if (endHandler != null) {
+        endHandler.handle(Future.succeededFuture());
+      }
+      return;
+    }
+
+    credits += body.getLong("credits", 0L);
+    if (drainHandler != null && !writeQueueFull()) {
+      drainHandler.handle(null);
+    }
+  }
+
+  /**
+   * Send all messages that have been held back because the read stream
+   * had not registered yet. Unregister the credit consumer if the stream
+   * has been failed in the meantime.
+   */
+  private void flush() {
+    while (!pending.isEmpty()) {
+      Pair<Buffer, DeliveryOptions> p = pending.poll();
+      vertx.eventBus().send(address, p.getLeft(), p.getRight());
+    }
+    if (closed) {
+      creditConsumer.unregister();
+    }
+  }
+
+  /**
+   * Send a message to the read stream or hold it back until the read
+   * stream has registered
+   * @param data the message body
+   * @param options the delivery options
+   */
+  private void send(Buffer data, DeliveryOptions options) {
+    if (connected) {
+      vertx.eventBus().send(address, data, options);
+    } else {
+      pending.add(Pair.of(data, options));
+    }
+  }
+
+  /**
+   * Unregister the credit consumer
+   */
+  private void close() {
+    closed = true;
+    creditConsumer.unregister();
+  }
+
+  @Override
+  public EventBusWriteStream exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public EventBusWriteStream write(Buffer data) {
+    if (!closed) {
+      credits--;
+      send(data, new DeliveryOptions());
+    }
+    return this;
+  }
+
+  @Override
+  public void end() {
+    end((Handler<AsyncResult<Void>>)null);
+  }
+
+  /**
+   * Tell the read stream that there is no more data
+   * @param handler will be called when the read stream has consumed
+   * all buffers or when it has failed (may be <code>null</code>)
+   */
+  public void end(Handler<AsyncResult<Void>> handler) {
+    if (closed) {
+      if (handler != null) {
+        handler.handle(Future.failedFuture("Stream has already been closed"));
+      }
+      return;
+    }
+    endHandler = handler;
+    send(Buffer.buffer(), new DeliveryOptions()
+      .addHeader(HEADER_ACTION, ACTION_END));
+  }
+
+  /**
+   * Tell the read stream that the data could not be read completely
+   * (e.g. because the client has closed the connection). Close the stream.
+   * @param t the cause of the failure
+   */
+  public void fail(Throwable t) {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    String msg = t.getMessage() != null ? t.getMessage() : t.toString();
+    send(Buffer.buffer(msg), new DeliveryOptions()
+      .addHeader(HEADER_ACTION, ACTION_ERROR));
+    if (connected) {
+      creditConsumer.unregister();
+    }
+    // otherwise, keep listening for the first credits so the read stream
+    // gets to know about the failure
+  }
+
+  /**
+   * This method does nothing. The size of the write queue is determined
+   * by the credits the read stream grants.
+   * @param maxSize the maximum size (ignored)
+   * @return this stream
+   */
+  @Override
+  public EventBusWriteStream setWriteQueueMaxSize(int maxSize) {
+    return this;
+  }
+
+  @Override
+  public boolean writeQueueFull() {
+    return credits <= 0;
+  }
+
+  @Override
+  public EventBusWriteStream drainHandler(Handler<Void> handler) {
+    this.drainHandler = handler;
+    return this;
+  }
+}
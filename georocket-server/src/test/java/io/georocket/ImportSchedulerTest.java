@@ -0,0 +1,94 @@
+package io.georocket;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import rx.Completable;
+import rx.subjects.PublishSubject;
+
+/**
+ * Tests for {@link ImportScheduler}
+ * @author Michel Kraemer
+ */
+public class ImportSchedulerTest {
+  private static final long LARGE = 1000;
+  private static final long SMALL = 10;
+
+  /**
+   * Imports that have been started. Each import can be finished by
+   * completing its subject.
+   */
+  private final List<String> started = new ArrayList<>();
+  private final List<PublishSubject<Void>> running = new ArrayList<>();
+
+  private void submit(ImportScheduler scheduler, String name, long size) {
+    scheduler.submit(size, () -> {
+      started.add(name);
+      PublishSubject<Void> s = PublishSubject.create();
+      running.add(s);
+      return s.toCompletable();
+    });
+  }
+
+  private void finish(int i) {
+    running.get(i).onCompleted();
+  }
+
+  /**
+   * Check if the number of parallel imports is limited
+   */
+  @Test
+  public void maxParallel() {
+    ImportScheduler scheduler = new ImportScheduler(2, LARGE);
+    submit(scheduler, "a", SMALL);
+    submit(scheduler, "b", SMALL);
+    submit(scheduler, "c", SMALL);
+    assertEquals(2, scheduler.getRunning());
+    assertEquals(1, scheduler.getQueued());
+
+    finish(0);
+    assertEquals(2, scheduler.getRunning());
+    assertEquals(0, scheduler.getQueued());
+    assertEquals(3, started.size());
+  }
+
+  /**
+   * Check if small files are not blocked by large ones
+   */
+  @Test
+  public void smallFilesOvertakeLargeOnes() {
+    ImportScheduler scheduler = new ImportScheduler(2, LARGE);
+    submit(scheduler, "large1", LARGE + 1);
+    submit(scheduler, "large2", LARGE + 1);
+    submit(scheduler, "small", SMALL);
+
+    // the second slot must be reserved for small files
+    assertEquals(2, started.size());
+    assertEquals("large1", started.get(0));
+    assertEquals("small", started.get(1));
+
+    finish(1);
+    assertEquals(1, scheduler.getRunning());
+    assertEquals(1, scheduler.getQueued());
+
+    finish(0);
+    assertEquals(3, started.size());
+    assertEquals("large2", started.get(2));
+  }
+
+  /**
+   * Check if a failed import frees its slot
+   */
+  @Test
+  public void failure() {
+    ImportScheduler scheduler = new ImportScheduler(1, LARGE);
+    scheduler.submit(SMALL, () -> Completable.error(new IllegalStateException()));
+    submit(scheduler, "a", SMALL);
+    assertEquals(1, started.size());
+    assertEquals(1, scheduler.getRunning());
+  }
+}
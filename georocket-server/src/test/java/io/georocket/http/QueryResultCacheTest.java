@@ -0,0 +1,94 @@
+package io.georocket.http;
+
+import io.georocket.constants.AddressConstants;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Test {@link QueryResultCache}
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class QueryResultCacheTest {
+  /**
+   * Run the test on a Vert.x test context
+   */
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /**
+   * Test if a result can be retrieved multiple times
+   * @param ctx the current test context
+   */
+  @Test
+  public void get(TestContext ctx) {
+    QueryResultCache c = new QueryResultCache(1024, 1024);
+    Buffer result = Buffer.buffer("RESULT");
+    ctx.assertTrue(c.put("key", c.getGeneration(), result));
+    ctx.assertEquals((long)result.length(), c.getSize());
+    ctx.assertEquals(result, c.get("key"));
+    ctx.assertEquals(result, c.get("key"));
+    ctx.assertNull(c.get("other"));
+  }
+
+  /**
+   * Test if results that are too large are not added
+   * @param ctx the current test context
+   */
+  @Test
+  public void maxEntrySize(TestContext ctx) {
+    QueryResultCache c = new QueryResultCache(1024, 4);
+    ctx.assertFalse(c.put("key", c.getGeneration(), Buffer.buffer("RESULT")));
+    ctx.assertNull(c.get("key"));
+    ctx.assertEquals(0L, c.getSize());
+  }
+
+  /**
+   * Test if the least recently used result is evicted if the cache is full
+   * @param ctx the current test context
+   */
+  @Test
+  public void maxSize(TestContext ctx) {
+    QueryResultCache c = new QueryResultCache(10, 10);
+    long gen = c.getGeneration();
+    ctx.assertTrue(c.put("key1", gen, Buffer.buffer("AAAA")));
+    ctx.assertTrue(c.put("key2", gen, Buffer.buffer("BBBB")));
+    ctx.assertNotNull(c.get("key1"));
+    ctx.assertTrue(c.put("key3", gen, Buffer.buffer("CCCC")));
+    ctx.assertEquals(Buffer.buffer("AAAA"), c.get("key1"));
+    ctx.assertNull(c.get("key2"));
+    ctx.assertEquals(Buffer.buffer("CCCC"), c.get("key3"));
+    ctx.assertEquals(8L, c.getSize());
+  }
+
+  /**
+   * Test if results are invalidated when the index changes
+   * @param ctx the current test context
+   */
+  @Test
+  public void invalidate(TestContext ctx) {
+    QueryResultCache c = new QueryResultCache(1024, 1024);
+    long gen = c.getGeneration();
+    String etag = c.getETag(gen);
+    ctx.assertTrue(c.put("key", gen, Buffer.buffer("RESULT")));
+
+    Async async = ctx.async();
+    rule.vertx().eventBus().publish(AddressConstants.INDEXER_CHANGED, null);
+    rule.vertx().setTimer(50, id -> {
+      ctx.assertNull(c.get("key"));
+      ctx.assertEquals(0L, c.getSize());
+      ctx.assertNotEquals(etag, c.getETag(c.getGeneration()));
+
+      // results of queries started before the change must not be added
+      ctx.assertFalse(c.put("key", gen, Buffer.buffer("RESULT")));
+      ctx.assertTrue(c.put("key", c.getGeneration(), Buffer.buffer("RESULT")));
+      async.complete();
+    });
+  }
+}
@@ -1,10 +1,15 @@
 package io.georocket.http;
 
 import io.georocket.NetUtils;
+import io.georocket.constants.AddressConstants;
 import io.georocket.constants.ConfigConstants;
 import io.georocket.http.mocks.MockIndexer;
+import io.georocket.util.MimeTypeUtils;
+import io.georocket.util.io.EventBusReadStream;
 import io.vertx.core.Handler;
 import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.HttpClientRequest;
@@ -27,8 +32,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import rx.Observable;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Test class for {@link StoreEndpoint}
@@ -159,6 +168,75 @@ public class StoreEndpointTest {
     });
   }
   
+  /**
+   * Tests that a small file without a content type is imported while it is
+   * being received and that the importer gets all data even if it starts
+   * reading after the request has ended
+   * @param context Test context
+   */
+  @Test
+  public void testStreamingImport(TestContext context) {
+    Buffer body = Buffer.buffer("<root><object/></root>");
+    doStreamingImport(context, body, false);
+  }
+
+  /**
+   * Tests that a small compressed file without a content type is imported
+   * while it is being received
+   * @param context Test context
+   * @throws IOException if the file could not be compressed
+   */
+  @Test
+  public void testStreamingImportGzip(TestContext context) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gos = new GZIPOutputStream(baos)) {
+      gos.write("<root><object/></root>".getBytes(StandardCharsets.UTF_8));
+    }
+    doStreamingImport(context, Buffer.buffer(baos.toByteArray()), true);
+  }
+
+  /**
+   * Uploads a file without a content type and simulates an importer that
+   * starts reading the stream only some time after it has been asked to
+   * import the file. Checks if the importer receives the whole file and if
+   * the server accepts the upload.
+   * @param context Test context
+   * @param body the file to upload
+   * @param gzip true if the file is compressed with GZIP
+   */
+  private void doStreamingImport(TestContext context, Buffer body, boolean gzip) {
+    Async async = context.async(2);
+    MessageConsumer<JsonObject> consumer = vertxCore.eventBus().consumer(
+        AddressConstants.IMPORTER_IMPORT);
+    consumer.handler(msg -> {
+      consumer.unregister();
+      context.assertEquals(MimeTypeUtils.XML, msg.body().getString("contentType"));
+      vertxCore.setTimer(200, id -> {
+        EventBusReadStream rs = new EventBusReadStream(vertxCore,
+            msg.body().getString("stream"), 4);
+        Buffer received = Buffer.buffer();
+        rs.handler(received::appendBuffer);
+        rs.endHandler(v -> {
+          context.assertEquals(body, received);
+          async.countDown();
+        });
+      });
+    });
+
+    HttpClient client = createHttpClient();
+    HttpClientRequest request = client.post("/", response -> {
+      context.assertEquals(202, response.statusCode());
+      async.countDown();
+    });
+    if (gzip) {
+      request.putHeader("Content-Encoding", "gzip");
+    }
+    request.exceptionHandler(x -> {
+      context.fail("Exception during import.");
+    });
+    request.end(body);
+  }
+
   private void checkGeoJsonSize(TestContext context, HttpClientResponse response, JsonObject returned, Long expectedSize, boolean checkScrollHeaders, String msg) {
     context.assertEquals(expectedSize, new Long(returned.getJsonArray("geometries").size()), msg == null ? "Response GeoJson had not the expected size!" : msg);
     if (checkScrollHeaders) {
@@ -262,6 +340,7 @@ public class StoreEndpointTest {
     config.put(ConfigConstants.STORAGE_CLASS, "io.georocket.http.mocks.MockStore");
     config.put(ConfigConstants.HOST, ConfigConstants.DEFAULT_HOST);
     config.put(ConfigConstants.PORT, NetUtils.findPort());
+    config.put(ConfigConstants.IMPORTER_STREAMING_ENABLED, true);
   }
 
   private final class HeaderConstants {
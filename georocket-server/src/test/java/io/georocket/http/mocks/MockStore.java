@@ -40,7 +40,7 @@ public class MockStore extends IndexedStore {
   }
 
   @Override
-  protected void doAddChunk(String chunk, String path, String correlationId,
+  protected void doAddChunk(Buffer chunk, String path, String correlationId,
       Handler<AsyncResult<String>> handler) {
     notImplemented(handler);
   }
@@ -56,6 +56,12 @@ public class MockStore extends IndexedStore {
     notImplemented(handler);
   }
 
+  @Override
+  public void add(Buffer chunk, ChunkMeta chunkMeta, String path, IndexMeta indexMeta,
+      Handler<AsyncResult<Void>> handler) {
+    notImplemented(handler);
+  }
+
   private <T> void notImplemented(Handler<AsyncResult<T>> handler) {
     handler.handle(Future.failedFuture("NOT IMPLEMENTED"));
   }
@@ -0,0 +1,105 @@
+package io.georocket.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link AdaptiveBulkController}
+ * @author Michel Kraemer
+ */
+public class AdaptiveBulkControllerTest {
+  private static final long MIN_BYTES = 1000;
+  private static final long MAX_BYTES = 17000;
+  private static final int MAX_CONCURRENCY = 4;
+  private static final long TARGET_LATENCY = 1000;
+
+  /**
+   * Check if bulk size and concurrency grow while the latency stays flat
+   * and if they never exceed their maximum values
+   */
+  @Test
+  public void grow() {
+    AdaptiveBulkController c = new AdaptiveBulkController(MIN_BYTES,
+        MAX_BYTES, MAX_CONCURRENCY, TARGET_LATENCY);
+    assertEquals(1, c.getConcurrency());
+    long bytes = c.getBulkBytes();
+
+    c.onSuccess(c.getBulkBytes(), 100);
+    assertEquals(2, c.getConcurrency());
+    assertTrue(c.getBulkBytes() > bytes);
+
+    for (int i = 0; i < 100; ++i) {
+      c.onSuccess(c.getBulkBytes(), 100);
+    }
+    assertEquals(MAX_CONCURRENCY, c.getConcurrency());
+    assertEquals(MAX_BYTES, c.getBulkBytes());
+  }
+
+  /**
+   * Check if the bulk size does not grow if the bulks are small anyhow
+   */
+  @Test
+  public void smallBulks() {
+    AdaptiveBulkController c = new AdaptiveBulkController(MIN_BYTES,
+        MAX_BYTES, MAX_CONCURRENCY, TARGET_LATENCY);
+    long bytes = c.getBulkBytes();
+    for (int i = 0; i < 10; ++i) {
+      c.onSuccess(10, 100);
+    }
+    assertEquals(bytes, c.getBulkBytes());
+  }
+
+  /**
+   * Check if concurrency does not grow if the latency increases
+   */
+  @Test
+  public void risingLatency() {
+    AdaptiveBulkController c = new AdaptiveBulkController(MIN_BYTES,
+        MAX_BYTES, MAX_CONCURRENCY, TARGET_LATENCY);
+    c.onSuccess(c.getBulkBytes(), 100);
+    assertEquals(2, c.getConcurrency());
+    long latency = 100;
+    for (int i = 0; i < 3; ++i) {
+      latency *= 2;
+      c.onSuccess(c.getBulkBytes(), latency);
+    }
+    assertEquals(2, c.getConcurrency());
+  }
+
+  /**
+   * Check if the bulk size is reduced if a request is too slow
+   */
+  @Test
+  public void slow() {
+    AdaptiveBulkController c = new AdaptiveBulkController(MIN_BYTES,
+        MAX_BYTES, MAX_CONCURRENCY, TARGET_LATENCY);
+    long bytes = c.getBulkBytes();
+    c.onSuccess(bytes, TARGET_LATENCY + 1);
+    assertTrue(c.getBulkBytes() < bytes);
+    assertEquals(1L, (long)c.toJsonObject().getLong("totalSlowRequests"));
+  }
+
+  /**
+   * Check if bulk size and concurrency are reduced on rejections but
+   * never fall below their minimum values
+   */
+  @Test
+  public void rejected() {
+    AdaptiveBulkController c = new AdaptiveBulkController(MIN_BYTES,
+        MAX_BYTES, MAX_CONCURRENCY, TARGET_LATENCY);
+    for (int i = 0; i < 100; ++i) {
+      c.onSuccess(c.getBulkBytes(), 100);
+    }
+    c.onRejected();
+    assertEquals(MAX_CONCURRENCY / 2, c.getConcurrency());
+    assertEquals(MAX_BYTES / 2, c.getBulkBytes());
+
+    for (int i = 0; i < 100; ++i) {
+      c.onRejected();
+    }
+    assertEquals(1, c.getConcurrency());
+    assertEquals(MIN_BYTES, c.getBulkBytes());
+  }
+}
@@ -0,0 +1,150 @@
+package io.georocket.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Tests for {@link AddMessageQueue}
+ * @author Michel Kraemer
+ */
+public class AddMessageQueueTest {
+  /**
+   * Create a queue whose messages are strings and whose size estimator
+   * returns the strings' lengths
+   * @return the queue
+   */
+  private static AddMessageQueue<String> makeQueue() {
+    return new AddMessageQueue<>(String::length);
+  }
+
+  /**
+   * Check if messages are returned in the order they have been added
+   * and if the number of bytes is tracked correctly
+   */
+  @Test
+  public void addPoll() {
+    AddMessageQueue<String> q = makeQueue();
+    assertTrue(q.isEmpty());
+    q.add("a");
+    q.add("bb");
+    q.add("ccc");
+    assertEquals(3, q.size());
+    assertEquals(6, q.getBytes());
+    assertEquals("a", q.peek());
+    assertEquals("a", q.poll());
+    assertEquals("bb", q.poll());
+    assertEquals(3, q.getBytes());
+    assertEquals("ccc", q.poll());
+    assertNull(q.poll());
+    assertTrue(q.isEmpty());
+    assertEquals(0, q.getBytes());
+  }
+
+  /**
+   * Check if retried messages are put back to the head of the queue in
+   * their original order
+   */
+  @Test
+  public void retry() {
+    AddMessageQueue<String> q = makeQueue();
+    q.add("a");
+    q.add("bb");
+    q.add("ccc");
+    List<String> bulk = Arrays.asList(q.poll(), q.poll());
+
+    List<String> exhausted = q.retry(bulk, 5);
+    assertTrue(exhausted.isEmpty());
+    assertEquals(3, q.size());
+    assertEquals(6, q.getBytes());
+    assertEquals(2, q.getRetryingCount());
+    assertEquals("a", q.poll());
+    assertEquals("bb", q.poll());
+    assertEquals("ccc", q.poll());
+
+    q.forget(bulk);
+    assertEquals(0, q.getRetryingCount());
+  }
+
+  /**
+   * Check if a message is not retried more often than allowed
+   */
+  @Test
+  public void maxRetries() {
+    AddMessageQueue<String> q = makeQueue();
+    q.add("a");
+    for (int i = 0; i < 3; ++i) {
+      String msg = q.poll();
+      assertEquals("a", msg);
+      assertTrue(q.retry(Collections.singletonList(msg), 3).isEmpty());
+    }
+
+    String msg = q.poll();
+    List<String> exhausted = q.retry(Collections.singletonList(msg), 3);
+    assertEquals(Collections.singletonList("a"), exhausted);
+    assertTrue(q.isEmpty());
+    assertEquals(0, q.getBytes());
+    assertEquals(0, q.getRetryingCount());
+  }
+
+  /**
+   * Check if an item that Elasticsearch rejected in a bulk response is
+   * re-inserted with the next bulk while the other items are not
+   */
+  @Test
+  public void rejectedBulkItem() {
+    JsonObject bres = new JsonObject()
+      .put("errors", true)
+      .put("items", new JsonArray()
+        .add(new JsonObject().put("index", new JsonObject()
+          .put("_id", "a")
+          .put("status", 201)))
+        .add(new JsonObject().put("index", new JsonObject()
+          .put("_id", "bb")
+          .put("status", 429)
+          .put("error", new JsonObject()
+            .put("type", "es_rejected_execution_exception")
+            .put("reason", "rejected execution"))))
+        .add(new JsonObject().put("index", new JsonObject()
+          .put("_id", "ccc")
+          .put("status", 400)
+          .put("error", new JsonObject()
+            .put("type", "mapper_parsing_exception")
+            .put("reason", "failed to parse")))));
+
+    AddMessageQueue<String> q = makeQueue();
+    q.add("a");
+    q.add("bb");
+    q.add("ccc");
+    q.add("dddd");
+    List<String> bulk = Arrays.asList(q.poll(), q.poll(), q.poll());
+
+    List<String> rejected = new ArrayList<>();
+    JsonArray items = bres.getJsonArray("items");
+    for (int i = 0; i < items.size(); ++i) {
+      JsonObject item = items.getJsonObject(i).getJsonObject("index");
+      if (IndexerVerticle.isRejected(item)) {
+        rejected.add(bulk.get(i));
+      }
+    }
+    assertEquals(Collections.singletonList("bb"), rejected);
+
+    assertTrue(q.retry(rejected, 5).isEmpty());
+    assertEquals(2, q.size());
+    assertEquals(6, q.getBytes());
+    assertEquals("bb", q.poll());
+    assertEquals("dddd", q.poll());
+    assertFalse(q.getRetryingCount() == 0);
+  }
+}
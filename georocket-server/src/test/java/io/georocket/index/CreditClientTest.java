@@ -0,0 +1,175 @@
+package io.georocket.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.georocket.constants.AddressConstants;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.test.fakecluster.FakeClusterManager;
+
+/**
+ * Tests for {@link CreditClient}. Simulates a cluster with two nodes
+ * running in the same process.
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class CreditClientTest {
+  private static final String LOCAL_ADDRESS = "local-indexer";
+  private static final String REMOTE_ADDRESS = "remote-indexer";
+
+  /**
+   * The node the client runs on
+   */
+  private Vertx vertx;
+
+  /**
+   * Another node in the cluster
+   */
+  private Vertx remoteVertx;
+
+  /**
+   * Start two clustered Vert.x instances
+   * @param context the test context
+   */
+  @Before
+  public void setUp(TestContext context) {
+    Async async = context.async();
+    VertxOptions options = new VertxOptions()
+      .setClusterManager(new FakeClusterManager());
+    Vertx.clusteredVertx(options, context.asyncAssertSuccess(v1 -> {
+      vertx = v1;
+      VertxOptions options2 = new VertxOptions()
+        .setClusterManager(new FakeClusterManager());
+      Vertx.clusteredVertx(options2, context.asyncAssertSuccess(v2 -> {
+        remoteVertx = v2;
+        async.complete();
+      }));
+    }));
+  }
+
+  /**
+   * Stop the Vert.x instances
+   * @param context the test context
+   */
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+    remoteVertx.close(context.asyncAssertSuccess());
+    FakeClusterManager.reset();
+  }
+
+  /**
+   * Register a fake indexer granting credits
+   * @param vertx the node the indexer should run on
+   * @param requestAddress the address where the indexer receives requests
+   * @param chunks the number of chunks the indexer grants
+   * @param address the address chunks should be sent to
+   * @param context the test context
+   */
+  private static void registerIndexer(Vertx vertx, String requestAddress,
+      long chunks, String address, TestContext context) {
+    Async registered = context.async();
+    vertx.eventBus().<JsonObject>consumer(requestAddress, msg ->
+        msg.reply(new JsonObject()
+          .put("chunks", chunks)
+          .put("bytes", chunks * 1000)
+          .put("address", address)
+          .put("returnAddress", address + ".return")))
+      .completionHandler(context.asyncAssertSuccess(v -> registered.complete()));
+    registered.await();
+  }
+
+  /**
+   * Check if credits from the local indexer are preferred
+   * @param context the test context
+   */
+  @Test
+  public void preferLocal(TestContext context) {
+    registerIndexer(vertx, AddressConstants.INDEXER_CREDITS_REQUEST,
+        10, LOCAL_ADDRESS, context);
+    registerIndexer(remoteVertx, AddressConstants.INDEXER_CREDITS_REQUEST_REMOTE,
+        10, REMOTE_ADDRESS, context);
+
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      CreditClient client = new CreditClient(vertx, true);
+      client.acquire("a", 100, address -> {
+        context.assertEquals(LOCAL_ADDRESS, address);
+        async.complete();
+      });
+    });
+  }
+
+  /**
+   * Check if credits are requested from other nodes if the local indexer
+   * is busy
+   * @param context the test context
+   */
+  @Test
+  public void remoteIfLocalBusy(TestContext context) {
+    registerIndexer(vertx, AddressConstants.INDEXER_CREDITS_REQUEST,
+        0, LOCAL_ADDRESS, context);
+    registerIndexer(remoteVertx, AddressConstants.INDEXER_CREDITS_REQUEST_REMOTE,
+        10, REMOTE_ADDRESS, context);
+
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      CreditClient client = new CreditClient(vertx, true);
+      client.acquire("a", 100, address -> {
+        context.assertEquals(REMOTE_ADDRESS, address);
+        async.complete();
+      });
+    });
+  }
+
+  /**
+   * Check if credits are not requested from other nodes if remote indexing
+   * is disabled (e.g. because the store is not shared)
+   * @param context the test context
+   */
+  @Test
+  public void noRemoteIfDisabled(TestContext context) {
+    registerIndexer(vertx, AddressConstants.INDEXER_CREDITS_REQUEST,
+        0, LOCAL_ADDRESS, context);
+    Async registered = context.async();
+    remoteVertx.eventBus().consumer(
+        AddressConstants.INDEXER_CREDITS_REQUEST_REMOTE, msg ->
+            context.fail("Remote indexer must not be asked for credits"))
+      .completionHandler(context.asyncAssertSuccess(v -> registered.complete()));
+    registered.await();
+
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      CreditClient client = new CreditClient(vertx, false);
+      client.acquire("a", 100, address ->
+          context.fail("Busy indexer must not grant credits"));
+      vertx.setTimer(500, id -> async.complete());
+    });
+  }
+
+  /**
+   * Check if chunks are sent to a remote indexer if there is no local one
+   * @param context the test context
+   */
+  @Test
+  public void noLocalIndexer(TestContext context) {
+    registerIndexer(remoteVertx, AddressConstants.INDEXER_CREDITS_REQUEST_REMOTE,
+        10, REMOTE_ADDRESS, context);
+
+    Async async = context.async();
+    vertx.runOnContext(v -> {
+      CreditClient client = new CreditClient(vertx, true);
+      client.acquire("a", 100, address -> {
+        context.assertEquals(REMOTE_ADDRESS, address);
+        async.complete();
+      });
+    });
+  }
+}
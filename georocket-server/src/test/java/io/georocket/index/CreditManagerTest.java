@@ -0,0 +1,115 @@
+package io.georocket.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CreditManager}
+ * @author Michel Kraemer
+ */
+public class CreditManagerTest {
+  /**
+   * Check if credits are granted up to the maximum values
+   */
+  @Test
+  public void limits() {
+    CreditManager m = new CreditManager(10, 1000);
+    assertArrayEquals(new long[] { 5, 500 }, m.request("A", 5, 500, 100));
+    assertArrayEquals(new long[] { 5, 500 }, m.request("A", 100, 1000, 100));
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 1, 10, 10));
+    assertEquals(10, m.getOutstandingChunks());
+    assertEquals(1000, m.getOutstandingBytes());
+
+    m.release("A", 1, 100);
+    assertArrayEquals(new long[] { 1, 100 }, m.request("A", 100, 1000, 100));
+  }
+
+  /**
+   * Check if no credits are granted if the caller needs more bytes than
+   * available
+   */
+  @Test
+  public void minBytes() {
+    CreditManager m = new CreditManager(10, 1000);
+    assertArrayEquals(new long[] { 1, 900 }, m.request("A", 1, 900, 900));
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 1, 200, 200));
+  }
+
+  /**
+   * Check if a chunk larger than the maximum number of bytes is granted
+   * as soon as nothing else is outstanding
+   */
+  @Test
+  public void largeChunk() {
+    CreditManager m = new CreditManager(10, 1000);
+    assertArrayEquals(new long[] { 1, 100 }, m.request("A", 1, 100, 100));
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 1, 5000, 5000));
+    m.release("A", 1, 100);
+    assertEquals(0, m.getActiveKeys());
+    assertArrayEquals(new long[] { 1, 5000 }, m.request("A", 1, 5000, 5000));
+  }
+
+  /**
+   * Check if multiple keys get a fair share
+   */
+  @Test
+  public void fairShare() {
+    CreditManager m = new CreditManager(10, 1000);
+    assertArrayEquals(new long[] { 5, 500 }, m.request("A", 5, 500, 10));
+    assertArrayEquals(new long[] { 5, 500 }, m.request("B", 100, 1000, 10));
+    assertEquals(2, m.getActiveKeys());
+
+    // A has used its share and B has used the rest
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 1, 10, 10));
+
+    m.release("B", 5, 500);
+    assertEquals(1, m.getActiveKeys());
+
+    // A may not get more than half of the credits while B is active
+    m.request("B", 1, 10, 10);
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 1, 10, 10));
+  }
+
+  /**
+   * Check if a key that requests credits while another one holds all of
+   * them gets its share as soon as credits are released
+   */
+  @Test
+  public void fairShareWaiting() {
+    long[] now = new long[] { 0 };
+    CreditManager m = new CreditManager(10, 1000, () -> now[0]);
+    assertArrayEquals(new long[] { 10, 1000 }, m.request("A", 100, 1000, 10));
+    assertArrayEquals(new long[] { 0, 0 }, m.request("B", 100, 1000, 10));
+
+    // A has used more than its share now that B is waiting
+    m.release("A", 2, 200);
+    now[0] += 100;
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 100, 1000, 10));
+    assertArrayEquals(new long[] { 2, 200 }, m.request("B", 100, 1000, 10));
+
+    // B gets the rest of its share as soon as A releases more credits
+    m.release("A", 5, 500);
+    assertArrayEquals(new long[] { 3, 300 }, m.request("B", 100, 1000, 10));
+    assertArrayEquals(new long[] { 0, 0 }, m.request("B", 100, 1000, 10));
+    assertArrayEquals(new long[] { 2, 200 }, m.request("A", 100, 1000, 10));
+  }
+
+  /**
+   * Check if a key that has stopped requesting credits does not count as
+   * waiting anymore
+   */
+  @Test
+  public void waitingTimeout() {
+    long[] now = new long[] { 0 };
+    CreditManager m = new CreditManager(10, 1000, () -> now[0]);
+    assertArrayEquals(new long[] { 10, 1000 }, m.request("A", 100, 1000, 10));
+    assertArrayEquals(new long[] { 0, 0 }, m.request("B", 100, 1000, 10));
+    m.release("A", 2, 200);
+    assertArrayEquals(new long[] { 0, 0 }, m.request("A", 100, 1000, 10));
+
+    now[0] += 60000;
+    assertArrayEquals(new long[] { 2, 200 }, m.request("A", 100, 1000, 10));
+  }
+}
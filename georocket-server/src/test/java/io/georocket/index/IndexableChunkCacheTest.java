@@ -119,4 +119,162 @@ public class IndexableChunkCacheTest {
       async.complete();
     });
   }
+
+  /**
+   * Create a chunk with the given size
+   * @param size the size
+   * @param suffix a character to append to make the chunk unique
+   * @return the chunk
+   */
+  private static Buffer makeChunk(int size, char suffix) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < size - 1; ++i) {
+      sb.append((char)('a' + (i % 26)));
+    }
+    sb.append(suffix);
+    return Buffer.buffer(sb.toString());
+  }
+
+  /**
+   * Test if the cache works if chunks are kept on the heap
+   * @param ctx the current test context
+   */
+  @Test
+  public void onHeap(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 60, false);
+    Buffer chunk = Buffer.buffer("CHUNK");
+    ctx.assertTrue(c.put("path", chunk));
+    ctx.assertEquals((long)chunk.length(), c.getSize());
+    ctx.assertEquals(chunk, c.get("path"));
+    ctx.assertEquals(0L, c.getSize());
+  }
+
+  /**
+   * Test if a producer waits until the indexer has requested enough chunks
+   * @param ctx the current test context
+   */
+  @Test
+  public void waitForSpace(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 60);
+    Buffer chunk1 = makeChunk(1024, '1');
+    Buffer chunk2 = makeChunk(1024, '2');
+    c.put("path1", chunk1);
+
+    Async async = ctx.async();
+    boolean[] added = new boolean[] { false };
+    c.put("path2", chunk2, r -> {
+      ctx.assertTrue(r);
+      added[0] = true;
+      ctx.assertEquals(chunk2, c.get("path2"));
+      async.complete();
+    });
+    ctx.assertFalse(added[0]);
+    ctx.assertEquals(1L, c.getStats().getLong("waitingProducers"));
+
+    ctx.assertEquals(chunk1, c.get("path1"));
+  }
+
+  /**
+   * Test if a producer waits until chunks have expired
+   * @param ctx the current test context
+   */
+  @Test
+  public void waitForExpiry(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 1);
+    Buffer chunk1 = makeChunk(1024, '1');
+    Buffer chunk2 = makeChunk(1024, '2');
+    c.put("path1", chunk1);
+
+    Async async = ctx.async();
+    long start = System.currentTimeMillis();
+    c.put("path2", chunk2, r -> {
+      ctx.assertTrue(r);
+      ctx.assertTrue(System.currentTimeMillis() - start >= 900);
+      ctx.assertEquals(1L, c.getStats().getLong("expirations"));
+      ctx.assertEquals(chunk2, c.get("path2"));
+      async.complete();
+    });
+  }
+
+  /**
+   * Test if a producer does not wait for a chunk that is larger than the
+   * cache's maximum size
+   * @param ctx the current test context
+   */
+  @Test
+  public void tooLarge(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 60);
+    Async async = ctx.async();
+    c.put("path", makeChunk(1025, '1'), r -> {
+      ctx.assertFalse(r);
+      ctx.assertEquals(0L, c.getNumberOfChunks());
+      ctx.assertEquals(1L, c.getStats().getLong("rejections"));
+      async.complete();
+    });
+  }
+
+  /**
+   * Test if hits and misses are counted
+   * @param ctx the current test context
+   */
+  @Test
+  public void stats(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 60);
+    c.put("path", Buffer.buffer("CHUNK"));
+    ctx.assertEquals(5L, c.getStats().getLong("size"));
+    c.get("path");
+    c.get("path");
+    c.get("other");
+    ctx.assertEquals(1L, c.getStats().getLong("hits"));
+    ctx.assertEquals(2L, c.getStats().getLong("misses"));
+    ctx.assertEquals(0L, c.getStats().getLong("size"));
+  }
+
+  /**
+   * Test if a chunk bound by credits does not expire
+   * @param ctx the current test context
+   */
+  @Test
+  public void pinned(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 1);
+    Buffer chunk = Buffer.buffer("CHUNK");
+    Async async = ctx.async();
+    c.put("path", chunk, true, r -> {
+      ctx.assertTrue(r);
+      ctx.assertEquals(1L, c.getStats().getLong("pinnedChunks"));
+      rule.vertx().setTimer(1100, l -> {
+        ctx.assertEquals(chunk, c.get("path"));
+        ctx.assertEquals(0L, c.getStats().getLong("expirations"));
+        ctx.assertEquals(0L, c.getSize());
+        ctx.assertEquals(0L, c.getNumberOfChunks());
+        async.complete();
+      });
+    });
+  }
+
+  /**
+   * Test if removing a chunk that has never been requested makes room for
+   * waiting producers
+   * @param ctx the current test context
+   */
+  @Test
+  public void remove(TestContext ctx) {
+    IndexableChunkCache c = new IndexableChunkCache(1024, 60);
+    Buffer chunk1 = makeChunk(1024, '1');
+    Buffer chunk2 = makeChunk(1024, '2');
+
+    Async async = ctx.async();
+    c.put("path1", chunk1, true, r1 -> {
+      ctx.assertTrue(r1);
+      c.put("path2", chunk2, true, r2 -> {
+        ctx.assertTrue(r2);
+        ctx.assertNull(c.get("path1"));
+        ctx.assertEquals(chunk2, c.get("path2"));
+        async.complete();
+      });
+      ctx.assertEquals(1L, c.getStats().getLong("waitingProducers"));
+      c.remove("path1");
+      c.remove("unknown");
+    });
+  }
 }
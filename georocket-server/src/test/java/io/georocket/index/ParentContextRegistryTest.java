@@ -0,0 +1,154 @@
+package io.georocket.index;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+import io.georocket.index.elasticsearch.ElasticsearchClient;
+import io.georocket.index.elasticsearch.RemoteElasticsearchClient;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+/**
+ * Tests for {@link ParentContextRegistry}
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class ParentContextRegistryTest {
+  private static final String PARENTS_INDEX = "parentsindex";
+  private static final String PARENTS_TYPE = "parents";
+  private static final String CHUNKS_INDEX = "chunksindex";
+  private static final String CHUNKS_TYPE = "chunks";
+
+  private ElasticsearchClient parentsClient;
+  private ElasticsearchClient chunksClient;
+
+  /**
+   * Run the test on a Vert.x test context
+   */
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /**
+   * Run a mock HTTP server
+   */
+  @Rule
+  public WireMockRule wireMockRule = new WireMockRule(options().dynamicPort(), false);
+
+  /**
+   * Create the Elasticsearch clients
+   */
+  @Before
+  public void setUp() {
+    List<URI> hosts = Collections.singletonList(URI.create("http://localhost:"
+        + wireMockRule.port()));
+    parentsClient = new RemoteElasticsearchClient(hosts, PARENTS_INDEX, null,
+        false, rule.vertx());
+    chunksClient = new RemoteElasticsearchClient(hosts, CHUNKS_INDEX, null,
+        false, rule.vertx());
+  }
+
+  /**
+   * Close the Elasticsearch clients
+   */
+  @After
+  public void tearDown() {
+    parentsClient.close();
+    chunksClient.close();
+  }
+
+  /**
+   * Make a search response containing hits with the given IDs
+   * @param scrollId the scroll ID to include in the response
+   * @param ids the IDs
+   * @return the response
+   */
+  private static JsonObject makeHits(String scrollId, String... ids) {
+    JsonArray hits = new JsonArray();
+    for (String id : ids) {
+      hits.add(new JsonObject().put("_id", id));
+    }
+    return new JsonObject()
+      .put("_scroll_id", scrollId)
+      .put("hits", new JsonObject()
+        .put("total", ids.length)
+        .put("hits", hits));
+  }
+
+  /**
+   * Test if a sweep only deletes parents that are not referenced by
+   * any chunk
+   * @param context the test context
+   */
+  @Test
+  public void sweep(TestContext context) {
+    wireMockRule.stubFor(get(urlEqualTo("/" + PARENTS_INDEX + "/" +
+        PARENTS_TYPE + "/_search?scroll=1m"))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody(makeHits("scroll1", "A", "B").encode())));
+
+    wireMockRule.stubFor(get(urlEqualTo("/_search/scroll"))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody(makeHits("scroll1").encode())));
+
+    // only A is still referenced by a chunk
+    wireMockRule.stubFor(get(urlEqualTo("/" + CHUNKS_INDEX + "/" +
+        CHUNKS_TYPE + "/_search"))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody(new JsonObject()
+          .put("hits", new JsonObject().put("total", 10))
+          .put("aggregations", new JsonObject()
+            .put("parentsIds", new JsonObject()
+              .put("buckets", new JsonArray()
+                .add(new JsonObject()
+                  .put("key", "A")
+                  .put("doc_count", 10)))))
+          .encode())));
+
+    String bulkUrl = "/" + PARENTS_INDEX + "/" + PARENTS_TYPE + "/_bulk";
+    wireMockRule.stubFor(post(urlEqualTo(bulkUrl))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withBody(new JsonObject()
+          .put("errors", false)
+          .put("items", new JsonArray()
+            .add(new JsonObject().put("delete", new JsonObject()
+              .put("_id", "B")
+              .put("status", 200))))
+          .encode())));
+
+    ParentContextRegistry registry = new ParentContextRegistry(parentsClient);
+    Async async = context.async();
+    registry.sweep(chunksClient, CHUNKS_TYPE).subscribe(n -> {
+      context.assertEquals(1L, n);
+      wireMockRule.verify(1, postRequestedFor(urlEqualTo(bulkUrl))
+        .withRequestBody(containing("\"B\"")));
+      wireMockRule.verify(0, postRequestedFor(urlEqualTo(bulkUrl))
+        .withRequestBody(containing("\"A\"")));
+      async.complete();
+    }, context::fail);
+  }
+}
@@ -0,0 +1,122 @@
+package io.georocket.index.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.jooq.lambda.tuple.Tuple;
+import org.jooq.lambda.tuple.Tuple2;
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Tests for {@link BulkRequestEncoder}
+ * @author Michel Kraemer
+ */
+public class BulkRequestEncoderTest {
+  private static List<Tuple2<String, JsonObject>> makeDocuments(int n) {
+    List<Tuple2<String, JsonObject>> documents = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      documents.add(Tuple.tuple("ID" + i, new JsonObject()
+          .put("name", "Elvis " + i)
+          .put("tags", new JsonArray().add("a").add(i))));
+    }
+    return documents;
+  }
+
+  private static String expectedBody(List<Tuple2<String, JsonObject>> documents) {
+    StringBuilder sb = new StringBuilder();
+    for (Tuple2<String, JsonObject> d : documents) {
+      sb.append("{\"index\":{\"_id\":\"").append(d.v1).append("\"}}\n");
+      sb.append(d.v2.encode()).append("\n");
+    }
+    return sb.toString();
+  }
+
+  private static Buffer concat(Iterator<Buffer> chunks) {
+    Buffer result = Buffer.buffer();
+    while (chunks.hasNext()) {
+      result.appendBuffer(chunks.next());
+    }
+    return result;
+  }
+
+  /**
+   * Encode a small body that fits into one chunk
+   */
+  @Test
+  public void singleChunk() {
+    List<Tuple2<String, JsonObject>> documents = makeDocuments(2);
+    Iterator<Buffer> chunks = BulkRequestEncoder.index(documents).encode(false);
+    assertTrue(chunks.hasNext());
+    Buffer chunk = chunks.next();
+    assertFalse(chunks.hasNext());
+    assertEquals(expectedBody(documents), chunk.toString());
+  }
+
+  /**
+   * Encode a body consisting of multiple chunks
+   */
+  @Test
+  public void multipleChunks() {
+    List<Tuple2<String, JsonObject>> documents = makeDocuments(200);
+    BulkRequestEncoder encoder = BulkRequestEncoder.index(documents, 256);
+    Iterator<Buffer> chunks = encoder.encode(false);
+    int n = 0;
+    Buffer body = Buffer.buffer();
+    while (chunks.hasNext()) {
+      body.appendBuffer(chunks.next());
+      ++n;
+    }
+    assertTrue(n > 1);
+    assertEquals(expectedBody(documents), body.toString());
+
+    // the encoder must be reusable
+    assertEquals(body, concat(encoder.encode(false)));
+  }
+
+  /**
+   * Encode a body and compress it
+   * @throws IOException if the body could not be decompressed
+   */
+  @Test
+  public void compressed() throws IOException {
+    List<Tuple2<String, JsonObject>> documents = makeDocuments(200);
+    Buffer compressed = concat(BulkRequestEncoder.index(documents, 256).encode(true));
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPInputStream gis = new GZIPInputStream(
+        new ByteArrayInputStream(compressed.getBytes()))) {
+      byte[] buf = new byte[1024];
+      int read;
+      while ((read = gis.read(buf)) > 0) {
+        baos.write(buf, 0, read);
+      }
+    }
+    assertEquals(expectedBody(documents),
+        new String(baos.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Encode a body that deletes documents
+   */
+  @Test
+  public void delete() {
+    Iterator<Buffer> chunks = BulkRequestEncoder.delete(
+        new JsonArray().add("A").add("B")).encode(false);
+    assertEquals("{\"delete\":{\"_id\":\"A\"}}\n{\"delete\":{\"_id\":\"B\"}}\n",
+        concat(chunks).toString());
+  }
+}
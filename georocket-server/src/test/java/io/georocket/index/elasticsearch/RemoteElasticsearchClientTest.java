@@ -283,6 +283,37 @@ public class RemoteElasticsearchClientTest {
     }, context::fail);
   }
   
+  /**
+   * Test if the client can get multiple documents in one request
+   * @param context the test context
+   */
+  @Test
+  public void multiGet(TestContext context) {
+    String url = "/" + INDEX + "/" + TYPE + "/_mget";
+
+    JsonObject expected = new JsonObject()
+        .put("docs", new JsonArray()
+          .add(new JsonObject()
+            .put("_id", "A")
+            .put("found", true)
+            .put("_source", new JsonObject().put("name", "Elvis")))
+          .add(new JsonObject()
+            .put("_id", "B")
+            .put("found", false)));
+
+    wireMockRule1.stubFor(get(urlEqualTo(url))
+        .withRequestBody(equalToJson("{\"ids\":[\"A\",\"B\"]}"))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody(expected.encode())));
+
+    Async async = context.async();
+    client.multiGet(TYPE, new JsonArray().add("A").add("B")).subscribe(res -> {
+      context.assertEquals(expected, res);
+      async.complete();
+    }, context::fail);
+  }
+  
   /**
    * Check if {@link ElasticsearchClient#isRunning()} returns false
    * if it is not running
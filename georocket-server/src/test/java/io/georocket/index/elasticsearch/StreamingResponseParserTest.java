@@ -0,0 +1,170 @@
+package io.georocket.index.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Tests for {@link StreamingResponseParser}
+ * @author Michel Kraemer
+ */
+public class StreamingResponseParserTest {
+  private static final JsonObject HIT1 = new JsonObject()
+      .put("_index", "georocket")
+      .put("_id", "A")
+      .put("_score", 1.0)
+      .put("_source", new JsonObject()
+          .put("chunkMeta", new JsonObject()
+              .put("start", 0)
+              .put("end", 10)
+              .put("parents", new JsonArray().add(new JsonObject()
+                  .put("localName", "root")))));
+
+  private static final JsonObject HIT2 = new JsonObject()
+      .put("_index", "georocket")
+      .put("_id", "B")
+      .putNull("_score")
+      .put("_source", new JsonObject()
+          .put("chunkMeta", new JsonObject()
+              .put("start", 10)
+              .put("end", 20)
+              .put("tags", new JsonArray().add("a").add(true))));
+
+  private static final JsonObject SEARCH_RESPONSE = new JsonObject()
+      .put("_scroll_id", "SCROLL")
+      .put("took", 5)
+      .put("timed_out", false)
+      .put("hits", new JsonObject()
+          .put("total", 2)
+          .put("max_score", 1.0)
+          .put("hits", new JsonArray().add(HIT1).add(HIT2)));
+
+  /**
+   * Feed a response into a parser in chunks of the given size
+   * @param parser the parser
+   * @param response the response
+   * @param chunkSize the chunk size
+   * @return the parsed result
+   * @throws IOException if the response could not be parsed
+   */
+  private static JsonObject parse(StreamingResponseParser parser,
+      JsonObject response, int chunkSize) throws IOException {
+    Buffer buf = response.toBuffer();
+    for (int i = 0; i < buf.length(); i += chunkSize) {
+      parser.feed(buf.getBuffer(i, Math.min(buf.length(), i + chunkSize)));
+    }
+    return parser.end();
+  }
+
+  /**
+   * Check if a response can be parsed completely
+   * @throws IOException if the test fails
+   */
+  @Test
+  public void all() throws IOException {
+    for (int chunkSize : new int[] { 1, 7, 1024 }) {
+      StreamingResponseParser parser = new StreamingResponseParser();
+      assertEquals(SEARCH_RESPONSE, parse(parser, SEARCH_RESPONSE, chunkSize));
+    }
+  }
+
+  /**
+   * Check if an empty response results in <code>null</code>
+   * @throws IOException if the test fails
+   */
+  @Test
+  public void empty() throws IOException {
+    assertNull(new StreamingResponseParser().end());
+  }
+
+  /**
+   * Check if items are passed to a handler and if unneeded fields are skipped
+   * @throws IOException if the test fails
+   */
+  @Test
+  public void items() throws IOException {
+    for (int chunkSize : new int[] { 1, 7, 1024 }) {
+      List<JsonObject> items = new ArrayList<>();
+      StreamingResponseParser parser = new StreamingResponseParser("hits.hits",
+          Arrays.asList("_id", "_source"), items::add);
+      JsonObject result = parse(parser, SEARCH_RESPONSE, chunkSize);
+
+      JsonObject expectedResult = SEARCH_RESPONSE.copy();
+      expectedResult.getJsonObject("hits").remove("hits");
+      assertEquals(expectedResult, result);
+
+      assertEquals(2, parser.getItemCount());
+      assertEquals(Arrays.asList(
+          new JsonObject().put("_id", "A").put("_source", HIT1.getJsonObject("_source")),
+          new JsonObject().put("_id", "B").put("_source", HIT2.getJsonObject("_source"))),
+          items);
+    }
+  }
+
+  /**
+   * Check if nested item fields can be selected and if items are collected
+   * in the result if there is no handler
+   * @throws IOException if the test fails
+   */
+  @Test
+  public void collectNestedFields() throws IOException {
+    JsonObject error = new JsonObject()
+        .put("type", "mapper_parsing_exception")
+        .put("reason", "failed to parse");
+    JsonObject response = new JsonObject()
+        .put("took", 30)
+        .put("errors", true)
+        .put("items", new JsonArray()
+            .add(new JsonObject().put("index", new JsonObject()
+                .put("_index", "georocket")
+                .put("_id", "A")
+                .put("_version", 1)
+                .put("_shards", new JsonObject().put("total", 2))
+                .put("status", 201)))
+            .add(new JsonObject().put("index", new JsonObject()
+                .put("_index", "georocket")
+                .put("_id", "B")
+                .put("status", 400)
+                .put("error", error))));
+
+    StreamingResponseParser parser = new StreamingResponseParser("items",
+        Arrays.asList("index._id", "index.status", "index.error"), null);
+    JsonObject result = parse(parser, response, 5);
+
+    JsonObject expected = new JsonObject()
+        .put("took", 30)
+        .put("errors", true)
+        .put("items", new JsonArray()
+            .add(new JsonObject().put("index", new JsonObject()
+                .put("_id", "A")
+                .put("status", 201)))
+            .add(new JsonObject().put("index", new JsonObject()
+                .put("_id", "B")
+                .put("status", 400)
+                .put("error", error))));
+    assertEquals(expected, result);
+    assertEquals(2, parser.getItemCount());
+  }
+
+  /**
+   * Check if an incomplete response is detected
+   * @throws IOException if the test fails
+   */
+  @Test(expected = IOException.class)
+  public void incomplete() throws IOException {
+    Buffer buf = SEARCH_RESPONSE.toBuffer();
+    StreamingResponseParser parser = new StreamingResponseParser();
+    parser.feed(buf.getBuffer(0, buf.length() - 3));
+    parser.end();
+  }
+}
@@ -0,0 +1,154 @@
+package io.georocket.input.geojson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.georocket.input.SplitPlan;
+import io.georocket.input.SplitPlan.Range;
+import io.georocket.input.Splitter.Result;
+import io.georocket.storage.JsonChunkMeta;
+import io.georocket.util.JsonParserTransformer;
+import io.georocket.util.StringWindow;
+import io.vertx.core.buffer.Buffer;
+import rx.Observable;
+
+/**
+ * Test for {@link GeoJsonBoundaryScanner}
+ * @author Michel Kraemer
+ */
+public class GeoJsonBoundaryScannerTest {
+  private static final String FEATURE1 = "{\"type\":\"Feature\","
+      + "\"properties\":{\"name\":\"}]\\\"{[\"},\"geometry\":null}";
+  private static final String FEATURE2 = "{ \"type\": \"Feature\", "
+      + "\"properties\": {\"list\": [{\"a\": 1}]}, "
+      + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]} }";
+  private static final String FEATURE3 = "{\"type\":\"Feature\","
+      + "\"properties\":{\"name\":\"\u00e4\u00f6\u00fc\"},\"geometry\":null}";
+
+  /**
+   * Split the given buffers with a {@link GeoJsonSplitter}
+   * @param buffers the buffers
+   * @return the chunks created by the splitter
+   */
+  private static List<Result<JsonChunkMeta>> split(Observable<Buffer> buffers) {
+    StringWindow window = new StringWindow();
+    GeoJsonSplitter splitter = new GeoJsonSplitter(window);
+    return buffers
+      .doOnNext(window::append)
+      .compose(new JsonParserTransformer())
+      .flatMap(splitter::onEventObservable)
+      .toList()
+      .toBlocking()
+      .single();
+  }
+
+  /**
+   * Scan the given JSON string
+   * @param json the JSON string
+   * @return the plan
+   * @throws Exception if the string could not be scanned
+   */
+  private static SplitPlan scan(String json) throws Exception {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    return new GeoJsonBoundaryScanner(1).scan(Channels.newChannel(
+        new ByteArrayInputStream(bytes)));
+  }
+
+  /**
+   * Split the given JSON string in parallel according to a plan and compare
+   * the result to the chunks created when splitting the whole string
+   * @param json the JSON string
+   * @param plan the plan
+   */
+  private static void assertSameChunks(String json, SplitPlan plan) {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    List<Result<JsonChunkMeta>> expected = split(Observable.just(
+        Buffer.buffer(bytes)));
+
+    List<Result<JsonChunkMeta>> actual = new ArrayList<>();
+    for (Range r : plan.getRanges()) {
+      byte[] data = new byte[r.getLength()];
+      System.arraycopy(bytes, (int)r.getStart(), data, 0, data.length);
+      actual.addAll(split(plan.wrap(data)));
+    }
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(expected.get(i).getChunk().toString(),
+          actual.get(i).getChunk().toString());
+      assertEquals(expected.get(i).getMeta(), actual.get(i).getMeta());
+    }
+  }
+
+  /**
+   * Test if a feature collection is split into ranges that yield the
+   * same chunks
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void featureCollection() throws Exception {
+    String json = "{\"type\": \"FeatureCollection\", \"name\": \"test\", "
+        + "\"features\": [\n" + FEATURE1 + ",\n" + FEATURE2 + " , "
+        + FEATURE3 + "\n], \"bbox\": [1, 2, 3, 4]}";
+    SplitPlan plan = scan(json);
+    assertNotNull(plan);
+    assertEquals(3, plan.getRanges().size());
+    assertSameChunks(json, plan);
+  }
+
+  /**
+   * Test if a geometry collection is split into ranges that yield the
+   * same chunks
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void geometryCollection() throws Exception {
+    String json = "{\"type\": \"GeometryCollection\", \"geometries\": ["
+        + "{\"type\": \"Point\", \"coordinates\": [1, 2]},"
+        + "{\"type\": \"Point\", \"coordinates\": [3, 4]}]}";
+    SplitPlan plan = scan(json);
+    assertNotNull(plan);
+    assertEquals(2, plan.getRanges().size());
+    assertSameChunks(json, plan);
+  }
+
+  /**
+   * Test if a single feature is not split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void singleFeature() throws Exception {
+    assertNull(scan(FEATURE2));
+  }
+
+  /**
+   * Test if a file is not split if chunks would be created from
+   * another array too
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void nestedFeatures() throws Exception {
+    String json = "{\"type\": \"FeatureCollection\", \"features\": ["
+        + FEATURE1 + "," + FEATURE3 + "], \"extra\": {\"features\": ["
+        + FEATURE2 + "]}}";
+    assertNull(scan(json));
+  }
+
+  /**
+   * Test if a top-level array is not split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void array() throws Exception {
+    assertNull(scan("[" + FEATURE1 + "," + FEATURE3 + "]"));
+  }
+}
@@ -6,14 +6,25 @@ import static org.junit.Assert.assertNull;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.jooq.lambda.Seq;
 import org.jooq.lambda.tuple.Tuple;
 import org.jooq.lambda.tuple.Tuple2;
 import org.junit.Test;
 
+import io.georocket.index.ChunkIndexer;
+import io.georocket.index.IndexerFactory;
+import io.georocket.index.geojson.GeoJsonGenericAttributeIndexerFactory;
+import io.georocket.index.xml.JsonIndexerFactory;
+import io.georocket.input.Splitter.Result;
 import io.georocket.storage.GeoJsonChunkMeta;
+import io.georocket.storage.JsonChunkMeta;
+import io.georocket.util.FilteredServiceLoader;
+import io.georocket.util.JsonStreamEvent;
 import io.georocket.util.JsonParserTransformer;
 import io.georocket.util.StringWindow;
 import io.vertx.core.buffer.Buffer;
@@ -137,6 +148,93 @@ public class GeoJsonSplitterTest {
     assertEquals("Darmstadtium", o2.getJsonObject("properties").getString("name"));
   }
   
+  /**
+   * Test if a FeatureCollection can be split and indexed in one pass
+   * @throws IOException if the test file could not be read
+   */
+  @Test
+  public void featureCollectionSinglePass() throws IOException {
+    byte[] json = IOUtils.toByteArray(GeoJsonSplitterTest.class.getResource(
+        "featurecollection.json"));
+    StringWindow window = new StringWindow();
+    ChunkIndexer<JsonStreamEvent> chunkIndexer = new ChunkIndexer<>(
+        Collections.singletonList(new GeoJsonGenericAttributeIndexerFactory()));
+    GeoJsonSplitter splitter = new GeoJsonSplitter(window, chunkIndexer);
+    List<Result<JsonChunkMeta>> results = Observable.just(json)
+      .map(Buffer::buffer)
+      .doOnNext(window::append)
+      .compose(new JsonParserTransformer())
+      .flatMap(splitter::onEventObservable)
+      .toList()
+      .toBlocking()
+      .single();
+    assertEquals(2, results.size());
+    
+    Map<String, Object> d1 = results.get(0).getDocument();
+    assertEquals(Collections.singletonMap("name", "Fraunhofer IGD"),
+        d1.get("genAttrs"));
+    Map<String, Object> d2 = results.get(1).getDocument();
+    assertEquals(Collections.singletonMap("name", "Darmstadtium"),
+        d2.get("genAttrs"));
+  }
+  
+  /**
+   * Split a GeoJSON file in single-pass mode using all available JSON
+   * indexers and check that every document equals the one created by
+   * parsing the chunk completely (the way the indexer does if a chunk has
+   * not been indexed while it was being split)
+   * @param file the name of the file to split
+   * @return the number of chunks with a document
+   * @throws IOException if the test file could not be read
+   */
+  private int assertSinglePassEqualsTwoPass(String file) throws IOException {
+    List<JsonIndexerFactory> factories = Seq.seq(
+        FilteredServiceLoader.load(IndexerFactory.class))
+      .filter(f -> f instanceof JsonIndexerFactory)
+      .cast(JsonIndexerFactory.class)
+      .toList();
+    byte[] json = IOUtils.toByteArray(GeoJsonSplitterTest.class.getResource(file));
+    StringWindow window = new StringWindow();
+    GeoJsonSplitter splitter = new GeoJsonSplitter(window,
+        new ChunkIndexer<>(factories));
+    List<Result<JsonChunkMeta>> results = Observable.just(json)
+      .map(Buffer::buffer)
+      .doOnNext(window::append)
+      .compose(new JsonParserTransformer())
+      .flatMap(splitter::onEventObservable)
+      .toList()
+      .toBlocking()
+      .single();
+    
+    int documents = 0;
+    for (Result<JsonChunkMeta> r : results) {
+      if (r.getDocument() == null) {
+        // will be indexed in two passes anyhow
+        continue;
+      }
+      ChunkIndexer<JsonStreamEvent> indexer = new ChunkIndexer<>(factories);
+      Observable.just(r.getChunk())
+        .compose(new JsonParserTransformer())
+        .toBlocking()
+        .forEach(indexer::onEvent);
+      assertEquals(indexer.finish(), r.getDocument());
+      documents++;
+    }
+    return documents;
+  }
+  
+  /**
+   * Test if documents created in single-pass mode equal the ones created
+   * by parsing the chunks completely
+   * @throws IOException if the test files could not be read
+   */
+  @Test
+  public void singlePassEqualsTwoPass() throws IOException {
+    assertEquals(2, assertSinglePassEqualsTwoPass("featurecollection.json"));
+    assertEquals(2, assertSinglePassEqualsTwoPass("featurecollectionext.json"));
+    assertEquals(2, assertSinglePassEqualsTwoPass("geometrycollection.json"));
+  }
+  
   /**
    * Test if a GeometryCollection can be split correctly
    * @throws IOException if the test file could not be read
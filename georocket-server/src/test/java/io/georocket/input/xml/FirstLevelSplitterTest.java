@@ -1,12 +1,18 @@
 package io.georocket.input.xml;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
+import org.jooq.lambda.Seq;
 import org.junit.Test;
 
 import com.fasterxml.aalto.AsyncByteArrayFeeder;
@@ -14,12 +20,19 @@ import com.fasterxml.aalto.AsyncXMLInputFactory;
 import com.fasterxml.aalto.AsyncXMLStreamReader;
 import com.fasterxml.aalto.stax.InputFactoryImpl;
 
+import io.georocket.index.ChunkIndexer;
+import io.georocket.index.IndexerFactory;
+import io.georocket.index.xml.GmlIdIndexerFactory;
+import io.georocket.index.xml.XMLIndexerFactory;
 import io.georocket.input.Splitter.Result;
 import io.georocket.storage.XMLChunkMeta;
+import io.georocket.util.FilteredServiceLoader;
 import io.georocket.util.Window;
 import io.georocket.util.XMLStartElement;
+import io.georocket.util.XMLParserTransformer;
 import io.georocket.util.XMLStreamEvent;
 import io.vertx.core.buffer.Buffer;
+import rx.Observable;
 
 /**
  * Test the {@link FirstLevelSplitter}
@@ -35,6 +48,19 @@ public class FirstLevelSplitterTest {
    * @throws Exception if the XML string could not be parsed
    */
   private List<Result<XMLChunkMeta>> split(String xml) throws Exception {
+    return split(xml, null);
+  }
+  
+  /**
+   * Use the {@link FirstLevelSplitter} and split an XML string
+   * @param xml the XML string
+   * @param chunkIndexer an indexer that should receive all events belonging
+   * to a chunk (may be <code>null</code>)
+   * @return the chunks created by the splitter
+   * @throws Exception if the XML string could not be parsed
+   */
+  private List<Result<XMLChunkMeta>> split(String xml,
+      ChunkIndexer<XMLStreamEvent> chunkIndexer) throws Exception {
     Window window = new Window();
     window.append(Buffer.buffer(xml));
     AsyncXMLInputFactory xmlInputFactory = new InputFactoryImpl();
@@ -42,7 +68,7 @@ public class FirstLevelSplitterTest {
         xmlInputFactory.createAsyncForByteArray();
     byte[] xmlBytes = xml.getBytes(StandardCharsets.UTF_8);
     reader.getInputFeeder().feedInput(xmlBytes, 0, xmlBytes.length);
-    FirstLevelSplitter splitter = new FirstLevelSplitter(window);
+    FirstLevelSplitter splitter = new FirstLevelSplitter(window, chunkIndexer);
     List<Result<XMLChunkMeta>> chunks = new ArrayList<>();
     while (reader.hasNext()) {
       int event = reader.next();
@@ -73,7 +99,7 @@ public class FirstLevelSplitterTest {
     XMLChunkMeta meta = new XMLChunkMeta(Arrays.asList(new XMLStartElement("root")),
         XMLHEADER.length() + 7, xml.length() - 8);
     assertEquals(meta, chunk.getMeta());
-    assertEquals(xml, chunk.getChunk());
+    assertEquals(xml, chunk.getChunk().toString());
   }
   
   /**
@@ -95,8 +121,8 @@ public class FirstLevelSplitterTest {
         XMLHEADER.length() + 7, XMLHEADER.length() + 7 + 34);
     assertEquals(meta1, chunk1.getMeta());
     assertEquals(meta2, chunk2.getMeta());
-    assertEquals(XMLHEADER + "<root>\n<object><child></child></object>\n</root>", chunk1.getChunk());
-    assertEquals(XMLHEADER + "<root>\n<object><child2></child2></object>\n</root>", chunk2.getChunk());
+    assertEquals(XMLHEADER + "<root>\n<object><child></child></object>\n</root>", chunk1.getChunk().toString());
+    assertEquals(XMLHEADER + "<root>\n<object><child2></child2></object>\n</root>", chunk2.getChunk().toString());
   }
   
   /**
@@ -120,8 +146,8 @@ public class FirstLevelSplitterTest {
         XMLHEADER.length() + root.length() + 1, XMLHEADER.length() + root.length() + 1 + 38);
     assertEquals(meta1, chunk1.getMeta());
     assertEquals(meta2, chunk2.getMeta());
-    assertEquals(XMLHEADER + root + "\n<p:object><p:child></p:child></p:object>\n</root>", chunk1.getChunk());
-    assertEquals(XMLHEADER + root + "\n<p:object><child2></child2></p:object>\n</root>", chunk2.getChunk());
+    assertEquals(XMLHEADER + root + "\n<p:object><p:child></p:child></p:object>\n</root>", chunk1.getChunk().toString());
+    assertEquals(XMLHEADER + root + "\n<p:object><child2></child2></p:object>\n</root>", chunk2.getChunk().toString());
   }
   
   /**
@@ -145,8 +171,8 @@ public class FirstLevelSplitterTest {
         XMLHEADER.length() + root.length() + 1, XMLHEADER.length() + root.length() + 1 + 34);
     assertEquals(meta1, chunk1.getMeta());
     assertEquals(meta2, chunk2.getMeta());
-    assertEquals(XMLHEADER + root + "\n<object ok=\"ov\"><child></child></object>\n</root>", chunk1.getChunk());
-    assertEquals(XMLHEADER + root + "\n<object><child2></child2></object>\n</root>", chunk2.getChunk());
+    assertEquals(XMLHEADER + root + "\n<object ok=\"ov\"><child></child></object>\n</root>", chunk1.getChunk().toString());
+    assertEquals(XMLHEADER + root + "\n<object><child2></child2></object>\n</root>", chunk2.getChunk().toString());
   }
   
   /**
@@ -171,8 +197,128 @@ public class FirstLevelSplitterTest {
         XMLHEADER.length() + root.length() + 1, XMLHEADER.length() + root.length() + 1 + 38);
     assertEquals(meta1, chunk1.getMeta());
     assertEquals(meta2, chunk2.getMeta());
-    assertEquals(XMLHEADER + root + "\n<p:object ok=\"ov\"><p:child></p:child></p:object>\n</root>", chunk1.getChunk());
-    assertEquals(XMLHEADER + root + "\n<p:object><child2></child2></p:object>\n</root>", chunk2.getChunk());
+    assertEquals(XMLHEADER + root + "\n<p:object ok=\"ov\"><p:child></p:child></p:object>\n</root>", chunk1.getChunk().toString());
+    assertEquals(XMLHEADER + root + "\n<p:object><child2></child2></p:object>\n</root>", chunk2.getChunk().toString());
+  }
+  
+  /**
+   * Test if chunks can be indexed while they are being split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void singlePass() throws Exception {
+    String gml = "xmlns:gml=\"http://www.opengis.net/gml\"";
+    String xml = XMLHEADER + "<root " + gml + " gml:id=\"r\">"
+        + "<object gml:id=\"a\"><child gml:id=\"b\"></child></object>"
+        + "<object><child></child></object>"
+        + "<object gml:id=\"c\"></object></root>";
+    ChunkIndexer<XMLStreamEvent> chunkIndexer = new ChunkIndexer<>(
+        Collections.singletonList(new GmlIdIndexerFactory()));
+    List<Result<XMLChunkMeta>> chunks = split(xml, chunkIndexer);
+    assertEquals(3, chunks.size());
+    assertEquals(new HashSet<>(Arrays.asList("r", "a", "b")),
+        chunks.get(0).getDocument().get("gmlIds"));
+    assertEquals(Collections.singleton("r"),
+        chunks.get(1).getDocument().get("gmlIds"));
+    assertEquals(new HashSet<>(Arrays.asList("r", "c")),
+        chunks.get(2).getDocument().get("gmlIds"));
+  }
+  
+  /**
+   * Convert a chunk to a document by parsing it completely, the same way
+   * the indexer does if the chunk has not been indexed while it was being
+   * split
+   * @param chunk the chunk
+   * @param factories the indexer factories to use
+   * @return the document
+   */
+  private static Map<String, Object> chunkToDocument(Buffer chunk,
+      List<XMLIndexerFactory> factories) {
+    ChunkIndexer<XMLStreamEvent> indexer = new ChunkIndexer<>(factories);
+    Observable.just(chunk)
+      .compose(new XMLParserTransformer())
+      .toBlocking()
+      .forEach(indexer::onEvent);
+    return indexer.finish();
+  }
+  
+  /**
+   * Split an XML string in single-pass mode using all available XML
+   * indexers and check that every document equals the one created by
+   * parsing the chunk completely
+   * @param xml the XML string
+   * @return the chunks created by the splitter
+   * @throws Exception if the XML string could not be parsed
+   */
+  private List<Result<XMLChunkMeta>> assertSinglePassEqualsTwoPass(String xml)
+      throws Exception {
+    List<XMLIndexerFactory> factories = Seq.seq(
+        FilteredServiceLoader.load(IndexerFactory.class))
+      .filter(f -> f instanceof XMLIndexerFactory)
+      .cast(XMLIndexerFactory.class)
+      .toList();
+    List<Result<XMLChunkMeta>> chunks = split(xml,
+        new ChunkIndexer<>(factories));
+    for (Result<XMLChunkMeta> chunk : chunks) {
+      assertEquals(chunkToDocument(chunk.getChunk(), factories),
+          chunk.getDocument());
+    }
+    return chunks;
+  }
+  
+  /**
+   * Test if documents created in single-pass mode equal the ones created
+   * by parsing the chunks completely, even if indexers depend on the
+   * namespaces and attributes of the parent elements
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void singlePassEqualsTwoPass() throws Exception {
+    String xml = XMLHEADER + "<root xmlns:gml=\"http://www.opengis.net/gml\" "
+        + "xmlns:gen=\"http://www.opengis.net/citygml/generics/1.0\" "
+        + "xmlns:xal=\"urn:oasis:names:tc:ciq:xsdschema:xAL:2.0\" "
+        + "gml:id=\"root\" srsName=\"EPSG:4326\">\n"
+        + "  <object gml:id=\"o1\">\n"
+        + "    <gml:Envelope><gml:lowerCorner>49.8 8.6</gml:lowerCorner>"
+        + "<gml:upperCorner>49.9 8.7</gml:upperCorner></gml:Envelope>\n"
+        + "    <gen:stringAttribute name=\"name\"><gen:value>First</gen:value>"
+        + "</gen:stringAttribute>\n"
+        + "  </object>\n"
+        + "  <object gml:id=\"o2\">\n"
+        + "    <xal:AddressDetails><xal:Country><xal:CountryName>Germany"
+        + "</xal:CountryName></xal:Country></xal:AddressDetails>\n"
+        + "  </object>\n"
+        + "</root>";
+    List<Result<XMLChunkMeta>> chunks = assertSinglePassEqualsTwoPass(xml);
+    assertEquals(2, chunks.size());
+    assertEquals(new HashSet<>(Arrays.asList("root", "o1")),
+        chunks.get(0).getDocument().get("gmlIds"));
+  }
+  
+  /**
+   * Test if documents created in single-pass mode from a test file equal
+   * the ones created by parsing the chunks completely
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void singlePassEqualsTwoPassFile() throws Exception {
+    String xml = IOUtils.toString(FirstLevelSplitterTest.class.getResource(
+        "/io/georocket/index/xml/xal_simple_address.xml"), StandardCharsets.UTF_8);
+    List<Result<XMLChunkMeta>> chunks = assertSinglePassEqualsTwoPass(xml);
+    assertEquals(1, chunks.size());
+  }
+  
+  /**
+   * Test that no documents are created if chunks are not indexed
+   * while they are being split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void noSinglePass() throws Exception {
+    String xml = XMLHEADER + "<root><object></object></root>";
+    List<Result<XMLChunkMeta>> chunks = split(xml);
+    assertEquals(1, chunks.size());
+    assertNull(chunks.get(0).getDocument());
   }
   
   /**
@@ -188,6 +334,6 @@ public class FirstLevelSplitterTest {
     XMLChunkMeta meta = new XMLChunkMeta(Arrays.asList(new XMLStartElement("root")),
         XMLHEADER.length() + 7, xml.getBytes(StandardCharsets.UTF_8).length - 8);
     assertEquals(meta, chunk.getMeta());
-    assertEquals(xml, chunk.getChunk());
+    assertEquals(xml, chunk.getChunk().toString());
   }
 }
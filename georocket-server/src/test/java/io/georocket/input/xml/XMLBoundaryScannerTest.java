@@ -0,0 +1,203 @@
+package io.georocket.input.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.georocket.input.SplitPlan;
+import io.georocket.input.SplitPlan.Range;
+import io.georocket.input.Splitter.Result;
+import io.georocket.storage.XMLChunkMeta;
+import io.georocket.util.Window;
+import io.georocket.util.XMLParserTransformer;
+import io.vertx.core.buffer.Buffer;
+import rx.Observable;
+
+/**
+ * Test the {@link XMLBoundaryScanner}
+ * @author Michel Kraemer
+ */
+public class XMLBoundaryScannerTest {
+  private static final String XMLHEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+  /**
+   * Split the given buffers with a {@link FirstLevelSplitter}
+   * @param buffers the buffers
+   * @return the chunks created by the splitter
+   */
+  private static List<Result<XMLChunkMeta>> split(Observable<Buffer> buffers) {
+    Window window = new Window();
+    FirstLevelSplitter splitter = new FirstLevelSplitter(window);
+    return buffers
+      .doOnNext(window::append)
+      .compose(new XMLParserTransformer())
+      .flatMap(splitter::onEventObservable)
+      .toList()
+      .toBlocking()
+      .single();
+  }
+
+  /**
+   * Scan the given XML string
+   * @param xml the XML string
+   * @param rangeSize the preferred number of bytes in a range
+   * @return the plan
+   * @throws Exception if the string could not be scanned
+   */
+  private static SplitPlan scan(String xml, long rangeSize) throws Exception {
+    byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+    return new XMLBoundaryScanner(rangeSize).scan(Channels.newChannel(
+        new ByteArrayInputStream(bytes)));
+  }
+
+  /**
+   * Split the given XML string in parallel according to a plan and compare
+   * the result to the chunks created when splitting the whole string
+   * @param xml the XML string
+   * @param plan the plan
+   */
+  private static void assertSameChunks(String xml, SplitPlan plan) {
+    byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+    List<Result<XMLChunkMeta>> expected = split(Observable.just(
+        Buffer.buffer(bytes)));
+
+    List<Result<XMLChunkMeta>> actual = new ArrayList<>();
+    for (Range r : plan.getRanges()) {
+      byte[] data = new byte[r.getLength()];
+      System.arraycopy(bytes, (int)r.getStart(), data, 0, data.length);
+      actual.addAll(split(plan.wrap(data)));
+    }
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      assertEquals(expected.get(i).getChunk().toString(),
+          actual.get(i).getChunk().toString());
+      assertEquals(expected.get(i).getMeta(), actual.get(i).getMeta());
+    }
+  }
+
+  /**
+   * Test if a file is split into ranges that yield the same chunks
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void sameChunks() throws Exception {
+    String xml = XMLHEADER + "<p:root xmlns:p=\"http://example.com/p\" "
+        + "xmlns=\"http://example.com\" a=\"x&amp;y\">\n"
+        + "<object><child></child></object>\n"
+        + "<!-- comment --><object><p:child2>&lt;</p:child2></object>"
+        + "<object>\u00e4\u00f6\u00fc</object>\n</p:root>";
+    SplitPlan plan = scan(xml, 1);
+    assertNotNull(plan);
+    assertEquals(3, plan.getRanges().size());
+    assertSameChunks(xml, plan);
+  }
+
+  /**
+   * Test if ranges contain more than one element if they are small
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void rangeSize() throws Exception {
+    StringBuilder sb = new StringBuilder(XMLHEADER + "<root>\n");
+    for (int i = 0; i < 100; ++i) {
+      sb.append("<object><child>" + i + "</child></object>\n");
+    }
+    sb.append("</root>");
+    String xml = sb.toString();
+    SplitPlan plan = scan(xml, 100);
+    assertNotNull(plan);
+    assertEquals(34, plan.getRanges().size());
+    assertSameChunks(xml, plan);
+  }
+
+  /**
+   * Test if the first CRS is inherited by subsequent ranges
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void crs() throws Exception {
+    String xml = XMLHEADER + "<root>\n<object></object>\n"
+        + "<object srsName=\"EPSG:25832\"></object>\n"
+        + "<object srsName=\"EPSG:4326\"></object>\n</root>";
+    SplitPlan plan = scan(xml, 1);
+    assertNotNull(plan);
+    assertEquals(3, plan.getRanges().size());
+    assertNull(plan.getInheritedCRS(plan.getRanges().get(0)));
+    assertNull(plan.getInheritedCRS(plan.getRanges().get(1)));
+    assertEquals("EPSG:25832", plan.getInheritedCRS(plan.getRanges().get(2)));
+  }
+
+  /**
+   * Test if the CRS of the root element is inherited by all ranges
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void rootCrs() throws Exception {
+    String xml = XMLHEADER + "<root xmlns:gml=\"http://www.opengis.net/gml\" "
+        + "srsName='EPSG:4326'>\n<object/>\n"
+        + "<object gml:srsName=\"EPSG:25832\" srsNameX=\"x\"></object>\n</root>";
+    SplitPlan plan = scan(xml, 1);
+    assertNotNull(plan);
+    assertEquals(2, plan.getRanges().size());
+    for (Range r : plan.getRanges()) {
+      assertEquals("EPSG:4326", plan.getInheritedCRS(r));
+    }
+  }
+
+  /**
+   * Test if markup in comments, CDATA sections, processing instructions,
+   * and attribute values is ignored
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void skipMarkup() throws Exception {
+    String xml = XMLHEADER + "<root a=\"&lt;b>\">\n<object x='/>'/>\n"
+        + "<!-- <object> --><object><![CDATA[</object><x>]]></object>\n"
+        + "<?pi <object> ?><object><child/></object>\n</root>";
+    SplitPlan plan = scan(xml, 1);
+    assertNotNull(plan);
+    assertEquals(3, plan.getRanges().size());
+    assertSameChunks(xml, plan);
+  }
+
+  /**
+   * Test if files that are not encoded in UTF-8 are not split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void encoding() throws Exception {
+    String xml = "<?xml version='1.0' encoding='ISO-8859-1'?>\n"
+        + "<root>\n<object></object>\n<object></object>\n</root>";
+    assertNull(scan(xml, 1));
+  }
+
+  /**
+   * Test if files with only one first-level element are not split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void oneElement() throws Exception {
+    String xml = XMLHEADER + "<root>\n<object><child></child></object>\n</root>";
+    assertNull(scan(xml, 1));
+  }
+
+  /**
+   * Test if files containing a DTD are not split
+   * @throws Exception if an error has occurred
+   */
+  @Test
+  public void dtd() throws Exception {
+    String xml = XMLHEADER + "<!DOCTYPE root [<!ENTITY e \"entity\">]>\n"
+        + "<root>\n<object>&e;</object>\n<object></object>\n</root>";
+    assertNull(scan(xml, 1));
+  }
+}
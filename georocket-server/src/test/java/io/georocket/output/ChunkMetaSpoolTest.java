@@ -0,0 +1,137 @@
+package io.georocket.output;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import io.georocket.storage.ChunkMeta;
+import io.georocket.storage.GeoJsonChunkMeta;
+import io.georocket.storage.XMLChunkMeta;
+import io.georocket.util.XMLStartElement;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import rx.Observable;
+
+/**
+ * Tests for {@link ChunkMetaSpool}
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class ChunkMetaSpoolTest {
+  /**
+   * Run the test on a Vert.x test context
+   */
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /**
+   * Create a temporary folder for spool files
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final List<Pair<ChunkMeta, String>> EXPECTED = Arrays.asList(
+    Pair.of(new XMLChunkMeta(Arrays.asList(new XMLStartElement(null, "root",
+      new String[] { "gml" }, new String[] { "http://www.opengis.net/gml" },
+      new String[] { "" }, new String[] { "id" }, new String[] { "1" })),
+      10, 20), "/a"),
+    Pair.of(new GeoJsonChunkMeta("Feature", "features", 0, 30), "/layer/b"),
+    Pair.of(new ChunkMeta(5, 6, "application/octet-stream"), "/c"));
+
+  /**
+   * Get the directory for spool files
+   * @return the directory
+   */
+  private String getSpoolDirectory() {
+    return tempFolder.getRoot().getAbsolutePath() + "/tmp";
+  }
+
+  /**
+   * Write chunk metadata to a spool, check if it can be replayed, and
+   * check if the spool file has been deleted afterwards
+   * @param context the Vert.x test context
+   * @param maxMemorySize the maximum size of metadata kept in memory
+   * @param spilled true if the spool is expected to be written to a file
+   */
+  private void replay(TestContext context, long maxMemorySize,
+      boolean spilled) {
+    Async async = context.async();
+    ChunkMetaSpool.create(rule.vertx(), getSpoolDirectory(), maxMemorySize)
+      .flatMapObservable(spool -> Observable.from(EXPECTED)
+        .concatMap(p -> spool.write(p.getLeft(), p.getRight()).toObservable())
+        .toCompletable()
+        .andThen(Observable.defer(() -> {
+          context.assertEquals(spilled, spool.isSpilled());
+          return spool.replay();
+        }))
+        .toList()
+        .flatMap(l -> spool.delete().andThen(Observable.just(l))))
+      .subscribe(l -> {
+        context.assertEquals(EXPECTED, l);
+        File[] files = new File(getSpoolDirectory()).listFiles();
+        context.assertTrue(files == null || files.length == 0);
+        async.complete();
+      }, context::fail);
+  }
+
+  /**
+   * Write chunk metadata to a spool and check if it can be replayed from
+   * memory
+   * @param context the Vert.x test context
+   */
+  @Test
+  public void replay(TestContext context) {
+    replay(context, 1024 * 1024, false);
+  }
+
+  /**
+   * Write chunk metadata to a spool that is too small to be kept in memory
+   * and check if it can be replayed from a file
+   * @param context the Vert.x test context
+   */
+  @Test
+  public void replaySpilled(TestContext context) {
+    replay(context, 0, true);
+  }
+
+  /**
+   * Write chunk metadata to a spool that has to be spilled to a file after
+   * the first item and check if it can be replayed in the correct order
+   * @param context the Vert.x test context
+   */
+  @Test
+  public void replaySpilledLater(TestContext context) {
+    Pair<ChunkMeta, String> first = EXPECTED.get(0);
+    String line = new JsonObject()
+      .put("path", first.getRight())
+      .put("meta", first.getLeft().toJsonObject())
+      .encode() + "\n";
+    replay(context, line.length(), true);
+  }
+
+  /**
+   * Check if an empty spool can be replayed
+   * @param context the Vert.x test context
+   */
+  @Test
+  public void empty(TestContext context) {
+    Async async = context.async();
+    ChunkMetaSpool.create(rule.vertx(), getSpoolDirectory(), 0)
+      .flatMapObservable(spool -> spool.replay()
+        .toList()
+        .flatMap(l -> spool.delete().andThen(Observable.just(l))))
+      .subscribe(l -> {
+        context.assertTrue(l.isEmpty());
+        async.complete();
+      }, context::fail);
+  }
+}
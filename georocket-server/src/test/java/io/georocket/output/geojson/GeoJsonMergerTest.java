@@ -13,6 +13,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import rx.Completable;
 import rx.Observable;
 
 /**
@@ -348,4 +349,59 @@ public class GeoJsonMergerTest {
         async.complete();
       }, context::fail);
   }
+
+  /**
+   * Test if a result merged in slices by separate mergers that only know
+   * the chunks of their own slice can be put into an envelope computed by
+   * a merger that knows all chunks
+   * @param context the Vert.x test context
+   */
+  @Test
+  public void slices(TestContext context) {
+    String strChunk1 = "{\"type\":\"Feature\"}";
+    String strChunk2 = "{\"type\":\"Polygon\"}";
+    String strChunk3 = "{\"type\":\"Point\"}";
+    Buffer chunk1 = Buffer.buffer(strChunk1);
+    Buffer chunk2 = Buffer.buffer(strChunk2);
+    Buffer chunk3 = Buffer.buffer(strChunk3);
+
+    GeoJsonChunkMeta cm1 = new GeoJsonChunkMeta("Feature", "features", 0, chunk1.length());
+    GeoJsonChunkMeta cm2 = new GeoJsonChunkMeta("Polygon", "geometries", 0, chunk2.length());
+    GeoJsonChunkMeta cm3 = new GeoJsonChunkMeta("Point", "geometries", 0, chunk3.length());
+
+    String jsonContents = "{\"type\":\"FeatureCollection\",\"features\":[" + strChunk1 +
+      ",{\"type\":\"Feature\",\"geometry\":" + strChunk2 + "}" +
+      ",{\"type\":\"Feature\",\"geometry\":" + strChunk3 + "}]}";
+
+    // the first slice contains the first chunk, the second one all others.
+    // the second slice only contains geometries.
+    GeoJsonMerger envelope = new GeoJsonMerger(true);
+    GeoJsonMerger m1 = new GeoJsonMerger(true);
+    GeoJsonMerger m2 = new GeoJsonMerger(true);
+    BufferWriteStream header = new BufferWriteStream();
+    BufferWriteStream footer = new BufferWriteStream();
+    BufferWriteStream bws1 = new BufferWriteStream();
+    BufferWriteStream bws2 = new BufferWriteStream();
+    Async async = context.async();
+    envelope.init(cm1).andThen(envelope.init(cm2)).andThen(envelope.init(cm3))
+      .andThen(m1.init(cm1))
+      .andThen(m2.init(cm2)).andThen(m2.init(cm3))
+      .andThen(Completable.defer(() -> {
+        envelope.writeHeader(header);
+        envelope.finish(footer);
+        m1.skipHeader();
+        m2.skipHeader();
+        return m1.merge(new DelegateChunkReadStream(chunk1), cm1, bws1);
+      }))
+      .andThen(m2.merge(new DelegateChunkReadStream(chunk2), cm2, bws2))
+      .andThen(m2.merge(new DelegateChunkReadStream(chunk3), cm3, bws2))
+      .subscribe(() -> {
+        String merged = header.getBuffer().toString("utf-8") +
+          bws1.getBuffer().toString("utf-8") + m1.getSeparator() +
+          bws2.getBuffer().toString("utf-8") +
+          footer.getBuffer().toString("utf-8");
+        context.assertEquals(jsonContents, merged);
+        async.complete();
+      }, context::fail);
+  }
 }
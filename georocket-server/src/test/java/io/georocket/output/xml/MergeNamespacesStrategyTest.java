@@ -52,6 +52,12 @@ public class MergeNamespacesStrategyTest {
   private final static XMLChunkMeta META2 = new XMLChunkMeta(Arrays.asList(ROOT2),
       XMLHEADER.length() + ROOT2.toString().length(),
       CHUNK2.length() - ROOT2.getName().length() - 3);
+  private final static XMLChunkMeta META1_WITH_ID = new XMLChunkMeta(
+      META1.getParents(), XMLChunkMeta.makeParentsId(META1.getParents()),
+      META1.getStart(), META1.getEnd());
+  private final static XMLChunkMeta META2_WITH_ID = new XMLChunkMeta(
+      META2.getParents(), XMLChunkMeta.makeParentsId(META2.getParents()),
+      META2.getStart(), META2.getEnd());
   
   /**
    * Test a simple merge
@@ -74,6 +80,31 @@ public class MergeNamespacesStrategyTest {
       }, context::fail);
   }
   
+  /**
+   * Test if chunks whose parents are referenced by ID can be merged and if
+   * parents that have already been merged are not merged again
+   * @param context the test context
+   */
+  @Test
+  public void parentsIds(TestContext context) {
+    Async async = context.async();
+    MergeStrategy strategy = new MergeNamespacesStrategy();
+    BufferWriteStream bws = new BufferWriteStream();
+    strategy.init(META1_WITH_ID)
+      .andThen(strategy.init(META2_WITH_ID))
+      .andThen(strategy.init(META1_WITH_ID))
+      .andThen(strategy.merge(new DelegateChunkReadStream(CHUNK1), META1_WITH_ID, bws))
+      .andThen(strategy.merge(new DelegateChunkReadStream(CHUNK2), META2_WITH_ID, bws))
+      .andThen(strategy.merge(new DelegateChunkReadStream(CHUNK1), META1_WITH_ID, bws))
+      .doOnCompleted(() -> strategy.finish(bws))
+      .subscribe(() -> {
+        context.assertEquals(XMLHEADER + EXPECTEDROOT + CONTENTS1 + CONTENTS2 +
+            CONTENTS1 + "</" + EXPECTEDROOT.getName() + ">",
+            bws.getBuffer().toString("utf-8"));
+        async.complete();
+      }, context::fail);
+  }
+  
   /**
    * Make sure that chunks that have not been passed to the initalize method cannot be merged
    * @param context the test context
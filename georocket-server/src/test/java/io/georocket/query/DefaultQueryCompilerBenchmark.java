@@ -0,0 +1,100 @@
+package io.georocket.query;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
+
+import io.georocket.index.IndexerFactory;
+import io.georocket.util.FilteredServiceLoader;
+
+/**
+ * <p>Measures how many queries per second {@link DefaultQueryCompiler} can
+ * compile with and without its cache. The corpus contains queries typically
+ * sent by clients such as map viewers (bounding boxes, attribute
+ * comparisons, and combinations thereof).</p>
+ * <p>This is not a unit test. Run it manually with
+ * <code>java -cp ... io.georocket.query.DefaultQueryCompilerBenchmark</code>.</p>
+ * @author Michel Kraemer
+ */
+public class DefaultQueryCompilerBenchmark {
+  private static final int WARMUP_RUNS = 3;
+  private static final int RUNS = 5;
+  private static final int ITERATIONS = 20000;
+
+  private static final String[] QUERIES = {
+    "8.6,49.8,8.7,49.9",
+    "8.6,49.8,8.7,49.9 building",
+    "EPSG:25832:475000,5520000,480000,5525000",
+    "EQ(gmlId bldg_1234)",
+    "AND(8.6,49.8,8.7,49.9 EQ(function residential))",
+    "AND(GTE(measuredHeight 10) LT(measuredHeight 50))",
+    "OR(EQ(city Darmstadt) EQ(city Frankfurt) EQ(city Mainz))",
+    "NOT(EQ(type garage))",
+    "AND(8.6,49.8,8.7,49.9 NOT(OR(EQ(type garage) EQ(type shed))))",
+    "\"Main street\" 'Old town'"
+  };
+
+  /**
+   * Compile all queries of the corpus a number of times
+   * @param compiler the compiler to use
+   * @return the number of compiled queries
+   */
+  private static long run(DefaultQueryCompiler compiler) {
+    long count = 0;
+    for (int i = 0; i < ITERATIONS; ++i) {
+      String query = QUERIES[i % QUERIES.length];
+      if (compiler.compileQuery(query, "/", null) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Measure the throughput of a compiler
+   * @param name the name of the configuration
+   * @param factory creates the compiler to measure
+   */
+  private static void measure(String name,
+      Supplier<DefaultQueryCompiler> factory) {
+    DefaultQueryCompiler compiler = factory.get();
+    for (int i = 0; i < WARMUP_RUNS; ++i) {
+      run(compiler);
+    }
+    long start = System.nanoTime();
+    long queries = 0;
+    for (int i = 0; i < RUNS; ++i) {
+      queries += run(compiler);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format("%-10s %12.0f queries/s",
+        name, queries / seconds));
+  }
+
+  /**
+   * Run the benchmark
+   * @param args the program arguments (not used)
+   */
+  public static void main(String[] args) {
+    List<IndexerFactory> indexerFactories = ImmutableList.copyOf(
+        FilteredServiceLoader.load(IndexerFactory.class));
+
+    long start = System.nanoTime();
+    DefaultQueryCompiler.warmUp();
+    System.out.println(String.format("Warm-up took %.1f ms",
+        (System.nanoTime() - start) / 1e6));
+
+    measure("uncached", () -> {
+      DefaultQueryCompiler c = new DefaultQueryCompiler();
+      c.setQueryCompilers(indexerFactories);
+      return c;
+    });
+    measure("cached", () -> {
+      DefaultQueryCompiler c = new DefaultQueryCompiler();
+      c.setQueryCompilers(indexerFactories);
+      c.setCacheSize(1000);
+      return c;
+    });
+  }
+}
@@ -1,17 +1,21 @@
 package io.georocket.query;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
 import io.georocket.index.generic.DefaultMetaIndexerFactory;
+import io.georocket.index.xml.XMLBoundingBoxIndexerFactory;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -155,4 +159,36 @@ public class DefaultQueryCompilerTest {
   public void complex() {
     expectFixture("complex");
   }
+
+  /**
+   * Test if compiled queries are cached and if the cache returns copies
+   */
+  @Test
+  public void cache() {
+    DefaultQueryCompiler uncached = new DefaultQueryCompiler();
+    uncached.setQueryCompilers(Arrays.asList(new DefaultMetaIndexerFactory(),
+        new XMLBoundingBoxIndexerFactory()));
+    DefaultQueryCompiler compiler = new DefaultQueryCompiler();
+    compiler.setQueryCompilers(Arrays.asList(new DefaultMetaIndexerFactory(),
+        new XMLBoundingBoxIndexerFactory()));
+    compiler.setCacheSize(10);
+
+    String query = "AND(1,2,3,4 EQ(key value))";
+    JsonObject expected = uncached.compileQuery(query, "/layer", "key");
+    JsonObject q1 = compiler.compileQuery(query, "/layer", "key");
+    assertEquals(expected, q1);
+
+    // modifying a returned query must not modify the cache
+    q1.put("foo", "bar");
+    JsonObject q2 = compiler.compileQuery(query, "/layer", "key");
+    assertNotSame(q1, q2);
+    assertEquals(expected, q2);
+
+    // the path and the key are part of the cache key
+    assertEquals(uncached.compileQuery(query, "/layer"),
+        compiler.compileQuery(query, "/layer"));
+    assertNotEquals(compiler.compileQuery(query, "/layer"),
+        compiler.compileQuery(query, "/other"));
+    assertEquals(uncached.compileQuery(query), compiler.compileQuery(query));
+  }
 }
@@ -0,0 +1,136 @@
+package io.georocket.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.georocket.storage.indexed.IndexedStore;
+import io.georocket.util.io.DelegateChunkReadStream;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.rx.java.RxHelper;
+import rx.Observable;
+
+/**
+ * Tests for {@link ChunkReadAhead}
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class ChunkReadAheadTest {
+  /**
+   * Run the test on a Vert.x test context
+   */
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /**
+   * A store that answers requests after a delay that decreases with every
+   * request, so later requests finish before earlier ones
+   */
+  private static class SlowStore extends IndexedStore {
+    private final Vertx vertx;
+    private int inFlight;
+    private int maxInFlight;
+    private long delay = 50;
+
+    SlowStore(Vertx vertx) {
+      super(vertx);
+      this.vertx = vertx;
+    }
+
+    @Override
+    public void getOne(String path, Handler<AsyncResult<ChunkReadStream>> handler) {
+      inFlight++;
+      maxInFlight = Math.max(maxInFlight, inFlight);
+      vertx.setTimer(delay, id -> {
+        inFlight--;
+        handler.handle(Future.succeededFuture(
+            new DelegateChunkReadStream(Buffer.buffer(path))));
+      });
+      delay = Math.max(1, delay - 10);
+    }
+
+    @Override
+    protected void doAddChunk(Buffer chunk, String path, String correlationId,
+        Handler<AsyncResult<String>> handler) {
+      handler.handle(Future.failedFuture("NOT IMPLEMENTED"));
+    }
+
+    @Override
+    protected void doDeleteChunks(Queue<String> paths,
+        Handler<AsyncResult<Void>> handler) {
+      handler.handle(Future.failedFuture("NOT IMPLEMENTED"));
+    }
+  }
+
+  private static Observable<Pair<ChunkMeta, String>> makeData(int n) {
+    List<Pair<ChunkMeta, String>> result = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      result.add(Pair.of(new ChunkMeta(0, 10, "text/plain"), "/chunk" + i));
+    }
+    return Observable.from(result);
+  }
+
+  private void fetchAndCheck(TestContext context, int maxChunks,
+      long maxBytes, int expectedMaxInFlight) {
+    SlowStore store = new SlowStore(rule.vertx());
+    ChunkReadAhead readAhead = new ChunkReadAhead(new RxStore(store),
+        maxChunks, maxBytes);
+    int n = 6;
+    Async async = context.async();
+    readAhead.fetch(makeData(n))
+      .concatMap(p -> RxHelper.toObservable(p.getRight())
+        .collect(Buffer::buffer, Buffer::appendBuffer)
+        .doOnTerminate(() -> p.getRight().close())
+        .map(Buffer::toString))
+      .toList()
+      .subscribe(l -> {
+        context.assertEquals(n, l.size());
+        for (int i = 0; i < n; ++i) {
+          context.assertEquals("/chunk" + i, l.get(i));
+        }
+        context.assertEquals(expectedMaxInFlight, store.maxInFlight);
+        async.complete();
+      }, context::fail);
+  }
+
+  /**
+   * Check if chunks are fetched concurrently but emitted in order
+   * @param context the test context
+   */
+  @Test
+  public void order(TestContext context) {
+    fetchAndCheck(context, 3, 1024, 3);
+  }
+
+  /**
+   * Check if the number of bytes fetched ahead of time is limited
+   * @param context the test context
+   */
+  @Test
+  public void maxBytes(TestContext context) {
+    fetchAndCheck(context, 3, 25, 2);
+  }
+
+  /**
+   * Check if a chunk is fetched even if it is larger than the maximum
+   * number of bytes
+   * @param context the test context
+   */
+  @Test
+  public void largeChunks(TestContext context) {
+    fetchAndCheck(context, 3, 5, 1);
+  }
+}
@@ -1,6 +1,8 @@
 package io.georocket.storage;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -12,11 +14,12 @@ import org.junit.runner.RunWith;
 import com.google.common.collect.ImmutableMap;
 
 import io.georocket.constants.AddressConstants;
-import io.georocket.util.PathUtils;
 import io.georocket.util.XMLStartElement;
+import io.netty.buffer.Unpooled;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
@@ -140,22 +143,16 @@ abstract public class StorageTest {
 
   /**
    * Create a JsonObject to simulate a reply from an indexer
-   * @param path The path which is used as prefix of the id (may be null)
+   * @param chunkPath The path of the chunk found
    * @return A reply msg
    */
-  protected static JsonObject createIndexerQueryReply(String path) {
-    if (path != null && !path.isEmpty()) {
-      path = PathUtils.join(path, ID);
-    } else {
-      path = ID;
-    }
-
+  protected static JsonObject createIndexerQueryReply(String chunkPath) {
     JsonArray hits = new JsonArray();
     JsonObject hit = new JsonObject()
         .put("parents", PARENTS)
         .put("start", START)
         .put("end", END)
-        .put("id", path);
+        .put("id", chunkPath);
 
     hits.add(hit);
 
@@ -216,7 +213,8 @@ abstract public class StorageTest {
   protected abstract void validateAfterStoreDelete(TestContext context,
       Vertx vertx, String path, Handler<AsyncResult<Void>> handler);
 
-  private void mockIndexerQuery(Vertx vertx, TestContext context, Async async, String path) {
+  private void mockIndexerQuery(Vertx vertx, TestContext context, Async async,
+      String chunkPath) {
     vertx.eventBus().<JsonObject>consumer(AddressConstants.INDEXER_QUERY).handler(request -> {
       JsonObject msg = request.body();
 
@@ -226,7 +224,7 @@ abstract public class StorageTest {
       String indexSearch = msg.getString("search");
       context.assertEquals(SEARCH, indexSearch);
 
-      request.reply(createIndexerQueryReply(path));
+      request.reply(createIndexerQueryReply(chunkPath));
 
       async.complete();
     });
@@ -250,6 +248,16 @@ abstract public class StorageTest {
     testAdd(context, TEST_FOLDER);
   }
 
+  /**
+   * Call {@link #testAdd(TestContext, String, boolean)} with a composite
+   * buffer and without a path
+   * @param context Test context
+   */
+  @Test
+  public void testAddBuffer(TestContext context) {
+    testAdd(context, null, true);
+  }
+
   /**
    * Call {@link #testDelete(TestContext, String)} with null as path.
    * @param context Test context
@@ -295,6 +303,45 @@ abstract public class StorageTest {
     testGetOne(context, null);
   }
 
+  /**
+   * Add test data to a storage and retrieve it twice with a single call to
+   * {@link Store#getMany(List, Handler)}
+   * @param context Test context
+   */
+  @Test
+  public void testGetMany(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async();
+
+    prepareData(context, vertx, null, context.asyncAssertSuccess(resultPath -> {
+      Store store = createStore(vertx);
+      store.getMany(Arrays.asList(resultPath, resultPath), context.asyncAssertSuccess(l -> {
+        context.assertEquals(2, l.size());
+        Async async2 = context.async(l.size());
+        for (ChunkReadStream crs : l) {
+          Buffer received = Buffer.buffer();
+          crs.handler(received::appendBuffer).endHandler(end -> {
+            context.assertEquals(CHUNK_CONTENT, received.toString());
+            crs.close();
+            async2.countDown();
+          });
+        }
+        async.complete();
+      }));
+    }));
+  }
+
+  /**
+   * Call {@link Store#getMany(List, Handler)} without paths
+   * @param context Test context
+   */
+  @Test
+  public void testGetManyEmpty(TestContext context) {
+    Store store = createStore(rule.vertx());
+    store.getMany(Collections.emptyList(), context.asyncAssertSuccess(l ->
+        context.assertTrue(l.isEmpty())));
+  }
+
   /**
    * Apply the {@link Store#delete(String, String, Handler)} with a
    * non-existing path and expects a success (no exceptions or failure codes).
@@ -364,8 +411,8 @@ abstract public class StorageTest {
     });
 
     // register query
-    // the null argument depend on the static PATH_TO_NON_EXISTING_ENTITY attribute value
-    mockIndexerQuery(vertx, context, asyncIndexerQuery, null);
+    mockIndexerQuery(vertx, context, asyncIndexerQuery,
+        PATH_TO_NON_EXISTING_ENTITY);
 
     store.delete(SEARCH, null, context.asyncAssertSuccess(h -> {
       asyncDelete.complete();
@@ -385,7 +432,7 @@ abstract public class StorageTest {
 
     prepareData(context, vertx, path, context.asyncAssertSuccess(resultPath -> {
       Store store = createStore(vertx);
-      store.getOne(ID, context.asyncAssertSuccess(h -> {
+      store.getOne(resultPath, context.asyncAssertSuccess(h -> {
         h.handler(buffer -> {
           String receivedChunk = new String(buffer.getBytes());
           context.assertEquals(CHUNK_CONTENT, receivedChunk);
@@ -400,6 +447,17 @@ abstract public class StorageTest {
    * @param path Path where to add data (may be null)
    */
   public void testAdd(TestContext context, String path) {
+    testAdd(context, path, false);
+  }
+
+  /**
+   * Add test data and compare the data with the stored one
+   * @param context Test context
+   * @param path Path where to add data (may be null)
+   * @param buffer true if the data should be added as a composite buffer
+   * instead of a string
+   */
+  public void testAdd(TestContext context, String path, boolean buffer) {
     Vertx vertx = rule.vertx();
     Async asyncIndexerAdd = context.async();
     Async asyncAdd = context.async();
@@ -428,11 +486,22 @@ abstract public class StorageTest {
           + "Store::add was called!"));
 
     IndexMeta indexMeta = new IndexMeta(IMPORT_ID, ID, TIMESTAMP, TAGS, PROPERTIES, FALLBACK_CRS_STRING);
-    store.add(CHUNK_CONTENT, META, path, indexMeta, context.asyncAssertSuccess(err -> {
+    Handler<AsyncResult<Void>> handler = context.asyncAssertSuccess(err -> {
       validateAfterStoreAdd(context, vertx, path, context.asyncAssertSuccess(v -> {
         asyncAdd.complete();
       }));
-    }));
+    });
+    if (buffer) {
+      // split chunk into three parts like the splitters do
+      byte[] bytes = CHUNK_CONTENT.getBytes(StandardCharsets.UTF_8);
+      Buffer chunk = Buffer.buffer(Unpooled.wrappedBuffer(
+          Arrays.copyOfRange(bytes, 0, 3),
+          Arrays.copyOfRange(bytes, 3, bytes.length - 4),
+          Arrays.copyOfRange(bytes, bytes.length - 4, bytes.length)));
+      store.add(chunk, META, path, indexMeta, handler);
+    } else {
+      store.add(CHUNK_CONTENT, META, path, indexMeta, handler);
+    }
   }
 
   /**
@@ -473,7 +542,7 @@ abstract public class StorageTest {
       });
 
       // register query
-      mockIndexerQuery(vertx, context, asyncIndexerQuery, path);
+      mockIndexerQuery(vertx, context, asyncIndexerQuery, resultPath);
 
       store.delete(SEARCH, path, context.asyncAssertSuccess(h -> {
         validateAfterStoreDelete(context, vertx, resultPath, context.asyncAssertSuccess(v -> {
@@ -494,9 +563,6 @@ abstract public class StorageTest {
     Async asyncQuery = context.async();
     Async asyncGet = context.async();
 
-    // register query
-    mockIndexerQuery(vertx, context, asyncQuery, path);
-
     // register delete
     vertx.eventBus().consumer(AddressConstants.INDEXER_DELETE).handler(h ->
       context.fail("Indexer should not be notified for a delete event after"
@@ -510,6 +576,9 @@ abstract public class StorageTest {
     prepareData(context, vertx, path, context.asyncAssertSuccess(resultPath -> {
       Store store = createStore(vertx);
 
+      // register query
+      mockIndexerQuery(vertx, context, asyncQuery, resultPath);
+
       store.get(SEARCH, resultPath, ar -> {
         StoreCursor cursor = ar.result();
         context.assertTrue(cursor.hasNext());
@@ -522,7 +591,7 @@ abstract public class StorageTest {
 
           String fileName = cursor.getChunkPath();
 
-          context.assertEquals(PathUtils.join(path, ID), fileName);
+          context.assertEquals(resultPath, fileName);
 
           asyncGet.complete();
         });
@@ -0,0 +1,108 @@
+package io.georocket.storage.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import io.georocket.constants.ConfigConstants;
+import io.georocket.storage.StorageTest;
+import io.georocket.util.PathUtils;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.TestContext;
+
+/**
+ * Test {@link SegmentFileStore}
+ * @author Michel Kraemer
+ */
+public class SegmentFileStoreTest extends StorageTest {
+  /**
+   * Create a temporary tempFolder
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private String path;
+  private SegmentFileStore store;
+
+  /**
+   * Set up the test
+   */
+  @Before
+  public void setUp() {
+    path = tempFolder.getRoot().getAbsolutePath();
+  }
+
+  /**
+   * Release test resources
+   */
+  @After
+  public void tearDown() {
+    if (store != null) {
+      store.close();
+      store = null;
+    }
+  }
+
+  private void configureVertx(Vertx vertx) {
+    vertx.getOrCreateContext().config().put(
+        ConfigConstants.STORAGE_SEGMENT_PATH, path);
+  }
+
+  @Override
+  protected SegmentFileStore createStore(Vertx vertx) {
+    if (store == null) {
+      configureVertx(vertx);
+      store = new SegmentFileStore(vertx);
+    }
+    return store;
+  }
+
+  @Override
+  protected void prepareData(TestContext context, Vertx vertx, String path,
+      Handler<AsyncResult<String>> handler) {
+    SegmentFileStore s = createStore(vertx);
+    vertx.executeBlocking(f -> {
+      try {
+        String p = s.getLog().put(PathUtils.join(path, ID),
+            CHUNK_CONTENT.getBytes(StandardCharsets.UTF_8));
+        f.complete(p);
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, handler);
+  }
+
+  @Override
+  protected void validateAfterStoreAdd(TestContext context, Vertx vertx,
+      String path, Handler<AsyncResult<Void>> handler) {
+    SegmentFileStore s = createStore(vertx);
+    vertx.executeBlocking(f -> {
+      try {
+        context.assertEquals(1, s.getLog().size());
+        f.complete();
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, handler);
+  }
+
+  @Override
+  protected void validateAfterStoreDelete(TestContext context, Vertx vertx,
+      String path, Handler<AsyncResult<Void>> handler) {
+    SegmentFileStore s = createStore(vertx);
+    vertx.executeBlocking(f -> {
+      try {
+        context.assertEquals(0, s.getLog().size());
+        f.complete();
+      } catch (IOException e) {
+        f.fail(e);
+      }
+    }, handler);
+  }
+}
@@ -0,0 +1,302 @@
+package io.georocket.storage.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test {@link SegmentLog}
+ * @author Michel Kraemer
+ */
+public class SegmentLogTest {
+  /**
+   * Create a temporary folder
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private String dir;
+
+  /**
+   * Set up the test
+   */
+  @Before
+  public void setUp() {
+    dir = tempFolder.getRoot().getAbsolutePath();
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Put, get and delete chunks
+   * @throws IOException if the log could not be accessed
+   */
+  @Test
+  public void putGetDelete() throws IOException {
+    SegmentLog log = SegmentLog.open(dir, 1024, 0.5);
+    try {
+      String a = log.put("/a", bytes("A"));
+      String b = log.put("/b", bytes("B"));
+      assertTrue(a.startsWith("/a"));
+      assertTrue(b.startsWith("/b"));
+      assertEquals(2, log.size());
+      assertArrayEquals(bytes("A"), log.get(a));
+      assertArrayEquals(bytes("B"), log.get(b));
+      log.delete(a);
+      assertNull(log.get(a));
+      assertEquals(1, log.size());
+
+      // deleting a chunk twice must not do any harm
+      log.delete(a);
+      assertArrayEquals(bytes("B"), log.get(b));
+      assertEquals(1, log.size());
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * Make sure paths that do not belong to a chunk are not found
+   * @throws IOException if the log could not be accessed
+   */
+  @Test
+  public void unknownPaths() throws IOException {
+    SegmentLog log = SegmentLog.open(dir, 1024, 0.5);
+    try {
+      String a = log.put("/a", bytes("A"));
+      assertNull(log.get("/a"));
+      assertNull(log.get("/x"));
+      // the location of chunk "a" but another path
+      assertNull(log.get("/x" + a.substring(2)));
+      // a location outside the segment
+      assertNull(log.get("/a_0_1000_1"));
+      // a segment that does not exist
+      assertNull(log.get("/a_5_8_1"));
+      log.delete("/x" + a.substring(2));
+      assertArrayEquals(bytes("A"), log.get(a));
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * Get several chunks at once. Some of them are stored next to each other,
+   * some are far apart, and some are in different segments.
+   * @throws IOException if the log could not be accessed
+   */
+  @Test
+  public void getMany() throws IOException {
+    SegmentLog log = SegmentLog.open(dir, 16 * 1024, 0.5);
+    try {
+      byte[] large = new byte[10000];
+      Arrays.fill(large, (byte)'L');
+      String a = log.put("/a", bytes("A"));
+      String b = log.put("/b", bytes("B"));
+      String l = log.put("/large", large);
+      String c = log.put("/c", bytes("C"));
+      String d = log.put("/d", large);
+      String e = log.put("/e", bytes("E"));
+      assertEquals(2, log.getSegmentCount());
+
+      List<byte[]> result = log.getMany(Arrays.asList(e, c, "/x", a, b, a));
+      assertEquals(6, result.size());
+      assertArrayEquals(bytes("E"), result.get(0));
+      assertArrayEquals(bytes("C"), result.get(1));
+      assertNull(result.get(2));
+      assertArrayEquals(bytes("A"), result.get(3));
+      assertArrayEquals(bytes("B"), result.get(4));
+      assertArrayEquals(bytes("A"), result.get(5));
+
+      result = log.getMany(Arrays.asList(l, d));
+      assertArrayEquals(large, result.get(0));
+      assertArrayEquals(large, result.get(1));
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * Check if chunks can be read after the log has been reopened
+   * @throws IOException if the log could not be accessed
+   */
+  @Test
+  public void reopen() throws IOException {
+    SegmentLog log = SegmentLog.open(dir, 32, 0.5);
+    String a = log.put("/a", bytes("A"));
+    String b = log.put("/b", bytes("B"));
+    String c = log.put("/c", bytes("C"));
+    log.delete(b);
+    log.close();
+
+    log = SegmentLog.open(dir, 32, 0.5);
+    try {
+      assertEquals(2, log.size());
+      assertArrayEquals(bytes("A"), log.get(a));
+      assertNull(log.get(b));
+      assertArrayEquals(bytes("C"), log.get(c));
+
+      String d = log.put("/d", bytes("D"));
+      assertArrayEquals(bytes("D"), log.get(d));
+      assertEquals(3, log.size());
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * Check if segments containing deleted chunks are compacted and if
+   * moved chunks can still be found with their original path
+   * @throws IOException if the log could not be accessed
+   */
+  @Test
+  public void compact() throws IOException {
+    // each segment holds two records of about 24 bytes
+    SegmentLog log = SegmentLog.open(dir, 40, 0.4);
+    String a = log.put("/a", bytes("AAAAAA"));
+    String b = log.put("/b", bytes("BBBBBB"));
+    String c = log.put("/c", bytes("CCCCCC"));
+    String d = log.put("/d", bytes("DDDDDD"));
+    String e = log.put("/e", bytes("EEEEEE"));
+    assertEquals(3, log.getSegmentCount());
+
+    log.delete(a);
+    log.delete(c);
+    log.delete(d);
+
+    // the second segment only contains deleted chunks
+    assertEquals(2, log.compact());
+    assertEquals(1, log.getSegmentCount());
+    assertArrayEquals(bytes("BBBBBB"), log.get(b));
+    assertArrayEquals(bytes("EEEEEE"), log.get(e));
+    assertNull(log.get(a));
+    List<byte[]> result = log.getMany(Arrays.asList(e, b, c));
+    assertArrayEquals(bytes("EEEEEE"), result.get(0));
+    assertArrayEquals(bytes("BBBBBB"), result.get(1));
+    assertNull(result.get(2));
+    log.close();
+
+    // deleted chunks must not come back and moved chunks must be found
+    log = SegmentLog.open(dir, 40, 0.4);
+    try {
+      assertEquals(2, log.size());
+      assertNull(log.get(a));
+      assertNull(log.get(c));
+      assertNull(log.get(d));
+      assertArrayEquals(bytes("BBBBBB"), log.get(b));
+      assertArrayEquals(bytes("EEEEEE"), log.get(e));
+
+      // delete a chunk that has been moved
+      log.delete(b);
+      assertNull(log.get(b));
+      assertEquals(1, log.size());
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * Check if chunks that have been moved twice can still be found
+   * @throws IOException if the log could not be accessed
+   */
+  @Test
+  public void compactTwice() throws IOException {
+    SegmentLog log = SegmentLog.open(dir, 40, 0.4);
+    try {
+      String a = log.put("/a", bytes("AAAAAA"));
+      String b = log.put("/b", bytes("BBBBBB"));
+      log.delete(a);
+      String c = log.put("/c", bytes("CCCCCC"));
+      assertEquals(1, log.compact());
+
+      // b has been moved to the second segment. fill it and compact it.
+      String d = log.put("/d", bytes("DDDDDD"));
+      log.delete(c);
+      log.delete(d);
+      log.put("/e", bytes("EEEEEE"));
+      assertEquals(1, log.compact());
+      assertArrayEquals(bytes("BBBBBB"), log.get(b));
+    } finally {
+      log.close();
+    }
+  }
+
+  /**
+   * Count the forwarding files in the log's directory
+   * @return the number of forwarding files
+   * @throws IOException if the directory could not be read
+   */
+  private int countForwardFiles() throws IOException {
+    try (Stream<Path> files = Files.list(Paths.get(dir))) {
+      return (int)files.filter(f -> f.getFileName().toString().endsWith(".fwd"))
+        .count();
+    }
+  }
+
+  /**
+   * Check if compacting the same chunks again and again does not let the
+   * number of forwarding files grow
+   * @throws IOException if the test fails
+   */
+  @Test
+  public void compactRepeatedly() throws IOException {
+    String b;
+    SegmentLog log = SegmentLog.open(dir, 40, 0.4);
+    try {
+      String a = log.put("/a", bytes("AAAAAA"));
+      b = log.put("/b", bytes("BBBBBB"));
+      log.delete(a);
+      String c = log.put("/c", bytes("CCCCCC"));
+      assertEquals(1, log.compact());
+      assertEquals(1, countForwardFiles());
+
+      // move b again and again. it always shares its segment with chunks
+      // that are deleted after they have been moved.
+      for (int i = 0; i < 5; ++i) {
+        String d = log.put("/d", bytes("DDDDDD"));
+        log.delete(c);
+        log.delete(d);
+        c = log.put("/e", bytes("EEEEEE"));
+        assertTrue(log.compact() > 0);
+        assertArrayEquals(bytes("BBBBBB"), log.get(b));
+        assertEquals(1, log.getForwardCount());
+        assertEquals(1, countForwardFiles());
+      }
+
+      // delete all chunks. the forwarding file is not needed anymore as
+      // soon as the segment containing b has been compacted.
+      log.delete(b);
+      log.delete(c);
+      log.delete(log.put("/f", bytes("FFFFFF")));
+      log.delete(log.put("/g", bytes("GGGGGG")));
+      assertTrue(log.compact() > 0);
+      assertEquals(0, log.getForwardCount());
+      assertEquals(0, countForwardFiles());
+    } finally {
+      log.close();
+    }
+
+    log = SegmentLog.open(dir, 40, 0.4);
+    try {
+      assertNull(log.get(b));
+    } finally {
+      log.close();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package io.georocket.storage.indexed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+/**
+ * Tests for {@link PagePrefetcher}
+ * @author Michel Kraemer
+ */
+public class PagePrefetcherTest {
+  /**
+   * A fake paginated source. Requests are answered manually by calling
+   * {@link #answer()}.
+   */
+  private static class Source {
+    final int pages;
+    int fetched;
+    final List<Handler<AsyncResult<Integer>>> pending = new ArrayList<>();
+
+    Source(int pages) {
+      this.pages = pages;
+    }
+
+    void fetch(Handler<AsyncResult<Integer>> handler) {
+      pending.add(handler);
+    }
+
+    boolean hasMore() {
+      return fetched + pending.size() < pages;
+    }
+
+    void answer() {
+      Handler<AsyncResult<Integer>> h = pending.remove(0);
+      fetched++;
+      h.handle(Future.succeededFuture(fetched));
+    }
+  }
+
+  /**
+   * Check if the next page is requested before it is needed
+   */
+  @Test
+  public void prefetch() {
+    Source source = new Source(3);
+    PagePrefetcher<Integer> p = new PagePrefetcher<>(1,
+        source::fetch, source::hasMore);
+    p.prefetch();
+    assertEquals(1, source.pending.size());
+    source.answer();
+
+    // depth is 1, so there must not be another request
+    assertEquals(0, source.pending.size());
+
+    List<Integer> result = new ArrayList<>();
+    p.next(ar -> result.add(ar.result()));
+    assertEquals(1, (int)result.get(0));
+
+    // handing out the page must trigger the next request
+    assertEquals(1, source.pending.size());
+    source.answer();
+    p.next(ar -> result.add(ar.result()));
+    assertEquals(2, (int)result.get(1));
+  }
+
+  /**
+   * Check if pages are fetched on demand if prefetching is disabled
+   */
+  @Test
+  public void onDemand() {
+    Source source = new Source(2);
+    PagePrefetcher<Integer> p = new PagePrefetcher<>(0,
+        source::fetch, source::hasMore);
+    p.prefetch();
+    assertEquals(0, source.pending.size());
+
+    List<Integer> result = new ArrayList<>();
+    p.next(ar -> result.add(ar.result()));
+    assertEquals(1, source.pending.size());
+    assertTrue(result.isEmpty());
+    source.answer();
+    assertEquals(1, (int)result.get(0));
+    assertEquals(0, source.pending.size());
+  }
+
+  /**
+   * Check if the prefetcher fails if there are no more pages
+   */
+  @Test
+  public void exhausted() {
+    Source source = new Source(1);
+    PagePrefetcher<Integer> p = new PagePrefetcher<>(2,
+        source::fetch, source::hasMore);
+    p.prefetch();
+    source.answer();
+    assertEquals(0, source.pending.size());
+
+    List<AsyncResult<Integer>> result = new ArrayList<>();
+    p.next(result::add);
+    p.next(result::add);
+    assertTrue(result.get(0).succeeded());
+    assertTrue(result.get(1).failed());
+  }
+}
@@ -0,0 +1,204 @@
+package io.georocket.tasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.georocket.constants.AddressConstants;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.test.fakecluster.FakeClusterManager;
+
+/**
+ * Tests for {@link TaskVerticle} running in a cluster with two nodes in
+ * the same process
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class TaskVerticleTest {
+  private static final String CORRELATION_ID = "abc";
+
+  private Vertx vertx1;
+  private Vertx vertx2;
+
+  /**
+   * Start two clustered Vert.x instances
+   * @param context the test context
+   */
+  @Before
+  public void setUp(TestContext context) {
+    Async async = context.async();
+    VertxOptions options = new VertxOptions()
+      .setClusterManager(new FakeClusterManager());
+    Vertx.clusteredVertx(options, context.asyncAssertSuccess(v1 -> {
+      vertx1 = v1;
+      VertxOptions options2 = new VertxOptions()
+        .setClusterManager(new FakeClusterManager());
+      Vertx.clusteredVertx(options2, context.asyncAssertSuccess(v2 -> {
+        vertx2 = v2;
+        async.complete();
+      }));
+    }));
+  }
+
+  /**
+   * Stop the Vert.x instances
+   * @param context the test context
+   */
+  @After
+  public void tearDown(TestContext context) {
+    vertx1.close(context.asyncAssertSuccess());
+    vertx2.close(context.asyncAssertSuccess());
+    FakeClusterManager.reset();
+  }
+
+  /**
+   * Publish an increment for the importing task
+   * @param vertx the node to publish the increment on
+   * @param importedChunks the number of imported chunks
+   */
+  private static void inc(Vertx vertx, long importedChunks) {
+    ImportingTask t = new ImportingTask(CORRELATION_ID);
+    t.setImportedChunks(importedChunks);
+    TaskVerticle.publishInc(vertx, t);
+  }
+
+  /**
+   * Get the number of imported chunks from the given node
+   * @param vertx the node to ask
+   * @param context the test context
+   * @param expected the expected number of imported chunks
+   * @param async will be completed when the number has been checked
+   */
+  private static void assertImportedChunks(Vertx vertx, TestContext context,
+      long expected, Async async) {
+    vertx.eventBus().<JsonObject>send(AddressConstants.TASK_GET_BY_CORRELATION_ID,
+        CORRELATION_ID, context.asyncAssertSuccess(reply -> {
+      JsonArray tasks = reply.body().getJsonArray(CORRELATION_ID);
+      context.assertEquals(1, tasks.size());
+      context.assertEquals(expected,
+          tasks.getJsonObject(0).getLong("importedChunks"));
+      async.complete();
+    }));
+  }
+
+  /**
+   * Check if increments published on all nodes are aggregated and if a
+   * node that joins later gets the current state
+   * @param context the test context
+   */
+  @Test
+  public void aggregate(TestContext context) {
+    Async deployed = context.async();
+    vertx1.deployVerticle(TaskVerticle.class.getName(),
+        context.asyncAssertSuccess(id -> deployed.complete()));
+    deployed.await();
+
+    inc(vertx1, 5);
+    inc(vertx2, 3);
+
+    // wait until the increments have been processed
+    Async processed = context.async();
+    vertx1.setTimer(200, id -> processed.complete());
+    processed.await();
+
+    Async deployed2 = context.async();
+    vertx2.deployVerticle(TaskVerticle.class.getName(),
+        context.asyncAssertSuccess(id -> deployed2.complete()));
+    deployed2.await();
+
+    inc(vertx2, 2);
+
+    Async processed2 = context.async();
+    vertx1.setTimer(200, id -> processed2.complete());
+    processed2.await();
+
+    // both nodes must know about all increments. send the requests from
+    // both nodes several times so they are delivered to both task verticles.
+    for (int i = 0; i < 2; ++i) {
+      assertImportedChunks(vertx1, context, 10, context.async());
+      assertImportedChunks(vertx2, context, 10, context.async());
+    }
+  }
+
+  /**
+   * Check if increments published while a joining node fetches the tasks
+   * of the other nodes are not lost
+   * @param context the test context
+   */
+  @Test
+  public void incWhileFetching(TestContext context) {
+    // simulate a node that publishes an increment while it answers
+    // the request for all tasks
+    vertx1.eventBus().consumer(AddressConstants.TASK_GET_ALL, msg -> {
+      inc(vertx1, 2);
+      ImportingTask t = new ImportingTask(CORRELATION_ID);
+      t.setImportedChunks(5);
+      JsonObject o = JsonObject.mapFrom(t);
+      o.remove("correlationId");
+      vertx1.setTimer(200, id -> msg.reply(new JsonObject()
+        .put("tasks", new JsonObject()
+          .put(CORRELATION_ID, new JsonArray().add(o)))));
+    });
+
+    Async deployed = context.async();
+    vertx2.deployVerticle(TaskVerticle.class.getName(),
+        context.asyncAssertSuccess(id -> deployed.complete()));
+    deployed.await();
+
+    assertImportedChunks(vertx2, context, 7, context.async());
+  }
+
+  /**
+   * Check if an increment that the answering node has already merged before
+   * it replies to the request for all tasks is not counted twice by the
+   * joining node, although the joining node has also received it
+   * @param context the test context
+   */
+  @Test
+  public void incSeenByBothNodesWhileFetching(TestContext context) {
+    // remember the sender and sequence number of the increment as
+    // seen by the answering node
+    JsonObject sequences = new JsonObject();
+    vertx1.eventBus().<JsonObject>consumer(AddressConstants.TASK_INC, msg ->
+        sequences.put(msg.headers().get("sender"),
+            Long.parseLong(msg.headers().get("sequence"))));
+
+    // simulate a node that publishes an increment while it answers the
+    // request for all tasks and that merges the increment into its reply
+    vertx1.eventBus().consumer(AddressConstants.TASK_GET_ALL, msg -> {
+      inc(vertx1, 2);
+      vertx1.setTimer(200, id -> {
+        ImportingTask t = new ImportingTask(CORRELATION_ID);
+        t.setImportedChunks(7);
+        JsonObject o = JsonObject.mapFrom(t);
+        o.remove("correlationId");
+        context.assertEquals(1, sequences.size());
+        msg.reply(new JsonObject()
+          .put("tasks", new JsonObject()
+            .put(CORRELATION_ID, new JsonArray().add(o)))
+          .put("sequences", sequences));
+      });
+    });
+
+    Async deployed = context.async();
+    vertx2.deployVerticle(TaskVerticle.class.getName(),
+        context.asyncAssertSuccess(id -> deployed.complete()));
+    deployed.await();
+
+    assertImportedChunks(vertx2, context, 7, context.async());
+
+    // later increments must still be merged
+    inc(vertx1, 1);
+    Async processed = context.async();
+    vertx1.setTimer(200, id -> processed.complete());
+    processed.await();
+    assertImportedChunks(vertx2, context, 8, context.async());
+  }
+}
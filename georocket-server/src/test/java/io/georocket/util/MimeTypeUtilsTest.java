@@ -9,9 +9,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
@@ -73,4 +76,30 @@ public class MimeTypeUtilsTest {
     FileUtils.write(tempFile, "   \n\n\n  ", StandardCharsets.UTF_8);
     assertNull(detect(tempFile));
   }
+
+  /**
+   * Check if the file type can be detected from data in memory
+   */
+  @Test
+  public void detectBytes() {
+    assertEquals(JSON, detect("  [1, 2]".getBytes(StandardCharsets.UTF_8), false));
+    assertEquals(XML, detect("\n<root>".getBytes(StandardCharsets.UTF_8), false));
+    assertNull(detect("   ".getBytes(StandardCharsets.UTF_8), false));
+  }
+
+  /**
+   * Check if the file type can be detected from the first bytes of a
+   * compressed file and if incomplete data is handled gracefully
+   * @throws IOException if the data could not be compressed
+   */
+  @Test
+  public void detectGzipBytes() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream os = new GZIPOutputStream(baos)) {
+      os.write("   <root></root>".getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] compressed = baos.toByteArray();
+    assertEquals(XML, detect(compressed, true));
+    assertNull(detect(Arrays.copyOf(compressed, 5), true));
+  }
 }
@@ -0,0 +1,182 @@
+package io.georocket.util.io;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+/**
+ * Tests for {@link EventBusWriteStream} and {@link EventBusReadStream}
+ * @author Michel Kraemer
+ */
+@RunWith(VertxUnitRunner.class)
+public class EventBusStreamTest {
+  private static final String ADDRESS = "test.stream";
+
+  /**
+   * Run the test on a Vert.x test context
+   */
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  /**
+   * Check if all buffers are received in order
+   * @param context the test context
+   */
+  @Test
+  public void transfer(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async(2);
+
+    EventBusWriteStream ws = new EventBusWriteStream(vertx, ADDRESS);
+    EventBusReadStream rs = new EventBusReadStream(vertx, ADDRESS, 4);
+    Buffer received = Buffer.buffer();
+    rs.handler(received::appendBuffer);
+    rs.endHandler(v -> {
+      context.assertEquals("0123456789", received.toString());
+      async.countDown();
+    });
+
+    for (int i = 0; i < 10; ++i) {
+      ws.write(Buffer.buffer(String.valueOf(i)));
+    }
+    ws.end(context.asyncAssertSuccess(v -> async.countDown()));
+  }
+
+  /**
+   * Check if the write stream's queue is full as long as the read stream
+   * is paused
+   * @param context the test context
+   */
+  @Test
+  public void flowControl(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async();
+
+    EventBusWriteStream ws = new EventBusWriteStream(vertx, ADDRESS);
+    EventBusReadStream rs = new EventBusReadStream(vertx, ADDRESS, 4);
+    int[] count = new int[] { 0 };
+    rs.handler(buf -> count[0]++);
+    rs.pause();
+
+    // wait for the initial credits
+    vertx.setTimer(50, id1 -> {
+      context.assertFalse(ws.writeQueueFull());
+      for (int i = 0; i < 4; ++i) {
+        ws.write(Buffer.buffer("x"));
+      }
+      context.assertTrue(ws.writeQueueFull());
+
+      vertx.setTimer(50, id2 -> {
+        context.assertEquals(0, count[0]);
+        context.assertTrue(ws.writeQueueFull());
+        ws.drainHandler(v -> {
+          context.assertEquals(4, count[0]);
+          async.complete();
+        });
+        rs.resume();
+      });
+    });
+  }
+
+  /**
+   * Check if a failure of the read stream is reported to the write stream
+   * @param context the test context
+   */
+  @Test
+  public void readerFails(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async();
+
+    EventBusWriteStream ws = new EventBusWriteStream(vertx, ADDRESS);
+    EventBusReadStream rs = new EventBusReadStream(vertx, ADDRESS, 4);
+    rs.handler(buf -> rs.fail(new IOException("Invalid data")));
+    ws.exceptionHandler(t -> {
+      context.assertTrue(t instanceof ReplyException);
+      context.assertEquals("Invalid data", t.getMessage());
+      async.complete();
+    });
+    ws.write(Buffer.buffer("x"));
+  }
+
+  /**
+   * Check if a failure of the write stream is reported to the read stream
+   * @param context the test context
+   */
+  @Test
+  public void writerFails(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async();
+
+    EventBusWriteStream ws = new EventBusWriteStream(vertx, ADDRESS);
+    EventBusReadStream rs = new EventBusReadStream(vertx, ADDRESS, 4);
+    rs.handler(buf -> {});
+    rs.endHandler(v -> context.fail("Stream must not end"));
+    rs.exceptionHandler(t -> {
+      context.assertEquals("Connection closed", t.getMessage());
+      async.complete();
+    });
+    ws.write(Buffer.buffer("x"));
+    ws.fail(new IOException("Connection closed"));
+  }
+
+  /**
+   * Check if buffers written and the end of the stream signalled before
+   * the read stream has registered are not lost
+   * @param context the test context
+   */
+  @Test
+  public void lateReader(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async(2);
+
+    EventBusWriteStream ws = new EventBusWriteStream(vertx, ADDRESS);
+    ws.write(Buffer.buffer("0"));
+    ws.write(Buffer.buffer("1"));
+    ws.end(context.asyncAssertSuccess(v -> async.countDown()));
+
+    vertx.setTimer(50, id -> {
+      EventBusReadStream rs = new EventBusReadStream(vertx, ADDRESS, 4);
+      Buffer received = Buffer.buffer();
+      rs.handler(received::appendBuffer);
+      rs.endHandler(v -> {
+        context.assertEquals("01", received.toString());
+        async.countDown();
+      });
+    });
+  }
+
+  /**
+   * Check if a failure of the write stream that happens before the read
+   * stream has registered is reported to the read stream
+   * @param context the test context
+   */
+  @Test
+  public void writerFailsBeforeReader(TestContext context) {
+    Vertx vertx = rule.vertx();
+    Async async = context.async();
+
+    EventBusWriteStream ws = new EventBusWriteStream(vertx, ADDRESS);
+    ws.write(Buffer.buffer("x"));
+    ws.fail(new IOException("Connection closed"));
+
+    vertx.setTimer(50, id -> {
+      EventBusReadStream rs = new EventBusReadStream(vertx, ADDRESS, 4);
+      rs.handler(buf -> {});
+      rs.endHandler(v -> context.fail("Stream must not end"));
+      rs.exceptionHandler(t -> {
+        context.assertEquals("Connection closed", t.getMessage());
+        async.complete();
+      });
+    });
+  }
+}